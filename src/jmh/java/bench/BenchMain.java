@@ -0,0 +1,47 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler ;
+import org.openjdk.jmh.runner.Runner ;
+import org.openjdk.jmh.runner.RunnerException ;
+import org.openjdk.jmh.runner.options.CommandLineOptionException ;
+import org.openjdk.jmh.runner.options.CommandLineOptions ;
+import org.openjdk.jmh.runner.options.Options ;
+import org.openjdk.jmh.runner.options.OptionsBuilder ;
+
+/**
+ * Run benchmarks with the GC profiler always on, so the results include
+ * {@code gc.alloc.rate.norm} (bytes allocated per operation) as well as ops/s.
+ * Takes the usual JMH command line: for example
+ * <pre>
+ *   java -jar target/benchmarks.jar StructureBench -p structure=AVL,TTree -p keyCount=100000
+ * </pre>
+ */
+public class BenchMain
+{
+    public static void main(String... args) throws RunnerException, CommandLineOptionException
+    {
+        CommandLineOptions cmdline = new CommandLineOptions(args) ;
+        Options opts = new OptionsBuilder()
+            .parent(cmdline)
+            .addProfiler(GCProfiler.class)
+            .build() ;
+        new Runner(opts).run() ;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.util.concurrent.TimeUnit ;
+
+import org.openjdk.jmh.annotations.* ;
+import structure.exthash.ConcurrentExtHash ;
+
+/**
+ * Read scaling of {@link ConcurrentExtHash} : lookups of present keys from
+ * many threads, optionally with one thread in the group writing. Run with
+ * different thread counts, for example {@code -t 1}, {@code -t 4}, {@code -t 16}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConcurrentExtHashBench
+{
+    @Param({"100000", "1000000"})
+    public int keyCount ;
+
+    @Param({"32"})
+    public int bucketSize ;
+
+    private int[] keys ;
+    private int[] probes ;
+    private ConcurrentExtHash<Integer, Integer> table ;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        keys = Keys.generate("random", keyCount) ;
+        probes = Keys.probes(keys) ;
+        table = new ConcurrentExtHash<Integer, Integer>(bucketSize) ;
+        for ( int k : keys )
+            table.put(k, k) ;
+    }
+
+    /** Per-thread position in the probe sequence. */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int idx ;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            idx = (int)(Thread.currentThread().getId() * 7919) ;
+        }
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor)
+    {
+        int k = probes[cursor.idx & (probes.length-1)] ;
+        cursor.idx++ ;
+        return table.get(k) ;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Integer mixedGet(Cursor cursor)
+    {
+        return get(cursor) ;
+    }
+
+    // Rewrites present keys : the table does not grow, but buckets are write-locked.
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Integer mixedPut(Cursor cursor)
+    {
+        int k = keys[(cursor.idx & 0x7FFFFFFF) % keys.length] ;
+        cursor.idx++ ;
+        return table.put(k, k) ;
+    }
+}
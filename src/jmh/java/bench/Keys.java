@@ -0,0 +1,132 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.util.Arrays ;
+import java.util.HashSet ;
+import java.util.Random ;
+import java.util.Set ;
+
+/** Key sets for the benchmarks. Keys are distinct, non-negative ints, in insertion order. */
+public class Keys
+{
+    // Fixed seed : every structure sees the same keys in the same order.
+    static final long Seed = 0x5EED ;
+
+    /** Size of a run of consecutive keys in the "clustered" distribution */
+    static final int ClusterSize = 64 ;
+
+    /**
+     * Generate {@code n} distinct keys.
+     * <ul>
+     * <li>"sequential" &ndash; 0,1,2,... in ascending order.
+     * <li>"random" &ndash; uniformly spread over the non-negative ints, in random order.
+     * <li>"clustered" &ndash; runs of {@link #ClusterSize} consecutive keys at random starting points,
+     * runs in random order.
+     * </ul>
+     */
+    public static int[] generate(String distribution, int n)
+    {
+        switch (distribution)
+        {
+            case "sequential" : return sequential(n) ;
+            case "random" :     return random(n, new Random(Seed)) ;
+            case "clustered" :  return clustered(n, new Random(Seed)) ;
+            default:
+                throw new IllegalArgumentException("Unknown key distribution: "+distribution) ;
+        }
+    }
+
+    static int[] sequential(int n)
+    {
+        int[] keys = new int[n] ;
+        for ( int i = 0 ; i < n ; i++ )
+            keys[i] = i ;
+        return keys ;
+    }
+
+    static int[] random(int n, Random random)
+    {
+        Set<Integer> seen = new HashSet<>(2*n) ;
+        int[] keys = new int[n] ;
+        int i = 0 ;
+        while ( i < n )
+        {
+            int k = random.nextInt() & 0x7FFFFFFF ;
+            if ( seen.add(k) )
+                keys[i++] = k ;
+        }
+        return keys ;
+    }
+
+    static int[] clustered(int n, Random random)
+    {
+        int numClusters = (n+ClusterSize-1)/ClusterSize ;
+        // Distinct cluster starts, spaced so runs do not overlap.
+        int[] starts = random(numClusters, random) ;
+        int[] keys = new int[n] ;
+        int i = 0 ;
+        for ( int c = 0 ; c < numClusters && i < n ; c++ )
+        {
+            int base = (starts[c] / (2*ClusterSize)) * (2*ClusterSize) ;
+            for ( int j = 0 ; j < ClusterSize && i < n ; j++ )
+                keys[i++] = base+j ;
+        }
+        // Cluster bases can collide after rounding; replace any repeats.
+        return dedup(keys, random) ;
+    }
+
+    private static int[] dedup(int[] keys, Random random)
+    {
+        Set<Integer> seen = new HashSet<>(2*keys.length) ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+        {
+            while ( ! seen.add(keys[i]) )
+                keys[i] = random.nextInt() & 0x7FFFFFFF ;
+        }
+        return keys ;
+    }
+
+    /** A shuffled copy of the keys, length rounded up to a power of two, for probing. */
+    public static int[] probes(int[] keys)
+    {
+        int len = Integer.highestOneBit(Math.max(1, keys.length-1)) << 1 ;
+        int[] probes = new int[len] ;
+        for ( int i = 0 ; i < len ; i++ )
+            probes[i] = keys[i % keys.length] ;
+        shuffle(probes, new Random(Seed+1)) ;
+        return probes ;
+    }
+
+    /** A shuffled copy of the keys */
+    public static int[] shuffled(int[] keys)
+    {
+        int[] x = Arrays.copyOf(keys, keys.length) ;
+        shuffle(x, new Random(Seed+2)) ;
+        return x ;
+    }
+
+    private static void shuffle(int[] a, Random random)
+    {
+        for ( int i = a.length-1 ; i > 0 ; i-- )
+        {
+            int j = random.nextInt(i+1) ;
+            int t = a[i] ; a[i] = a[j] ; a[j] = t ;
+        }
+    }
+}
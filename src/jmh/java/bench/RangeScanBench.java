@@ -0,0 +1,87 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.util.Arrays ;
+import java.util.concurrent.TimeUnit ;
+
+import org.openjdk.jmh.annotations.* ;
+
+/**
+ * Range scans over the ordered structures (ExtHashMem has no order so is not included).
+ * One operation is one scan of {@code scanLength} consecutive present keys,
+ * starting from a random key. {@code nodeSize} is the T-Tree node size, one value by
+ * default ; sweep it with {@code -p nodeSize=...} as for {@link StructureBench}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RangeScanBench
+{
+    @Param({"AVL", "TTree", "LongAVL", "LongTTree", "SkipList", "BST", "RBTree", "Radix"})
+    public String structure ;
+
+    @Param({"1000", "100000"})
+    public int keyCount ;
+
+    @Param({"sequential", "random", "clustered"})
+    public String distribution ;
+
+    /** T-Tree node size. */
+    @Param({"32"})
+    public int nodeSize ;
+
+    @Param({"100"})
+    public int scanLength ;
+
+    private int[] sorted ;
+    private int[] starts ;
+    private int startIdx ;
+    private Structures loaded ;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        int[] keys = Keys.generate(distribution, keyCount) ;
+        loaded = Structures.create(structure, nodeSize) ;
+        for ( int k : keys )
+            loaded.insert(k) ;
+        sorted = Arrays.copyOf(keys, keys.length) ;
+        Arrays.sort(sorted) ;
+        // Start positions in the sorted keys, leaving room for a full scan.
+        int limit = Math.max(1, sorted.length-scanLength) ;
+        int[] positions = new int[limit] ;
+        for ( int i = 0 ; i < limit ; i++ )
+            positions[i] = i ;
+        starts = Keys.probes(positions) ;
+    }
+
+    @Benchmark
+    public long scan()
+    {
+        int i = starts[startIdx] ;
+        startIdx = (startIdx+1) & (starts.length-1) ;
+        int startInc = sorted[i] ;
+        int endIdx = i+scanLength ;
+        int endExc = ( endIdx < sorted.length ) ? sorted[endIdx] : Integer.MAX_VALUE ;
+        return loaded.scan(startInc, endExc) ;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.util.concurrent.TimeUnit ;
+
+import org.openjdk.jmh.annotations.* ;
+import org.openjdk.jmh.infra.Blackhole ;
+
+/**
+ * Insert, lookup and delete over every structure, same keys, same order.
+ * <p>
+ * One "insert" operation builds the whole structure from empty and one "delete"
+ * operation empties a full structure, so ops/s and gc.alloc.rate.norm are per
+ * {@code keyCount} keys. One "lookup" operation is one probe of a present key.
+ * <p>
+ * {@code nodeSize} is the T-Tree node size and the ExtHashMem bucket size ; the
+ * other structures ignore it. It is one value by default so they are not run
+ * repeatedly ; sweep it with, for example,
+ * {@code -p structure=TTree,LongTTree,ExtHashMem -p nodeSize=8,16,32,64,128}.
+ * {@link TTreeNodeSizeBench} sweeps T-Tree node sizes against AVL.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class StructureBench
+{
+    @Param({"AVL", "TTree", "LongAVL", "LongTTree", "SkipList", "BST", "RBTree", "ExtHashMem", "Radix"})
+    public String structure ;
+
+    @Param({"1000", "100000"})
+    public int keyCount ;
+
+    @Param({"sequential", "random", "clustered"})
+    public String distribution ;
+
+    /** T-Tree node size ; ExtHashMem bucket size. */
+    @Param({"32"})
+    public int nodeSize ;
+
+    private int[] keys ;
+    private int[] deleteOrder ;
+    private int[] probes ;
+    private int probeIdx ;
+    private Structures loaded ;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        keys = Keys.generate(distribution, keyCount) ;
+        deleteOrder = Keys.shuffled(keys) ;
+        probes = Keys.probes(keys) ;
+        loaded = Structures.create(structure, nodeSize) ;
+        for ( int k : keys )
+            loaded.insert(k) ;
+    }
+
+    /** A freshly populated structure for each delete invocation (setup is not measured). */
+    @State(Scope.Thread)
+    public static class Populated
+    {
+        Structures structure ;
+
+        @Setup(Level.Invocation)
+        public void setup(StructureBench bench)
+        {
+            structure = Structures.create(bench.structure, bench.nodeSize) ;
+            for ( int k : bench.keys )
+                structure.insert(k) ;
+        }
+    }
+
+    /** Build the structure from empty. */
+    @Benchmark
+    public Structures insert()
+    {
+        Structures s = Structures.create(structure, nodeSize) ;
+        for ( int k : keys )
+            s.insert(k) ;
+        return s ;
+    }
+
+    /** One lookup of a key known to be present. */
+    @Benchmark
+    public boolean lookup()
+    {
+        int k = probes[probeIdx] ;
+        probeIdx = (probeIdx+1) & (probes.length-1) ;
+        return loaded.contains(k) ;
+    }
+
+    /** Delete every key, in random order, leaving the structure empty. */
+    @Benchmark
+    public void delete(Populated populated, Blackhole bh)
+    {
+        Structures s = populated.structure ;
+        for ( int k : deleteOrder )
+            bh.consume(s.delete(k)) ;
+    }
+}
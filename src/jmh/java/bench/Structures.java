@@ -0,0 +1,196 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.util.Iterator ;
+import java.util.PrimitiveIterator ;
+
+import structure.LongOrderedSet ;
+import structure.OrderedMap ;
+import structure.OrderedSet ;
+import structure.avl.AVL ;
+import structure.avl.LongAVL ;
+import structure.binary_search_tree.BST_Tree ;
+import structure.exthash.ExtHashMem ;
+import structure.radix.RadixEntry ;
+import structure.radix.RadixTree ;
+import structure.radix.RadixTreeImpl ;
+import structure.red_black.RBTree ;
+import structure.skiplist.SkipList ;
+import structure.ttree.LongTTree ;
+import structure.ttree.TTree ;
+
+/**
+ * One face, int keys, onto each structure under test.
+ * Names are the values of the {@code structure} benchmark parameter.
+ */
+public abstract class Structures
+{
+    static {
+        // Benchmark the structures, not their debugging.
+        AVL.Checking = false ;
+        AVL.Logging = false ;
+        TTree.Checking = false ;
+        TTree.Logging = false ;
+        LongAVL.Checking = false ;
+        LongTTree.Checking = false ;
+        SkipList.Checking = false ;
+        SkipList.Logging = false ;
+        ExtHashMem.Checking = false ;
+        ExtHashMem.Logging = false ;
+        RadixTreeImpl.checking = false ;
+        RadixTreeImpl.logging = false ;
+    }
+
+    public abstract boolean insert(int key) ;
+    public abstract boolean contains(int key) ;
+    public abstract boolean delete(int key) ;
+
+    /** Iterate over [startInc, endExc) ; return the number of items seen */
+    public abstract long scan(int startInc, int endExc) ;
+
+    /**
+     * Create an empty structure.
+     * {@code nodeSize} is the T-Tree (and LongTTree) node size, the ExtHashMem bucket size
+     * and otherwise ignored.
+     */
+    public static Structures create(String name, int nodeSize)
+    {
+        switch (name)
+        {
+            case "AVL":         return new SetStructure(new AVL<Integer>()) ;
+            case "TTree":       return new SetStructure(new TTree<Integer>(nodeSize, nodeSize)) ;
+            case "LongAVL":     return new LongSetStructure(new LongAVL()) ;
+            case "LongTTree":   return new LongSetStructure(new LongTTree(nodeSize, nodeSize)) ;
+            case "SkipList":    return new SkipListStructure(new SkipList<Integer>()) ;
+            case "BST":         return new MapStructure(new BST_Tree<Integer, Integer>()) ;
+            case "RBTree":      return new MapStructure(new RBTree<Integer, Integer>()) ;
+            case "ExtHashMem":  return new HashStructure(new ExtHashMem<Integer, Integer>(nodeSize)) ;
+            case "Radix":       return new RadixStructure(new RadixTreeImpl()) ;
+            default:
+                throw new IllegalArgumentException("Unknown structure: "+name) ;
+        }
+    }
+
+    // The generic structures box each key on the way in. That allocation is
+    // part of the cost of using them for int keys, so it is measured.
+
+    static class SetStructure extends Structures
+    {
+        private final OrderedSet<Integer> set ;
+        SetStructure(OrderedSet<Integer> set) { this.set = set ; }
+
+        @Override public boolean insert(int key)        { return set.add(key) ; }
+        @Override public boolean contains(int key)      { return set.contains(key) ; }
+        @Override public boolean delete(int key)        { return set.remove(key) ; }
+        @Override public long scan(int startInc, int endExc)
+        { return count(set.iterator(startInc, endExc)) ; }
+    }
+
+    // No boxing : the key stays a primitive all the way down.
+    static class LongSetStructure extends Structures
+    {
+        private final LongOrderedSet set ;
+        LongSetStructure(LongOrderedSet set) { this.set = set ; }
+
+        @Override public boolean insert(int key)        { return set.add(key) ; }
+        @Override public boolean contains(int key)      { return set.contains(key) ; }
+        @Override public boolean delete(int key)        { return set.remove(key) ; }
+        @Override public long scan(int startInc, int endExc)
+        {
+            PrimitiveIterator.OfLong iter = set.iterator(startInc, endExc) ;
+            long x = 0 ;
+            while ( iter.hasNext() )
+            {
+                iter.nextLong() ;
+                x++ ;
+            }
+            return x ;
+        }
+    }
+
+    static class SkipListStructure extends Structures
+    {
+        private final SkipList<Integer> list ;
+        SkipListStructure(SkipList<Integer> list) { this.list = list ; }
+
+        @Override public boolean insert(int key)        { return list.insert(key) == null ; }
+        @Override public boolean contains(int key)      { return list.contains(key) ; }
+        @Override public boolean delete(int key)        { return list.delete(key) != null ; }
+        @Override public long scan(int startInc, int endExc)
+        { return count(list.iterator(startInc, endExc)) ; }
+    }
+
+    static class MapStructure extends Structures
+    {
+        private final OrderedMap<Integer, Integer> map ;
+        MapStructure(OrderedMap<Integer, Integer> map) { this.map = map ; }
+
+        @Override public boolean insert(int key)        { map.insert(key, key) ; return true ; }
+        @Override public boolean contains(int key)      { return map.contains(key) ; }
+        @Override public boolean delete(int key)        { return map.remove(key) ; }
+        @Override public long scan(int startInc, int endExc)
+        { return count(map.iteratorKeys(startInc, endExc)) ; }
+    }
+
+    static class HashStructure extends Structures
+    {
+        private final ExtHashMem<Integer, Integer> hash ;
+        HashStructure(ExtHashMem<Integer, Integer> hash) { this.hash = hash ; }
+
+        @Override public boolean insert(int key)        { hash.put(key, key) ; return true ; }
+        @Override public boolean contains(int key)      { return hash.contains(key) ; }
+        @Override public boolean delete(int key)        { hash.remove(key) ; return true ; }
+        @Override public long scan(int startInc, int endExc)
+        { throw new UnsupportedOperationException("ExtHashMem: no range scan") ; }
+    }
+
+    static class RadixStructure extends Structures
+    {
+        private static final byte[] value = { 0 } ;
+        private final RadixTree radix ;
+        RadixStructure(RadixTree radix) { this.radix = radix ; }
+
+        @Override public boolean insert(int key)        { return radix.insert(key(key), value) ; }
+        @Override public boolean contains(int key)      { return radix.contains(key(key)) ; }
+        @Override public boolean delete(int key)        { return radix.delete(key(key)) ; }
+        @Override public long scan(int startInc, int endExc)
+        {
+            Iterator<RadixEntry> iter = radix.iterator(key(startInc), key(endExc)) ;
+            return count(iter) ;
+        }
+
+        // Big-endian : byte order is the same as numeric order for non-negative keys.
+        // The allocation is part of the cost of using the radix tree with int keys.
+        static byte[] key(int k)
+        {
+            return new byte[] { (byte)(k>>>24), (byte)(k>>>16), (byte)(k>>>8), (byte)k } ;
+        }
+    }
+
+    static long count(Iterator<?> iter)
+    {
+        long x = 0 ;
+        while ( iter.hasNext() )
+        {
+            iter.next() ;
+            x++ ;
+        }
+        return x ;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.util.Arrays ;
+import java.util.concurrent.TimeUnit ;
+
+import org.openjdk.jmh.annotations.* ;
+import org.openjdk.jmh.infra.Blackhole ;
+
+/**
+ * T-Tree node size sweep, against AVL with the same keys. Lookup is one probe of
+ * a present key ; scan is one range scan of {@code scanLength} keys along the
+ * successor links ; insert builds the whole structure from empty and delete
+ * empties a full one, in random order.
+ * <p>
+ * AVL and LongAVL ignore {@code nodeSize}, so their rows repeat for each node size ;
+ * they are the like-for-like baselines, at the same key counts and distributions.
+ * Use {@code -p nodeSize=32} to run them once. Sequential keys, besides random
+ * ones, because in-order inserts all land in the rightmost node, which is where
+ * T-Tree node size and rebalancing differ most from AVL ; {@code -p distribution=clustered}
+ * adds the third distribution of {@link Keys}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TTreeNodeSizeBench
+{
+    @Param({"AVL", "TTree", "LongAVL", "LongTTree"})
+    public String structure ;
+
+    @Param({"8", "16", "32", "64", "128"})
+    public int nodeSize ;
+
+    @Param({"100000", "1000000"})
+    public int keyCount ;
+
+    @Param({"random", "sequential"})
+    public String distribution ;
+
+    @Param({"100"})
+    public int scanLength ;
+
+    private int[] keys ;
+    private int[] deleteOrder ;
+    private int[] sorted ;
+    private int[] probes ;
+    private int probeIdx ;
+    private int[] starts ;
+    private int startIdx ;
+    private Structures loaded ;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        keys = Keys.generate(distribution, keyCount) ;
+        deleteOrder = Keys.shuffled(keys) ;
+        probes = Keys.probes(keys) ;
+        loaded = Structures.create(structure, nodeSize) ;
+        for ( int k : keys )
+            loaded.insert(k) ;
+        sorted = Arrays.copyOf(keys, keys.length) ;
+        Arrays.sort(sorted) ;
+        int limit = Math.max(1, sorted.length-scanLength) ;
+        int[] positions = new int[limit] ;
+        for ( int i = 0 ; i < limit ; i++ )
+            positions[i] = i ;
+        starts = Keys.probes(positions) ;
+    }
+
+    /** A freshly populated structure for each delete invocation (setup is not measured). */
+    @State(Scope.Thread)
+    public static class Populated
+    {
+        Structures structure ;
+
+        @Setup(Level.Invocation)
+        public void setup(TTreeNodeSizeBench bench)
+        {
+            structure = Structures.create(bench.structure, bench.nodeSize) ;
+            for ( int k : bench.keys )
+                structure.insert(k) ;
+        }
+    }
+
+    @Benchmark
+    public Structures insert()
+    {
+        Structures s = Structures.create(structure, nodeSize) ;
+        for ( int k : keys )
+            s.insert(k) ;
+        return s ;
+    }
+
+    @Benchmark
+    public boolean lookup()
+    {
+        int k = probes[probeIdx] ;
+        probeIdx = (probeIdx+1) & (probes.length-1) ;
+        return loaded.contains(k) ;
+    }
+
+    @Benchmark
+    public long scan()
+    {
+        int i = starts[startIdx] ;
+        startIdx = (startIdx+1) & (starts.length-1) ;
+        int endIdx = i+scanLength ;
+        int endExc = ( endIdx < sorted.length ) ? sorted[endIdx] : Integer.MAX_VALUE ;
+        return loaded.scan(sorted[i], endExc) ;
+    }
+
+    @Benchmark
+    public void delete(Populated populated, Blackhole bh)
+    {
+        Structures s = populated.structure ;
+        for ( int k : deleteOrder )
+            bh.consume(s.delete(k)) ;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.nio.charset.StandardCharsets ;
+import java.util.UUID ;
+import java.util.concurrent.TimeUnit ;
+
+import org.openjdk.jmh.annotations.* ;
+import org.seaborne.lib.uuid.LibUUID ;
+
+/**
+ * UUID text: the JDK ({@code UUID.toString}, {@code UUID.fromString}) against the
+ * {@link LibUUID} routines that read and write caller supplied buffers. Each
+ * operation handles one UUID from a pre-generated set.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class UUIDTextBench
+{
+    private static final int N = 1024 ;
+
+    private UUID[] uuids ;
+    private String[] strings ;
+    private byte[][] bytes ;
+    private char[] charBuffer ;
+    private byte[] byteBuffer ;
+    private StringBuilder sb ;
+    private int idx ;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        uuids = new UUID[N] ;
+        strings = new String[N] ;
+        bytes = new byte[N][] ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            uuids[i] = UUID.randomUUID() ;
+            strings[i] = uuids[i].toString() ;
+            bytes[i] = strings[i].getBytes(StandardCharsets.US_ASCII) ;
+        }
+        charBuffer = new char[36] ;
+        byteBuffer = new byte[36] ;
+        sb = new StringBuilder(64) ;
+    }
+
+    private int next()
+    {
+        idx = (idx+1) & (N-1) ;
+        return idx ;
+    }
+
+    @Benchmark
+    public String format_jdk()
+    {
+        return uuids[next()].toString() ;
+    }
+
+    @Benchmark
+    public String format_string()
+    {
+        UUID uuid = uuids[next()] ;
+        return LibUUID.uuidString(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) ;
+    }
+
+    @Benchmark
+    public char[] format_chars()
+    {
+        LibUUID.format(uuids[next()], charBuffer, 0) ;
+        return charBuffer ;
+    }
+
+    @Benchmark
+    public byte[] format_bytes()
+    {
+        LibUUID.format(uuids[next()], byteBuffer, 0) ;
+        return byteBuffer ;
+    }
+
+    @Benchmark
+    public StringBuilder format_builder()
+    {
+        sb.setLength(0) ;
+        LibUUID.format(uuids[next()], sb) ;
+        return sb ;
+    }
+
+    @Benchmark
+    public UUID parse_jdk()
+    {
+        return UUID.fromString(strings[next()]) ;
+    }
+
+    @Benchmark
+    public UUID parse_string()
+    {
+        return LibUUID.parse(strings[next()]) ;
+    }
+
+    @Benchmark
+    public UUID parse_bytes()
+    {
+        byte[] b = bytes[next()] ;
+        return LibUUID.parse(b, 0, b.length) ;
+    }
+}
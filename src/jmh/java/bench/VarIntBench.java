@@ -0,0 +1,141 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package bench;
+
+import java.nio.ByteBuffer ;
+import java.util.Random ;
+import java.util.concurrent.TimeUnit ;
+
+import lib.GroupVarInt ;
+import lib.VarInt ;
+import org.openjdk.jmh.annotations.* ;
+
+/**
+ * Integer codecs: {@link VarInt} (one value at a time, and bulk) against
+ * {@link GroupVarInt}. Each operation encodes or decodes the whole array of
+ * {@code count} values.
+ * <ul>
+ * <li>{@code small} : values below 128 (one byte in both formats).
+ * <li>{@code postings} : gaps between sorted ids, geometric with mean 50.
+ * <li>{@code mixed} : random bit length from 0 to 28.
+ * <li>{@code large} : random 31 bit values.
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class VarIntBench
+{
+    @Param({"small", "postings", "mixed", "large"})
+    public String distribution ;
+
+    @Param({"4096"})
+    public int count ;
+
+    private int[] ints ;
+    private long[] longs ;
+    private int[] intsOut ;
+    private long[] longsOut ;
+    private ByteBuffer varintBytes ;
+    private ByteBuffer groupBytes ;
+    private ByteBuffer scratch ;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random random = new Random(1234) ;
+        ints = new int[count] ;
+        longs = new long[count] ;
+        for ( int i = 0 ; i < count ; i++ )
+        {
+            int v ;
+            switch (distribution)
+            {
+                case "small" :    v = random.nextInt(128) ; break ;
+                case "postings" : v = (int)Math.ceil(Math.log(1-random.nextDouble()) / Math.log(1-1.0/50)) ; break ;
+                case "mixed" :    v = random.nextInt(1<<28) >>> random.nextInt(29) ; break ;
+                case "large" :    v = random.nextInt() >>> 1 ; break ;
+                default: throw new IllegalArgumentException("Unknown distribution: "+distribution) ;
+            }
+            ints[i] = v ;
+            longs[i] = v ;
+        }
+        intsOut = new int[count] ;
+        longsOut = new long[count] ;
+        varintBytes = ByteBuffer.allocate(VarInt.MaxLength*count) ;
+        VarInt.encode(longs, 0, count, varintBytes) ;
+        varintBytes.flip() ;
+        groupBytes = ByteBuffer.allocate(GroupVarInt.MaxGroupLength*(count/4+1)) ;
+        GroupVarInt.encode(ints, 0, count, groupBytes) ;
+        groupBytes.flip() ;
+        scratch = ByteBuffer.allocate(VarInt.MaxLength*count) ;
+    }
+
+    @Benchmark
+    public ByteBuffer encode_varint_single()
+    {
+        scratch.clear() ;
+        for ( int i = 0 ; i < count ; i++ )
+            VarInt.encode(scratch, longs[i]) ;
+        return scratch ;
+    }
+
+    @Benchmark
+    public ByteBuffer encode_varint_bulk()
+    {
+        scratch.clear() ;
+        VarInt.encode(longs, 0, count, scratch) ;
+        return scratch ;
+    }
+
+    @Benchmark
+    public ByteBuffer encode_group()
+    {
+        scratch.clear() ;
+        GroupVarInt.encode(ints, 0, count, scratch) ;
+        return scratch ;
+    }
+
+    @Benchmark
+    public long[] decode_varint_single()
+    {
+        varintBytes.rewind() ;
+        for ( int i = 0 ; i < count ; i++ )
+            longsOut[i] = VarInt.decode(varintBytes) ;
+        return longsOut ;
+    }
+
+    @Benchmark
+    public long[] decode_varint_bulk()
+    {
+        varintBytes.rewind() ;
+        VarInt.decode(varintBytes, longsOut, 0, count) ;
+        return longsOut ;
+    }
+
+    @Benchmark
+    public int[] decode_group()
+    {
+        groupBytes.rewind() ;
+        GroupVarInt.decode(groupBytes, intsOut, 0, count) ;
+        return intsOut ;
+    }
+}
@@ -208,8 +208,7 @@ public class ArrayOps
         if ( idx + places > array.length )
             error("out of bounds: " + (idx + places));
 
-        int lengthToMove = length - idx - places + 1;  // Move from idx+1 to the end
-                                                       // of slice.
+        int lengthToMove = length - idx;  // Move from idx to the end of slice.
 
         if ( length + places > array.length ) {
             // System.out.println("Correct: "+lengthToMove+" => "+(array.length - idx
@@ -17,6 +17,13 @@
 
 package lib;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
 import org.apache.jena.atlas.AtlasException;
 import org.apache.jena.atlas.io.BlockUTF8;
 import org.apache.jena.atlas.io.InStreamUTF8;
@@ -26,6 +33,13 @@ import org.junit.Test;
 
 /** Encode chars as UTF-8 - this code exists to remember the process and requirements.
  * Normally, done in a stream and is much more improtant.
+ * <p>
+ * The bulk operations ({@code encode}, {@code decode}, {@code lengthUTF8}) convert
+ * between {@link CharSequence}/{@code char[]}/{@link StringBuilder} and caller
+ * supplied {@code byte[]}/{@link ByteBuffer} space without allocating. Runs of ASCII
+ * are handled 8 at a time. They handle standard UTF-8, where a surrogate pair is one
+ * 4 byte sequence, and Modified UTF-8 (as used by {@code DataInput}/{@code
+ * DataOutput}), where U+0000 is {@code C0 80} and each surrogate is a 3 byte sequence.
  * @see InStreamUTF8
  * @see OutStreamUTF8
  * @see BlockUTF8
@@ -168,6 +182,371 @@ Bits    Last code point     Byte 1  Byte 2  Byte 3  Byte 4  Byte 5  Byte 6
         throw new AtlasException("Out of range: " + x);
     }
 
+    // ---- Bulk operations
+
+    // Little endian long view of a byte[] for word-at-a-time access.
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    // The high bit of each byte: zero for 8 ASCII bytes.
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /** Length of the UTF-8 encoding of a {@link CharSequence}. */
+    public static int lengthUTF8(CharSequence cs) {
+        return lengthUTF8(cs, false);
+    }
+
+    /** Length of the UTF-8, or Modified UTF-8, encoding of a {@link CharSequence}. */
+    public static int lengthUTF8(CharSequence cs, boolean modified) {
+        int len = cs.length();
+        int bytes = 0;
+        for ( int i = 0; i < len; i++ ) {
+            char ch = cs.charAt(i);
+            if ( ch < 0x80 )
+                bytes += ( ch == 0 && modified ) ? 2 : 1;
+            else if ( ch < 0x800 )
+                bytes += 2;
+            else if ( !modified && Character.isHighSurrogate(ch) && i+1 < len && Character.isLowSurrogate(cs.charAt(i+1)) ) {
+                bytes += 4;
+                i++;
+            } else
+                bytes += 3;
+        }
+        return bytes;
+    }
+
+    /** Encode as UTF-8 into {@code dst} at {@code off}. Returns the number of bytes written. */
+    public static int encode(CharSequence cs, byte[] dst, int off) {
+        return encode(cs, dst, off, false);
+    }
+
+    /**
+     * Encode as UTF-8, or Modified UTF-8, into {@code dst} at {@code off}. Returns the
+     * number of bytes written. If there is not enough space, nothing is written and
+     * {@link IndexOutOfBoundsException} is thrown. If there is an unpaired surrogate
+     * (UTF-8 only), nothing is written and {@link AtlasException} is thrown.
+     */
+    public static int encode(CharSequence cs, byte[] dst, int off, boolean modified) {
+        Objects.checkFromIndexSize(off, 0, dst.length);
+        int space = dst.length-off;
+        if ( space < 3L*cs.length() )
+            Objects.checkFromIndexSize(off, lengthUTF8(cs, modified), dst.length);
+        if ( !modified )
+            checkSurrogates(cs);
+        return encode$(cs, dst, null, off, modified);
+    }
+
+    /** Encode as UTF-8 into {@code dst} at its position, and advance the position. Returns the number of bytes written. */
+    public static int encode(CharSequence cs, ByteBuffer dst) {
+        return encode(cs, dst, false);
+    }
+
+    /**
+     * Encode as UTF-8, or Modified UTF-8, into {@code dst} at its position, and advance
+     * the position. Returns the number of bytes written. If there is not enough space,
+     * nothing is written and {@link BufferOverflowException} is thrown. If there is an
+     * unpaired surrogate (UTF-8 only), nothing is written and {@link AtlasException} is thrown.
+     */
+    public static int encode(CharSequence cs, ByteBuffer dst, boolean modified) {
+        if ( dst.remaining() < 3L*cs.length() && dst.remaining() < lengthUTF8(cs, modified) )
+            throw new BufferOverflowException();
+        if ( !modified )
+            checkSurrogates(cs);
+        int n;
+        if ( dst.hasArray() )
+            n = encode$(cs, dst.array(), null, dst.arrayOffset()+dst.position(), modified);
+        else
+            n = encode$(cs, null, dst, dst.position(), modified);
+        dst.position(dst.position()+n);
+        return n;
+    }
+
+    // UTF-8 has no encoding of a surrogate on its own. Checked before anything is written.
+    private static void checkSurrogates(CharSequence cs) {
+        int len = cs.length();
+        for ( int i = 0; i < len; i++ ) {
+            char ch = cs.charAt(i);
+            if ( !Character.isSurrogate(ch) )
+                continue;
+            if ( !Character.isHighSurrogate(ch) || i+1 >= len || !Character.isLowSurrogate(cs.charAt(i+1)) )
+                throw new AtlasException("Unpaired surrogate at index "+i);
+            i++;
+        }
+    }
+
+    // Encode to one of a byte[] or a ByteBuffer (absolute indexes).
+    // Space, and surrogates for UTF-8, have been checked.
+    private static int encode$(CharSequence cs, byte[] bytes, ByteBuffer bb, int start, boolean modified) {
+        int len = cs.length();
+        int idx = start;
+        int i = 0;
+        while ( i < len ) {
+            // ASCII, 8 at a time.
+            while ( i+8 <= len ) {
+                char c0 = cs.charAt(i),   c1 = cs.charAt(i+1), c2 = cs.charAt(i+2), c3 = cs.charAt(i+3);
+                char c4 = cs.charAt(i+4), c5 = cs.charAt(i+5), c6 = cs.charAt(i+6), c7 = cs.charAt(i+7);
+                if ( ((c0|c1|c2|c3|c4|c5|c6|c7) & 0xFF80) != 0 )
+                    break;
+                if ( modified && (c0 == 0 | c1 == 0 | c2 == 0 | c3 == 0 | c4 == 0 | c5 == 0 | c6 == 0 | c7 == 0) )
+                    break;
+                long w = c0 | (long)c1 << 8 | (long)c2 << 16 | (long)c3 << 24 |
+                         (long)c4 << 32 | (long)c5 << 40 | (long)c6 << 48 | (long)c7 << 56;
+                if ( bytes != null )
+                    LONG_LE.set(bytes, idx, w);
+                else
+                    bb.putLong(idx, bb.order() == ByteOrder.LITTLE_ENDIAN ? w : Long.reverseBytes(w));
+                idx += 8;
+                i += 8;
+            }
+            if ( i >= len )
+                break;
+            char ch = cs.charAt(i++);
+            if ( ch < 0x80 && ( ch != 0 || !modified ) ) {
+                idx = put(bytes, bb, idx, ch);
+            } else if ( ch < 0x800 ) {
+                // Includes U+0000 in Modified UTF-8: C0 80.
+                idx = put(bytes, bb, idx, 0xC0 | (ch >> 6));
+                idx = put(bytes, bb, idx, 0x80 | (ch & 0x3F));
+            } else if ( Character.isSurrogate(ch) && !modified ) {
+                // A surrogate pair.
+                int cp = Character.toCodePoint(ch, cs.charAt(i++));
+                idx = put(bytes, bb, idx, 0xF0 | (cp >> 18));
+                idx = put(bytes, bb, idx, 0x80 | ((cp >> 12) & 0x3F));
+                idx = put(bytes, bb, idx, 0x80 | ((cp >> 6) & 0x3F));
+                idx = put(bytes, bb, idx, 0x80 | (cp & 0x3F));
+            } else {
+                idx = put(bytes, bb, idx, 0xE0 | (ch >> 12));
+                idx = put(bytes, bb, idx, 0x80 | ((ch >> 6) & 0x3F));
+                idx = put(bytes, bb, idx, 0x80 | (ch & 0x3F));
+            }
+        }
+        return idx-start;
+    }
+
+    private static int put(byte[] bytes, ByteBuffer bb, int idx, int b) {
+        if ( bytes != null )
+            bytes[idx] = (byte)b;
+        else
+            bb.put(idx, (byte)b);
+        return idx+1;
+    }
+
+    /** Decode {@code len} bytes of UTF-8 into {@code dst} at {@code dstOff}. Returns the number of chars written. */
+    public static int decode(byte[] src, int off, int len, char[] dst, int dstOff) {
+        return decode(src, off, len, dst, dstOff, false);
+    }
+
+    /**
+     * Decode {@code len} bytes of UTF-8, or Modified UTF-8, into {@code dst} at
+     * {@code dstOff}. Returns the number of chars written, which is never more than
+     * {@code len}.
+     */
+    public static int decode(byte[] src, int off, int len, char[] dst, int dstOff, boolean modified) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        Objects.checkFromIndexSize(dstOff, 0, dst.length);
+        return complete(decode$(src, null, off, off+len, dst, null, dstOff, dst.length, modified, false, off), len);
+    }
+
+    /** Decode {@code len} bytes of UTF-8 and append to a {@link StringBuilder}. Returns the number of chars appended. */
+    public static int decode(byte[] src, int off, int len, StringBuilder sb) {
+        return decode(src, off, len, sb, false);
+    }
+
+    /** Decode {@code len} bytes of UTF-8, or Modified UTF-8, and append to a {@link StringBuilder}. Returns the number of chars appended. */
+    public static int decode(byte[] src, int off, int len, StringBuilder sb, boolean modified) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        return complete(decode$(src, null, off, off+len, null, sb, 0, Integer.MAX_VALUE, modified, false, off), len);
+    }
+
+    /** Decode {@code len} bytes of UTF-8 from the position of {@code src}, advancing the position, into {@code dst} at {@code dstOff}. */
+    public static int decode(ByteBuffer src, int len, char[] dst, int dstOff) {
+        return decode(src, len, dst, dstOff, false);
+    }
+
+    /**
+     * Decode {@code len} bytes of UTF-8, or Modified UTF-8, from the position of
+     * {@code src}, advancing the position, into {@code dst} at {@code dstOff}.
+     * Returns the number of chars written.
+     */
+    public static int decode(ByteBuffer src, int len, char[] dst, int dstOff, boolean modified) {
+        Objects.checkFromIndexSize(src.position(), len, src.limit());
+        Objects.checkFromIndexSize(dstOff, 0, dst.length);
+        int n = decode(src, len, dst, null, dstOff, modified);
+        src.position(src.position()+len);
+        return n;
+    }
+
+    /** Decode {@code len} bytes of UTF-8 from the position of {@code src}, advancing the position, and append to a {@link StringBuilder}. */
+    public static int decode(ByteBuffer src, int len, StringBuilder sb) {
+        return decode(src, len, sb, false);
+    }
+
+    /**
+     * Decode {@code len} bytes of UTF-8, or Modified UTF-8, from the position of
+     * {@code src}, advancing the position, and append to a {@link StringBuilder}.
+     * Returns the number of chars appended.
+     */
+    public static int decode(ByteBuffer src, int len, StringBuilder sb, boolean modified) {
+        Objects.checkFromIndexSize(src.position(), len, src.limit());
+        int n = decode(src, len, null, sb, 0, modified);
+        src.position(src.position()+len);
+        return n;
+    }
+
+    private static int decode(ByteBuffer src, int len, char[] dst, StringBuilder sb, int dstOff, boolean modified) {
+        int dstEnd = ( dst != null ) ? dst.length : Integer.MAX_VALUE;
+        int pos = src.position();
+        if ( src.hasArray() ) {
+            int start = src.arrayOffset()+pos;
+            return complete(decode$(src.array(), null, start, start+len, dst, sb, dstOff, dstEnd, modified, false, pos), len);
+        }
+        return complete(decode$(null, src, pos, pos+len, dst, sb, dstOff, dstEnd, modified, false, pos), len);
+    }
+
+    // All the input must have been decoded; only a full char[] stops early.
+    private static int complete(long result, int len) {
+        if ( consumed(result) != len )
+            throw new IndexOutOfBoundsException("Destination too small: decoded "+consumed(result)+" of "+len+" bytes");
+        return written(result);
+    }
+
+    /** Bytes consumed, from the result of {@link #decode$}. */
+    static int consumed(long result) {
+        return (int)(result >>> 32);
+    }
+
+    /** Chars written, from the result of {@link #decode$}. */
+    static int written(long result) {
+        return (int)result;
+    }
+
+    /**
+     * Decode from one of a byte[] or a ByteBuffer (absolute indexes) to one of a
+     * char[], up to {@code dstEnd}, or a StringBuilder.
+     * <p>
+     * Decoding stops at the end of the input, when the next character does not fit
+     * in the char[] or, if {@code partial}, before a multi-byte sequence that is cut
+     * off by the end of the input so that the caller can carry it over to the next
+     * block. Errors are reported at {@code errorBase} plus the distance from
+     * {@code start}.
+     * <p>
+     * Returns the bytes consumed in the high 32 bits and the chars written in the
+     * low 32 bits: see {@link #consumed} and {@link #written}.
+     */
+    static long decode$(byte[] bytes, ByteBuffer bb, int start, int end,
+                        char[] dst, StringBuilder sb, int dstOff, int dstEnd,
+                        boolean modified, boolean partial, long errorBase) {
+        long errorAdj = errorBase-start;
+        int i = start;
+        int j = dstOff;
+        while ( i < end && j < dstEnd ) {
+            // ASCII, 8 at a time.
+            while ( i+8 <= end && j+8 <= dstEnd ) {
+                long w;
+                if ( bytes != null )
+                    w = (long)LONG_LE.get(bytes, i);
+                else {
+                    w = bb.getLong(i);
+                    if ( bb.order() != ByteOrder.LITTLE_ENDIAN )
+                        w = Long.reverseBytes(w);
+                }
+                if ( (w & HIGH_BITS) != 0 )
+                    break;
+                if ( dst != null ) {
+                    dst[j]   = (char)(w & 0x7F);
+                    dst[j+1] = (char)((w >>> 8) & 0x7F);
+                    dst[j+2] = (char)((w >>> 16) & 0x7F);
+                    dst[j+3] = (char)((w >>> 24) & 0x7F);
+                    dst[j+4] = (char)((w >>> 32) & 0x7F);
+                    dst[j+5] = (char)((w >>> 40) & 0x7F);
+                    dst[j+6] = (char)((w >>> 48) & 0x7F);
+                    dst[j+7] = (char)(w >>> 56);
+                } else {
+                    for ( int k = 0; k < 64; k += 8 )
+                        sb.append((char)((w >>> k) & 0x7F));
+                }
+                i += 8;
+                j += 8;
+            }
+            if ( i >= end || j >= dstEnd )
+                break;
+            int b0 = get(bytes, bb, i);
+            if ( b0 >= 0x80 && partial && i+sequenceLength(b0) > end )
+                break;
+            if ( b0 < 0x80 ) {
+                j = append(dst, sb, j, (char)b0);
+                i++;
+            } else if ( (b0 & 0xE0) == 0xC0 ) {
+                int b1 = cont(bytes, bb, i, 1, end, errorAdj);
+                int ch = (b0 & 0x1F) << 6 | b1;
+                // Overlong, except U+0000 in Modified UTF-8.
+                if ( ch < 0x80 && !( modified && ch == 0 ) )
+                    throw badUTF8("Overlong 2 byte sequence", errorAdj+i);
+                j = append(dst, sb, j, (char)ch);
+                i += 2;
+            } else if ( (b0 & 0xF0) == 0xE0 ) {
+                int b1 = cont(bytes, bb, i, 1, end, errorAdj);
+                int b2 = cont(bytes, bb, i, 2, end, errorAdj);
+                int ch = (b0 & 0x0F) << 12 | b1 << 6 | b2;
+                if ( ch < 0x800 )
+                    throw badUTF8("Overlong 3 byte sequence", errorAdj+i);
+                if ( !modified && Character.isSurrogate((char)ch) )
+                    throw badUTF8("Encoded surrogate", errorAdj+i);
+                j = append(dst, sb, j, (char)ch);
+                i += 3;
+            } else if ( (b0 & 0xF8) == 0xF0 && !modified ) {
+                if ( j+2 > dstEnd )
+                    break;
+                int b1 = cont(bytes, bb, i, 1, end, errorAdj);
+                int b2 = cont(bytes, bb, i, 2, end, errorAdj);
+                int b3 = cont(bytes, bb, i, 3, end, errorAdj);
+                int cp = (b0 & 0x07) << 18 | b1 << 12 | b2 << 6 | b3;
+                if ( cp < 0x10000 || cp > Character.MAX_CODE_POINT )
+                    throw badUTF8("Code point out of range", errorAdj+i);
+                j = append(dst, sb, j, Character.highSurrogate(cp));
+                j = append(dst, sb, j, Character.lowSurrogate(cp));
+                i += 4;
+            } else
+                throw badUTF8("Bad start byte", errorAdj+i);
+        }
+        return (long)(i-start) << 32 | (j-dstOff);
+    }
+
+    // Bytes in a sequence with start byte b0, or 1 for a byte that can't start one.
+    private static int sequenceLength(int b0) {
+        if ( (b0 & 0xE0) == 0xC0 )
+            return 2;
+        if ( (b0 & 0xF0) == 0xE0 )
+            return 3;
+        if ( (b0 & 0xF8) == 0xF0 )
+            return 4;
+        return 1;
+    }
+
+    private static int get(byte[] bytes, ByteBuffer bb, int idx) {
+        return ( bytes != null ? bytes[idx] : bb.get(idx) ) & 0xFF;
+    }
+
+    // The k'th continuation byte, as its low 6 bits.
+    private static int cont(byte[] bytes, ByteBuffer bb, int idx, int k, int end, long errorAdj) {
+        if ( idx+k >= end )
+            throw badUTF8("Truncated sequence", errorAdj+idx);
+        int b = get(bytes, bb, idx+k);
+        if ( (b & 0xC0) != 0x80 )
+            throw badUTF8("Bad continuation byte", errorAdj+idx+k);
+        return b & 0x3F;
+    }
+
+    private static int append(char[] dst, StringBuilder sb, int j, char ch) {
+        if ( dst != null )
+            dst[j] = ch;
+        else
+            sb.append(ch);
+        return j+1;
+    }
+
+    private static UTF8Exception badUTF8(String msg, long offset) {
+        return new UTF8Exception(msg, offset);
+    }
+
     // UTF-8 encoding.
     // character '¢' = code point U+00A2 -> C2 A2
     // character '€' = code point U+20AC -> E2 82 AC
@@ -0,0 +1,225 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Incremental UTF-8 decoder over a {@link ReadableByteChannel} or a byte region
+ * such as a memory-mapped file.
+ * <p>
+ * Bytes are validated and decoded a block at a time straight into the caller's
+ * {@link CharBuffer} or {@link StringBuilder}. A multi-byte sequence split across
+ * channel reads is carried over to the next read. Malformed input, including a
+ * sequence cut off by the end of the input, is reported as a {@link UTF8Exception}
+ * with the offset of the bad bytes from the start of the input.
+ * <p>
+ * A region is decoded in place; a channel is read into one reusable buffer. The
+ * channel should be blocking.
+ */
+public class DecoderUTF8 implements Closeable {
+    public static final int DefaultBufferSize = 64*1024;
+    // A 4 byte sequence must always fit.
+    private static final int MinBufferSize = 8;
+    // Decoded, but not yet returned, chars for readLine and small reads.
+    private static final int CharBufferSize = 8*1024;
+
+    private final ReadableByteChannel channel;
+    // Undecoded bytes are between position and limit.
+    private final ByteBuffer buffer;
+    // Input offset of buffer.position().
+    private long offset = 0;
+    private boolean eof;
+
+    private final CharBuffer pending = CharBuffer.allocate(CharBufferSize);
+    // Last line ended with '\r': drop a following '\n'.
+    private boolean skipLF = false;
+    private char[] scratch = null;
+
+    public DecoderUTF8(ReadableByteChannel channel) {
+        this(channel, DefaultBufferSize);
+    }
+
+    public DecoderUTF8(ReadableByteChannel channel, int bufferSize) {
+        if ( bufferSize < MinBufferSize )
+            throw new IllegalArgumentException("Buffer size too small: "+bufferSize);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+        this.eof = false;
+        this.pending.flip();
+    }
+
+    /**
+     * Decode the bytes between the position and the limit of {@code region}. The
+     * region is not copied and its position is not changed.
+     */
+    public DecoderUTF8(ByteBuffer region) {
+        this.channel = null;
+        this.buffer = region.slice();
+        this.eof = true;
+        this.pending.flip();
+    }
+
+    /**
+     * Decode into {@code dst}, advancing its position. Returns the number of chars
+     * written, or -1 at the end of the input.
+     */
+    public int read(CharBuffer dst) {
+        if ( !dst.hasRemaining() )
+            return 0;
+        if ( !pending.hasRemaining() && !skipLF && dst.remaining() >= 2 )
+            return decodeInto(dst);
+        if ( !fillPending() )
+            return -1;
+        int n = Math.min(dst.remaining(), pending.remaining());
+        int pos = pending.position();
+        dst.put(pending.array(), pos, n);
+        pending.position(pos+n);
+        return n;
+    }
+
+    /**
+     * Append the next line, without its terminator, to {@code sb}. Lines end with
+     * "\n", "\r\n" or "\r". Returns false, and appends nothing, at the end of the
+     * input.
+     */
+    public boolean readLine(StringBuilder sb) {
+        boolean any = false;
+        for (;;) {
+            if ( !fillPending() )
+                return any;
+            any = true;
+            char[] chars = pending.array();
+            int start = pending.position();
+            int limit = pending.limit();
+            for ( int i = start; i < limit; i++ ) {
+                char ch = chars[i];
+                if ( ch == '\n' || ch == '\r' ) {
+                    sb.append(chars, start, i-start);
+                    pending.position(i+1);
+                    if ( ch == '\r' )
+                        skipLF = true;
+                    return true;
+                }
+            }
+            sb.append(chars, start, limit-start);
+            pending.position(limit);
+        }
+    }
+
+    /** The number of bytes decoded so far. */
+    public long byteOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() {
+        if ( channel == null )
+            return;
+        try { channel.close(); }
+        catch (IOException ex) { throw new UncheckedIOException(ex); }
+    }
+
+    // Ensure there are pending chars, dropping a '\n' after a '\r' line end.
+    // Return false at the end of the input.
+    private boolean fillPending() {
+        for (;;) {
+            if ( !pending.hasRemaining() ) {
+                pending.clear();
+                int n = decode(pending.array(), 0, pending.capacity());
+                if ( n < 0 ) {
+                    pending.limit(0);
+                    return false;
+                }
+                pending.limit(n);
+            }
+            if ( skipLF ) {
+                skipLF = false;
+                if ( pending.get(pending.position()) == '\n' ) {
+                    pending.position(pending.position()+1);
+                    continue;
+                }
+            }
+            return true;
+        }
+    }
+
+    private int decodeInto(CharBuffer dst) {
+        if ( dst.hasArray() ) {
+            int off = dst.arrayOffset()+dst.position();
+            int n = decode(dst.array(), off, dst.arrayOffset()+dst.limit());
+            if ( n > 0 )
+                dst.position(dst.position()+n);
+            return n;
+        }
+        int len = Math.min(dst.remaining(), CharBufferSize);
+        if ( scratch == null )
+            scratch = new char[CharBufferSize];
+        int n = decode(scratch, 0, len);
+        if ( n > 0 )
+            dst.put(scratch, 0, n);
+        return n;
+    }
+
+    // Decode into chars[off, end), end-off >= 2, reading the channel as needed.
+    // Returns the number of chars written, at least one, or -1 at the end of the input.
+    private int decode(char[] chars, int off, int end) {
+        for (;;) {
+            if ( buffer.hasRemaining() ) {
+                int pos = buffer.position();
+                long r;
+                if ( buffer.hasArray() ) {
+                    int start = buffer.arrayOffset()+pos;
+                    r = CodecUTF8.decode$(buffer.array(), null, start, buffer.arrayOffset()+buffer.limit(),
+                                          chars, null, off, end, false, !eof, offset);
+                } else
+                    r = CodecUTF8.decode$(null, buffer, pos, buffer.limit(),
+                                          chars, null, off, end, false, !eof, offset);
+                int consumed = CodecUTF8.consumed(r);
+                buffer.position(pos+consumed);
+                offset += consumed;
+                int n = CodecUTF8.written(r);
+                if ( n > 0 )
+                    return n;
+            }
+            // No complete sequence left in the buffer.
+            if ( eof )
+                return -1;
+            fill();
+        }
+    }
+
+    // Keep any partial sequence and read more bytes after it.
+    private void fill() {
+        buffer.compact();
+        try {
+            if ( channel.read(buffer) < 0 )
+                eof = true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib ;
+
+import java.nio.BufferOverflowException ;
+import java.nio.ByteBuffer ;
+import java.util.Arrays ;
+import java.util.NoSuchElementException ;
+import java.util.Objects ;
+import java.util.PrimitiveIterator ;
+
+/**
+ * Compact encoding of sorted, or nearly sorted, sequences of longs: each value is
+ * the {@linkplain ZigZagInt ZigZag} delta from the previous value, packed as a
+ * {@linkplain VarInt}.
+ * <p>
+ * The values are written in blocks. Each block starts with a header that gives the
+ * number of values, the first value and the byte length of the rest of the block,
+ * so a reader can hop from block to block without decoding the deltas.
+ * <pre>
+ *   stream := block* end
+ *   block  := VarInt(n) ZigZag(first) VarInt(payloadLength) ZigZag(delta){n-1}
+ *   end    := VarInt(0)
+ * </pre>
+ * {@link Writer} encodes incrementally, a block at a time; {@link Reader} decodes a
+ * block at a time and can {@linkplain Reader#advanceTo skip ahead} in sorted data.
+ */
+public final class DeltaVarInt
+{
+    public static int DefaultBlockSize = 128 ;
+
+    private DeltaVarInt() {}
+
+    /**
+     * Encode {@code len} values from {@code src}, starting at {@code off}, into
+     * {@code dst} at its position, and advance the position. Returns the number of
+     * bytes written.
+     */
+    public static int encode(long[] src, int off, int len, ByteBuffer dst)
+    {
+        return encode(src, off, len, dst, DefaultBlockSize) ;
+    }
+
+    /** As {@link #encode(long[], int, int, ByteBuffer)}, with a given block size. */
+    public static int encode(long[] src, int off, int len, ByteBuffer dst, int blockSize)
+    {
+        Writer writer = new Writer(dst, blockSize) ;
+        writer.add(src, off, len) ;
+        return writer.finish() ;
+    }
+
+    /** Decode a whole stream from {@code src} at its position, and advance the position past the end marker. */
+    public static long[] decode(ByteBuffer src)
+    {
+        Reader reader = new Reader(src) ;
+        long[] result = new long[16] ;
+        int n = 0 ;
+        while ( reader.hasNext() )
+        {
+            if ( n == result.length )
+                result = Arrays.copyOf(result, 2*n) ;
+            result[n++] = reader.nextLong() ;
+        }
+        src.position(reader.in.position()) ;
+        return Arrays.copyOf(result, n) ;
+    }
+
+    /** Count the values in the stream at the position of {@code src}, reading only the block headers. */
+    public static long count(ByteBuffer src)
+    {
+        ByteBuffer in = src.duplicate() ;
+        long count = 0 ;
+        while ( true )
+        {
+            long n = VarInt.decode(in) ;
+            if ( n == 0 )
+                return count ;
+            count += n ;
+            ZigZagInt.decode(in) ;
+            long payloadLength = VarInt.decode(in) ;
+            in.position(Math.toIntExact(in.position()+payloadLength)) ;
+        }
+    }
+
+    /** Incremental encoder. Values are buffered and written a block at a time. */
+    public static final class Writer
+    {
+        private final ByteBuffer dst ;
+        private final int start ;
+        private final long[] block ;
+        private final long[] deltas ;
+        private int n = 0 ;
+        private boolean finished = false ;
+
+        public Writer(ByteBuffer dst) { this(dst, DefaultBlockSize) ; }
+
+        public Writer(ByteBuffer dst, int blockSize)
+        {
+            if ( blockSize < 1 )
+                throw new IllegalArgumentException("Block size must be at least 1: "+blockSize) ;
+            this.dst = dst ;
+            this.start = dst.position() ;
+            this.block = new long[blockSize] ;
+            this.deltas = new long[blockSize] ;
+        }
+
+        public void add(long value)
+        {
+            if ( finished )
+                throw new IllegalStateException("Writer is finished") ;
+            block[n++] = value ;
+            if ( n == block.length )
+                writeBlock() ;
+        }
+
+        public void add(long[] src, int off, int len)
+        {
+            Objects.checkFromIndexSize(off, len, src.length) ;
+            for ( int i = off ; i < off+len ; i++ )
+                add(src[i]) ;
+        }
+
+        /** Write any buffered values and the end marker. Returns the total number of bytes written. */
+        public int finish()
+        {
+            if ( ! finished )
+            {
+                if ( n > 0 )
+                    writeBlock() ;
+                if ( ! dst.hasRemaining() )
+                    throw new BufferOverflowException() ;
+                VarInt.encode(dst, 0) ;
+                finished = true ;
+            }
+            return dst.position()-start ;
+        }
+
+        // A block is written completely or not at all.
+        private void writeBlock()
+        {
+            long first = block[0] ;
+            for ( int i = 1 ; i < n ; i++ )
+                deltas[i-1] = ZigZagInt.zigzag(block[i]-block[i-1]) ;
+            int payloadLength = VarInt.lengthOf(deltas, 0, n-1) ;
+            int length = VarInt.lengthOf(n) + ZigZagInt.lengthOf(first) + VarInt.lengthOf(payloadLength) + payloadLength ;
+            if ( length > dst.remaining() )
+                throw new BufferOverflowException() ;
+            VarInt.encode(dst, n) ;
+            ZigZagInt.encode(dst, first) ;
+            VarInt.encode(dst, payloadLength) ;
+            VarInt.encode(deltas, 0, n-1, dst) ;
+            n = 0 ;
+        }
+    }
+
+    /**
+     * Decoder, reading from the position of a ByteBuffer (the position of the
+     * ByteBuffer itself is not changed).
+     */
+    public static final class Reader implements PrimitiveIterator.OfLong
+    {
+        private final ByteBuffer in ;
+        // Decoded values of the current block.
+        private long[] values = new long[DefaultBlockSize] ;
+        private int count = 0 ;
+        private int idx = 0 ;
+        // Start of the next block header.
+        private int nextBlock ;
+        private boolean finished = false ;
+
+        public Reader(ByteBuffer src)
+        {
+            this.in = src.duplicate() ;
+            this.nextBlock = src.position() ;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( idx >= count )
+            {
+                if ( finished )
+                    return false ;
+                loadBlock() ;
+            }
+            return true ;
+        }
+
+        @Override
+        public long nextLong()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException() ;
+            return values[idx++] ;
+        }
+
+        /**
+         * For a sorted stream: move forward so that the next value returned is the
+         * first one that is greater than or equal to {@code target}. Whole blocks
+         * before the target are skipped using only their headers. Returns whether
+         * there is such a value.
+         */
+        public boolean advanceTo(long target)
+        {
+            if ( ! hasNext() )
+                return false ;
+            if ( values[idx] >= target )
+                return true ;
+            // Find the last following block that starts before the target.
+            // The current block, and any blocks before that one, hold only
+            // values before the target.
+            int candidate = -1 ;
+            int blk = nextBlock ;
+            while ( true )
+            {
+                in.position(blk) ;
+                long n = VarInt.decode(in) ;
+                if ( n == 0 )
+                    break ;
+                long first = ZigZagInt.decode(in) ;
+                if ( first >= target )
+                    break ;
+                long payloadLength = VarInt.decode(in) ;
+                candidate = blk ;
+                blk = Math.toIntExact(in.position()+payloadLength) ;
+            }
+            if ( candidate >= 0 )
+            {
+                nextBlock = candidate ;
+                loadBlock() ;
+            }
+            // Lower bound in the current block.
+            int lo = idx ;
+            int hi = count ;
+            while ( lo < hi )
+            {
+                int mid = (lo+hi) >>> 1 ;
+                if ( values[mid] < target )
+                    lo = mid+1 ;
+                else
+                    hi = mid ;
+            }
+            idx = lo ;
+            return hasNext() ;
+        }
+
+        private void loadBlock()
+        {
+            in.position(nextBlock) ;
+            int n = Math.toIntExact(VarInt.decode(in)) ;
+            count = 0 ;
+            idx = 0 ;
+            if ( n == 0 )
+            {
+                finished = true ;
+                return ;
+            }
+            long first = ZigZagInt.decode(in) ;
+            long payloadLength = VarInt.decode(in) ;
+            int blockEnd = Math.toIntExact(in.position()+payloadLength) ;
+            if ( values.length < n )
+                values = new long[n] ;
+            values[0] = first ;
+            VarInt.decode(in, values, 1, n-1) ;
+            if ( in.position() != blockEnd )
+                throw new IllegalArgumentException("Corrupt block at "+nextBlock+": length mismatch") ;
+            for ( int i = 1 ; i < n ; i++ )
+                values[i] = values[i-1] + ZigZagInt.unzigzag(values[i]) ;
+            count = n ;
+            nextBlock = blockEnd ;
+        }
+    }
+}
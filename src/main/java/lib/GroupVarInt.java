@@ -0,0 +1,236 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib ;
+
+import java.nio.BufferOverflowException ;
+import java.nio.BufferUnderflowException ;
+import java.nio.ByteBuffer ;
+import java.nio.ByteOrder ;
+import java.util.Objects ;
+
+/**
+ * Group varint: 32 bit integers packed in groups of four behind one control byte.
+ * <p>
+ * The control byte has 2 bits per value (low bits first) giving its length less
+ * one; the values follow, 1 to 4 bytes each, little endian. A group is 5 to 17
+ * bytes. Decoding looks up the offsets and lengths for the control byte in a
+ * precomputed table, so there is no test on the data bytes themselves, unlike
+ * {@linkplain VarInt} where each byte has a continuation bit.
+ * <p>
+ * Values are treated as unsigned. The bulk encoder pads the last group with zeros.
+ */
+public final class GroupVarInt
+{
+    /** Maximum length of a group: control byte and four 4-byte values. */
+    public static final int MaxGroupLength = 17 ;
+
+    // Data bytes in the group for each control byte.
+    private static final int[] GroupDataLength = new int[256] ;
+    // Offset of each value from the control byte: [ctrl*4+k].
+    private static final int[] ValueOffset = new int[256*4] ;
+    // Mask for a value of length (len-1).
+    private static final int[] ValueMask = { 0xFF, 0xFFFF, 0xFFFFFF, 0xFFFFFFFF } ;
+
+    static {
+        for ( int ctrl = 0 ; ctrl < 256 ; ctrl++ )
+        {
+            int offset = 1 ;
+            for ( int k = 0 ; k < 4 ; k++ )
+            {
+                ValueOffset[ctrl*4+k] = offset ;
+                offset += ((ctrl >>> (2*k)) & 3) + 1 ;
+            }
+            GroupDataLength[ctrl] = offset-1 ;
+        }
+    }
+
+    private GroupVarInt() {}
+
+    /** Encoded length (1 to 4 bytes) of an unsigned 32 bit value. */
+    public static int lengthOf(int value)
+    {
+        return (32 - Integer.numberOfLeadingZeros(value | 1) + 7) >>> 3 ;
+    }
+
+    /** Encoded length, including control bytes, of {@code len} values. */
+    public static int lengthOf(int[] src, int off, int len)
+    {
+        Objects.checkFromIndexSize(off, len, src.length) ;
+        int groups = (len+3) >>> 2 ;
+        int total = groups ;
+        for ( int i = off ; i < off+len ; i++ )
+            total += lengthOf(src[i]) ;
+        // Padding values are one byte each.
+        total += 4*groups - len ;
+        return total ;
+    }
+
+    /** Put a group of four values into a buffer - relative operation. Returns the number of bytes written. */
+    public static int encode(ByteBuffer bytes, int v0, int v1, int v2, int v3)
+    {
+        int len = encode$(bytes, bytes.position(), v0, v1, v2, v3) ;
+        bytes.position(bytes.position()+len) ;
+        return len ;
+    }
+
+    /** Put a group of four values into a buffer at a specific place - absolute operation does not move position. */
+    public static int encode(ByteBuffer bytes, int startIdx, int v0, int v1, int v2, int v3)
+    {
+        return encode$(bytes, startIdx, v0, v1, v2, v3) ;
+    }
+
+    private static int encode$(ByteBuffer bytes, int startIdx, int v0, int v1, int v2, int v3)
+    {
+        int len0 = lengthOf(v0) ;
+        int len1 = lengthOf(v1) ;
+        int len2 = lengthOf(v2) ;
+        int len3 = lengthOf(v3) ;
+        int total = 1 + len0 + len1 + len2 + len3 ;
+        if ( startIdx + total > bytes.limit() )
+            throw new BufferOverflowException() ;
+        int ctrl = (len0-1) | (len1-1) << 2 | (len2-1) << 4 | (len3-1) << 6 ;
+        bytes.put(startIdx, (byte)ctrl) ;
+        int idx = startIdx+1 ;
+        idx = put(bytes, idx, v0, len0) ;
+        idx = put(bytes, idx, v1, len1) ;
+        idx = put(bytes, idx, v2, len2) ;
+        idx = put(bytes, idx, v3, len3) ;
+        return total ;
+    }
+
+    private static int put(ByteBuffer bytes, int idx, int value, int len)
+    {
+        for ( int k = 0 ; k < len ; k++ )
+        {
+            bytes.put(idx++, (byte)value) ;
+            value >>>= 8 ;
+        }
+        return idx ;
+    }
+
+    /** Extract a group of four values into {@code dst} at {@code off} - relative operation. Returns the number of bytes read. */
+    public static int decode(ByteBuffer bytes, int[] dst, int off)
+    {
+        int len = decode$(bytes, bytes.position(), dst, off) ;
+        bytes.position(bytes.position()+len) ;
+        return len ;
+    }
+
+    /** Extract a group of four values into {@code dst} at {@code off} - absolute operation does not move position. */
+    public static int decode(ByteBuffer bytes, int idx, int[] dst, int off)
+    {
+        return decode$(bytes, idx, dst, off) ;
+    }
+
+    private static int decode$(ByteBuffer bytes, int idx, int[] dst, int off)
+    {
+        Objects.checkFromIndexSize(off, 4, dst.length) ;
+        if ( idx >= bytes.limit() )
+            throw new BufferUnderflowException() ;
+        int ctrl = bytes.get(idx) & 0xFF ;
+        int total = 1 + GroupDataLength[ctrl] ;
+        if ( idx + total > bytes.limit() )
+            throw new BufferUnderflowException() ;
+        for ( int k = 0 ; k < 4 ; k++ )
+            dst[off+k] = get(bytes, idx + ValueOffset[ctrl*4+k], ((ctrl >>> (2*k)) & 3) + 1) ;
+        return total ;
+    }
+
+    private static int get(ByteBuffer bytes, int idx, int len)
+    {
+        int value = 0 ;
+        for ( int k = 0 ; k < len ; k++ )
+            value |= (bytes.get(idx+k) & 0xFF) << (8*k) ;
+        return value ;
+    }
+
+    // ---- Bulk operations
+
+    /**
+     * Encode {@code len} values from {@code src}, starting at {@code off}, into
+     * {@code dst} at its position, and advance the position. The last group is
+     * padded with zeros. Returns the number of bytes written. If there is not
+     * enough space, nothing is written and {@link BufferOverflowException} is thrown.
+     */
+    public static int encode(int[] src, int off, int len, ByteBuffer dst)
+    {
+        int total = lengthOf(src, off, len) ;
+        int idx = dst.position() ;
+        if ( total > dst.limit()-idx )
+            throw new BufferOverflowException() ;
+        int i = off ;
+        int end = off+len ;
+        for ( ; i+4 <= end ; i += 4 )
+            idx += encode$(dst, idx, src[i], src[i+1], src[i+2], src[i+3]) ;
+        if ( i < end )
+        {
+            int v0 = src[i] ;
+            int v1 = i+1 < end ? src[i+1] : 0 ;
+            int v2 = i+2 < end ? src[i+2] : 0 ;
+            idx += encode$(dst, idx, v0, v1, v2, 0) ;
+        }
+        dst.position(idx) ;
+        return total ;
+    }
+
+    /**
+     * Decode {@code len} values from {@code src}, at its position, into {@code dst}
+     * starting at {@code off}, and advance the position past the last group
+     * (including any padding). Returns the number of bytes read.
+     */
+    public static int decode(ByteBuffer src, int[] dst, int off, int len)
+    {
+        Objects.checkFromIndexSize(off, len, dst.length) ;
+        // Whole-int reads are little endian.
+        ByteBuffer bb = ( src.order() == ByteOrder.LITTLE_ENDIAN ) ? src : src.duplicate().order(ByteOrder.LITTLE_ENDIAN) ;
+        int start = src.position() ;
+        int idx = start ;
+        int limit = src.limit() ;
+        int i = off ;
+        int end = off+len ;
+        for ( ; i+4 <= end ; i += 4 )
+        {
+            if ( limit-idx < MaxGroupLength )
+                break ;
+            // Table driven: each value is one 4 byte read and a mask.
+            int ctrl = bb.get(idx) & 0xFF ;
+            int t = ctrl*4 ;
+            dst[i]   = bb.getInt(idx+ValueOffset[t])   & ValueMask[ctrl & 3] ;
+            dst[i+1] = bb.getInt(idx+ValueOffset[t+1]) & ValueMask[(ctrl >>> 2) & 3] ;
+            dst[i+2] = bb.getInt(idx+ValueOffset[t+2]) & ValueMask[(ctrl >>> 4) & 3] ;
+            dst[i+3] = bb.getInt(idx+ValueOffset[t+3]) & ValueMask[ctrl >>> 6] ;
+            idx += 1 + GroupDataLength[ctrl] ;
+        }
+        // Near the end of the buffer, and any last partial group.
+        int[] group = null ;
+        for ( ; i < end ; i += 4 )
+        {
+            if ( i+4 <= end )
+                idx += decode$(src, idx, dst, i) ;
+            else
+            {
+                if ( group == null )
+                    group = new int[4] ;
+                idx += decode$(src, idx, group, 0) ;
+                System.arraycopy(group, 0, dst, i, end-i) ;
+            }
+        }
+        src.position(idx) ;
+        return idx-start ;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib;
+
+import org.apache.jena.atlas.AtlasException;
+
+/** Malformed UTF-8 input, with the byte offset where the bad sequence starts. */
+public class UTF8Exception extends AtlasException {
+    private final long offset;
+
+    public UTF8Exception(String msg, long offset) {
+        super(msg+" at byte "+offset);
+        this.offset = offset;
+    }
+
+    /** The byte offset of the malformed sequence. */
+    public long offset() {
+        return offset;
+    }
+}
@@ -17,8 +17,12 @@
 
 package lib ;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Variable length integers for tight packing into byte arrays and ByteBuffers.
@@ -159,6 +163,132 @@ public final class VarInt
         return value ;
     }
 
+    // ---- Bulk operations
+
+    /** Maximum encoded length of a long (64 bits, 7 bits per byte). */
+    public static final int MaxLength = 10 ;
+
+    // The high (continuation) bit of each byte of a long.
+    private static final long ContinuationBits = 0x8080808080808080L ;
+
+    /**
+     * Encode {@code len} values from {@code src}, starting at {@code off}, into
+     * {@code dst} at its position, and advance the position. Values are treated as
+     * unsigned. Returns the number of bytes written. If there is not enough space,
+     * nothing is written and {@link BufferOverflowException} is thrown.
+     */
+    public static int encode(long[] src, int off, int len, ByteBuffer dst)
+    {
+        Objects.checkFromIndexSize(off, len, src.length) ;
+        int total = lengthOf(src, off, len) ;
+        int idx = dst.position() ;
+        if ( total > dst.limit()-idx )
+            throw new BufferOverflowException() ;
+        for ( int i = off ; i < off+len ; i++ )
+        {
+            long v = src[i] ;
+            // Counted loop: the length is known so there is no test on the data.
+            int n = lengthOf(v) ;
+            for ( int k = 1 ; k < n ; k++ )
+            {
+                dst.put(idx++, (byte)(v | 0x80)) ;
+                v >>>= 7 ;
+            }
+            dst.put(idx++, (byte)v) ;
+        }
+        dst.position(idx) ;
+        return total ;
+    }
+
+    /**
+     * Decode {@code len} values from {@code src}, at its position, into {@code dst}
+     * starting at {@code off}, and advance the position. Returns the number of bytes
+     * read. Throws {@link BufferUnderflowException} if the buffer ends part way
+     * through a value.
+     */
+    public static int decode(ByteBuffer src, long[] dst, int off, int len)
+    {
+        Objects.checkFromIndexSize(off, len, dst.length) ;
+        // Word-at-a-time reads are little endian.
+        ByteBuffer bb = ( src.order() == ByteOrder.LITTLE_ENDIAN ) ? src : src.duplicate().order(ByteOrder.LITTLE_ENDIAN) ;
+        int start = src.position() ;
+        int idx = start ;
+        int limit = src.limit() ;
+        int i = off ;
+        int end = off+len ;
+        while ( i < end )
+        {
+            if ( limit-idx >= Long.BYTES )
+            {
+                long w = bb.getLong(idx) ;
+                long stops = ~w & ContinuationBits ;
+                if ( stops == ContinuationBits && end-i >= 8 )
+                {
+                    // Eight single byte values.
+                    dst[i]   = w & 0x7F ;
+                    dst[i+1] = (w >>> 8) & 0x7F ;
+                    dst[i+2] = (w >>> 16) & 0x7F ;
+                    dst[i+3] = (w >>> 24) & 0x7F ;
+                    dst[i+4] = (w >>> 32) & 0x7F ;
+                    dst[i+5] = (w >>> 40) & 0x7F ;
+                    dst[i+6] = (w >>> 48) & 0x7F ;
+                    dst[i+7] = (w >>> 56) ;
+                    i += 8 ;
+                    idx += 8 ;
+                    continue ;
+                }
+                if ( stops != 0 )
+                {
+                    // The value ends within this word.
+                    int n = (Long.numberOfTrailingZeros(stops) >>> 3) + 1 ;
+                    dst[i++] = compact(w, n) ;
+                    idx += n ;
+                    continue ;
+                }
+                // 9 or 10 byte value: fall through.
+            }
+            // Byte at a time: long values, and near the end of the buffer.
+            long value = 0 ;
+            int shift = 0 ;
+            while ( true )
+            {
+                if ( idx >= limit )
+                    throw new BufferUnderflowException() ;
+                if ( shift >= 7*MaxLength )
+                    throw new IllegalArgumentException("VarInt longer than "+MaxLength+" bytes at "+idx) ;
+                byte b = src.get(idx++) ;
+                value |= (b & 0x7FL) << shift ;
+                if ( (b & 0x80) == 0 )
+                    break ;
+                shift += 7 ;
+            }
+            dst[i++] = value ;
+        }
+        src.position(idx) ;
+        return idx-start ;
+    }
+
+    // Gather the 7 bit groups of the first n (1 to 8) little endian bytes of w.
+    private static long compact(long w, int n)
+    {
+        long x = ( n == 8 ) ? w : w & ((1L << (8*n)) - 1) ;
+        x &= ~ContinuationBits ;
+        x = (x & 0x007F007F007F007FL) | ((x & 0x7F007F007F007F00L) >>> 1) ;   // 14 bits per 16
+        x = (x & 0x00003FFF00003FFFL) | ((x & 0x3FFF00003FFF0000L) >>> 2) ;   // 28 bits per 32
+        x = (x & 0x000000000FFFFFFFL) | ((x & 0x0FFFFFFF00000000L) >>> 4) ;   // 56 bits
+        return x ;
+    }
+
+    /** Total encoded length of {@code len} values from {@code src} starting at {@code off}. */
+    public static int lengthOf(long[] src, int off, int len)
+    {
+        Objects.checkFromIndexSize(off, len, src.length) ;
+        int total = 0 ;
+        for ( int i = off ; i < off+len ; i++ )
+            total += lengthOf(src[i]) ;
+        return total ;
+    }
+
     /** Make a VarInteger from the bytes found start from idx */
     public static VarInt make(ByteBuffer bb, int idx)
     {
@@ -235,7 +365,7 @@ public final class VarInt
 
     public static int lengthOf(long value)
     {
-        return calcLengthTable(value) ;
+        return calcLengthBits(value) ;
     }
 
     // ---- The object
@@ -299,6 +429,16 @@ public final class VarInt
         return VarIntLengths.length+1 ;
     }
 
+    // Without branches: ceiling(bits/7) for the number of significant bits (at
+    // least 1), by multiply-and-shift, which is exact for 1 to 64 bits.
+    // Agrees with calcLengthTable for non-negative values and gives 10 for
+    // negative values.
+    static int calcLengthBits(long value)
+    {
+        int bits = 64 - Long.numberOfLeadingZeros(value | 1) ;
+        return (bits * 9 + 64) >>> 6 ;
+    }
+
     // By calculation.
     static int calcLength(long value)
     {
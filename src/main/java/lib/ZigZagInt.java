@@ -20,8 +20,6 @@ package lib ;
 import java.nio.ByteBuffer ;
 import java.util.Arrays ;
 
-import org.apache.jena.atlas.lib.NotImplemented ;
-
 /** 
  * ZigZag integers: map signed numbers onto unsigned numbers
  * that can then be {@linkplain VarInt} encoded.
@@ -41,36 +39,62 @@ public final class ZigZagInt
 	  n>>32 is all ones for n < 0
 	*/
 
-	public static byte[] encode(long value)
-	{
-	    //return null ;
-	    throw new NotImplemented("ZigZagInt.encode") ;
-	}
+    /** Map a signed value to an unsigned one: 0, -1, 1, -2, 2 ... become 0, 1, 2, 3, 4 ... */
+    public static long zigzag(long value)
+    { return (value << 1) ^ (value >> 63) ; }
+
+    /** Inverse of {@link #zigzag}. */
+    public static long unzigzag(long value)
+    { return (value >>> 1) ^ -(value & 1) ; }
+
+    public static byte[] encode(long value)
+    {
+        return VarInt.encode(zigzag(value)) ;
+    }
 
-	public static int encode(ByteBuffer bytes, long value)
-	{ return -1 ; }
+    /** Put a ZigZag integer into a buffer - relative operation */
+    public static int encode(ByteBuffer bytes, long value)
+    { return VarInt.encode(bytes, zigzag(value)) ; }
 
-	public static int encode(ByteBuffer bytes, int startIdx, long value)
-	{ return -1 ; }
+    /** Put a ZigZag integer into a buffer at a specific place - absolute operation does not move position. */
+    public static int encode(ByteBuffer bytes, int startIdx, long value)
+    { return VarInt.encode(bytes, startIdx, zigzag(value)) ; }
 
-	public static long decode(byte[] bytes, int idx)
+    public static long decode(byte[] bytes, int idx)
     { return decode(ByteBuffer.wrap(bytes), idx) ; }
-    
+
+    /** Extract a long - relative operation */
     public static long decode(ByteBuffer bytes)
-    { return decode(bytes, 0) ; }
-    
+    { return unzigzag(VarInt.decode(bytes)) ; }
+
     public static long decode(ByteBuffer bytes, int idx)
-    { return -1 ; }
-	
-    /** Make a VarInteger from the bytes found start from idx */ 
+    { return unzigzag(VarInt.decode(bytes, idx)) ; }
+
+    /** Make a ZigZagInt from the bytes */
     public static ZigZagInt make(byte[] bytes)
     {
         return new ZigZagInt(bytes) ;
     }
-    
+
     private static String toString(byte[] bytes) { return toString(bytes, 0) ; }
     private static String toString(byte[] bytes, int idx)
-    { return null ; }
+    {
+        StringBuilder buff = new StringBuilder() ;
+        buff.append("[") ;
+        String sep = "" ;
+        while ( idx < bytes.length )
+        {
+            byte b = bytes[idx] ;
+            buff.append(sep) ;
+            sep = ", " ;
+            buff.append(String.format("%02X", b)) ;
+            if ( b >= 0 )
+                break ;
+            idx++ ;
+        }
+        buff.append("]") ;
+        return buff.toString() ;
+    }
 
 	public static boolean equals(long value, byte[] bytes) { return equals(value, ByteBuffer.wrap(bytes)) ; }
     
@@ -101,19 +125,21 @@ public final class ZigZagInt
     
     public static int lengthOf(long value)
     {
-        return calcLengthTable(value) ;
+        return VarInt.lengthOf(zigzag(value)) ;
     }
     
     // ---- The object
 
     byte[] bytes ;
-    long value = -1 ;
-    
+    long value ;
+    // Any long is a valid value so there is no "not yet decoded" marker value.
+    boolean hasValue ;
+
     private ZigZagInt(long value)
     {
-        if ( value < 0 )
-            throw new IllegalArgumentException("Positive integers only") ;
-        bytes = encode(value) ;
+        this.bytes = encode(value) ;
+        this.value = value ;
+        this.hasValue = true ;
     }
     
     private ZigZagInt(byte[] bytes)
@@ -121,6 +147,7 @@ public final class ZigZagInt
         if ( bytes.length == 0 )
             throw new IllegalArgumentException("Zero length byte[]") ;
         this.bytes = bytes ;
+        this.hasValue = false ;
     }
     
     public int length()     { return bytes.length ; }
@@ -128,8 +155,11 @@ public final class ZigZagInt
     
     public long value()
     { 
-        if ( value == -1 )
+        if ( ! hasValue )
+        {
             value = decode(bytes, 0) ;
+            hasValue = true ;
+        }
         return value ;
     }
     
@@ -151,14 +181,6 @@ public final class ZigZagInt
      // Next is the impossible (it's the sign bit) 1L<<63
      static final long VarIntLengths[] = { 1L<<7 , 1L<<14 , 1L<<21 , 1L<<28 , 1L<<35, 1L<<42, 1L<<49, 1L<<56 } ;
  
-     // By semi-lookup.
-     private static int calcLengthTable(long value)
-     {
-         // Convert to VarInteger 
-         value = (value << 1) ^ (value >> 63) ;
-         return VarInt.calcLengthTable(value) ;
-     }
-     
 //     // By calculation.
 //     private static int calcLength(long value)
 //     {
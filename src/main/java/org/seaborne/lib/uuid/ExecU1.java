@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import org.apache.jena.atlas.io.IO;
@@ -31,6 +32,45 @@ public class ExecU1 {
     public static void main(String... args) {
         examine();
         timing();
+        timingThreads(16, ()->UUIDFactory.generateV1());
+        timingThreads(16, ()->UUIDFactory.generateV1HighThroughput());
+    }
+
+    public static void timingThreads(int numThreads, Supplier<UUID> generator) {
+        int N = 250_000;
+        Set<UUID> x = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[numThreads];
+        UUID[][] results = new UUID[numThreads][N];
+        for ( int t = 0 ; t < numThreads ; t++ ) {
+            UUID[] a = results[t];
+            threads[t] = new Thread(()->{
+                for ( int i = 0 ; i < N ; i++ )
+                    a[i] = generator.get();
+            });
+        }
+        long x1 = System.nanoTime();
+        for ( Thread t : threads )
+            t.start();
+        try {
+            for ( Thread t : threads )
+                t.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long x2 = System.nanoTime();
+
+        long total = (long)numThreads*N;
+        double rate = total/((x2-x1)/1_000_000_000.0);
+        System.out.printf("%d threads: %,d in %,.3f sec : rate = %,.0f/s\n", numThreads, total, (x2-x1)/1_000_000_000.0, rate);
+
+        for ( UUID[] a : results ) {
+            for ( UUID u : a ) {
+                if ( ! x.add(u) )
+                    System.err.printf("Dup: %s\n", u);
+            }
+        }
+        System.out.printf("Checked: %,d\n", x.size());
     }
 
     public static void timing() {
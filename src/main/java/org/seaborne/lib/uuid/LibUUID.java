@@ -18,7 +18,8 @@
 
 package org.seaborne.lib.uuid;
 
-import java.util.Locale;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import java.util.UUID;
 
 import org.apache.jena.atlas.lib.BitsLong;
@@ -48,64 +49,248 @@ public class LibUUID {
 
     /** Recreate a UUID from string */
     public static UUID parse(String s) {
-        if ( s.equals(strNil()) )
-            return nil() ;
+        UUID uuid = parse(s, 0, s.length());
+        if ( uuid.getMostSignificantBits() == 0 && uuid.getLeastSignificantBits() == 0 )
+            return nil();
+        return uuid;
+    }
 
-        // Canonical: this works in conjunction with .equals
-        s = s.toLowerCase(Locale.ROOT) ;
+    // ---- Parsing and formatting without intermediate strings.
+    //
+    // The text form is 36 characters "xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx", optionally
+    // preceded by "urn:" and/or "uuid:" (any case). Hex digits may be upper or lower case.
+    // Formatting writes lower case hex.
+
+    private static final int UUID_LEN = 36;
+
+    // Hex digit value or -1, indexed by character (< 128).
+    private static final byte[] hexValue = new byte[128];
+    static {
+        for ( int i = 0 ; i < hexValue.length ; i++ )
+            hexValue[i] = -1;
+        for ( int i = 0 ; i < 10 ; i++ )
+            hexValue['0'+i] = (byte)i;
+        for ( int i = 0 ; i < 6 ; i++ ) {
+            hexValue['a'+i] = (byte)(10+i);
+            hexValue['A'+i] = (byte)(10+i);
+        }
+    }
 
-        if ( s.startsWith("urn:") )
-            s = s.substring(4) ;
-        if ( s.startsWith("uuid:") )
-            s = s.substring(5) ;
+    private static final char[] hexChars  = "0123456789abcdef".toCharArray();
+    private static final byte[] hexBytes  = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
 
-        if ( s.length() != 36 )
-            throw new UUIDException("UUID string is not 36 chars long: it's " + s.length() + " [" + s + "]") ;
+    private static int hexValue(int ch) {
+        return ch < 128 ? hexValue[ch] : -1;
+    }
 
-        if ( s.charAt(8) != '-' || s.charAt(13) != '-' || s.charAt(18) != '-' || s.charAt(23) != '-' )
-            throw new UUIDException("String does not have dashes in the right places: " + s) ;
+    // Dashes are at 8, 13, 18, 23.
+    private static boolean isDashPosition(int i) {
+        return i == 8 || i == 13 || i == 18 || i == 23;
+    }
 
-        if ( UseSystemUUID )
-            return UUID.fromString(s);
-
-        // Deciding code. Historical.
-        // The UUID broken up into parts.
-        //       00000000-0000-0000-0000-000000000000
-        //       ^        ^    ^    ^    ^
-        // Byte: 0        4    6    8    10
-        // Char: 0        9    14   19   24  including hyphens
-        int x = (int)BitsLong.unpack(s, 19, 23) ;
-        int variant = (x >>> 14) ;
-        int version = (int)BitsLong.unpack(s, 14, 15) ;
-
-        if ( variant != StdVariant )
-            throw new UnsupportedOperationException("String specifies unsupported UUID variant: " + variant) ;
-
-        long mostSigBits = BitsLong.unpack(s, 0, 8) ;
-        // Skip -
-        mostSigBits = mostSigBits << 16 | BitsLong.unpack(s, 9, 13) ;
-        // Skip -
-        mostSigBits = mostSigBits << 16 | BitsLong.unpack(s, 14, 18) ;
-        // Skip -
-        long leastSigBits = BitsLong.unpack(s, 19, 23) ;
-        // Skip -
-        leastSigBits = leastSigBits<<48 | BitsLong.unpack(s, 24, 36) ;
+    /** Parse a UUID from the characters {@code [start, end)} of a {@link CharSequence}. */
+    public static UUID parse(CharSequence cs, int start, int end) {
+        Objects.checkFromToIndex(start, end, cs.length());
+        if ( matchesIgnoreCase(cs, start, end, "urn:") )
+            start += 4;
+        if ( matchesIgnoreCase(cs, start, end, "uuid:") )
+            start += 5;
+        if ( end-start != UUID_LEN )
+            throw errorLength(cs.subSequence(start, end));
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        // Becomes negative on a bad character.
+        int check = 0;
+        for ( int i = 0 ; i < UUID_LEN ; i++ ) {
+            char ch = cs.charAt(start+i);
+            if ( isDashPosition(i) ) {
+                if ( ch != '-' )
+                    throw errorDashes(cs.subSequence(start, end));
+                continue;
+            }
+            int d = hexValue(ch);
+            check |= d;
+            if ( i < 18 )
+                mostSigBits = (mostSigBits << 4) | (d & 0xF);
+            else
+                leastSigBits = (leastSigBits << 4) | (d & 0xF);
+        }
+        if ( check < 0 )
+            throw errorHex(cs.subSequence(start, end));
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /** Parse a UUID from the characters {@code [start, end)} of a {@code char[]}. */
+    public static UUID parse(char[] chars, int start, int end) {
+        Objects.checkFromToIndex(start, end, chars.length);
+        if ( matchesIgnoreCase(chars, start, end, "urn:") )
+            start += 4;
+        if ( matchesIgnoreCase(chars, start, end, "uuid:") )
+            start += 5;
+        if ( end-start != UUID_LEN )
+            throw errorLength(new String(chars, start, end-start));
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        int check = 0;
+        for ( int i = 0 ; i < UUID_LEN ; i++ ) {
+            char ch = chars[start+i];
+            if ( isDashPosition(i) ) {
+                if ( ch != '-' )
+                    throw errorDashes(new String(chars, start, UUID_LEN));
+                continue;
+            }
+            int d = hexValue(ch);
+            check |= d;
+            if ( i < 18 )
+                mostSigBits = (mostSigBits << 4) | (d & 0xF);
+            else
+                leastSigBits = (leastSigBits << 4) | (d & 0xF);
+        }
+        if ( check < 0 )
+            throw errorHex(new String(chars, start, UUID_LEN));
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /** Parse a UUID from the ASCII bytes {@code [start, end)} of a {@code byte[]}. */
+    public static UUID parse(byte[] bytes, int start, int end) {
+        Objects.checkFromToIndex(start, end, bytes.length);
+        if ( matchesIgnoreCase(bytes, start, end, "urn:") )
+            start += 4;
+        if ( matchesIgnoreCase(bytes, start, end, "uuid:") )
+            start += 5;
+        if ( end-start != UUID_LEN )
+            throw errorLength(new String(bytes, start, end-start, StandardCharsets.ISO_8859_1));
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        int check = 0;
+        for ( int i = 0 ; i < UUID_LEN ; i++ ) {
+            int ch = bytes[start+i] & 0xFF;
+            if ( isDashPosition(i) ) {
+                if ( ch != '-' )
+                    throw errorDashes(new String(bytes, start, UUID_LEN, StandardCharsets.ISO_8859_1));
+                continue;
+            }
+            int d = hexValue(ch);
+            check |= d;
+            if ( i < 18 )
+                mostSigBits = (mostSigBits << 4) | (d & 0xF);
+            else
+                leastSigBits = (leastSigBits << 4) | (d & 0xF);
+        }
+        if ( check < 0 )
+            throw errorHex(new String(bytes, start, UUID_LEN, StandardCharsets.ISO_8859_1));
         return new UUID(mostSigBits, leastSigBits);
     }
 
+    // The prefix is lower case ASCII.
+    private static boolean matchesIgnoreCase(CharSequence cs, int start, int end, String prefix) {
+        if ( end-start < prefix.length() )
+            return false;
+        for ( int i = 0 ; i < prefix.length() ; i++ ) {
+            if ( (cs.charAt(start+i) | 0x20) != prefix.charAt(i) )
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesIgnoreCase(char[] chars, int start, int end, String prefix) {
+        if ( end-start < prefix.length() )
+            return false;
+        for ( int i = 0 ; i < prefix.length() ; i++ ) {
+            if ( (chars[start+i] | 0x20) != prefix.charAt(i) )
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesIgnoreCase(byte[] bytes, int start, int end, String prefix) {
+        if ( end-start < prefix.length() )
+            return false;
+        for ( int i = 0 ; i < prefix.length() ; i++ ) {
+            if ( ((bytes[start+i] & 0xFF) | 0x20) != prefix.charAt(i) )
+                return false;
+        }
+        return true;
+    }
+
+    private static UUIDException errorLength(CharSequence s) {
+        return new UUIDException("UUID string is not 36 chars long: it's " + s.length() + " [" + s + "]") ;
+    }
+
+    private static UUIDException errorDashes(CharSequence s) {
+        return new UUIDException("String does not have dashes in the right places: " + s) ;
+    }
+
+    private static UUIDException errorHex(CharSequence s) {
+        return new UUIDException("String has a character that is not a hex digit: " + s) ;
+    }
+
+    /** Write the 36 character string form of the UUID into {@code dest} at {@code offset}. Returns the offset after the UUID. */
+    public static int format(UUID uuid, char[] dest, int offset) {
+        return format(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), dest, offset);
+    }
+
+    /** Write the 36 character string form of a UUID into {@code dest} at {@code offset}. Returns the offset after the UUID. */
+    public static int format(long mostSignificantBits, long leastSignificantBits, char[] dest, int offset) {
+        Objects.checkFromIndexSize(offset, UUID_LEN, dest.length);
+        toHex(dest, offset,    mostSignificantBits >>> 32, 8);
+        dest[offset+8] = '-';
+        toHex(dest, offset+9,  mostSignificantBits >>> 16, 4);
+        dest[offset+13] = '-';
+        toHex(dest, offset+14, mostSignificantBits, 4);
+        dest[offset+18] = '-';
+        toHex(dest, offset+19, leastSignificantBits >>> 48, 4);
+        dest[offset+23] = '-';
+        toHex(dest, offset+24, leastSignificantBits, 12);
+        return offset+UUID_LEN;
+    }
+
+    /** Write the 36 byte ASCII form of the UUID into {@code dest} at {@code offset}. Returns the offset after the UUID. */
+    public static int format(UUID uuid, byte[] dest, int offset) {
+        return format(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), dest, offset);
+    }
+
+    /** Write the 36 byte ASCII form of a UUID into {@code dest} at {@code offset}. Returns the offset after the UUID. */
+    public static int format(long mostSignificantBits, long leastSignificantBits, byte[] dest, int offset) {
+        Objects.checkFromIndexSize(offset, UUID_LEN, dest.length);
+        toHex(dest, offset,    mostSignificantBits >>> 32, 8);
+        dest[offset+8] = '-';
+        toHex(dest, offset+9,  mostSignificantBits >>> 16, 4);
+        dest[offset+13] = '-';
+        toHex(dest, offset+14, mostSignificantBits, 4);
+        dest[offset+18] = '-';
+        toHex(dest, offset+19, leastSignificantBits >>> 48, 4);
+        dest[offset+23] = '-';
+        toHex(dest, offset+24, leastSignificantBits, 12);
+        return offset+UUID_LEN;
+    }
+
+    /** Append the 36 character string form of the UUID to a {@link StringBuilder}. */
+    public static void format(UUID uuid, StringBuilder sb) {
+        format(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), sb);
+    }
+
+    /** Append the 36 character string form of a UUID to a {@link StringBuilder}. */
+    public static void format(long mostSignificantBits, long leastSignificantBits, StringBuilder sb) {
+        int len = sb.length();
+        sb.setLength(len+UUID_LEN);
+        // Each group written from the low end.
+        setHex(sb, len,    mostSignificantBits >>> 32, 8);
+        sb.setCharAt(len+8, '-');
+        setHex(sb, len+9,  mostSignificantBits >>> 16, 4);
+        sb.setCharAt(len+13, '-');
+        setHex(sb, len+14, mostSignificantBits, 4);
+        sb.setCharAt(len+18, '-');
+        setHex(sb, len+19, leastSignificantBits >>> 48, 4);
+        sb.setCharAt(len+23, '-');
+        setHex(sb, len+24, leastSignificantBits, 12);
+    }
+
     /** Format using two longs - assumed valid for an UUID of some kind */
     public static String uuidString(long mostSignificantBits, long leastSignificantBits) {
-        StringBuffer sb = new StringBuffer(36) ;
-        toHex(sb, BitsLong.unpack(mostSignificantBits, 32, 64), 4) ;
-        sb.append('-') ;
-        toHex(sb, BitsLong.unpack(mostSignificantBits, 16, 32), 2) ;
-        sb.append('-') ;
-        toHex(sb, BitsLong.unpack(mostSignificantBits, 0, 16), 2) ;
-        sb.append('-') ;
-        toHex(sb, BitsLong.unpack(leastSignificantBits, 48, 64), 2) ;
-        sb.append('-') ;
-        toHex(sb, BitsLong.unpack(leastSignificantBits, 0, 48), 6) ;
-        return sb.toString() ;
+        char[] chars = new char[UUID_LEN];
+        format(mostSignificantBits, leastSignificantBits, chars, 0);
+        return new String(chars);
     }
 
     /** Get the variant with full variable length encoding, decoding any variant usage. */
@@ -137,12 +322,25 @@ public class LibUUID {
     // ----------------------------------------------------
     // Worker functions
 
-    private static void toHex(StringBuffer sBuff, long value, int lenBytes) {
-        // Insert in high-low order, by nibble
-        for (int i = 2 * lenBytes - 1; i >= 0; i--) {
-            int shift = 4 * i ;
-            int x = (int)(value >>> shift & 0xF) ;
-            sBuff.append(Character.forDigit(x, 16)) ;
+    // Write the low "nibbles" hex digits of value, most significant first.
+    private static void toHex(char[] dest, int offset, long value, int nibbles) {
+        for ( int i = offset+nibbles-1 ; i >= offset ; i-- ) {
+            dest[i] = hexChars[(int)value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    private static void toHex(byte[] dest, int offset, long value, int nibbles) {
+        for ( int i = offset+nibbles-1 ; i >= offset ; i-- ) {
+            dest[i] = hexBytes[(int)value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    private static void setHex(StringBuilder sb, int offset, long value, int nibbles) {
+        for ( int i = offset+nibbles-1 ; i >= offset ; i-- ) {
+            sb.setCharAt(i, hexChars[(int)value & 0xF]);
+            value >>>= 4;
         }
     }
 
@@ -154,6 +352,13 @@ public class LibUUID {
             throw new IllegalArgumentException("Not a RFC 4122 V1 UUID");
     }
 
+    // Version 1 and version 6 have the same fields, different timestamp layout.
+    private static void checkGregorianTime(UUID uuid) {
+        int version = uuid.version();
+        if ( ( version != UUIDCreatorV1.VERSION && version != UUIDCreatorV6.VERSION ) || uuid.variant() != UUIDCreatorV1.VARIANT )
+            throw new IllegalArgumentException("Not a V1 or V6 UUID");
+    }
+
     // ---- Accesssors
 
     public static int version(UUID uuid) {
@@ -202,7 +407,18 @@ public class LibUUID {
         return BitsLong.unpack(uuid.getMostSignificantBits(), 32, 64);
     }
 
+    /**
+     * The 60 bit timestamp (100ns units since 00:00:00.00, 15 October 1582) of a
+     * version 1 or version 6 UUID.
+     */
     public static long timestamp(UUID uuid) {
+        if ( uuid.version() == UUIDCreatorV6.VERSION ) {
+            checkGregorianTime(uuid);
+            long mostSigBits = uuid.getMostSignificantBits();
+            return BitsLong.unpack(mostSigBits, 32, 64) << 28 |
+                   BitsLong.unpack(mostSigBits, 16, 32) << 12 |
+                   BitsLong.unpack(mostSigBits, 0, 12);
+        }
         checkVersion1(uuid);
         if ( VALIDATING ) {
             long x1 = timeLow(uuid) | timeMid(uuid)<<32 | timeHigh(uuid)<<48 ;
@@ -214,14 +430,32 @@ public class LibUUID {
         return timeLow(uuid) | timeMid(uuid)<<32 | timeHigh(uuid)<<48 ;
     }
 
+    /**
+     * The time, in milliseconds since 1970-01-01T00:00:00Z, of a version 1, 6 or 7
+     * UUID.
+     */
+    public static long unixTimeMillis(UUID uuid) {
+        if ( uuid.version() == UUIDCreatorV7.VERSION && uuid.variant() == UUIDCreatorV7.VARIANT )
+            return BitsLong.unpack(uuid.getMostSignificantBits(), 16, 64);
+        long ticks = timestamp(uuid) - UUIDCreatorV1.UUID_EPOCH_OFFSET;
+        return Math.floorDiv(ticks, 10_000);
+    }
+
+    /** Whether the UUID is a version (6 or 7) where UUIDs sort in time order. */
+    public static boolean isTimeOrdered(UUID uuid) {
+        if ( uuid.variant() != StdVariant )
+            return false;
+        return uuid.version() == UUIDCreatorV6.VERSION || uuid.version() == UUIDCreatorV7.VERSION;
+    }
+
     public static long clockSequence(UUID uuid) {
-        checkVersion1(uuid);
+        checkGregorianTime(uuid);
         // return uuid.clockSequence();
         return BitsLong.unpack(uuid.getLeastSignificantBits(), 48, 62) ;
     }
 
     public static long node(UUID uuid) {
-        checkVersion1(uuid);
+        checkGregorianTime(uuid);
         //return uuid.node();
         return BitsLong.unpack(uuid.getLeastSignificantBits(), 0, 48);
     }
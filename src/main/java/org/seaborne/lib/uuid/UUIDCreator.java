@@ -18,10 +18,45 @@
 
 package org.seaborne.lib.uuid;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
 import java.util.UUID;
 
 public interface UUIDCreator {
     /** Generator */
     public UUID create();
+
+    /**
+     * Generate {@code count} UUIDs into {@code dest}, starting at {@code offset}, as
+     * pairs of (most significant bits, least significant bits).
+     */
+    public default void create(long[] dest, int offset, int count) {
+        Objects.checkFromIndexSize(offset, 2*count, dest.length);
+        for ( int i = 0 ; i < count ; i++ ) {
+            UUID uuid = create();
+            dest[offset+2*i] = uuid.getMostSignificantBits();
+            dest[offset+2*i+1] = uuid.getLeastSignificantBits();
+        }
+    }
+
+    /**
+     * Write {@code count} UUIDs into {@code dest}, at its position, as 16 bytes
+     * each in network byte order (most significant byte first) whatever the order
+     * of the buffer. The position is advanced by {@code 16*count}.
+     */
+    public default void create(ByteBuffer dest, int count) {
+        if ( dest.remaining() < 16L*count )
+            throw new BufferOverflowException();
+        boolean swap = ( dest.order() != ByteOrder.BIG_ENDIAN );
+        for ( int i = 0 ; i < count ; i++ ) {
+            UUID uuid = create();
+            long msb = uuid.getMostSignificantBits();
+            long lsb = uuid.getLeastSignificantBits();
+            dest.putLong(swap ? Long.reverseBytes(msb) : msb);
+            dest.putLong(swap ? Long.reverseBytes(lsb) : lsb);
+        }
+    }
 }
 
@@ -20,6 +20,7 @@ package org.seaborne.lib.uuid;
 
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class UUIDCreatorFactory {
     // -- Multiple generators
@@ -28,9 +29,38 @@ public class UUIDCreatorFactory {
     static Set<UUIDCreator> generators = ConcurrentHashMap.newKeySet();
 
     /** Return a new, fresh generator of a UUID version 1. See {@link #create()} */
-    /*package*/ static synchronized UUIDCreator newGeneratorV1() {
+    /*package*/ static UUIDCreator newGeneratorV1() {
+        return newDistinctGenerator(()->new UUIDCreatorV1(false));
+    }
+
+    /**
+     * Return a new, fresh generator of a UUID version 1 that does not lock on each
+     * UUID. Threads reserve blocks of timestamps and allocate from them locally.
+     */
+    /*package*/ static UUIDCreator newGeneratorV1HighThroughput() {
+        return newDistinctGenerator(()->new UUIDCreatorV1(true));
+    }
+
+    /**
+     * Return a new, fresh generator of a UUID version 6 (time ordered version 1).
+     * UUIDs from the generator sort in creation order.
+     */
+    /*package*/ static UUIDCreator newGeneratorV6() {
+        return newDistinctGenerator(()->new UUIDCreatorV6(false));
+    }
+
+    /**
+     * Return a new, fresh generator of a UUID version 7 (Unix time in milliseconds and random).
+     * UUIDs from the generator sort in creation order.
+     */
+    /*package*/ static UUIDCreator newGeneratorV7() {
+        // Random bits in every UUID: no need to check for distinct generators.
+        return new UUIDCreatorV7();
+    }
+
+    private static synchronized UUIDCreator newDistinctGenerator(Supplier<UUIDCreator> maker) {
         for ( int i = 0 ; i < 10 ; i++ ) {
-            UUIDCreatorV1 generator = new UUIDCreatorV1();
+            UUIDCreator generator = maker.get();
             if ( generators.contains(generator) )
                 continue;
             generators.add(generator);
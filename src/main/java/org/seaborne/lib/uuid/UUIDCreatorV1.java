@@ -22,9 +22,14 @@ import java.net.NetworkInterface;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.Clock;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.Instant;
 import java.util.Enumeration;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.random.RandomGenerator;
@@ -127,28 +132,87 @@ public class UUIDCreatorV1 implements UUIDCreator {
     // Timestamp is (uid_time+uuids_this_tick)
     private long uuids_this_tick = 0;
     // Clock sequence - 14 bits of random to stop two clocks being the same.
-    private final int clockSeq;
+    /*package*/ final int clockSeq;
 
     // Node - 48 bits.
-    private final long node;
+    /*package*/ final long node;
+
+    // The least significant long is the same for every UUID from this generator.
+    private final long leastSigBits;
 
     // Time control: Units:100ns ticks. (RFC 4122 name of variable).
     private long time_last = 0;
 
+    // -- High throughput mode.
+    // Threads do not share a lock. Instead, each thread reserves a block of
+    // timestamp ticks by CAS on nextTick and then hands them out, one per UUID,
+    // without any further coordination. Blocks never overlap so timestamps
+    // (with the same clockSeq and node) are never reused.
+    //
+    // nextTick is the first unreserved tick; a reservation starts from the later of
+    // nextTick and the current clock time. The notional time can get ahead of the
+    // clock if UUIDs are allocated at more than one per 100ns tick (in aggregate,
+    // across all threads). A reservation is not made if nextTick is more than
+    // MAX_TICKS_AHEAD in the future. The reserving thread waits, without holding any
+    // monitor, for the clock to catch up. As for UUIDS_PER_BLOCK, this is safe
+    // providing that is less than restart time.
+
+    // Number of ticks reserved by a thread at a time.
+    private static final long TICKS_PER_RESERVATION = 64;
+    // 1 millisecond in 100ns ticks.
+    private static final long MAX_TICKS_AHEAD = 10_000;
+
+    // Largest number of consecutive ticks taken for a batch in one go. A batch
+    // can put the notional time ahead of the clock by this much.
+    // In the synchronized mode, a batch is taken UUIDS_PER_BLOCK at a time so that
+    // the wait for the clock in setTime, which holds the monitor, is no longer than
+    // for single UUIDs.
+    private static final int MAX_TICKS_PER_BATCH = 10_000;
+
+    // Null if not in high throughput mode. Units: 100ns ticks, system epoch.
+    private final AtomicLong nextTick;
+    // Per thread: [0] next tick to use, [1] end of the reserved block (exclusive).
+    private final ThreadLocal<long[]> tickBlock;
+
     /*package*/ UUIDCreatorV1() {
+        this(false);
+    }
+
+    /**
+     * Create a generator. If {@code highThroughput} is true, the generator does not
+     * take a lock per UUID; threads reserve blocks of timestamps and allocate
+     * from them locally.
+     */
+    /*package*/ UUIDCreatorV1(boolean highThroughput) {
         long random = nextLong();
         // Both node id and clock sequence from a single call to the random number
         // generator. Different bit slices are used by the two calls.
         clockSeq = calcClockSeq(random);
         node = calcNodeId(random);
+        leastSigBits = leastSigBits(VARIANT, clockSeq, node);
         // Forces the clock to be read first time a UUID is generated.
         uuids_this_tick = UUIDS_PER_BLOCK+1;
         time_last = 0;
+        if ( highThroughput ) {
+            nextTick = new AtomicLong(0);
+            // Empty block: forces a reservation on first use.
+            tickBlock = ThreadLocal.withInitial(()->new long[2]);
+        } else {
+            nextTick = null;
+            tickBlock = null;
+        }
+    }
+
+    /** Whether this generator is using the lock-free, high throughput allocation. */
+    public boolean isHighThroughput() {
+        return nextTick != null;
     }
 
     /** Generate a UUID version 1 from this generator */
     @Override
     public UUID create() {
+        if ( nextTick != null )
+            return createLockFree();
         // This implementation free runs for UUIDS_PER_BLOCK, incrementing uuids_this_tick.
         // Then it resets the clock, checking the clock has moved forward enough.
         long timestamp = 0;
@@ -166,6 +230,99 @@ public class UUIDCreatorV1 implements UUIDCreator {
         return generate(timestamp);
     }
 
+    private UUID createLockFree() {
+        long[] block = tickBlock.get();
+        if ( block[0] >= block[1] ) {
+            block[0] = reserveTicks(TICKS_PER_RESERVATION);
+            block[1] = block[0] + TICKS_PER_RESERVATION;
+        }
+        long ticks = block[0]++;
+        return generate(ticks + UUID_EPOCH_OFFSET);
+    }
+
+    /**
+     * Generate {@code count} UUIDs into {@code dest}, starting at {@code offset}, as
+     * pairs of (most significant bits, least significant bits). Timestamps are
+     * taken in blocks for the whole batch and no {@link UUID} objects are created.
+     */
+    @Override
+    public void create(long[] dest, int offset, int count) {
+        Objects.checkFromIndexSize(offset, 2*count, dest.length);
+        int idx = offset;
+        int chunk = batchChunk();
+        while ( count > 0 ) {
+            int n = Math.min(count, chunk);
+            long timestamp = reserveTimestamps(n);
+            for ( int i = 0 ; i < n ; i++ ) {
+                dest[idx++] = mostSigBits(timestamp+i);
+                dest[idx++] = leastSigBits;
+            }
+            count -= n;
+        }
+    }
+
+    /**
+     * Write {@code count} UUIDs into {@code dest}, at its position, as 16 bytes
+     * each in network byte order (most significant byte first) whatever the order
+     * of the buffer. Timestamps are taken in blocks for the whole batch and no
+     * {@link UUID} objects are created.
+     */
+    @Override
+    public void create(ByteBuffer dest, int count) {
+        if ( dest.remaining() < 16L*count )
+            throw new BufferOverflowException();
+        boolean swap = ( dest.order() != ByteOrder.BIG_ENDIAN );
+        long lsb = swap ? Long.reverseBytes(leastSigBits) : leastSigBits;
+        int chunk = batchChunk();
+        while ( count > 0 ) {
+            int n = Math.min(count, chunk);
+            long timestamp = reserveTimestamps(n);
+            for ( int i = 0 ; i < n ; i++ ) {
+                long msb = mostSigBits(timestamp+i);
+                dest.putLong(swap ? Long.reverseBytes(msb) : msb);
+                dest.putLong(lsb);
+            }
+            count -= n;
+        }
+    }
+
+    // Number of timestamps to reserve at a time for a batch.
+    private int batchChunk() {
+        return ( nextTick != null ) ? MAX_TICKS_PER_BATCH : (int)UUIDS_PER_BLOCK;
+    }
+
+    // Reserve n consecutive timestamps for a batch. Returns the first, in UUID time.
+    // In the synchronized mode, n is at most UUIDS_PER_BLOCK.
+    private long reserveTimestamps(int n) {
+        if ( nextTick != null )
+            return reserveTicks(n) + UUID_EPOCH_OFFSET;
+        synchronized (this) {
+            if ( uuids_this_tick + n > UUIDS_PER_BLOCK )
+                // Start from a fresh clock reading.
+                setTime();
+            long timestamp = uuid_time + uuids_this_tick;
+            uuids_this_tick += n;
+            return timestamp;
+        }
+    }
+
+    // Reserve a block of n ticks. Returns the start, in system ticks.
+    private long reserveTicks(long n) {
+        for(;;) {
+            long time_now = nowSystemTicks();
+            long next = nextTick.get();
+            if ( next > time_now + MAX_TICKS_AHEAD ) {
+                // Too far ahead of the clock. No lock is held.
+                Thread.onSpinWait();
+                continue;
+            }
+            long start = Math.max(next, time_now);
+            if ( nextTick.compareAndSet(next, start + n) )
+                return start;
+            // Another thread reserved a block. Try again.
+        }
+    }
+
     // clockSeq and node are stable.
     @Override
     public int hashCode() {
@@ -191,21 +348,21 @@ public class UUIDCreatorV1 implements UUIDCreator {
 //        return x;
 //    }
 
-    private UUID generate(long timestamp) {
-        return generate(VERSION, VARIANT, timestamp, clockSeq, node);
+    // Layout of the fields for this UUID version. Timestamp is the 60 bit count of
+    // 100ns ticks since the Gregorian epoch.
+    /*package*/ final UUID generate(long timestamp) {
+        return new UUID(mostSigBits(timestamp), leastSigBits);
     }
 
-    private static UUID generate(int version, int variant, long timestamp, int clockSeq, long node) {
+    /*package*/ long mostSigBits(long timestamp) {
         long timeHigh = timestamp >>> (60 - 12);       // Top 12 bits of 60 bit number.
         long timeMid = (timestamp >>> 32) & 0xFFFFL;   // 16 bits, bits 32-47
         long timeLow = timestamp & 0xFFFFFFFFL;        // Low 32 bits
-        return generate(version, variant, timeHigh, timeMid, timeLow, clockSeq, node);
+        return (timeLow << 32) | (timeMid << 16) | (VERSION << 12) | timeHigh;
     }
 
-    private static UUID generate(int version, int variant, long timeHigh, long timeMid, long timeLow, int clockSeq, long node) {
-        long mostSigBits = (timeLow << 32) | (timeMid << 16) | (version << 12) | timeHigh;
-        long leastSigBits = ((long)variant << 62) | ((long)clockSeq << 48) | node;
-        return new UUID(mostSigBits, leastSigBits);
+    /*package*/ static long leastSigBits(int variant, int clockSeq, long node) {
+        return ((long)variant << 62) | ((long)clockSeq << 48) | node;
     }
 
     // Set uuid_time and lastTime, clear uuids_this_tick.
@@ -238,11 +395,13 @@ public class UUIDCreatorV1 implements UUIDCreator {
         time_last = time_now;
         // Convert to the UUID base time (00:00:00.00, 15 October 1582)
         // That's the date of the Gregorian calendar reforms.
-        // See the RFC 4122 text quoted for the number, the epoch differnt in 100ns units.
-        // Java base time is is January 1, 1970.
-        uuid_time = time_now + 0x01B21DD213814000L;
+        uuid_time = time_now + UUID_EPOCH_OFFSET;
     }
 
+    // See the RFC 4122 text quoted for the number, the epoch differnt in 100ns units.
+    // Java base time is is January 1, 1970.
+    /*package*/ static final long UUID_EPOCH_OFFSET = 0x01B21DD213814000L;
+
     // Current time, from the OS system epoch base,
     /*package*/ final static long dev_nowSystemTicks() { return nowSystemTicks(); }    
     
@@ -333,7 +492,7 @@ public class UUIDCreatorV1 implements UUIDCreator {
 
     private final RandomGenerator randomGenerator = createRandom();
 
-    private static RandomGenerator createRandom() {
+    /*package*/ static RandomGenerator createRandom() {
         // http://www0.cs.ucl.ac.uk/staff/d.jones/GoodPracticeRNG.pdf
         int intsInSeed = 8;
         byte[] seedBytes = calcSeed(intsInSeed*Integer.BYTES);
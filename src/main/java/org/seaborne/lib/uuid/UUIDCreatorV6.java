@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.lib.uuid;
+
+import java.util.UUID;
+
+/**
+ * Generator for version 6 UUIDs: the version 1 fields with the timestamp reordered so
+ * that the most significant bits come first.
+ * <p>
+ * UUIDs from one generator sort (by {@link UUID#compareTo}, or by their 16 bytes as
+ * unsigned values) in creation order, so they insert at the end of an ordered
+ * index. In high throughput mode, UUIDs from different threads are not in creation order.
+ * <p>
+ * See <a ref="https://www.rfc-editor.org/rfc/rfc9562">RFC 9562</a>.
+ */
+public class UUIDCreatorV6 extends UUIDCreatorV1 {
+    /*
+       0                   1                   2                   3
+       0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |                           time_high                           |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |           time_mid            |  ver  |       time_low        |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |var|         clock_seq         |             node              |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |                              node                             |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+    time_high is the top 32 bits of the 60 bit timestamp, time_mid the next 16 bits
+    and time_low the low 12 bits.
+    */
+
+    /*package*/ static final int VERSION  = 6 ;
+
+    /*package*/ UUIDCreatorV6() {
+        this(false);
+    }
+
+    /*package*/ UUIDCreatorV6(boolean highThroughput) {
+        super(highThroughput);
+    }
+
+    @Override
+    /*package*/ long mostSigBits(long timestamp) {
+        long timeHigh = timestamp >>> 28;              // Top 32 bits of 60 bit number.
+        long timeMid = (timestamp >>> 12) & 0xFFFFL;   // 16 bits, bits 12-27
+        long timeLow = timestamp & 0xFFFL;             // Low 12 bits
+        return (timeHigh << 32) | (timeMid << 16) | (VERSION << 12) | timeLow;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.lib.uuid;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Generator for version 7 UUIDs: 48 bits of Unix time in milliseconds, then 74 bits
+ * that are a counter and random.
+ * <p>
+ * Within a millisecond, the 12 bit {@code rand_a} field is a counter, started at a
+ * random value, so UUIDs from one generator sort (by {@link UUID#compareTo}, or by
+ * their 16 bytes as unsigned values) in creation order. If the counter overflows, or
+ * the system clock goes backwards, the generator uses the next millisecond so the
+ * order is kept.
+ * <p>
+ * See <a ref="https://www.rfc-editor.org/rfc/rfc9562">RFC 9562</a>.
+ */
+public class UUIDCreatorV7 implements UUIDCreator {
+    /*
+       0                   1                   2                   3
+       0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |                           unix_ts_ms                          |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |          unix_ts_ms           |  ver  |       rand_a          |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |var|                        rand_b                             |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+      |                            rand_b                             |
+      +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+    */
+
+    /*package*/ static final int VERSION  = 7 ;
+    /*package*/ static final int VARIANT  = 2 ;
+
+    private static final int COUNTER_BITS = 12;
+    private static final int COUNTER_MAX = (1<<COUNTER_BITS)-1;
+    // The counter starts at a random value with the top bit clear so there
+    // are always at least 2048 UUIDs before it overflows.
+    private static final int COUNTER_START_RANGE = 1<<(COUNTER_BITS-1);
+
+    private long lastMillis = -1;
+    private int counter = 0;
+
+    // Not thread safe: used inside synchronized.
+    private final RandomGenerator randomGenerator = UUIDCreatorV1.createRandom();
+
+    /*package*/ UUIDCreatorV7() {}
+
+    /** Generate a UUID version 7 from this generator */
+    @Override
+    public UUID create() {
+        long mostSigBits;
+        long random;
+        // No waiting inside the lock.
+        synchronized (this) {
+            mostSigBits = nextMostSigBits(System.currentTimeMillis());
+            random = randomGenerator.nextLong();
+        }
+        return new UUID(mostSigBits, leastSigBits(random));
+    }
+
+    /**
+     * Generate {@code count} UUIDs into {@code dest}, starting at {@code offset}, as
+     * pairs of (most significant bits, least significant bits). The clock is read
+     * once for the batch and no {@link UUID} objects are created.
+     */
+    @Override
+    public void create(long[] dest, int offset, int count) {
+        Objects.checkFromIndexSize(offset, 2*count, dest.length);
+        int idx = offset;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for ( int i = 0 ; i < count ; i++ ) {
+                dest[idx++] = nextMostSigBits(now);
+                dest[idx++] = leastSigBits(randomGenerator.nextLong());
+            }
+        }
+    }
+
+    /**
+     * Write {@code count} UUIDs into {@code dest}, at its position, as 16 bytes
+     * each in network byte order (most significant byte first) whatever the order
+     * of the buffer. The clock is read once for the batch and no {@link UUID}
+     * objects are created.
+     */
+    @Override
+    public void create(ByteBuffer dest, int count) {
+        if ( dest.remaining() < 16L*count )
+            throw new BufferOverflowException();
+        boolean swap = ( dest.order() != ByteOrder.BIG_ENDIAN );
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for ( int i = 0 ; i < count ; i++ ) {
+                long msb = nextMostSigBits(now);
+                long lsb = leastSigBits(randomGenerator.nextLong());
+                dest.putLong(swap ? Long.reverseBytes(msb) : msb);
+                dest.putLong(swap ? Long.reverseBytes(lsb) : lsb);
+            }
+        }
+    }
+
+    // Advance the (millisecond, counter) state and return the most significant
+    // long for it. Called inside synchronized.
+    private long nextMostSigBits(long now) {
+        if ( now > lastMillis ) {
+            lastMillis = now;
+            counter = randomGenerator.nextInt(COUNTER_START_RANGE);
+        } else if ( counter < COUNTER_MAX ) {
+            // Same millisecond, or the clock went backwards.
+            counter++;
+        } else {
+            // Counter exhausted: move on to the next millisecond, slightly ahead of the clock.
+            lastMillis++;
+            counter = randomGenerator.nextInt(COUNTER_START_RANGE);
+        }
+        return mostSigBits(lastMillis, counter);
+    }
+
+    private static long mostSigBits(long unixMillis, int randA) {
+        return ((unixMillis & 0xFFFFFFFFFFFFL) << 16) | (VERSION << 12) | (randA & 0xFFF);
+    }
+
+    private static long leastSigBits(long randB) {
+        return ((long)VARIANT << 62) | (randB & 0x3FFFFFFFFFFFFFFFL);
+    }
+}
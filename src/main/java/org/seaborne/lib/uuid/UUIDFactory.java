@@ -18,6 +18,7 @@
 
 package org.seaborne.lib.uuid;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 public class UUIDFactory {
@@ -27,4 +28,62 @@ public class UUIDFactory {
 
     /** Generate a UUID version 1. It uses a internal singleton {@linkplain UUIDCreatorV1} generator. */
     public static UUID generateV1() { return generator.create(); }
+
+    // Singleton for high throughput V1 allocation, created on first use.
+    private static class HighThroughput {
+        static final UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1HighThroughput();
+    }
+
+    /**
+     * Generate a UUID version 1 using an internal singleton generator that does not
+     * lock on each call. Use this when many threads allocate UUIDs concurrently.
+     */
+    public static UUID generateV1HighThroughput() { return HighThroughput.generator.create(); }
+
+    // Singletons for V6 and V7 allocation, created on first use.
+    private static class TimeOrderedV6 {
+        static final UUIDCreator generator = UUIDCreatorFactory.newGeneratorV6();
+    }
+
+    private static class TimeOrderedV7 {
+        static final UUIDCreator generator = UUIDCreatorFactory.newGeneratorV7();
+    }
+
+    /**
+     * Generate a UUID version 6. It uses a internal singleton {@linkplain UUIDCreatorV6} generator.
+     * Successive UUIDs sort in creation order.
+     */
+    public static UUID generateV6() { return TimeOrderedV6.generator.create(); }
+
+    /**
+     * Generate a UUID version 7. It uses a internal singleton {@linkplain UUIDCreatorV7} generator.
+     * Successive UUIDs sort in creation order.
+     */
+    public static UUID generateV7() { return TimeOrderedV7.generator.create(); }
+
+    // -- Batch allocation: no UUID objects.
+
+    /** Generate {@code count} version 1 UUIDs as (most, least) significant bit pairs into {@code dest} from {@code offset}. */
+    public static void generateV1(long[] dest, int offset, int count) { generator.create(dest, offset, count); }
+
+    /** Write {@code count} version 1 UUIDs, 16 bytes each, into {@code dest} at its position. */
+    public static void generateV1(ByteBuffer dest, int count) { generator.create(dest, count); }
+
+    /** Generate {@code count} version 1 UUIDs, using the high throughput generator, into {@code dest} from {@code offset}. */
+    public static void generateV1HighThroughput(long[] dest, int offset, int count) { HighThroughput.generator.create(dest, offset, count); }
+
+    /** Write {@code count} version 1 UUIDs, using the high throughput generator, into {@code dest} at its position. */
+    public static void generateV1HighThroughput(ByteBuffer dest, int count) { HighThroughput.generator.create(dest, count); }
+
+    /** Generate {@code count} version 6 UUIDs as (most, least) significant bit pairs into {@code dest} from {@code offset}. */
+    public static void generateV6(long[] dest, int offset, int count) { TimeOrderedV6.generator.create(dest, offset, count); }
+
+    /** Write {@code count} version 6 UUIDs, 16 bytes each, into {@code dest} at its position. */
+    public static void generateV6(ByteBuffer dest, int count) { TimeOrderedV6.generator.create(dest, count); }
+
+    /** Generate {@code count} version 7 UUIDs as (most, least) significant bit pairs into {@code dest} from {@code offset}. */
+    public static void generateV7(long[] dest, int offset, int count) { TimeOrderedV7.generator.create(dest, offset, count); }
+
+    /** Write {@code count} version 7 UUIDs, 16 bytes each, into {@code dest} at its position. */
+    public static void generateV7(ByteBuffer dest, int count) { TimeOrderedV7.generator.create(dest, count); }
 }
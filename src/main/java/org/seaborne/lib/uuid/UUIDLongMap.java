@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.lib.uuid;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A hash map from UUID to {@code long}, holding keys as pairs of longs with primitive
+ * values. There are no per-entry objects and lookups do not allocate.
+ * <p>
+ * Open addressing with linear probing. Each slot is three consecutive longs in one
+ * array (most significant bits, least significant bits, value) so a probe touches one
+ * cache line. Deletion shifts following entries back, so there are no tombstones.
+ * With a maximum load factor of 0.75, a table costs between 32 and 64 bytes per
+ * entry.
+ * <p>
+ * The nil UUID (all zeros) marks an empty slot; an entry with that key is held separately.
+ * <p>
+ * This class is not thread safe.
+ */
+public class UUIDLongMap {
+
+    /** Action for {@link #forEach}. */
+    @FunctionalInterface
+    public interface EntryAction {
+        public void accept(long mostSigBits, long leastSigBits, long value);
+    }
+
+    private static final int STRIDE = 3;
+    private static final int MIN_CAPACITY = 16;
+    // Resize when size > capacity * 3/4.
+    private static final int LOAD_NUM = 3;
+    private static final int LOAD_DEN = 4;
+
+    // Slot i is table[3*i] (msb), table[3*i+1] (lsb), table[3*i+2] (value).
+    private long[] table;
+    // Number of slots, a power of two.
+    private int capacity;
+    private int shift;
+    private int mask;
+    private int threshold;
+    // Entries in the table (does not include the nil key).
+    private int tableSize = 0;
+
+    private boolean hasNilKey = false;
+    private long nilValue = 0;
+
+    public UUIDLongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /** Create a map that can hold {@code expectedSize} entries without resizing. */
+    public UUIDLongMap(int expectedSize) {
+        if ( expectedSize < 0 )
+            throw new IllegalArgumentException("Negative size: "+expectedSize);
+        long slots = ((long)expectedSize * LOAD_DEN + LOAD_NUM - 1) / LOAD_NUM;
+        int cap = MIN_CAPACITY;
+        while ( cap < slots )
+            cap <<= 1;
+        allocate(cap);
+    }
+
+    private void allocate(int cap) {
+        if ( cap > (Integer.MAX_VALUE-8)/STRIDE )
+            throw new UUIDException("UUIDLongMap: too large");
+        capacity = cap;
+        mask = cap-1;
+        shift = 64 - Integer.numberOfTrailingZeros(cap);
+        threshold = (int)((long)cap * LOAD_NUM / LOAD_DEN);
+        table = new long[STRIDE*cap];
+    }
+
+    // Fibonacci hashing of both halves. The clock sequence and node (the least
+    // significant bits) are fixed for all UUIDs from one version 1 or version 6
+    // generator, and the high bits of the timestamp change slowly, so both halves
+    // are folded in before taking the top bits of the product.
+    private int slot(long mostSigBits, long leastSigBits) {
+        long h = (mostSigBits ^ Long.rotateLeft(leastSigBits, 32)) * 0x9E3779B97F4A7C15L;
+        return (int)(h >>> shift);
+    }
+
+    private static boolean isNil(long mostSigBits, long leastSigBits) {
+        return mostSigBits == 0 && leastSigBits == 0;
+    }
+
+    // Return the slot of the key or, if absent, minus (1 + the empty slot where it would go).
+    private int find(long mostSigBits, long leastSigBits) {
+        long[] t = table;
+        int i = slot(mostSigBits, leastSigBits);
+        for(;;) {
+            int idx = STRIDE*i;
+            long m = t[idx];
+            long l = t[idx+1];
+            if ( m == mostSigBits && l == leastSigBits )
+                return i;
+            if ( isNil(m, l) )
+                return -(i+1);
+            i = (i+1) & mask;
+        }
+    }
+
+    public boolean contains(UUID uuid) {
+        return contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public boolean contains(long mostSigBits, long leastSigBits) {
+        if ( isNil(mostSigBits, leastSigBits) )
+            return hasNilKey;
+        return find(mostSigBits, leastSigBits) >= 0;
+    }
+
+    /** Get the value for a key, or {@code dft} if the key is not in the map. */
+    public long get(UUID uuid, long dft) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), dft);
+    }
+
+    /** Get the value for a key, or {@code dft} if the key is not in the map. */
+    public long get(long mostSigBits, long leastSigBits, long dft) {
+        if ( isNil(mostSigBits, leastSigBits) )
+            return hasNilKey ? nilValue : dft;
+        int i = find(mostSigBits, leastSigBits);
+        if ( i < 0 )
+            return dft;
+        return table[STRIDE*i+2];
+    }
+
+    /** Set the value for a key. Return true if the key was not already in the map. */
+    public boolean put(UUID uuid, long value) {
+        return put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value);
+    }
+
+    /** Set the value for a key. Return true if the key was not already in the map. */
+    public boolean put(long mostSigBits, long leastSigBits, long value) {
+        if ( isNil(mostSigBits, leastSigBits) ) {
+            boolean isNew = !hasNilKey;
+            hasNilKey = true;
+            nilValue = value;
+            return isNew;
+        }
+        int i = find(mostSigBits, leastSigBits);
+        if ( i >= 0 ) {
+            table[STRIDE*i+2] = value;
+            return false;
+        }
+        if ( tableSize >= threshold ) {
+            resize();
+            i = find(mostSigBits, leastSigBits);
+        }
+        int idx = STRIDE*(-i-1);
+        table[idx] = mostSigBits;
+        table[idx+1] = leastSigBits;
+        table[idx+2] = value;
+        tableSize++;
+        return true;
+    }
+
+    /** Remove a key. Return true if the key was in the map. */
+    public boolean remove(UUID uuid) {
+        return remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /** Remove a key. Return true if the key was in the map. */
+    public boolean remove(long mostSigBits, long leastSigBits) {
+        if ( isNil(mostSigBits, leastSigBits) ) {
+            boolean wasPresent = hasNilKey;
+            hasNilKey = false;
+            nilValue = 0;
+            return wasPresent;
+        }
+        int i = find(mostSigBits, leastSigBits);
+        if ( i < 0 )
+            return false;
+        deleteSlot(i);
+        tableSize--;
+        return true;
+    }
+
+    // Backward shift deletion: move later entries of the probe sequence into the gap
+    // if their home slot is not cyclically in (gap, j].
+    private void deleteSlot(int gap) {
+        long[] t = table;
+        int j = gap;
+        for(;;) {
+            j = (j+1) & mask;
+            int idx = STRIDE*j;
+            long m = t[idx];
+            long l = t[idx+1];
+            if ( isNil(m, l) )
+                break;
+            int home = slot(m, l);
+            // Distance from home to j, and from gap to j, cyclically.
+            if ( ((j - home) & mask) >= ((j - gap) & mask) ) {
+                int g = STRIDE*gap;
+                t[g] = m;
+                t[g+1] = l;
+                t[g+2] = t[idx+2];
+                gap = j;
+            }
+        }
+        int g = STRIDE*gap;
+        t[g] = 0;
+        t[g+1] = 0;
+        t[g+2] = 0;
+    }
+
+    private void resize() {
+        long[] old = table;
+        allocate(2*capacity);
+        long[] t = table;
+        for ( int idx = 0 ; idx < old.length ; idx += STRIDE ) {
+            long m = old[idx];
+            long l = old[idx+1];
+            if ( isNil(m, l) )
+                continue;
+            int i = slot(m, l);
+            while ( !isNil(t[STRIDE*i], t[STRIDE*i+1]) )
+                i = (i+1) & mask;
+            int x = STRIDE*i;
+            t[x] = m;
+            t[x+1] = l;
+            t[x+2] = old[idx+2];
+        }
+    }
+
+    /** Apply an action to every entry, in no particular order. The map must not be modified by the action. */
+    public void forEach(EntryAction action) {
+        if ( hasNilKey )
+            action.accept(0, 0, nilValue);
+        long[] t = table;
+        for ( int idx = 0 ; idx < t.length ; idx += STRIDE ) {
+            long m = t[idx];
+            long l = t[idx+1];
+            if ( !isNil(m, l) )
+                action.accept(m, l, t[idx+2]);
+        }
+    }
+
+    public long size() {
+        return tableSize + (hasNilKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Remove all entries. The table keeps its current capacity. */
+    public void clear() {
+        Arrays.fill(table, 0);
+        tableSize = 0;
+        hasNilKey = false;
+        nilValue = 0;
+    }
+
+    /** Number of slots in the table. */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Check the internal consistency of the table. */
+    public void check() {
+        long[] t = table;
+        int count = 0;
+        for ( int i = 0 ; i < capacity ; i++ ) {
+            long m = t[STRIDE*i];
+            long l = t[STRIDE*i+1];
+            if ( isNil(m, l) ) {
+                if ( t[STRIDE*i+2] != 0 )
+                    throw new UUIDException("UUIDLongMap: value in empty slot "+i);
+                continue;
+            }
+            count++;
+            // Every slot from home to here must be occupied.
+            int home = slot(m, l);
+            for ( int j = home ; j != i ; j = (j+1) & mask ) {
+                if ( isNil(t[STRIDE*j], t[STRIDE*j+1]) )
+                    throw new UUIDException("UUIDLongMap: gap in probe sequence at "+j+" for slot "+i);
+            }
+        }
+        if ( count != tableSize )
+            throw new UUIDException("UUIDLongMap: size = "+tableSize+" but found "+count);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UUIDLongMap[size=%d, capacity=%d]", size(), capacity);
+    }
+}
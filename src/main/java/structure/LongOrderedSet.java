@@ -0,0 +1,61 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure;
+
+import java.util.PrimitiveIterator ;
+
+/**
+ * {@link OrderedSet} specialized to {@code long} keys : no boxing, and
+ * comparisons are primitive. The range iterator is start inclusive, end exclusive.
+ */
+public interface LongOrderedSet
+{
+    /** Clear all elements */ 
+    public void clear() ;
+
+    public boolean contains(long item) ;
+
+    public boolean isEmpty() ;
+    
+    /** Add an element - return true if it was not already in the set. */ 
+    public boolean add(long item) ;
+    
+    /** Remove an element - return true if it was in the set. */ 
+    public boolean remove(long item) ;
+
+    /** Largest element. @throws java.util.NoSuchElementException if the set is empty. */
+    public long max() ;
+
+    /** Smallest element. @throws java.util.NoSuchElementException if the set is empty. */
+    public long min() ;
+    
+    /** Number of elements */
+    public long size() ;
+    
+    /** Size by actually counting the elements in the structure. */
+    public long count() ;
+    
+    public void checkTree() ;
+    
+    /** Collect all the elements into an array, in order. */
+    public long[] elements() ;
+
+    public PrimitiveIterator.OfLong iterator() ;
+
+    public PrimitiveIterator.OfLong iterator(long startInc, long endExc) ;
+}
@@ -87,6 +87,8 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
     public static boolean Logging = false ;
 
     private AvlNode<T> root = null ;
+    // Number of records in the tree, maintained by insert and delete.
+    private long size = 0 ;
     
     //---
     
@@ -94,6 +96,47 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
     {
     }
 
+    /**
+     * Build a perfectly balanced tree from records in strictly increasing order,
+     * in O(n) without comparisons beyond checking the order or any rotations.
+     * @throws TreeException if the input contains duplicates or is out of order.
+     */
+    public static <T extends Comparable<? super T>> AVL<T> bulkLoad(Iterator<T> sorted)
+    {
+        List<T> records = new ArrayList<T>() ;
+        T prev = null ;
+        while ( sorted.hasNext() )
+        {
+            T rec = sorted.next() ;
+            checkNotNull(rec) ;
+            if ( prev != null && prev.compareTo(rec) >= 0 )
+                throw new TreeException(format("Bulk load: not strictly increasing: %s then %s", prev, rec)) ;
+            records.add(rec) ;
+            prev = rec ;
+        }
+        AVL<T> avl = new AVL<T>() ;
+        avl.root = build(records, 0, records.size(), null) ;
+        avl.size = records.size() ;
+        avl.checkTree() ;
+        return avl ;
+    }
+
+    public static <T extends Comparable<? super T>> AVL<T> bulkLoad(Iterable<T> sorted)
+    { return bulkLoad(sorted.iterator()) ; }
+
+    // Middle record of [start, finish) as the subtree root.
+    private static <R extends Comparable<? super R>> AvlNode<R> build(List<R> records, int start, int finish, AvlNode<R> parent)
+    {
+        if ( start >= finish )
+            return null ;
+        int mid = (start+finish) >>> 1 ;
+        AvlNode<R> node = new AvlNode<R>(records.get(mid), parent) ;
+        node.left = build(records, start, mid, node) ;
+        node.right = build(records, mid+1, finish, node) ;
+        setHeight(node) ;
+        return node ;
+    }
+
     @Override
     public boolean contains(T record)
     { return search(record) != null ; }
@@ -185,7 +228,7 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
     }
 
     @Override
-    public void clear()         { root = null ; }
+    public void clear()         { root = null ; size = 0 ; }
     
     // -------- Search
     
@@ -272,8 +315,8 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
             // Somewhere in the left tree , but maybe this node.
             return findNodeAbove(node.left, record, node) ; 
         else if ( x > 0 )
-            // This node is below the target.  
-            return bestGuess ;
+            // This node is below the target - but there may be a closer one in the right tree.  
+            return findNodeAbove(node.right, record, bestGuess) ;
         else
             // Found.
             return node ;
@@ -303,8 +346,8 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
         
         int x = record.compareTo(node.record) ;
         if ( x < 0 )
-            // This node is above the target.  
-            return bestGuess ;
+            // This node is above the target - but there may be a closer one in the left tree.  
+            return findNodeBelow(node.left, record, bestGuess) ;
         else if ( x > 0 )
             // Somewhere in the right tree, but maybe this node.
             return findNodeBelow(node.right, record, node) ;
@@ -345,6 +388,7 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
             if ( Verbose )
                 log.debug("-- insertAtNode : new root") ;
             root = new AvlNode<T>(newRecord, null) ;
+            size++ ;
             return true ;
         }
         
@@ -386,6 +430,7 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
         
         // Bottom of tree.  node == null.
         // Set heights and rebalance.
+        size++ ;
         rebalanceInsert(parent) ;
         return true ;
     }
@@ -431,6 +476,7 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
         if ( node == null )
             // Not found.
             return false ;
+        size-- ;
         
         // -- swapNode is the node with the replacement record.
         // If node is a leaf, then swapNode == node
@@ -758,8 +804,9 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
 
     
     @Override
-    public long size()  { return count() ; }
+    public long size()  { return size ; }
     
+    // Size by actually counting the tree
     @Override
     public long count()
     {
@@ -828,6 +875,8 @@ public class AVL<T extends Comparable<? super T>> implements Printable, OrderedS
                 brokenTree(root, "Root parent is not null") ;
             root.checkDeep() ;
         }
+        if ( size != count() )
+            throw new TreeException(format("Size is %d but the tree has %d records", size, count())) ;
             
     }
     
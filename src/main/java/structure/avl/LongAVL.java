@@ -0,0 +1,633 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.avl;
+
+import static java.lang.String.format ;
+import static org.apache.jena.atlas.io.IndentedWriter.stdout ;
+
+import java.util.NoSuchElementException ;
+import java.util.PrimitiveIterator ;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+import org.apache.jena.atlas.io.PrintUtils ;
+import org.apache.jena.atlas.io.Printable ;
+import structure.LongOrderedSet ;
+import structure.tree.TreeException ;
+
+/**
+ * {@link AVL} specialized to {@code long} keys.
+ * The key is a field of the node, so there is no boxed object per element,
+ * and comparisons are primitive. The algorithms are the same as {@link AVL},
+ * including rotations that keep the top node object as the top node.
+ */
+public class LongAVL implements Printable, LongOrderedSet
+{
+    static final int InitialHeight = AVL.InitialHeight ;
+
+    public static boolean Checking = false ;
+
+    private Node root = null ;
+    // Number of keys in the tree, maintained by add and remove.
+    private long size = 0 ;
+
+    public LongAVL()
+    {
+    }
+
+    /**
+     * Build a perfectly balanced tree from keys in strictly increasing order, in O(n).
+     * @throws TreeException if the input contains duplicates or is out of order.
+     */
+    public static LongAVL bulkLoad(long[] sorted)
+    {
+        for ( int i = 1 ; i < sorted.length ; i++ )
+        {
+            if ( sorted[i-1] >= sorted[i] )
+                throw new TreeException(format("Bulk load: not strictly increasing: %d then %d", sorted[i-1], sorted[i])) ;
+        }
+        LongAVL avl = new LongAVL() ;
+        avl.root = build(sorted, 0, sorted.length, null) ;
+        avl.size = sorted.length ;
+        avl.checkTree() ;
+        return avl ;
+    }
+
+    // Middle key of [start, finish) as the subtree root.
+    private static Node build(long[] keys, int start, int finish, Node parent)
+    {
+        if ( start >= finish )
+            return null ;
+        int mid = (start+finish) >>> 1 ;
+        Node node = new Node(keys[mid], parent) ;
+        node.left = build(keys, start, mid, node) ;
+        node.right = build(keys, mid+1, finish, node) ;
+        setHeight(node) ;
+        return node ;
+    }
+
+    @Override
+    public boolean contains(long key)
+    {
+        Node node = root ;
+        while ( node != null )
+        {
+            if ( key < node.key )
+                node = node.left ;
+            else if ( key > node.key )
+                node = node.right ;
+            else
+                return true ;
+        }
+        return false ;
+    }
+
+    @Override
+    public boolean isEmpty()
+    { return root == null ; }
+
+    @Override
+    public boolean add(long key)
+    {
+        boolean b = insertAtNode(key) ;
+        checkTree() ;
+        return b ;
+    }
+
+    @Override
+    public boolean remove(long key)
+    {
+        if ( root == null )
+            return false ;
+        boolean b = delete(root, key) ;
+        checkTree() ;
+        return b ;
+    }
+
+    @Override
+    public long max()
+    {
+        if ( root == null )
+            throw new NoSuchElementException("LongAVL.max") ;
+        return getRightDeep(root).key ;
+    }
+
+    @Override
+    public long min()
+    {
+        if ( root == null )
+            throw new NoSuchElementException("LongAVL.min") ;
+        return getLeftDeep(root).key ;
+    }
+
+    @Override
+    public void clear()         { root = null ; size = 0 ; }
+
+    // -------- Search
+
+    /** The node with the same or least higher key, or null if no such node. */
+    private Node findNodeAbove(long key)
+    {
+        Node node = root ;
+        Node bestGuess = null ;
+        while ( node != null )
+        {
+            if ( key < node.key )
+            {
+                // Somewhere in the left tree, but maybe this node.
+                bestGuess = node ;
+                node = node.left ;
+            }
+            else if ( key > node.key )
+                node = node.right ;
+            else
+                return node ;
+        }
+        return bestGuess ;
+    }
+
+    // -------- Insert
+
+    // Insert a key - return true on change (i.e. not already in tree)
+    private boolean insertAtNode(long key)
+    {
+        if ( root == null )
+        {
+            root = new Node(key, null) ;
+            size++ ;
+            return true ;
+        }
+
+        Node node = root ;
+        Node parent = null ;
+        for ( ;; )
+        {
+            parent = node ;
+            if ( key < node.key )
+            {
+                node = node.left ;
+                if ( node == null )
+                {
+                    parent.left = new Node(key, parent) ;
+                    break ;
+                }
+            }
+            else if ( key > node.key )
+            {
+                node = node.right ;
+                if ( node == null )
+                {
+                    parent.right = new Node(key, parent) ;
+                    break ;
+                }
+            }
+            else
+                // Same : no action needed, no rebalance.
+                return false ;
+        }
+        size++ ;
+        rebalanceInsert(parent) ;
+        return true ;
+    }
+
+    private void rebalanceInsert(Node node)
+    {
+        while ( node != null )
+        {
+            if ( ! rebalance(node) )
+                return ;
+            node = node.parent ;
+        }
+    }
+
+    private void rebalanceDelete(Node node)
+    {
+        while ( node != null )
+        {
+            rebalance(node) ;
+            node = node.parent ;
+        }
+    }
+
+    // -------- Delete
+
+    private boolean delete(Node node, long key)
+    {
+        while ( node != null )
+        {
+            if ( key < node.key )
+                node = node.left ;
+            else if ( key > node.key )
+                node = node.right ;
+            else
+                break ;
+        }
+        if ( node == null )
+            return false ;
+        size-- ;
+
+        // -- swapNode is the node with the replacement key.
+        // If node is a leaf, then swapNode == node
+        Node swapNode ;
+        if ( node.left != null )
+        {
+            swapNode = getRightDeep(node.left) ;
+            node.key = swapNode.key ;
+        }
+        else if ( node.right != null )
+        {
+            swapNode = getLeftDeep(node.right) ;
+            node.key = swapNode.key ;
+        }
+        else
+            swapNode = node ;
+
+        // swapNode is a half-leaf or leaf : splice it out.
+        Node subTree = ( swapNode.left != null ) ? swapNode.left : swapNode.right ;
+        if ( subTree != null )
+            subTree.parent = swapNode.parent ;
+
+        if ( swapNode.parent == null )
+        {
+            root = subTree ;
+            return true ;
+        }
+
+        if ( swapNode.parent.left == swapNode )
+            swapNode.parent.left = subTree ;
+        else
+            swapNode.parent.right = subTree ;
+        rebalanceDelete(swapNode.parent) ;
+        return true ;
+    }
+
+    // Returns whether the height of the node changed.
+    private boolean rebalance(Node node)
+    {
+        int bal = balance(node.left, node.right) ;
+        if ( bal < -2 || bal > 2 )
+            brokenTree(node, "Unbalanced") ;
+
+        int h = node.height ;
+
+        if ( bal == 2 )
+        {
+            if ( height(node.right.left) > height(node.right.right) )
+                pivotRightLeft(node) ;
+            else
+                pivotRight(node) ;
+        }
+        else if ( bal == -2 )
+        {
+            if ( height(node.left.right) > height(node.left.left) )
+                pivotLeftRight(node) ;
+            else
+                pivotLeft(node) ;
+        }
+        setHeight(node) ;
+        return h != node.height ;
+    }
+
+    private static void setHeight(Node node)
+    {
+        node.height = Math.max(height(node.left), height(node.right)) + 1 ;
+    }
+
+    private static int height(Node node)
+    {
+        if ( node == null )
+            return InitialHeight-1 ;
+        return node.height ;
+    }
+
+    private static int balance(Node left, Node right)
+    {
+        return height(right) - height(left) ;
+    }
+
+    // ---- Rotations : see AVL for the naming. These act in-place.
+
+    // (R1 (R2 A B) C) ==> (R2 A (R1 B C))
+    private static void pivotLeft(Node node)
+    {
+        Node n = node.left ;
+        long r1 = node.key ;
+        long r2 = n.key ;
+        Node a = n.left ;
+        Node b = n.right ;
+        Node c = node.right ;
+
+        n.set(r1, node, b, c) ;
+        setHeight(n) ;
+        if ( a != null ) a.parent = node ;
+        if ( c != null ) c.parent = n ;
+
+        node.set(r2, node.parent, a, n) ;
+        setHeight(node) ;
+    }
+
+    // (R1 A (R2 B C)) ==> (R2 (R1 A B) C)
+    private static void pivotRight(Node node)
+    {
+        Node n = node.right ;
+        long r1 = node.key ;
+        long r2 = n.key ;
+        Node a = node.left ;
+        Node b = n.left ;
+        Node c = n.right ;
+
+        n.set(r1, node, a, b) ;
+        setHeight(n) ;
+        if ( a != null ) a.parent = n ;
+        if ( c != null ) c.parent = node ;
+
+        node.set(r2, node.parent, n, c) ;
+        setHeight(node) ;
+    }
+
+    // (R3 (R1 A (R2 B C)) D) ==> (R2 (R1 A B) (R3 C D))
+    private static void pivotLeftRight(Node node)
+    {
+        Node n1 = node.left ;
+        Node n2 = node.left.right ;
+        long r3 = node.key ;
+        long r1 = n1.key ;
+        long r2 = n2.key ;
+        Node a = n1.left ;
+        Node b = n2.left ;
+        Node c = n2.right ;
+        Node d = node.right ;
+
+        // Reuse nodes ; n1 becomes the R1 node, n2 the R3 node.
+        n1.set(r1, node, a, b) ;
+        setHeight(n1) ;
+        n2.set(r3, node, c, d) ;
+        setHeight(n2) ;
+
+        if ( a != null ) a.parent = n1 ;
+        if ( b != null ) b.parent = n1 ;
+        if ( c != null ) c.parent = n2 ;
+        if ( d != null ) d.parent = n2 ;
+
+        node.set(r2, node.parent, n1, n2) ;
+        setHeight(node) ;
+    }
+
+    // (R1 A (R3 (R2 B C) D)) ==> (R2 (R1 A B) (R3 C D))
+    private static void pivotRightLeft(Node node)
+    {
+        Node n1 = node.right ;
+        Node n2 = node.right.left ;
+        long r1 = node.key ;
+        long r3 = n1.key ;
+        long r2 = n2.key ;
+        Node a = node.left ;
+        Node b = n2.left ;
+        Node c = n2.right ;
+        Node d = n1.right ;
+
+        // Reuse nodes ; n1 becomes the R1 node, n2 the R3 node.
+        n1.set(r1, node, a, b) ;
+        setHeight(n1) ;
+        n2.set(r3, node, c, d) ;
+        setHeight(n2) ;
+
+        if ( a != null ) a.parent = n1 ;
+        if ( b != null ) b.parent = n1 ;
+        if ( c != null ) c.parent = n2 ;
+        if ( d != null ) d.parent = n2 ;
+
+        node.set(r2, node.parent, n1, n2) ;
+        setHeight(node) ;
+    }
+
+    // ---- Iteration
+
+    @Override
+    public PrimitiveIterator.OfLong iterator()
+    { return new LongAvlIterator(root == null ? null : getLeftDeep(root), Long.MAX_VALUE, false) ; }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator(long startInc, long endExc)
+    { return new LongAvlIterator(findNodeAbove(startInc), endExc, true) ; }
+
+    private static Node getRightDeep(Node node)
+    {
+        while ( node.right != null )
+            node = node.right ;
+        return node ;
+    }
+
+    private static Node getLeftDeep(Node node)
+    {
+        while ( node.left != null )
+            node = node.left ;
+        return node ;
+    }
+
+    /** Next node in key order, or null. */
+    private static Node successor(Node node)
+    {
+        if ( node.right != null )
+            return getLeftDeep(node.right) ;
+        while ( node.parent != null && node.parent.right == node )
+            node = node.parent ;
+        return node.parent ;
+    }
+
+    @Override
+    public long size()  { return size ; }
+
+    // Size by actually counting the tree
+    @Override
+    public long count()
+    {
+        return count(root) ;
+    }
+
+    private static long count(Node node)
+    {
+        if ( node == null )
+            return 0 ;
+        return 1 + count(node.left) + count(node.right) ;
+    }
+
+    @Override
+    public long[] elements()
+    {
+        long[] x = new long[(int)count()] ;
+        elements(root, x, 0) ;
+        return x ;
+    }
+
+    // Walk the tree structure, not the iterator, so this can be used to test the iterator.
+    private static int elements(Node node, long[] x, int idx)
+    {
+        if ( node == null )
+            return idx ;
+        idx = elements(node.left, x, idx) ;
+        x[idx++] = node.key ;
+        return elements(node.right, x, idx) ;
+    }
+
+    @Override
+    public String toString() { return PrintUtils.toString(this) ; }
+
+    public void output()
+    {
+        output(stdout) ;
+    }
+
+    @Override
+    public void output(IndentedWriter out)
+    {
+        if ( root == null )
+            out.print("<empty>") ;
+        else
+            output(out, root) ;
+        out.ensureStartOfLine() ;
+        out.flush() ;
+    }
+
+    private static void output(IndentedWriter out, Node node)
+    {
+        if ( node == null )
+        {
+            out.print("_") ;
+            return ;
+        }
+        if ( node.left == null && node.right == null )
+        {
+            out.print(Long.toString(node.key)) ;
+            return ;
+        }
+        out.print("(") ;
+        out.print(Long.toString(node.key)) ;
+        out.print(" ") ;
+        output(out, node.left) ;
+        out.print(" ") ;
+        output(out, node.right) ;
+        out.print(")") ;
+    }
+
+    // ---- Checking
+
+    @Override
+    final public void checkTree()
+    {
+        if ( ! Checking )
+            return ;
+        if ( root != null )
+        {
+            if ( root.parent != null )
+                brokenTree(root, "Root parent is not null") ;
+            checkDeep(root, Long.MIN_VALUE, Long.MAX_VALUE) ;
+        }
+        if ( size != count() )
+            throw new TreeException(format("Size is %d but the tree has %d keys", size, count())) ;
+    }
+
+    // Check the subtree, all of whose keys must be in [lo, hi].
+    private void checkDeep(Node node, long lo, long hi)
+    {
+        if ( node.key < lo || node.key > hi )
+            brokenTree(node, "Out of order") ;
+        if ( node.left != null && node.left.parent != node )
+            brokenTree(node, "Left child does not point back to this node") ;
+        if ( node.right != null && node.right.parent != node )
+            brokenTree(node, "Right child does not point back to this node") ;
+        int bal = balance(node.left, node.right) ;
+        if ( bal < -1 || bal > 1 )
+            brokenTree(node, "Out of balance "+bal) ;
+        if ( node.height != Math.max(height(node.left), height(node.right)) + 1 )
+            brokenTree(node, "Height is wrong") ;
+        // Keys are distinct, so node.key-1 and node.key+1 do not overflow where there is a subtree.
+        if ( node.left != null )
+            checkDeep(node.left, lo, node.key-1) ;
+        if ( node.right != null )
+            checkDeep(node.right, node.key+1, hi) ;
+    }
+
+    final void brokenTree(Node node, String msg)
+    {
+        IndentedWriter.stderr.println() ;
+        output(IndentedWriter.stderr) ;
+        throw new TreeException(msg+" : "+node.key) ;
+    }
+
+    // ---- Node and iterator.
+
+    static final class Node
+    {
+        long key ;
+        int height = InitialHeight ;
+        Node parent ;
+        Node left ;
+        Node right ;
+
+        Node(long key, Node parent)
+        {
+            this.key = key ;
+            this.parent = parent ;
+        }
+
+        void set(long key, Node parent, Node left, Node right)
+        {
+            this.key = key ;
+            this.parent = parent ;
+            this.left = left ;
+            this.right = right ;
+        }
+    }
+
+    private static final class LongAvlIterator implements PrimitiveIterator.OfLong
+    {
+        private Node node ;
+        private final long limit ;          // Exclusive
+        private final boolean bounded ;
+
+        LongAvlIterator(Node node, long limit, boolean bounded)
+        {
+            this.node = node ;
+            this.limit = limit ;
+            this.bounded = bounded ;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if ( node == null )
+                return false ;
+            if ( bounded && node.key >= limit )
+            {
+                node = null ;
+                return false ;
+            }
+            return true ;
+        }
+
+        @Override
+        public long nextLong()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException("LongAvlIterator") ;
+            long k = node.key ;
+            node = successor(node) ;
+            return k ;
+        }
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.exthash;
+
+import static java.lang.String.format;
+import static java.lang.System.arraycopy;
+import static structure.exthash.ExtHashMem.index;
+import static structure.exthash.ExtHashMem.keyHash;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.jena.atlas.io.IndentedLineBuffer;
+import org.apache.jena.atlas.io.IndentedWriter;
+
+/** Extensible hashing, safe for use by many threads.
+ * <p>
+ * The same bit-trie layout as {@link ExtHashMem}, with:
+ * <ul>
+ * <li>a lock per bucket ({@link StampedLock}) : put, remove and bucket splits
+ * write-lock only the bucket they change.
+ * <li>the dictionary held in a volatile reference. Doubling builds a new dictionary
+ * and publishes it in one write. Splits write dictionary slots under the shared side of a
+ * dictionary lock, doubling takes the exclusive side, so no slot update is lost
+ * by being copied from the old dictionary too early.
+ * <li>{@link #get} does not lock. It reads the bucket in optimistic mode and
+ * validates the bucket's stamp, and checks the bucket still covers the hash
+ * (it may have been split meanwhile) ; on failure it retries.
+ * <li>overflow chains, as {@link ExtHashMem}, with the same policy for when to
+ * chain rather than double the dictionary. A chain is guarded by the lock of the
+ * bucket in the dictionary ; overflow buckets do not use their own locks.
+ * </ul>
+ * Unlike ExtHashMem, keys are stored, so keys with the same hash are told apart.
+ */
+public class ConcurrentExtHash<K,V>
+{
+    public static boolean Checking = false ;        // Perform internal checking
+
+    // Only the bucket ids are for debugging.
+    private final AtomicInteger bucketCounter = new AtomicInteger(0) ;
+
+    private volatile Dictionary<K,V> dictionary ;
+    // Shared : writing slots when splitting. Exclusive : doubling the dictionary.
+    private final ReentrantReadWriteLock dictionaryLock = new ReentrantReadWriteLock() ;
+
+    private final LongAdder size = new LongAdder() ;
+    // Number of buckets in the dictionary, not counting overflow buckets.
+    private final AtomicInteger numBuckets = new AtomicInteger(1) ;
+
+    final int bucketSize ;
+
+    public ConcurrentExtHash() { this(ExtHashMem.DefaultBucketSize) ; }
+
+    public ConcurrentExtHash(int bucketSize)
+    {
+        if ( bucketSize < 1 )
+            throw new IllegalArgumentException("Bucket size must be at least 1: "+bucketSize) ;
+        this.bucketSize = bucketSize ;
+        Dictionary<K,V> dict = new Dictionary<K,V>(0) ;
+        dict.slots.set(0, new Bucket<K,V>(0, 0, bucketSize, bucketCounter.getAndIncrement())) ;
+        dictionary = dict ;
+    }
+
+    public boolean contains(K key)
+    {
+        return get(key) != null ;
+    }
+
+    /** Get the value for a key, or null. Does not lock in the common case. */
+    public V get(K key)
+    {
+        int hash = keyHash(key) ;
+        for ( ;; )
+        {
+            Bucket<K,V> bucket = dictionary.bucket(hash) ;
+            StampedLock lock = bucket.lock ;
+            long stamp = lock.tryOptimisticRead() ;
+            if ( stamp != 0 )
+            {
+                // Read into locals, then validate before acting on them.
+                boolean covers = bucket.covers(hash) ;
+                V value = bucket.findInChain(hash, key) ;
+                if ( lock.validate(stamp) )
+                {
+                    if ( covers )
+                        return value ;
+                    // Split since the dictionary was read.
+                    continue ;
+                }
+            }
+            // Writer active : wait for it.
+            stamp = lock.readLock() ;
+            try {
+                if ( bucket.covers(hash) )
+                    return bucket.findInChain(hash, key) ;
+            } finally { lock.unlockRead(stamp) ; }
+        }
+    }
+
+    /** Set the value for a key - return the previous value or null. */
+    public V put(K key, V value)
+    {
+        Objects.requireNonNull(key, "key") ;
+        Objects.requireNonNull(value, "value") ;
+        int hash = keyHash(key) ;
+        for ( ;; )
+        {
+            Bucket<K,V> bucket = dictionary.bucket(hash) ;
+            long stamp = bucket.lock.writeLock() ;
+            int dictBitLen ;
+            try {
+                if ( ! bucket.covers(hash) )
+                    // Split after the dictionary was read.
+                    continue ;
+                for ( Bucket<K,V> b = bucket ; b != null ; b = b.overflow )
+                {
+                    int i = b.findIndex(hash, key) ;
+                    if ( i >= 0 )
+                    {
+                        @SuppressWarnings("unchecked")
+                        V old = (V)b.items[i] ;
+                        b.items[i] = value ;
+                        return old ;
+                    }
+                }
+                Bucket<K,V> b = bucket.withRoom() ;
+                if ( b != null )
+                {
+                    b.insert(-(b.findIndex(hash, key)+1), hash, key, value) ;
+                    size.increment() ;
+                    return null ;
+                }
+                // Bucket (and any chain) full : split, if the dictionary is long enough,
+                // or chain, while holding the bucket.
+                dictionaryLock.readLock().lock() ;
+                try {
+                    Dictionary<K,V> dict = dictionary ;
+                    dictBitLen = dict.bitLen ;
+                    if ( bucket.bucketBitLen < dictBitLen )
+                    {
+                        splitAndReorganise(dict, bucket) ;
+                        continue ;
+                    }
+                    if ( chainRatherThanDouble(bucket, dictBitLen) )
+                    {
+                        addOverflow(bucket) ;
+                        continue ;
+                    }
+                } finally { dictionaryLock.readLock().unlock() ; }
+            } finally { bucket.lock.unlockWrite(stamp) ; }
+            // Bucket not splitable : expand the dictionary and try again.
+            // No bucket lock is held here.
+            resizeDictionary(dictBitLen) ;
+        }
+    }
+
+    /** Remove a key - return the value removed or null. */
+    public V remove(K key)
+    {
+        int hash = keyHash(key) ;
+        for ( ;; )
+        {
+            Bucket<K,V> bucket = dictionary.bucket(hash) ;
+            long stamp = bucket.lock.writeLock() ;
+            try {
+                if ( ! bucket.covers(hash) )
+                    continue ;
+                Bucket<K,V> prev = null ;
+                for ( Bucket<K,V> b = bucket ; b != null ; prev = b, b = b.overflow )
+                {
+                    int i = b.findIndex(hash, key) ;
+                    if ( i < 0 )
+                        continue ;
+                    @SuppressWarnings("unchecked")
+                    V old = (V)b.items[i] ;
+                    b.delete(i) ;
+                    size.decrement() ;
+                    if ( b.size == 0 && prev != null )
+                        // Empty overflow bucket : unlink.
+                        prev.overflow = b.overflow ;
+                    return old ;
+                }
+                return null ;
+            } finally { bucket.lock.unlockWrite(stamp) ; }
+        }
+    }
+
+    /** Number of entries - exact when there are no concurrent changes. */
+    public long size()
+    {
+        return size.sum() ;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0 ;
+    }
+
+    /** Number of slots in the dictionary. */
+    public int dictionarySize()
+    {
+        return 1<<dictionary.bitLen ;
+    }
+
+    /** Dictionary slots per bucket, not counting overflow buckets. */
+    public double dictionaryRatio()
+    {
+        return (double)dictionarySize()/numBuckets.get() ;
+    }
+
+    /** Longest chain of buckets, including the bucket in the dictionary - exact when there are no concurrent changes. */
+    public int maxChainLength()
+    {
+        Dictionary<K,V> dict = dictionary ;
+        int max = 0 ;
+        for ( int i = 0 ; i < dict.slots.length() ; i++ )
+        {
+            int n = 0 ;
+            for ( Bucket<K,V> b = dict.slots.get(i) ; b != null ; b = b.overflow )
+                n++ ;
+            max = Math.max(max, n) ;
+        }
+        return max ;
+    }
+
+    // =====================
+
+    // Bucket is full and its bit length is the dictionary's. See ExtHashMem.chainRatherThanDouble.
+    private boolean chainRatherThanDouble(Bucket<K,V> bucket, int bitLen)
+    {
+        int min = Integer.MAX_VALUE ;
+        int max = Integer.MIN_VALUE ;
+        int chainLength = 0 ;
+        for ( Bucket<K,V> b = bucket ; b != null ; b = b.overflow )
+        {
+            chainLength++ ;
+            if ( b.size == 0 )
+                continue ;
+            min = Math.min(min, b.hashes[0]) ;
+            max = Math.max(max, b.hashes[b.size-1]) ;
+        }
+        return ExtHashMem.chainRatherThanDouble(min, max, chainLength, bitLen, numBuckets.get(), size.sum()) ;
+    }
+
+    // Caller holds the bucket write lock.
+    private void addOverflow(Bucket<K,V> bucket)
+    {
+        Bucket<K,V> b = bucket ;
+        while ( b.overflow != null )
+            b = b.overflow ;
+        b.overflow = new Bucket<K,V>(bucket.hash, bucket.bucketBitLen, bucketSize, bucketCounter.getAndIncrement()) ;
+    }
+
+    // Double the dictionary, unless some other thread has already done so.
+    private void resizeDictionary(int bitLen)
+    {
+        dictionaryLock.writeLock().lock() ;
+        try {
+            Dictionary<K,V> dict = dictionary ;
+            if ( dict.bitLen != bitLen )
+                return ;
+            if ( bitLen >= 31 )
+                error("Bucket overflow : all %d entries have the same hash", bucketSize) ;
+            Dictionary<K,V> newDict = new Dictionary<K,V>(bitLen+1) ;
+            int oldSize = 1<<bitLen ;
+            for ( int i = 0 ; i < oldSize ; i++ )
+            {
+                Bucket<K,V> b = dict.slots.get(i) ;
+                newDict.slots.lazySet(2*i, b) ;
+                newDict.slots.lazySet(2*i+1, b) ;
+            }
+            // Publish.
+            dictionary = newDict ;
+        } finally { dictionaryLock.writeLock().unlock() ; }
+    }
+
+    // Caller holds the bucket write lock and the shared dictionary lock.
+    private void splitAndReorganise(Dictionary<K,V> dict, Bucket<K,V> bucket)
+    {
+        int bitLen = dict.bitLen ;
+        int bucketHash = bucket.hash ;
+        int bucketHashLength = bucket.bucketBitLen ;
+
+        Bucket<K,V> bucket2 = split(bucket) ;
+        numBuckets.incrementAndGet() ;
+
+        // See ExtHashMem.splitAndReorganise.
+        int trieUpperRoot = ((bucketHash<<1)|0x1) << (bitLen-bucketHashLength-1) ;
+        int trieUpperRange = (1<<(bitLen-bucketHashLength-1)) ;
+        for ( int j = 0 ; j < trieUpperRange ; j++ )
+        {
+            int k = trieUpperRoot | j ;
+            if ( Checking && dict.slots.get(k) != bucket )
+                error("split: Wrong bucket at trie (0x%X,%d)", trieUpperRoot, j) ;
+            dict.slots.set(k, bucket2) ;
+        }
+    }
+
+    // Bucket becomes the lower half, and the new bucket, the upper half, is returned.
+    private Bucket<K,V> split(Bucket<K,V> bucket)
+    {
+        int bucketBitLen = bucket.bucketBitLen+1 ;
+        int hash1 = bucket.hash << 1 ;
+        int hash2 = (bucket.hash << 1) | 0x1 ;
+        Bucket<K,V> bucket2 = new Bucket<K,V>(hash2, bucketBitLen, bucketSize, bucketCounter.getAndIncrement()) ;
+
+        if ( bucket.overflow != null )
+        {
+            bucket.hash = hash1 ;
+            bucket.bucketBitLen = bucketBitLen ;
+            splitChain(bucket, bucket2) ;
+            return bucket2 ;
+        }
+
+        // Split value is where hash2 starts - scaled up to align to full key length
+        int x = hash2 << (31-bucketBitLen) ;
+        int split = Arrays.binarySearch(bucket.hashes, 0, bucket.size, x) ;
+        if ( split < 0 )
+            split = -(split+1) ;
+        else
+        {
+            // Several entries may have the hash : start at the first.
+            while ( split > 0 && bucket.hashes[split-1] == x )
+                split-- ;
+        }
+
+        int n = bucket.size-split ;
+        arraycopy(bucket.hashes, split, bucket2.hashes, 0, n) ;
+        arraycopy(bucket.keys,   split, bucket2.keys,   0, n) ;
+        arraycopy(bucket.items,  split, bucket2.items,  0, n) ;
+        bucket2.size = n ;
+
+        Arrays.fill(bucket.keys,  split, bucket.size, null) ;
+        Arrays.fill(bucket.items, split, bucket.size, null) ;
+        bucket.size = split ;
+        bucket.hash = hash1 ;
+        bucket.bucketBitLen = bucketBitLen ;
+        return bucket2 ;
+    }
+
+    // Split a bucket with overflow buckets : redistribute all the entries of the
+    // chain between the lower bucket (bucket) and the upper one (bucket2).
+    // Bucket has its new hash and bit length.
+    private void splitChain(Bucket<K,V> bucket, Bucket<K,V> bucket2)
+    {
+        int n = 0 ;
+        for ( Bucket<K,V> b = bucket ; b != null ; b = b.overflow )
+            n += b.size ;
+        int[] hashes = new int[n] ;
+        Object[] keys = new Object[n] ;
+        Object[] items = new Object[n] ;
+        int j = 0 ;
+        for ( Bucket<K,V> b = bucket ; b != null ; b = b.overflow )
+        {
+            arraycopy(b.hashes, 0, hashes, j, b.size) ;
+            arraycopy(b.keys,   0, keys,   j, b.size) ;
+            arraycopy(b.items,  0, items,  j, b.size) ;
+            j += b.size ;
+        }
+        bucket.overflow = null ;
+        bucket.size = 0 ;
+        Arrays.fill(bucket.keys, null) ;
+        Arrays.fill(bucket.items, null) ;
+        for ( int i = 0 ; i < n ; i++ )
+        {
+            Bucket<K,V> target = bucket.covers(hashes[i]) ? bucket : bucket2 ;
+            Bucket<K,V> b = target.withRoom() ;
+            if ( b == null )
+            {
+                addOverflow(target) ;
+                b = target.withRoom() ;
+            }
+            @SuppressWarnings("unchecked")
+            V item = (V)items[i] ;
+            b.insert(-(b.findIndex(hashes[i], keys[i])+1), hashes[i], keys[i], item) ;
+        }
+    }
+
+    // =====================
+
+    @Override
+    public String toString()
+    {
+        IndentedLineBuffer buff = new IndentedLineBuffer() ;
+        dump(buff) ;
+        return buff.asString() ;
+    }
+
+    public void dump()
+    {
+        dump(IndentedWriter.stdout) ;
+        IndentedWriter.stdout.ensureStartOfLine() ;
+        IndentedWriter.stdout.flush() ;
+    }
+
+    private void dump(IndentedWriter out)
+    {
+        Dictionary<K,V> dict = dictionary ;
+        out.printf("Bitlen      = %d \n" , dict.bitLen) ;
+        out.printf("Dictionary  = %d \n" , 1<<dict.bitLen ) ;
+        out.incIndent(4) ;
+        for ( int i = 0 ; i < 1<<dict.bitLen ; i++ )
+        {
+            out.ensureStartOfLine() ;
+            out.printf("%02d ", i) ;
+            out.printf(dict.slots.get(i).toString()) ;
+        }
+        out.decIndent(4) ;
+    }
+
+    /** Check the structure. Only meaningful when there are no concurrent changes. */
+    public void check()
+    {
+        Dictionary<K,V> dict = dictionary ;
+        int bitLen = dict.bitLen ;
+        int len = 1<<bitLen ;
+        if ( len != dict.slots.length() )
+            error("Dictionary size = %d : expected = %d", dict.slots.length(), len) ;
+        long count = 0 ;
+        Bucket<K,V> prevBucket = null ;
+        for ( int idx = 0 ; idx < len ; idx++ )
+        {
+            Bucket<K,V> bucket = dict.slots.get(idx) ;
+            if ( bucket == prevBucket )
+                continue ;
+            prevBucket = bucket ;
+            if ( bucket.bucketBitLen > bitLen )
+                error("Bucket %d has bit length longer than the dictionary's (%d, %d)", idx, bucket.bucketBitLen, bitLen) ;
+            int tmp = (idx >>> (bitLen-bucket.bucketBitLen)) ;
+            if ( tmp != bucket.hash )
+                error("Bucket %d : hash prefix 0x%X, expected 0x%X : %s", idx, bucket.hash, tmp, bucket) ;
+            for ( Bucket<K,V> b = bucket ; b != null ; b = b.overflow )
+            {
+                if ( b != bucket )
+                {
+                    if ( b.size == 0 )
+                        error("Bucket %d: Empty overflow bucket : %s", idx, bucket) ;
+                    if ( b.hash != bucket.hash || b.bucketBitLen != bucket.bucketBitLen )
+                        error("Bucket %d: Overflow bucket does not match : %s", idx, bucket) ;
+                }
+                checkEntries(idx, b) ;
+                count += b.size ;
+            }
+        }
+        if ( count != size() )
+            error("Size is %d but the table has %d entries", size(), count) ;
+    }
+
+    private static <K,V> void checkEntries(int idx, Bucket<K,V> bucket)
+    {
+        int prevHash = Integer.MIN_VALUE ;
+        for ( int i = 0 ; i < bucket.size ; i++ )
+        {
+            if ( bucket.hashes[i] < prevHash )
+                error("Bucket %d: Not sorted (slot %d) : %s", idx, i, bucket) ;
+            prevHash = bucket.hashes[i] ;
+            if ( index(bucket.hashes[i], bucket.bucketBitLen) != bucket.hash )
+                error("Bucket %d: Key (0x%08X) does not match the hash (0x%X) : %s", idx, bucket.hashes[i], bucket.hash, bucket) ;
+            if ( keyHash(bucket.keys[i]) != bucket.hashes[i] )
+                error("Bucket %d: Key %s stored with the wrong hash", idx, bucket.keys[i]) ;
+        }
+    }
+
+    private static void error(String msg, Object... args)
+    {
+        throw new RuntimeException(format(msg, args)) ;
+    }
+
+    // The dictionary : slot (by index of the hash) -> bucket.
+    static final class Dictionary<K,V>
+    {
+        // Invariant: slots.length() = 1<<bitLen
+        final int bitLen ;
+        final AtomicReferenceArray<Bucket<K,V>> slots ;
+
+        Dictionary(int bitLen)
+        {
+            this.bitLen = bitLen ;
+            this.slots = new AtomicReferenceArray<Bucket<K,V>>(1<<bitLen) ;
+        }
+
+        Bucket<K,V> bucket(int hash)
+        {
+            return slots.get(index(hash, bitLen)) ;
+        }
+    }
+
+    static final class Bucket<K,V>
+    {
+        final StampedLock lock = new StampedLock() ;
+
+        // Parallel arrays, sorted by hash.
+        final int[] hashes ;
+        final Object[] keys ;
+        final Object[] items ;
+
+        final int id ;
+        int hash ;
+        // How many bits are used for storing in this bucket.
+        int bucketBitLen ;
+        int size ;
+        // Overflow chain, guarded by the lock of the bucket in the dictionary.
+        Bucket<K,V> overflow = null ;
+
+        Bucket(int hashValue, int bucketBitLen, int maxSize, int bucketId)
+        {
+            id = bucketId ;
+            hashes = new int[maxSize] ;
+            keys = new Object[maxSize] ;
+            items = new Object[maxSize] ;
+            size = 0 ;
+            this.bucketBitLen = bucketBitLen ;
+            this.hash = hashValue ;
+        }
+
+        /** Whether a hash belongs in this bucket. */
+        final boolean covers(int fullHash)
+        {
+            return index(fullHash, bucketBitLen) == hash ;
+        }
+
+        final boolean hasRoom()
+        {
+            return size < hashes.length ;
+        }
+
+        /**
+         * Find the index of the key, return the insertion point if not found as -(i+1).
+         * May be called in optimistic read mode : it must not fail on
+         * inconsistent state, only give a wrong answer.
+         */
+        final int findIndex(int fullHash, Object key)
+        {
+            int n = Math.min(size, hashes.length) ;
+            int i = Arrays.binarySearch(hashes, 0, n, fullHash) ;
+            if ( i < 0 )
+                return i ;
+            // Several keys may have the same hash.
+            while ( i > 0 && hashes[i-1] == fullHash )
+                i-- ;
+            for ( ; i < n && hashes[i] == fullHash ; i++ )
+            {
+                if ( key.equals(keys[i]) )
+                    return i ;
+            }
+            return -(i+1) ;
+        }
+
+        /** First bucket of the chain with room, or null. */
+        final Bucket<K,V> withRoom()
+        {
+            for ( Bucket<K,V> b = this ; b != null ; b = b.overflow )
+            {
+                if ( b.hasRoom() )
+                    return b ;
+            }
+            return null ;
+        }
+
+        /** Find in this bucket and its overflow chain ; safe in optimistic read mode, as findIndex. */
+        final V findInChain(int fullHash, Object key)
+        {
+            for ( Bucket<K,V> b = this ; b != null ; b = b.overflow )
+            {
+                V v = b.find(fullHash, key) ;
+                if ( v != null )
+                    return v ;
+            }
+            return null ;
+        }
+
+        final V find(int fullHash, Object key)
+        {
+            int i = findIndex(fullHash, key) ;
+            if ( i < 0 )
+                return null ;
+            @SuppressWarnings("unchecked")
+            V v = (V)items[i] ;
+            return v ;
+        }
+
+        final void insert(int i, int fullHash, Object key, V value)
+        {
+            arraycopy(hashes, i, hashes, i+1, size-i) ;
+            arraycopy(keys,   i, keys,   i+1, size-i) ;
+            arraycopy(items,  i, items,  i+1, size-i) ;
+            hashes[i] = fullHash ;
+            keys[i] = key ;
+            items[i] = value ;
+            size++ ;
+        }
+
+        final void delete(int i)
+        {
+            arraycopy(hashes, i+1, hashes, i, size-i-1) ;
+            arraycopy(keys,   i+1, keys,   i, size-i-1) ;
+            arraycopy(items,  i+1, items,  i, size-i-1) ;
+            size-- ;
+            keys[size] = null ;
+            items[size] = null ;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder buff = new StringBuilder() ;
+            buff.append(format("<<[id=%02d, size=%s, len=%d, hash=0x%08X] ", id, size, bucketBitLen, hash)) ;
+            for ( int i = 0 ; i < size ; i++ )
+            {
+                if ( i != 0 )
+                    buff.append(" ") ;
+                buff.append(format("(0x%08X,%s,%s)", hashes[i], keys[i], items[i])) ;
+            }
+            buff.append(">>") ;
+            if ( overflow != null )
+                buff.append(" -> ").append(overflow) ;
+            return buff.toString() ;
+        }
+    }
+}
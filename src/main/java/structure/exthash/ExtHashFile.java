@@ -0,0 +1,874 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.exthash;
+
+import static java.lang.String.format;
+import static structure.exthash.ExtHashMem.index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.jena.atlas.io.IndentedLineBuffer;
+import org.apache.jena.atlas.io.IndentedWriter;
+
+/** Extensible hashing, on disk : the persistent counterpart of {@link ExtHashMem},
+ * for {@code long} keys and {@code long} values.
+ * <p>
+ * Two files:
+ * <ul>
+ * <li>{@code <name>.dat} : fixed-size buckets, one per block, memory mapped.
+ * Buckets are read and changed in place in the mapped file, never copied into objects,
+ * so the data lives in the OS page cache, not the Java heap.
+ * <li>{@code <name>.idx} : a header and the dictionary, as an array of block numbers.
+ * The dictionary is held in memory and written by {@link #sync}.
+ * </ul>
+ * A full bucket can have a chain of overflow buckets, with the same policy as
+ * {@link ExtHashMem} for when to chain rather than double the dictionary.
+ * <p>
+ * {@link #sync} forces the changed parts of the mapped file and writes the dictionary ;
+ * {@link #close} syncs. Reopening the files gives the table as of the last sync,
+ * even if changes after it had reached the mapped file: the blocks of the synced
+ * table are never changed. The first change to a bucket after a sync copies its
+ * chain to free blocks, which can be changed in place until the next sync. The
+ * blocks replaced are only free after the next sync has written the dictionary,
+ * which is written to a new file and renamed over the old one. On opening, the free
+ * blocks are the ones the dictionary does not reach.
+ * <p>
+ * Not thread safe.
+ */
+public class ExtHashFile
+{
+    /* Bucket block layout:
+     *   0  int   hash prefix
+     *   4  int   bucket bit length
+     *   8  int   number of entries
+     *  12  int   overflow block, -1 for none
+     *  16  int[cap]  key hashes, sorted
+     *      long[cap] keys
+     *      long[cap] values
+     * Dictionary file layout:
+     *   0  int   magic
+     *   4  int   block size
+     *   8  int   dictionary bit length
+     *  12  int   number of blocks
+     *  16  long  number of entries
+     *  24  int[1<<bitLen] block number for each dictionary slot
+     */
+
+    public static boolean Checking = false ;        // Perform internal checking
+
+    public static final String ExtData = ".dat" ;
+    public static final String ExtDictionary = ".idx" ;
+    public static int DefaultBlockSize = 4096 ;
+    // Blocks are mapped in segments of this many blocks.
+    static int BlocksPerSegment = 1024 ;
+
+    private static final int Magic = 0x45584846 ;   // "EXHF"
+    private static final int HeaderSize = 24 ;
+    private static final int BucketHeader = 16 ;
+    private static final int EntrySize = 4+8+8 ;
+    private static final int NoBlock = -1 ;
+
+    private final Path dataFile ;
+    private final Path dictFile ;
+    private final Path dictFileTmp ;
+    private final FileChannel dataChannel ;
+    final int blockSize ;
+    // Entries per bucket.
+    final int bucketSize ;
+    private final int segmentSize ;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>() ;
+    // Segments changed since the last sync.
+    private final BitSet dirty = new BitSet() ;
+    // Blocks allocated since the last sync : not in the synced table, so can be changed in place.
+    private final BitSet fresh = new BitSet() ;
+    // Blocks that can be allocated.
+    private final BitSet free = new BitSet() ;
+    // Blocks of the synced table replaced since : free after the next sync.
+    private final BitSet released = new BitSet() ;
+
+    private int[] dictionary ;          // mask(hash) -> block number
+    private int bitLen = 0 ;
+    private int numBlocks = 0 ;
+    // Number of buckets in the dictionary, not counting overflow buckets.
+    private int numBuckets = 0 ;
+    private long size = 0 ;
+    private boolean closed = false ;
+
+    /** Open the table in files {@code <name>.dat} and {@code <name>.idx}, creating it if it does not exist. */
+    public ExtHashFile(String filename) { this(filename, DefaultBlockSize) ; }
+
+    public ExtHashFile(String filename, int blockSize)
+    {
+        int cap = (blockSize-BucketHeader)/EntrySize ;
+        if ( cap < 1 )
+            throw new IllegalArgumentException("Block size too small: "+blockSize) ;
+        this.dataFile = Paths.get(filename+ExtData) ;
+        this.dictFile = Paths.get(filename+ExtDictionary) ;
+        this.dictFileTmp = Paths.get(filename+ExtDictionary+".tmp") ;
+        this.blockSize = blockSize ;
+        this.bucketSize = cap ;
+        this.segmentSize = blockSize*BlocksPerSegment ;
+        boolean exists = dictFile.toFile().exists() ;
+        try {
+            dataChannel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE) ;
+        } catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+        try {
+            if ( exists )
+            {
+                readDictionary() ;
+                findFreeBlocks() ;
+            }
+            else
+            {
+                dictionary = new int[1] ;
+                dictionary[0] = allocBucket(0, 0) ;
+                bitLen = 0 ;
+                numBuckets = 1 ;
+                sync() ;
+            }
+            internalCheck() ;
+        } catch (IOException | RuntimeException ex)
+        {
+            try { dataChannel.close() ; } catch (IOException ex2) {}
+            if ( ex instanceof IOException )
+                throw new UncheckedIOException((IOException)ex) ;
+            throw (RuntimeException)ex ;
+        }
+    }
+
+    // =====================
+
+    /** Turn a key into a bit trie hash value ; as ExtHashMem. */
+    static int keyHash(long key)        { return Integer.reverse(Long.hashCode(key))>>>1 ; }
+
+    public boolean contains(long key)
+    {
+        checkOpen() ;
+        int hash = keyHash(key) ;
+        return contains(dictionary[index(hash, bitLen)], hash, key) ;
+    }
+
+    private boolean contains(int block, int hash, long key)
+    {
+        for ( int b = block ; b != NoBlock ; b = overflow(b) )
+        {
+            if ( findIndex(b, hash, key) >= 0 )
+                return true ;
+        }
+        return false ;
+    }
+
+    /** Get the value for a key, or {@code dft} if the key is not in the table. */
+    public long get(long key, long dft)
+    {
+        checkOpen() ;
+        int hash = keyHash(key) ;
+        for ( int b = dictionary[index(hash, bitLen)] ; b != NoBlock ; b = overflow(b) )
+        {
+            int i = findIndex(b, hash, key) ;
+            if ( i >= 0 )
+                return valueAt(b, i) ;
+        }
+        return dft ;
+    }
+
+    /** Set the value for a key - return true if the key was not already in the table. */
+    public boolean put(long key, long value)
+    {
+        checkOpen() ;
+        int hash = keyHash(key) ;
+        for ( ;; )
+        {
+            int block = writable(dictionary[index(hash, bitLen)]) ;
+            for ( int b = block ; b != NoBlock ; b = overflow(b) )
+            {
+                int i = findIndex(b, hash, key) ;
+                if ( i >= 0 )
+                {
+                    setValue(b, i, value) ;
+                    return false ;
+                }
+            }
+            int b = withRoom(block) ;
+            if ( b != NoBlock )
+            {
+                insert(b, -(findIndex(b, hash, key)+1), hash, key, value) ;
+                size++ ;
+                internalCheck() ;
+                return true ;
+            }
+            // Bucket (and any chain) full.
+            if ( bitLen == bucketBitLen(block) )
+            {
+                if ( chainRatherThanDouble(block) )
+                    addOverflow(block) ;
+                else
+                    resizeDictionary() ;
+            }
+            else
+                splitAndReorganise(block) ;
+            // Try again.
+        }
+    }
+
+    /** Remove a key - return true if it was in the table. */
+    public boolean remove(long key)
+    {
+        checkOpen() ;
+        int hash = keyHash(key) ;
+        int block = dictionary[index(hash, bitLen)] ;
+        if ( ! contains(block, hash, key) )
+            return false ;
+        block = writable(block) ;
+        int prev = NoBlock ;
+        for ( int b = block ; b != NoBlock ; prev = b, b = overflow(b) )
+        {
+            int i = findIndex(b, hash, key) ;
+            if ( i < 0 )
+                continue ;
+            delete(b, i) ;
+            size-- ;
+            if ( bucketCount(b) == 0 && prev != NoBlock )
+            {
+                // Empty overflow bucket : unlink.
+                setOverflow(prev, overflow(b)) ;
+                freeBlock(b) ;
+            }
+            internalCheck() ;
+            return true ;
+        }
+        return false ;
+    }
+
+    public long size()
+    {
+        return size ;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0 ;
+    }
+
+    /** Dictionary slots per bucket, not counting overflow buckets. */
+    public double dictionaryRatio()
+    {
+        return (double)dictionarySize()/numBuckets ;
+    }
+
+    /** Longest chain of buckets, including the bucket in the dictionary. */
+    public int maxChainLength()
+    {
+        checkOpen() ;
+        int max = 0 ;
+        int prev = NoBlock ;
+        for ( int block : dictionary )
+        {
+            if ( block == prev )
+                continue ;
+            prev = block ;
+            int n = 0 ;
+            for ( int b = block ; b != NoBlock ; b = overflow(b) )
+                n++ ;
+            max = Math.max(max, n) ;
+        }
+        return max ;
+    }
+
+    /** Number of slots in the dictionary. */
+    public int dictionarySize()
+    {
+        return 1<<bitLen ;
+    }
+
+    /** Force changed pages of the buckets file to disk, then write the dictionary. */
+    public void sync()
+    {
+        checkOpen() ;
+        for ( int s = dirty.nextSetBit(0) ; s >= 0 ; s = dirty.nextSetBit(s+1) )
+            segments.get(s).force() ;
+        dirty.clear() ;
+        try {
+            writeDictionary() ;
+        } catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+        // The new dictionary is on disk : the blocks it replaced can be reused,
+        // and the blocks it uses must not be changed again.
+        free.or(released) ;
+        released.clear() ;
+        fresh.clear() ;
+    }
+
+    public void close()
+    {
+        if ( closed )
+            return ;
+        sync() ;
+        closed = true ;
+        segments.clear() ;
+        try {
+            dataChannel.close() ;
+        } catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+    }
+
+    private void checkOpen()
+    {
+        if ( closed )
+            throw new IllegalStateException("ExtHashFile is closed: "+dataFile) ;
+    }
+
+    // =====================
+    // Dictionary file
+
+    private void readDictionary() throws IOException
+    {
+        try ( FileChannel ch = FileChannel.open(dictFile, StandardOpenOption.READ) )
+        {
+            ByteBuffer header = ByteBuffer.allocate(HeaderSize) ;
+            readFully(ch, header, 0) ;
+            header.flip() ;
+            if ( header.getInt(0) != Magic )
+                error("Not an ExtHashFile dictionary: %s", dictFile) ;
+            int fileBlockSize = header.getInt(4) ;
+            if ( fileBlockSize != blockSize )
+                error("Block size mismatch: file has %d, expected %d", fileBlockSize, blockSize) ;
+            bitLen = header.getInt(8) ;
+            numBlocks = header.getInt(12) ;
+            size = header.getLong(16) ;
+            ByteBuffer bb = ByteBuffer.allocate(4<<bitLen) ;
+            readFully(ch, bb, HeaderSize) ;
+            bb.flip() ;
+            dictionary = new int[1<<bitLen] ;
+            bb.asIntBuffer().get(dictionary) ;
+            // A bucket's slots are adjacent.
+            numBuckets = 0 ;
+            for ( int i = 0 ; i < dictionary.length ; i++ )
+            {
+                if ( i == 0 || dictionary[i] != dictionary[i-1] )
+                    numBuckets++ ;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer bb, long position) throws IOException
+    {
+        while ( bb.hasRemaining() )
+        {
+            int n = ch.read(bb, position) ;
+            if ( n < 0 )
+                error("ExtHashFile: dictionary file is truncated") ;
+            position += n ;
+        }
+    }
+
+    private void writeDictionary() throws IOException
+    {
+        ByteBuffer bb = ByteBuffer.allocate(HeaderSize+4*dictionary.length) ;
+        bb.putInt(Magic).putInt(blockSize).putInt(bitLen).putInt(numBlocks).putLong(size) ;
+        bb.asIntBuffer().put(dictionary) ;
+        bb.position(0) ;
+        // Write a new file and rename it so the dictionary on disk is always complete.
+        try ( FileChannel ch = FileChannel.open(dictFileTmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) )
+        {
+            while ( bb.hasRemaining() )
+                ch.write(bb) ;
+            ch.force(true) ;
+        }
+        Files.move(dictFileTmp, dictFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING) ;
+    }
+
+    // =====================
+    // Blocks
+
+    private ByteBuffer segment(int block)
+    {
+        int s = block/BlocksPerSegment ;
+        while ( segments.size() <= s )
+        {
+            long start = (long)segments.size()*segmentSize ;
+            try {
+                // Mapping beyond the end of the file extends the file.
+                segments.add(dataChannel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize)) ;
+            } catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+        }
+        return segments.get(s) ;
+    }
+
+    private ByteBuffer segmentForWrite(int block)
+    {
+        dirty.set(block/BlocksPerSegment) ;
+        return segment(block) ;
+    }
+
+    private int base(int block)
+    {
+        return (block%BlocksPerSegment)*blockSize ;
+    }
+
+    private int allocBlock()
+    {
+        int block = free.nextSetBit(0) ;
+        if ( block < 0 )
+            block = numBlocks++ ;
+        else
+            free.clear(block) ;
+        fresh.set(block) ;
+        return block ;
+    }
+
+    // A block no longer in use.
+    private void freeBlock(int block)
+    {
+        if ( fresh.get(block) )
+        {
+            fresh.clear(block) ;
+            free.set(block) ;
+        }
+        else
+            // Still in the synced table.
+            released.set(block) ;
+    }
+
+    // Blocks not reached from the dictionary are free.
+    private void findFreeBlocks()
+    {
+        free.set(0, numBlocks) ;
+        int prev = NoBlock ;
+        for ( int block : dictionary )
+        {
+            if ( block == prev )
+                continue ;
+            prev = block ;
+            for ( int b = block ; b != NoBlock ; b = overflow(b) )
+                free.clear(b) ;
+        }
+    }
+
+    /** The bucket chain from block, made writable : return the block now in the dictionary for it.
+     *  A chain in the synced table is copied to new blocks and the dictionary changed to the copy. */
+    private int writable(int block)
+    {
+        if ( fresh.get(block) )
+            return block ;
+        int copy = NoBlock ;
+        int prev = NoBlock ;
+        for ( int b = block ; b != NoBlock ; b = overflow(b) )
+        {
+            int c = allocBlock() ;
+            copyBlock(b, c) ;
+            released.set(b) ;
+            if ( prev == NoBlock )
+                copy = c ;
+            else
+                setOverflow(prev, c) ;
+            prev = c ;
+        }
+        int bbl = bucketBitLen(copy) ;
+        int first = bucketHash(copy) << (bitLen-bbl) ;
+        int n = 1<<(bitLen-bbl) ;
+        for ( int k = first ; k < first+n ; k++ )
+        {
+            if ( Checking && dictionary[k] != block )
+                error("writable: Wrong bucket at slot %d", k) ;
+            dictionary[k] = copy ;
+        }
+        return copy ;
+    }
+
+    private void copyBlock(int block1, int block2)
+    {
+        ByteBuffer dst = segmentForWrite(block2).duplicate() ;
+        ByteBuffer src = segment(block1).duplicate() ;
+        src.limit(base(block1)+blockSize).position(base(block1)) ;
+        dst.position(base(block2)) ;
+        dst.put(src) ;
+    }
+
+    private int allocBucket(int hash, int bucketBitLen)
+    {
+        int block = allocBlock() ;
+        ByteBuffer bb = segmentForWrite(block) ;
+        int b = base(block) ;
+        bb.putInt(b, hash) ;
+        bb.putInt(b+4, bucketBitLen) ;
+        bb.putInt(b+8, 0) ;
+        bb.putInt(b+12, NoBlock) ;
+        return block ;
+    }
+
+    // Bucket accessors : absolute get/put on the mapped block.
+    private int bucketHash(int block)               { return segment(block).getInt(base(block)) ; }
+    private int bucketBitLen(int block)             { return segment(block).getInt(base(block)+4) ; }
+    private int bucketCount(int block)              { return segment(block).getInt(base(block)+8) ; }
+    private int overflow(int block)                 { return segment(block).getInt(base(block)+12) ; }
+
+    private void setOverflow(int block, int next)
+    {
+        segmentForWrite(block).putInt(base(block)+12, next) ;
+    }
+
+    /** First block of the chain with room, or NoBlock. */
+    private int withRoom(int block)
+    {
+        for ( int b = block ; b != NoBlock ; b = overflow(b) )
+        {
+            if ( bucketCount(b) < bucketSize )
+                return b ;
+        }
+        return NoBlock ;
+    }
+
+    private int hashOffset(int block, int i)        { return base(block)+BucketHeader+4*i ; }
+    private int keyOffset(int block, int i)         { return base(block)+BucketHeader+4*bucketSize+8*i ; }
+    private int valueOffset(int block, int i)       { return base(block)+BucketHeader+12*bucketSize+8*i ; }
+
+    private int hashAt(int block, int i)            { return segment(block).getInt(hashOffset(block, i)) ; }
+    private long keyAt(int block, int i)            { return segment(block).getLong(keyOffset(block, i)) ; }
+    private long valueAt(int block, int i)          { return segment(block).getLong(valueOffset(block, i)) ; }
+
+    private void setValue(int block, int i, long value)
+    {
+        segmentForWrite(block).putLong(valueOffset(block, i), value) ;
+    }
+
+    // Find the index of the key, return the insertion point if not found as -(i+1)
+    private int findIndex(int block, int hash, long key)
+    {
+        int n = bucketCount(block) ;
+        // Binary search on the hashes in the block.
+        int lo = 0 ;
+        int hi = n-1 ;
+        while ( lo <= hi )
+        {
+            int mid = (lo+hi) >>> 1 ;
+            int h = hashAt(block, mid) ;
+            if ( h < hash )
+                lo = mid+1 ;
+            else
+                // Find the first entry with the hash.
+                hi = mid-1 ;
+        }
+        // lo is the first entry with hash same or greater.
+        int i = lo ;
+        for ( ; i < n && hashAt(block, i) == hash ; i++ )
+        {
+            if ( keyAt(block, i) == key )
+                return i ;
+        }
+        return -(i+1) ;
+    }
+
+    private void insert(int block, int i, int hash, long key, long value)
+    {
+        ByteBuffer bb = segmentForWrite(block) ;
+        int n = bucketCount(block) ;
+        move(block, i, block, i+1, n-i) ;
+        bb.putInt(hashOffset(block, i), hash) ;
+        bb.putLong(keyOffset(block, i), key) ;
+        bb.putLong(valueOffset(block, i), value) ;
+        bb.putInt(base(block)+8, n+1) ;
+    }
+
+    private void delete(int block, int i)
+    {
+        ByteBuffer bb = segmentForWrite(block) ;
+        int n = bucketCount(block) ;
+        move(block, i+1, block, i, n-i-1) ;
+        bb.putInt(base(block)+8, n-1) ;
+    }
+
+    // Copy entries [src, src+len) of block1 to [dst, dst+len) of block2 ; the ranges may overlap.
+    private void move(int block1, int src, int block2, int dst, int len)
+    {
+        if ( len <= 0 )
+            return ;
+        ByteBuffer bb1 = segment(block1) ;
+        ByteBuffer bb2 = segmentForWrite(block2) ;
+        if ( dst > src && block1 == block2 )
+        {
+            for ( int j = len-1 ; j >= 0 ; j-- )
+                moveEntry(bb1, block1, src+j, bb2, block2, dst+j) ;
+        }
+        else
+        {
+            for ( int j = 0 ; j < len ; j++ )
+                moveEntry(bb1, block1, src+j, bb2, block2, dst+j) ;
+        }
+    }
+
+    private void moveEntry(ByteBuffer bb1, int block1, int i1, ByteBuffer bb2, int block2, int i2)
+    {
+        bb2.putInt(hashOffset(block2, i2), bb1.getInt(hashOffset(block1, i1))) ;
+        bb2.putLong(keyOffset(block2, i2), bb1.getLong(keyOffset(block1, i1))) ;
+        bb2.putLong(valueOffset(block2, i2), bb1.getLong(valueOffset(block1, i1))) ;
+    }
+
+    // =====================
+    // Reorganisation : see ExtHashMem.
+
+    private void resizeDictionary()
+    {
+        if ( bitLen >= 31 )
+            error("Bucket overflow : all %d entries have the same hash", bucketSize) ;
+        int oldSize = 1<<bitLen ;
+        int[] newDictionary = new int[2*oldSize] ;
+        for ( int i = 0 ; i < oldSize ; i++ )
+        {
+            newDictionary[2*i] = dictionary[i] ;
+            newDictionary[2*i+1] = dictionary[i] ;
+        }
+        dictionary = newDictionary ;
+        bitLen++ ;
+        internalCheck() ;
+    }
+
+    // Bucket is full and its bit length is the dictionary's. See ExtHashMem.chainRatherThanDouble.
+    private boolean chainRatherThanDouble(int block)
+    {
+        int min = Integer.MAX_VALUE ;
+        int max = Integer.MIN_VALUE ;
+        int chainLength = 0 ;
+        for ( int b = block ; b != NoBlock ; b = overflow(b) )
+        {
+            chainLength++ ;
+            int n = bucketCount(b) ;
+            if ( n == 0 )
+                continue ;
+            min = Math.min(min, hashAt(b, 0)) ;
+            max = Math.max(max, hashAt(b, n-1)) ;
+        }
+        return ExtHashMem.chainRatherThanDouble(min, max, chainLength, bitLen, numBuckets, size) ;
+    }
+
+    private void addOverflow(int block)
+    {
+        int b = block ;
+        while ( overflow(b) != NoBlock )
+            b = overflow(b) ;
+        setOverflow(b, allocBucket(bucketHash(block), bucketBitLen(block))) ;
+    }
+
+    private void splitAndReorganise(int block)
+    {
+        int bucketHash = bucketHash(block) ;
+        int bucketHashLength = bucketBitLen(block) ;
+
+        // Split the bucket in two.  block2 is the upper bucket.
+        int newBitLen = bucketHashLength+1 ;
+        int hash2 = (bucketHash<<1) | 0x1 ;
+        int block2 = allocBucket(hash2, newBitLen) ;
+        numBuckets++ ;
+
+        if ( overflow(block) != NoBlock )
+            splitChain(block, block2) ;
+        else
+        {
+            // Entries from where hash2 starts go to the new bucket.
+            int n = bucketCount(block) ;
+            int x = hash2 << (31-newBitLen) ;
+            int split = 0 ;
+            while ( split < n && hashAt(block, split) < x )
+                split++ ;
+            move(block, split, block2, 0, n-split) ;
+            ByteBuffer bb = segmentForWrite(block) ;
+            bb.putInt(base(block), bucketHash<<1) ;
+            bb.putInt(base(block)+4, newBitLen) ;
+            bb.putInt(base(block)+8, split) ;
+            segmentForWrite(block2).putInt(base(block2)+8, n-split) ;
+        }
+
+        int trieUpperRoot = ((bucketHash<<1)|0x1) << (bitLen-bucketHashLength-1) ;
+        int trieUpperRange = (1<<(bitLen-bucketHashLength-1)) ;
+        for ( int j = 0 ; j < trieUpperRange ; j++ )
+        {
+            int k = trieUpperRoot | j ;
+            if ( Checking && dictionary[k] != block )
+                error("split: Wrong bucket at trie (0x%X,%d)", trieUpperRoot, j) ;
+            dictionary[k] = block2 ;
+        }
+    }
+
+    // Split a bucket with overflow buckets : redistribute all the entries of the
+    // chain between the lower bucket (block) and the upper one (block2).
+    private void splitChain(int block, int block2)
+    {
+        int n = 0 ;
+        for ( int b = block ; b != NoBlock ; b = overflow(b) )
+            n += bucketCount(b) ;
+        int[] hashes = new int[n] ;
+        long[] keys = new long[n] ;
+        long[] values = new long[n] ;
+        int j = 0 ;
+        for ( int b = block ; b != NoBlock ; b = overflow(b) )
+        {
+            for ( int i = 0 ; i < bucketCount(b) ; i++, j++ )
+            {
+                hashes[j] = hashAt(b, i) ;
+                keys[j] = keyAt(b, i) ;
+                values[j] = valueAt(b, i) ;
+            }
+        }
+        // The chain is rebuilt with new overflow blocks.
+        for ( int b = overflow(block) ; b != NoBlock ; b = overflow(b) )
+            freeBlock(b) ;
+        int hash1 = bucketHash(block)<<1 ;
+        int newBitLen = bucketBitLen(block)+1 ;
+        ByteBuffer bb = segmentForWrite(block) ;
+        bb.putInt(base(block), hash1) ;
+        bb.putInt(base(block)+4, newBitLen) ;
+        bb.putInt(base(block)+8, 0) ;
+        bb.putInt(base(block)+12, NoBlock) ;
+        for ( int i = 0 ; i < n ; i++ )
+        {
+            int target = ( index(hashes[i], newBitLen) == hash1 ) ? block : block2 ;
+            int b = withRoom(target) ;
+            if ( b == NoBlock )
+            {
+                addOverflow(target) ;
+                b = withRoom(target) ;
+            }
+            insert(b, -(findIndex(b, hashes[i], keys[i])+1), hashes[i], keys[i], values[i]) ;
+        }
+    }
+
+    // =====================
+
+    @Override
+    public String toString()
+    {
+        IndentedLineBuffer buff = new IndentedLineBuffer() ;
+        dump(buff) ;
+        return buff.asString() ;
+    }
+
+    public void dump()
+    {
+        dump(IndentedWriter.stdout) ;
+        IndentedWriter.stdout.ensureStartOfLine() ;
+        IndentedWriter.stdout.flush() ;
+    }
+
+    private void dump(IndentedWriter out)
+    {
+        out.printf("Bitlen      = %d \n" , bitLen) ;
+        out.printf("Dictionary  = %d \n" , 1<<bitLen ) ;
+        out.incIndent(4) ;
+        for ( int i = 0 ; i < 1<<bitLen ; i++ )
+        {
+            out.ensureStartOfLine() ;
+            int block = dictionary[i] ;
+            out.printf("%02d [block=%d, size=%d, len=%d, hash=0x%08X]", i, block,
+                       bucketCount(block), bucketBitLen(block), bucketHash(block)) ;
+            for ( int b = overflow(block) ; b != NoBlock ; b = overflow(b) )
+                out.printf(" -> [block=%d, size=%d]", b, bucketCount(b)) ;
+        }
+        out.decIndent(4) ;
+    }
+
+    public void check()
+    {
+        performCheck() ;
+    }
+
+    private final void internalCheck()
+    {
+        if ( Checking )
+            performCheck() ;
+    }
+
+    private final void performCheck()
+    {
+        int len = 1<<bitLen ;
+        if ( len != dictionary.length )
+            error("Dictionary size = %d : expected = %d", dictionary.length, len) ;
+        long count = 0 ;
+        int prevBlock = -1 ;
+        for ( int idx = 0 ; idx < len ; idx++ )
+        {
+            int block = dictionary[idx] ;
+            if ( block == prevBlock )
+                continue ;
+            prevBlock = block ;
+            if ( block < 0 || block >= numBlocks )
+                error("Slot %d : block %d out of range (%d blocks)", idx, block, numBlocks) ;
+            int bbl = bucketBitLen(block) ;
+            int bh = bucketHash(block) ;
+            if ( bbl > bitLen )
+                error("Bucket %d has bit length longer than the dictionary's (%d, %d)", idx, bbl, bitLen) ;
+            if ( (idx >>> (bitLen-bbl)) != bh )
+                error("Bucket %d : hash prefix 0x%X, expected 0x%X", idx, bh, idx >>> (bitLen-bbl)) ;
+            for ( int b = block ; b != NoBlock ; b = overflow(b) )
+            {
+                if ( b < 0 || b >= numBlocks )
+                    error("Slot %d : overflow block %d out of range (%d blocks)", idx, b, numBlocks) ;
+                if ( free.get(b) || released.get(b) )
+                    error("Slot %d : block %d is in use but not allocated", idx, b) ;
+                if ( fresh.get(b) != fresh.get(block) )
+                    error("Bucket %d : block %d mixes synced and new blocks", idx, b) ;
+                if ( b != block )
+                {
+                    if ( bucketCount(b) == 0 )
+                        error("Bucket %d : empty overflow block %d", idx, b) ;
+                    if ( bucketBitLen(b) != bbl || bucketHash(b) != bh )
+                        error("Bucket %d : overflow block %d does not match", idx, b) ;
+                }
+                count += checkEntries(idx, b, bh, bbl) ;
+            }
+        }
+        if ( count != size )
+            error("Size is %d but the table has %d entries", size, count) ;
+    }
+
+    // Check the entries of one block ; return the number of entries.
+    private int checkEntries(int idx, int block, int bh, int bbl)
+    {
+        int n = bucketCount(block) ;
+        if ( n < 0 || n > bucketSize )
+            error("Bucket %d : bad size %d", idx, n) ;
+        int prevHash = Integer.MIN_VALUE ;
+        for ( int i = 0 ; i < n ; i++ )
+        {
+            int h = hashAt(block, i) ;
+            if ( h < prevHash )
+                error("Bucket %d: Not sorted (slot %d)", idx, i) ;
+            prevHash = h ;
+            if ( index(h, bbl) != bh )
+                error("Bucket %d: Key (0x%08X) does not match the hash (0x%X)", idx, h, bh) ;
+            if ( keyHash(keyAt(block, i)) != h )
+                error("Bucket %d: Key %d stored with the wrong hash", idx, keyAt(block, i)) ;
+        }
+        return n ;
+    }
+
+    private static void error(String msg, Object... args)
+    {
+        throw new RuntimeException(format(msg, args)) ;
+    }
+}
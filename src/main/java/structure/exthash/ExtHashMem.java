@@ -62,12 +62,36 @@ public class ExtHashMem<K,V>
      * All hash handling is encapulated in the internal routines.
      */
 
+    /* Overflow.
+     * A full bucket whose bit length is the dictionary's can only be split after
+     * doubling the dictionary. When the hashes are clustered, one doubling may not
+     * separate the entries, and each doubling adds aliases of every other bucket.
+     * Instead, a full bucket can have a chain of overflow buckets, searched in turn.
+     *
+     * Policy (chainRatherThanDouble, shared by ConcurrentExtHash and ExtHashFile):
+     * find the depth at which the entries of the full chain would separate (one more
+     * than the length of their common hash prefix). Double if a dictionary of that
+     * depth keeps the ratio of dictionary slots to buckets, counting the buckets of
+     * the chain, within MaxDictionaryRatio. Otherwise chain, until the chain has
+     * MaxChainLength buckets : then double anyway, as long as the dictionary stays
+     * within MaxDictionaryRatio slots per entry. Keys with a common stride, which
+     * share low bits and so high bits of the (bit reversed) hash, grow the dictionary
+     * rather than one long chain. If the entries all have the same 31 bit hash, no
+     * depth separates them and the bucket is always chained.
+     * A chained bucket is split (its whole chain redistributed) like any other
+     * bucket once the dictionary is longer than the bucket's bit length.
+     */
+
     static private Logger log = LoggerFactory.getLogger(ExtHashMem.class) ;
 
     // Production: make these final and false.
     public static boolean NullOut = true ;          // Set released space to something not an valid entry.
     public static boolean Checking = false ;        // Perform internal checking
     public static boolean Logging = false ;         // Allow any logging code on critical paths
+    // Chain rather than double when the dictionary would have more slots per bucket than this.
+    public static int MaxDictionaryRatio = 8 ;
+    // Double rather than make a chain longer than this, unless the entries all have the same hash.
+    public static int MaxChainLength = 4 ;
 
     // Give each bucket a unique-per-hashtable id.  Debugging.
     private int bucketCounter = 0 ;
@@ -79,6 +103,9 @@ public class ExtHashMem<K,V>
     private int bitLen = 0 ;
     // Number of things in the hash table.
     private long size = 0 ;
+    // Number of buckets in the dictionary, and of overflow buckets in chains.
+    private int numBuckets = 1 ;
+    private int numOverflow = 0 ;
 
     public static int DefaultBucketSize = 10 ;
     // Size of bucket
@@ -221,7 +248,7 @@ public class ExtHashMem<K,V>
         int i = index(hash, bitLen) ;
         @SuppressWarnings("unchecked")
         Bucket<V> bucket =  (Bucket<V>)dictionary[i] ;
-        boolean b = bucket.removeByHash(hash) ;
+        boolean b = removeByHash(bucket, hash) ;
         if ( b )
             size-- ;
         internalCheck() ;
@@ -235,6 +262,54 @@ public class ExtHashMem<K,V>
         return size ;
     }
 
+    /** Number of slots in the dictionary. */
+    public int dictionarySize()
+    {
+        return 1<<bitLen ;
+    }
+
+    /** Number of buckets in the dictionary, not counting overflow buckets. */
+    public int bucketCount()
+    {
+        return numBuckets ;
+    }
+
+    /** Number of overflow buckets, over all chains. */
+    public int overflowBucketCount()
+    {
+        return numOverflow ;
+    }
+
+    /**
+     * Dictionary slots per bucket. A ratio of 1 means no slot aliases another.
+     * The overflow policy keeps this within {@link #MaxDictionaryRatio} unless
+     * chains reach {@link #MaxChainLength}.
+     */
+    public double dictionaryRatio()
+    {
+        return (double)dictionarySize()/numBuckets ;
+    }
+
+    /** Longest chain of buckets, including the bucket in the dictionary. */
+    public int maxChainLength()
+    {
+        int max = 0 ;
+        for ( int i = 0 ; i < dictionary.length ; i++ )
+        {
+            @SuppressWarnings("unchecked")
+            Bucket<V> bucket = (Bucket<V>)dictionary[i] ;
+            max = Math.max(max, bucket.chainLength()) ;
+        }
+        return max ;
+    }
+
+    /** Summary of the shape of the table. */
+    public String stats()
+    {
+        return format("size=%d dictionary=%d buckets=%d overflow=%d ratio=%.2f maxChain=%d",
+                      size, dictionarySize(), numBuckets, numOverflow, dictionaryRatio(), maxChainLength()) ;
+    }
+
     //@Override
     public void sync()
     {}
@@ -256,19 +331,21 @@ public class ExtHashMem<K,V>
         @SuppressWarnings("unchecked")
         Bucket<V> bucket =  (Bucket<V>)dictionary[idx] ;
 
-        if ( bucket.hasRoom() )
-        {
-            boolean b = bucket.put(hash, value) ;
-            return b ;
-        }
+        if ( bucket.containsEntry(hash, value) )
+            return false ;
+        Bucket<V> b = bucket.withRoom() ;
+        if ( b != null )
+            return b.put(hash, value) ;
 
-        // Bucket full.
+        // Bucket (and any chain) full.
         if (  bitLen == bucket.bucketBitLen )
         {
             // Bucket not splitable..
-            // TODO Overflow buckets.
-            // Expand the dictionary.
-            resizeDictionary() ;
+            if ( chainRatherThanDouble(bucket) )
+                addOverflow(bucket) ;
+            else
+                // Expand the dictionary.
+                resizeDictionary() ;
             // Try again
             return _put(key, value, hash) ;
         }
@@ -282,6 +359,75 @@ public class ExtHashMem<K,V>
     }
 
 
+    // Bucket is full and its bit length is the dictionary's.
+    private boolean chainRatherThanDouble(Bucket<V> bucket)
+    {
+        int min = Integer.MAX_VALUE ;
+        int max = Integer.MIN_VALUE ;
+        for ( Bucket<V> b = bucket ; b != null ; b = b.overflow )
+        {
+            if ( b.size == 0 )
+                continue ;
+            min = Math.min(min, b.keys[0]) ;
+            max = Math.max(max, b.keys[b.size-1]) ;
+        }
+        return chainRatherThanDouble(min, max, bucket.chainLength(), bitLen, numBuckets, size) ;
+    }
+
+    /**
+     * The overflow policy for a full bucket whose bit length is the dictionary's :
+     * true to add an overflow bucket, false to double the dictionary.
+     * {@code minHash} and {@code maxHash} are the least and greatest hashes in the
+     * chain, which has {@code chainLength} buckets ; the table has {@code numBuckets}
+     * buckets in the dictionary and {@code size} entries.
+     */
+    static boolean chainRatherThanDouble(int minHash, int maxHash, int chainLength, int bitLen, long numBuckets, long size)
+    {
+        // The common prefix of all the hashes in the chain is the common prefix of the
+        // least and greatest hashes. Entries separate at the first bit after it.
+        // Hashes are 31 bits : bit 31 is always zero.
+        int depth = Integer.numberOfLeadingZeros(minHash^maxHash) ;
+        if ( depth > 31 )
+            // All the same hash.
+            return true ;
+        long slots = 1L<<Math.max(depth, bitLen+1) ;
+        if ( slots <= (long)MaxDictionaryRatio*(numBuckets+chainLength) )
+            return false ;
+        if ( chainLength < MaxChainLength )
+            return true ;
+        // Long chain : double one step, within a bound on the dictionary per entry.
+        return (1L<<(bitLen+1)) > (long)MaxDictionaryRatio*size ;
+    }
+
+    private void addOverflow(Bucket<V> bucket)
+    {
+        Bucket<V> b = bucket ;
+        while ( b.overflow != null )
+            b = b.overflow ;
+        b.overflow = new Bucket<V>(bucket.hash, bucket.bucketBitLen, bucketSize, bucketCounter++) ;
+        numOverflow++ ;
+        if ( Logging && log.isDebugEnabled() )
+            log.debug(format("overflow: %s", bucket)) ;
+    }
+
+    private boolean removeByHash(Bucket<V> bucket, int hash)
+    {
+        Bucket<V> prev = null ;
+        for ( Bucket<V> b = bucket ; b != null ; prev = b, b = b.overflow )
+        {
+            if ( ! b.removeByHash(hash) )
+                continue ;
+            if ( b.size == 0 && prev != null )
+            {
+                // Empty overflow bucket : unlink.
+                prev.overflow = b.overflow ;
+                numOverflow-- ;
+            }
+            return true ;
+        }
+        return false ;
+    }
+
     private void splitAndReorganise(Bucket<V> bucket, int idx, int hash)
     {
         if ( Checking && log.isDebugEnabled() )
@@ -328,6 +474,7 @@ public class ExtHashMem<K,V>
             }
             dictionary[k] = bucket2 ;
         }
+        numBuckets++ ;
         if ( Logging && log.isDebugEnabled() )
         {
             log.debug("Reorg complete") ;
@@ -361,6 +508,12 @@ public class ExtHashMem<K,V>
 
         Bucket<V> bucket2 = new Bucket<V>(hash2, bucket.bucketBitLen, bucketSize, bucketCounter++) ;
 
+        if ( bucket.overflow != null )
+        {
+            splitChain(bucket, bucket2) ;
+            return bucket2 ;
+        }
+
         if ( Logging && log.isDebugEnabled() )
         {
             log.debug(format("split: old bucket %s", bucket)) ;
@@ -394,6 +547,63 @@ public class ExtHashMem<K,V>
         return bucket2 ;
     }
 
+    // Split a bucket with overflow buckets : redistribute all the entries of the
+    // chain between the lower bucket (bucket) and the upper one (bucket2).
+    // Bucket has its new hash and bit length.
+    private void splitChain(Bucket<V> bucket, Bucket<V> bucket2)
+    {
+        int n = 0 ;
+        for ( Bucket<V> b = bucket ; b != null ; b = b.overflow )
+            n += b.size ;
+        int[] keys = new int[n] ;
+        Object[] items = new Object[n] ;
+        int j = 0 ;
+        for ( Bucket<V> b = bucket ; b != null ; b = b.overflow )
+        {
+            arraycopy(b.keys,  0, keys,  j, b.size) ;
+            arraycopy(b.items, 0, items, j, b.size) ;
+            j += b.size ;
+            if ( b != bucket )
+                numOverflow-- ;
+        }
+        // Each bucket is sorted, the chain is not : sort by hash, keeping
+        // duplicates in chain order.
+        Integer[] order = new Integer[n] ;
+        for ( int i = 0 ; i < n ; i++ )
+            order[i] = i ;
+        Arrays.sort(order, (a, b) -> Integer.compare(keys[a], keys[b])) ;
+
+        bucket.overflow = null ;
+        bucket.size = 0 ;
+        if ( NullOut )
+        {
+            Arrays.fill(bucket.keys, -1) ;
+            Arrays.fill(bucket.items, null) ;
+        }
+        for ( int i : order )
+        {
+            Bucket<V> target = ( index(keys[i], bucket.bucketBitLen) == bucket.hash ) ? bucket : bucket2 ;
+            append(target, keys[i], items[i]) ;
+        }
+    }
+
+    // Add to the end of a chain ; entries are added in hash order.
+    private void append(Bucket<V> bucket, int key, Object item)
+    {
+        Bucket<V> b = bucket ;
+        while ( b.overflow != null )
+            b = b.overflow ;
+        if ( ! b.hasRoom() )
+        {
+            b.overflow = new Bucket<V>(bucket.hash, bucket.bucketBitLen, bucketSize, bucketCounter++) ;
+            numOverflow++ ;
+            b = b.overflow ;
+        }
+        b.keys[b.size] = key ;
+        b.items[b.size] = item ;
+        b.size++ ;
+    }
+
     // =====================
 
     @Override
@@ -444,16 +654,38 @@ public class ExtHashMem<K,V>
         if ( len != dictionary.length )
             error("Dictionary size = %d : expected = %d", dictionary.length, len) ;
         Bucket<V> prevBucket = null ;
+        int buckets = 0 ;
+        int overflows = 0 ;
+        long count = 0 ;
         for ( int i = 0 ; i < len ; i++ )
         {
             @SuppressWarnings("unchecked")
             Bucket<V> bucket = (Bucket<V>)dictionary[i] ;
             if ( prevBucket != bucket )
             {
-                performCheck(i, bucket) ;
+                buckets++ ;
+                for ( Bucket<V> b = bucket ; b != null ; b = b.overflow )
+                {
+                    if ( b != bucket )
+                    {
+                        overflows++ ;
+                        if ( b.hash != bucket.hash || b.bucketBitLen != bucket.bucketBitLen )
+                            error("Bucket %d : overflow bucket does not match : %s", i, b) ;
+                        if ( b.size == 0 )
+                            error("Bucket %d : empty overflow bucket", i) ;
+                    }
+                    performCheck(i, b) ;
+                    count += b.size ;
+                }
                 prevBucket = bucket ;
             }
         }
+        if ( buckets != numBuckets )
+            error("Bucket count = %d : expected = %d", buckets, numBuckets) ;
+        if ( overflows != numOverflow )
+            error("Overflow bucket count = %d : expected = %d", overflows, numOverflow) ;
+        if ( count != size )
+            error("Size = %d : entries = %d", size, count) ;
     }
 
     private void performCheck(int idx, Bucket<V> bucket)
@@ -525,6 +757,8 @@ public class ExtHashMem<K,V>
         // How many bits are used for storing in this bucket.
         protected int bucketBitLen ;
         protected int size ;
+        // Chain of buckets with the same hash and bit length, used when this one is full.
+        protected Bucket<V> overflow = null ;
 
         Bucket(int hashValue, int bucketBitLen, int maxSize, int bucketId)
         {
@@ -611,14 +845,59 @@ public class ExtHashMem<K,V>
             return v ;
         }
 
+        // Find in this bucket or the overflow chain.
         final V find(int key)
         {
-            int i = findIndex(key) ;
-            if ( i < 0 )
-                return null ;
-            @SuppressWarnings("unchecked")
-            V v = (V)items[i] ;
-            return v ;
+            for ( Bucket<V> b = this ; b != null ; b = b.overflow )
+            {
+                int i = b.findIndex(key) ;
+                if ( i >= 0 )
+                {
+                    @SuppressWarnings("unchecked")
+                    V v = (V)b.items[i] ;
+                    return v ;
+                }
+            }
+            return null ;
+        }
+
+        // Whether the chain has this key with an equal value.
+        final boolean containsEntry(int key, V v)
+        {
+            for ( Bucket<V> b = this ; b != null ; b = b.overflow )
+            {
+                int i = b.findIndex(key) ;
+                if ( i < 0 )
+                    continue ;
+                // Duplicates are adjacent.
+                while ( i > 0 && b.keys[i-1] == key )
+                    i-- ;
+                for ( ; i < b.size && b.keys[i] == key ; i++ )
+                {
+                    if ( b.items[i].equals(v) )
+                        return true ;
+                }
+            }
+            return false ;
+        }
+
+        // The first bucket in the chain with room, or null.
+        final Bucket<V> withRoom()
+        {
+            for ( Bucket<V> b = this ; b != null ; b = b.overflow )
+            {
+                if ( b.hasRoom() )
+                    return b ;
+            }
+            return null ;
+        }
+
+        final int chainLength()
+        {
+            int n = 0 ;
+            for ( Bucket<V> b = this ; b != null ; b = b.overflow )
+                n++ ;
+            return n ;
         }
 
         @Override
@@ -637,6 +916,8 @@ public class ExtHashMem<K,V>
 
             }
             buff.append(">>") ;
+            if ( overflow != null )
+                buff.append(" -> ").append(overflow.toString()) ;
             return buff.toString() ;
 
         }
@@ -0,0 +1,885 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.radix;
+
+import java.nio.ByteBuffer ;
+import java.util.Arrays ;
+import java.util.Iterator ;
+import java.util.NoSuchElementException ;
+import java.util.concurrent.atomic.LongAdder ;
+import java.util.concurrent.locks.StampedLock ;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Bytes ;
+
+/**
+ * Radix tree, safe for use by many threads, using optimistic lock coupling
+ * (Leis, Scheibner, Kemper, Neumann, "The ART of Practical Synchronization",
+ * DaMoN 2016).
+ * <p>
+ * Each node has a version, held in a {@link StampedLock}. Readers take no locks:
+ * they read a node in optimistic mode, read the next node's version, then validate
+ * the first node before moving on, and restart from the root if validation fails.
+ * Writers descend the same way and then upgrade, without blocking, the versions
+ * of only the nodes they change: one node to set a value or add a leaf, two to
+ * split a prefix, three to remove a node and merge its one remaining subnode.
+ * Any failed upgrade restarts the operation. Nodes taken out of the tree are
+ * write locked while they are removed, so anyone still holding their old
+ * version restarts.
+ * <p>
+ * Subnode tables are copy-on-write, so an optimistic reader always sees a
+ * complete table. The root has an empty prefix and is never replaced.
+ * <p>
+ * Iterators are weakly consistent: they see every entry present for the whole of
+ * the iteration, may or may not see concurrent changes, and never throw
+ * {@link java.util.ConcurrentModificationException}. They work in batches, each
+ * a fresh descent from the root to the key after the last one returned.
+ * Cursors work the same way, with the keys of a batch held end to end in one
+ * reused array.
+ * <p>
+ * {@link #insert} returns true if the key was not already present.
+ */
+public final class ConcurrentRadixTree implements RadixTree
+{
+    // Entries collected by each descent of an iterator.
+    static int BatchSize = 64 ;
+
+    // The "key exists, no value" marker, as RadixNode.
+    private static final byte[] value0 = new byte[0] ;
+
+    private final Node root = new Node(RadixTreeImpl.bytes0, null) ;
+    private final LongAdder size = new LongAdder() ;
+
+    public ConcurrentRadixTree() {}
+
+    private static final class Node
+    {
+        final StampedLock lock = new StampedLock() ;
+        // Bytes from the parent to this node, starting with the byte the parent dispatches on.
+        byte[] prefix ;
+        // null for no entry.
+        byte[] value ;
+        Fanout sub = Fanout.EMPTY ;
+
+        Node(byte[] prefix, byte[] value)
+        {
+            this.prefix = prefix ;
+            this.value = value ;
+        }
+    }
+
+    /** Subnodes, sorted by (unsigned) index byte. Never changed once published. */
+    private static final class Fanout
+    {
+        static final Fanout EMPTY = new Fanout(new byte[0], new Node[0]) ;
+
+        final byte[] keys ;
+        final Node[] nodes ;
+
+        Fanout(byte[] keys, Node[] nodes)
+        {
+            this.keys = keys ;
+            this.nodes = nodes ;
+        }
+
+        int size()      { return keys.length ; }
+
+        /** Position of idx or -(insertion point+1) */
+        int find(int idx)
+        {
+            int lo = 0 ;
+            int hi = keys.length-1 ;
+            while ( lo <= hi )
+            {
+                int mid = (lo+hi) >>> 1 ;
+                int k = keys[mid] & 0xFF ;
+                if ( k < idx )
+                    lo = mid+1 ;
+                else if ( k > idx )
+                    hi = mid-1 ;
+                else
+                    return mid ;
+            }
+            return -(lo+1) ;
+        }
+
+        Node get(int idx)
+        {
+            int i = find(idx) ;
+            return ( i < 0 ) ? null : nodes[i] ;
+        }
+
+        /** Set or replace the subnode for idx. */
+        Fanout with(int idx, Node n)
+        {
+            int i = find(idx) ;
+            if ( i >= 0 )
+            {
+                Node[] nodes2 = nodes.clone() ;
+                nodes2[i] = n ;
+                return new Fanout(keys, nodes2) ;
+            }
+            i = -(i+1) ;
+            int N = keys.length ;
+            byte[] keys2 = new byte[N+1] ;
+            Node[] nodes2 = new Node[N+1] ;
+            System.arraycopy(keys, 0, keys2, 0, i) ;
+            System.arraycopy(nodes, 0, nodes2, 0, i) ;
+            keys2[i] = (byte)idx ;
+            nodes2[i] = n ;
+            System.arraycopy(keys, i, keys2, i+1, N-i) ;
+            System.arraycopy(nodes, i, nodes2, i+1, N-i) ;
+            return new Fanout(keys2, nodes2) ;
+        }
+
+        Fanout without(int idx)
+        {
+            int i = find(idx) ;
+            if ( i < 0 )
+                return this ;
+            int N = keys.length ;
+            if ( N == 1 )
+                return EMPTY ;
+            byte[] keys2 = new byte[N-1] ;
+            Node[] nodes2 = new Node[N-1] ;
+            System.arraycopy(keys, 0, keys2, 0, i) ;
+            System.arraycopy(nodes, 0, nodes2, 0, i) ;
+            System.arraycopy(keys, i+1, keys2, i, N-i-1) ;
+            System.arraycopy(nodes, i+1, nodes2, i, N-i-1) ;
+            return new Fanout(keys2, nodes2) ;
+        }
+    }
+
+    /** Number of bytes of prefix that match key from depth. */
+    private static int matchLength(byte[] prefix, byte[] key, int depth)
+    {
+        int N = Math.min(prefix.length, key.length-depth) ;
+        int i = 0 ;
+        while ( i < N && prefix[i] == key[depth+i] )
+            i++ ;
+        return i ;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b)
+    {
+        byte[] x = Arrays.copyOf(a, a.length+b.length) ;
+        System.arraycopy(b, 0, x, a.length, b.length) ;
+        return x ;
+    }
+
+    private static void restart()
+    {
+        Thread.onSpinWait() ;
+    }
+
+    @Override
+    public boolean contains(byte[] key)
+    {
+        return find(key, RadixTreeImpl.bytesNotFound) != RadixTreeImpl.bytesNotFound ;
+    }
+
+    @Override
+    public byte[] find(byte[] key, byte[] dft)
+    {
+        restart:
+        for(;;)
+        {
+            Node node = root ;
+            long v = node.lock.tryOptimisticRead() ;
+            int depth = 0 ;
+            for(;;)
+            {
+                if ( v == 0 )
+                {
+                    restart() ;
+                    continue restart ;
+                }
+                byte[] prefix = node.prefix ;
+                if ( matchLength(prefix, key, depth) < prefix.length )
+                {
+                    if ( ! node.lock.validate(v) )
+                        continue restart ;
+                    return dft ;
+                }
+                depth += prefix.length ;
+                if ( depth == key.length )
+                {
+                    byte[] value = node.value ;
+                    if ( ! node.lock.validate(v) )
+                        continue restart ;
+                    if ( value == null )
+                        return dft ;
+                    return ( value == value0 ) ? null : value ;
+                }
+                Node child = node.sub.get(key[depth] & 0xFF) ;
+                long cv = ( child == null ) ? 0 : child.lock.tryOptimisticRead() ;
+                if ( ! node.lock.validate(v) )
+                    continue restart ;
+                if ( child == null )
+                    return dft ;
+                node = child ;
+                v = cv ;
+            }
+        }
+    }
+
+    @Override
+    public RadixEntry longestPrefixOf(byte[] key)
+    {
+        restart:
+        for(;;)
+        {
+            Node node = root ;
+            long v = node.lock.tryOptimisticRead() ;
+            int depth = 0 ;
+            // Longest entry so far.
+            int bestLength = -1 ;
+            byte[] bestValue = null ;
+            for(;;)
+            {
+                if ( v == 0 )
+                {
+                    restart() ;
+                    continue restart ;
+                }
+                byte[] prefix = node.prefix ;
+                if ( matchLength(prefix, key, depth) < prefix.length )
+                    break ;
+                depth += prefix.length ;
+                byte[] value = node.value ;
+                Node child = ( depth == key.length ) ? null : node.sub.get(key[depth] & 0xFF) ;
+                long cv = ( child == null ) ? 0 : child.lock.tryOptimisticRead() ;
+                if ( ! node.lock.validate(v) )
+                    continue restart ;
+                if ( value != null )
+                {
+                    bestLength = depth ;
+                    bestValue = value ;
+                }
+                if ( child == null )
+                    break ;
+                node = child ;
+                v = cv ;
+            }
+            if ( ! node.lock.validate(v) )
+                continue restart ;
+            if ( bestLength < 0 )
+                return null ;
+            return new RadixEntry(Arrays.copyOf(key, bestLength), ( bestValue == value0 ) ? null : bestValue) ;
+        }
+    }
+
+    /** Counts by scanning the entries with the prefix : there are no cached subtree
+     *  sizes here as every insert and delete would then change the root. */
+    @Override
+    public long countWithPrefix(byte[] prefix)
+    {
+        RadixCursor cursor = cursor(prefix, RLib.prefixFinish(prefix)) ;
+        long count = 0 ;
+        while ( cursor.advance() )
+            count++ ;
+        return count ;
+    }
+
+    @Override
+    public boolean insert(byte[] key, byte[] value)
+    {
+        byte[] value$ = ( value == null ) ? value0 : value ;
+        restart:
+        for(;;)
+        {
+            Node parent = null ;
+            long pv = 0 ;
+            Node node = root ;
+            long v = node.lock.tryOptimisticRead() ;
+            int depth = 0 ;
+            for(;;)
+            {
+                if ( v == 0 )
+                {
+                    restart() ;
+                    continue restart ;
+                }
+                byte[] prefix = node.prefix ;
+                int N = matchLength(prefix, key, depth) ;
+                if ( N < prefix.length )
+                {
+                    // Split : a new node for the common part goes between parent and node.
+                    // Not the root (empty prefix), and N > 0 as the parent dispatched on prefix[0].
+                    long pw = parent.lock.tryConvertToWriteLock(pv) ;
+                    if ( pw == 0 )
+                        continue restart ;
+                    long w = node.lock.tryConvertToWriteLock(v) ;
+                    if ( w == 0 )
+                    {
+                        parent.lock.unlockWrite(pw) ;
+                        continue restart ;
+                    }
+                    Node inner = new Node(Arrays.copyOf(prefix, N), null) ;
+                    node.prefix = Arrays.copyOfRange(prefix, N, prefix.length) ;
+                    Fanout sub = Fanout.EMPTY.with(node.prefix[0] & 0xFF, node) ;
+                    if ( depth+N == key.length )
+                        inner.value = value$ ;
+                    else
+                        sub = sub.with(key[depth+N] & 0xFF, new Node(Arrays.copyOfRange(key, depth+N, key.length), value$)) ;
+                    inner.sub = sub ;
+                    parent.sub = parent.sub.with(prefix[0] & 0xFF, inner) ;
+                    node.lock.unlockWrite(w) ;
+                    parent.lock.unlockWrite(pw) ;
+                    size.increment() ;
+                    return true ;
+                }
+                depth += prefix.length ;
+                if ( depth == key.length )
+                {
+                    long w = node.lock.tryConvertToWriteLock(v) ;
+                    if ( w == 0 )
+                        continue restart ;
+                    boolean isNew = ( node.value == null ) ;
+                    node.value = value$ ;
+                    node.lock.unlockWrite(w) ;
+                    if ( isNew )
+                        size.increment() ;
+                    return isNew ;
+                }
+                int idx = key[depth] & 0xFF ;
+                Node child = node.sub.get(idx) ;
+                if ( child == null )
+                {
+                    long w = node.lock.tryConvertToWriteLock(v) ;
+                    if ( w == 0 )
+                        continue restart ;
+                    node.sub = node.sub.with(idx, new Node(Arrays.copyOfRange(key, depth, key.length), value$)) ;
+                    node.lock.unlockWrite(w) ;
+                    size.increment() ;
+                    return true ;
+                }
+                long cv = child.lock.tryOptimisticRead() ;
+                if ( ! node.lock.validate(v) )
+                    continue restart ;
+                parent = node ;
+                pv = v ;
+                node = child ;
+                v = cv ;
+            }
+        }
+    }
+
+    /** Counts the keys this call added : size() also counts changes by other threads. */
+    @Override
+    public long insertAll(Iterator<RadixEntry> entries)
+    {
+        long count = 0 ;
+        while ( entries.hasNext() )
+        {
+            RadixEntry e = entries.next() ;
+            if ( insert(e.key, e.value) )
+                count++ ;
+        }
+        return count ;
+    }
+
+    @Override
+    public boolean delete(byte[] key)
+    {
+        restart:
+        for(;;)
+        {
+            Node grandparent = null ;
+            long gv = 0 ;
+            Node parent = null ;
+            long pv = 0 ;
+            Node node = root ;
+            long v = node.lock.tryOptimisticRead() ;
+            int depth = 0 ;
+            for(;;)
+            {
+                if ( v == 0 )
+                {
+                    restart() ;
+                    continue restart ;
+                }
+                byte[] prefix = node.prefix ;
+                if ( matchLength(prefix, key, depth) < prefix.length )
+                {
+                    if ( ! node.lock.validate(v) )
+                        continue restart ;
+                    return false ;
+                }
+                depth += prefix.length ;
+                if ( depth < key.length )
+                {
+                    Node child = node.sub.get(key[depth] & 0xFF) ;
+                    long cv = ( child == null ) ? 0 : child.lock.tryOptimisticRead() ;
+                    if ( ! node.lock.validate(v) )
+                        continue restart ;
+                    if ( child == null )
+                        return false ;
+                    grandparent = parent ;
+                    gv = pv ;
+                    parent = node ;
+                    pv = v ;
+                    node = child ;
+                    v = cv ;
+                    continue ;
+                }
+
+                // Key ends at this node.
+                byte[] value = node.value ;
+                Fanout sub = node.sub ;
+                if ( ! node.lock.validate(v) )
+                    continue restart ;
+                if ( value == null )
+                    return false ;
+
+                if ( node == root || sub.size() >= 2 )
+                {
+                    // Stays as a branch.
+                    long w = node.lock.tryConvertToWriteLock(v) ;
+                    if ( w == 0 )
+                        continue restart ;
+                    node.value = null ;
+                    node.lock.unlockWrite(w) ;
+                    size.decrement() ;
+                    return true ;
+                }
+
+                if ( sub.size() == 1 )
+                {
+                    // One subnode : it takes the place of this node.
+                    Node child = sub.nodes[0] ;
+                    long cv = child.lock.tryOptimisticRead() ;
+                    if ( cv == 0 )
+                        continue restart ;
+                    long pw = parent.lock.tryConvertToWriteLock(pv) ;
+                    if ( pw == 0 )
+                        continue restart ;
+                    long w = node.lock.tryConvertToWriteLock(v) ;
+                    if ( w == 0 )
+                    {
+                        parent.lock.unlockWrite(pw) ;
+                        continue restart ;
+                    }
+                    long cw = child.lock.tryConvertToWriteLock(cv) ;
+                    if ( cw == 0 )
+                    {
+                        node.lock.unlockWrite(w) ;
+                        parent.lock.unlockWrite(pw) ;
+                        continue restart ;
+                    }
+                    child.prefix = concat(prefix, child.prefix) ;
+                    parent.sub = parent.sub.with(prefix[0] & 0xFF, child) ;
+                    child.lock.unlockWrite(cw) ;
+                    node.lock.unlockWrite(w) ;
+                    parent.lock.unlockWrite(pw) ;
+                    size.decrement() ;
+                    return true ;
+                }
+
+                // Leaf : remove from the parent.
+                long pw = parent.lock.tryConvertToWriteLock(pv) ;
+                if ( pw == 0 )
+                    continue restart ;
+                long w = node.lock.tryConvertToWriteLock(v) ;
+                if ( w == 0 )
+                {
+                    parent.lock.unlockWrite(pw) ;
+                    continue restart ;
+                }
+                Fanout psub = parent.sub.without(prefix[0] & 0xFF) ;
+                if ( parent != root && parent.value == null && psub.size() == 1 )
+                {
+                    // The parent is left with no entry and one subnode : 
+                    // that subnode takes the place of the parent.
+                    Node sibling = psub.nodes[0] ;
+                    long sv = sibling.lock.tryOptimisticRead() ;
+                    long gw = ( sv == 0 ) ? 0 : grandparent.lock.tryConvertToWriteLock(gv) ;
+                    if ( gw == 0 )
+                    {
+                        node.lock.unlockWrite(w) ;
+                        parent.lock.unlockWrite(pw) ;
+                        continue restart ;
+                    }
+                    long sw = sibling.lock.tryConvertToWriteLock(sv) ;
+                    if ( sw == 0 )
+                    {
+                        grandparent.lock.unlockWrite(gw) ;
+                        node.lock.unlockWrite(w) ;
+                        parent.lock.unlockWrite(pw) ;
+                        continue restart ;
+                    }
+                    byte[] parentPrefix = parent.prefix ;
+                    sibling.prefix = concat(parentPrefix, sibling.prefix) ;
+                    grandparent.sub = grandparent.sub.with(parentPrefix[0] & 0xFF, sibling) ;
+                    sibling.lock.unlockWrite(sw) ;
+                    grandparent.lock.unlockWrite(gw) ;
+                }
+                parent.sub = psub ;
+                node.lock.unlockWrite(w) ;
+                parent.lock.unlockWrite(pw) ;
+                size.decrement() ;
+                return true ;
+            }
+        }
+    }
+
+    /** Delete every entry. Not atomic : entries inserted meanwhile may remain. */
+    @Override
+    public void clear()
+    {
+        Iterator<RadixEntry> iter = iterator() ;
+        while ( iter.hasNext() )
+            delete(iter.next().key) ;
+    }
+
+    @Override
+    public ByteBuffer min()             { return min(null) ; }
+
+    @Override
+    public ByteBuffer min(byte[] b)
+    {
+        Iterator<RadixEntry> iter = iterator() ;
+        if ( ! iter.hasNext() )
+            return null ;
+        return toByteBuffer(iter.next().key, b) ;
+    }
+
+    @Override
+    public ByteBuffer max()             { return max(null) ; }
+
+    @Override
+    public ByteBuffer max(byte[] b)
+    {
+        restart:
+        for(;;)
+        {
+            Node node = root ;
+            long v = node.lock.tryOptimisticRead() ;
+            byte[] path = RadixTreeImpl.bytes0 ;
+            for(;;)
+            {
+                if ( v == 0 )
+                {
+                    restart() ;
+                    continue restart ;
+                }
+                byte[] prefix = node.prefix ;
+                byte[] value = node.value ;
+                Fanout sub = node.sub ;
+                Node child = ( sub.size() == 0 ) ? null : sub.nodes[sub.size()-1] ;
+                long cv = ( child == null ) ? 0 : child.lock.tryOptimisticRead() ;
+                if ( ! node.lock.validate(v) )
+                    continue restart ;
+                path = concat(path, prefix) ;
+                if ( child == null )
+                    return ( value == null ) ? null : toByteBuffer(path, b) ;
+                node = child ;
+                v = cv ;
+            }
+        }
+    }
+
+    private static ByteBuffer toByteBuffer(byte[] key, byte[] b)
+    {
+        ByteBuffer bb = ( b == null ) ? ByteBuffer.allocate(key.length) : ByteBuffer.wrap(b) ;
+        bb.put(key) ;
+        bb.flip() ;
+        return bb ;
+    }
+
+    @Override
+    public long size()
+    {
+        return size.sum() ;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for(;;)
+        {
+            long v = root.lock.tryOptimisticRead() ;
+            boolean empty = ( root.value == null && root.sub.size() == 0 ) ;
+            if ( v != 0 && root.lock.validate(v) )
+                return empty ;
+            restart() ;
+        }
+    }
+
+    @Override
+    public Iterator<RadixEntry> iterator()
+    {
+        return iterator(null, null) ;
+    }
+
+    /** Entries from start (inclusive) to finish (exclusive) ; null for no bound. */
+    @Override
+    public Iterator<RadixEntry> iterator(byte[] start, byte[] finish)
+    {
+        return new ScanIterator(start, finish) ;
+    }
+
+    @Override
+    public RadixCursor cursor(byte[] start, byte[] finish)
+    {
+        return new ScanIterator(start, finish) ;
+    }
+
+    private final class ScanIterator implements Iterator<RadixEntry>, RadixCursor
+    {
+        private final byte[] finish ;
+        // Next batch starts from lower.
+        private byte[] lower ;
+        private boolean inclusive = true ;
+        // The batch : keys end to end in keyBytes.
+        private byte[] keyBytes = new byte[1024] ;
+        private int keysLength = 0 ;
+        private final int[] keyEnds = new int[BatchSize] ;
+        private final byte[][] values = new byte[BatchSize][] ;
+        private int count = 0 ;
+        // Next entry of the batch.
+        private int idx = 0 ;
+        // Key of the node being scanned.
+        private byte[] path = new byte[64] ;
+        private ByteBuffer keyView = null ;
+        // Reached finish or the end of the tree.
+        private boolean finished = false ;
+        // The current descent reached finish.
+        private boolean stop ;
+
+        ScanIterator(byte[] start, byte[] finish)
+        {
+            this.lower = start ;
+            this.finish = finish ;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if ( idx < count )
+                return true ;
+            if ( finished )
+                return false ;
+            fill() ;
+            return idx < count ;
+        }
+
+        @Override
+        public RadixEntry next()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException() ;
+            int i = idx++ ;
+            return new RadixEntry(Arrays.copyOfRange(keyBytes, keyStart(i), keyEnds[i]), values[i]) ;
+        }
+
+        @Override
+        public boolean advance()
+        {
+            if ( ! hasNext() )
+                return false ;
+            idx++ ;
+            return true ;
+        }
+
+        @Override
+        public ByteBuffer key()
+        {
+            int i = idx-1 ;
+            if ( keyView == null || keyView.array() != keyBytes )
+                keyView = ByteBuffer.wrap(keyBytes) ;
+            keyView.limit(keyEnds[i]) ;
+            keyView.position(keyStart(i)) ;
+            return keyView ;
+        }
+
+        @Override
+        public byte[] value()
+        {
+            return values[idx-1] ;
+        }
+
+        private int keyStart(int i)
+        {
+            return ( i == 0 ) ? 0 : keyEnds[i-1] ;
+        }
+
+        private void fill()
+        {
+            for(;;)
+            {
+                count = 0 ;
+                keysLength = 0 ;
+                stop = false ;
+                long v = root.lock.tryOptimisticRead() ;
+                if ( v != 0 && scan(root, v, 0, lower) )
+                    break ;
+                restart() ;
+            }
+            idx = 0 ;
+            if ( stop || count < BatchSize )
+                finished = true ;
+            if ( count > 0 )
+            {
+                lower = Arrays.copyOfRange(keyBytes, keyStart(count-1), keyEnds[count-1]) ;
+                inclusive = false ;
+            }
+        }
+
+        private boolean full()
+        {
+            return stop || count >= BatchSize ;
+        }
+
+        private void add(int keyLength, byte[] value)
+        {
+            if ( keysLength+keyLength > keyBytes.length )
+                keyBytes = Arrays.copyOf(keyBytes, Math.max(2*keyBytes.length, keysLength+keyLength)) ;
+            System.arraycopy(path, 0, keyBytes, keysLength, keyLength) ;
+            keysLength += keyLength ;
+            keyEnds[count] = keysLength ;
+            values[count] = ( value == value0 ) ? null : value ;
+            count++ ;
+        }
+
+        /** Collect entries of the subtree at node, read at version v, with the key
+         *  so far in path[0,pathLength), above lower (null for no bound).
+         *  Return false if the descent must restart. */
+        private boolean scan(Node node, long v, int pathLength, byte[] lower)
+        {
+            byte[] prefix = node.prefix ;
+            byte[] value = node.value ;
+            Fanout sub = node.sub ;
+            if ( ! node.lock.validate(v) )
+                return false ;
+            int L = pathLength+prefix.length ;
+            if ( L > path.length )
+                path = Arrays.copyOf(path, Math.max(2*path.length, L)) ;
+            System.arraycopy(prefix, 0, path, pathLength, prefix.length) ;
+            if ( finish != null && Arrays.compareUnsigned(path, 0, L, finish, 0, finish.length) >= 0 )
+            {
+                // This key and all below it are past the finish.
+                stop = true ;
+                return true ;
+            }
+
+            // Subnodes from position 'from' ; the one at 'exact' may have keys below lower.
+            boolean emit = true ;
+            int from = 0 ;
+            int exact = -1 ;
+            if ( lower != null )
+            {
+                int n = Math.min(L, lower.length) ;
+                int x = Arrays.compareUnsigned(path, 0, n, lower, 0, n) ;
+                if ( x < 0 )
+                    // All of this subtree is below lower.
+                    return true ;
+                if ( x == 0 && L == lower.length )
+                    emit = inclusive ;
+                else if ( x == 0 && L < lower.length )
+                {
+                    emit = false ;
+                    int i = sub.find(lower[L] & 0xFF) ;
+                    if ( i >= 0 )
+                        from = exact = i ;
+                    else
+                        from = -(i+1) ;
+                }
+                // else all of this subtree is above lower.
+            }
+
+            if ( emit && value != null )
+            {
+                add(L, value) ;
+                if ( full() )
+                    return true ;
+            }
+            for ( int i = from ; i < sub.size() ; i++ )
+            {
+                Node child = sub.nodes[i] ;
+                long cv = child.lock.tryOptimisticRead() ;
+                if ( cv == 0 || ! node.lock.validate(v) )
+                    return false ;
+                if ( ! scan(child, cv, L, ( i == exact ) ? lower : null) )
+                    return false ;
+                if ( full() )
+                    return true ;
+            }
+            return true ;
+        }
+    }
+
+    @Override
+    public void print()
+    {
+        output(root, 0, IndentedWriter.stdout) ;
+        IndentedWriter.stdout.flush() ;
+    }
+
+    private static void output(Node node, int depth, IndentedWriter out)
+    {
+        String valStr = ( node.value == null ) ? "" : ( node.value == value0 ) ? "[--]" : "["+Bytes.asHex(node.value)+"]" ;
+        out.println(String.format("Node: depth=%d prefix=%s%s", depth, Bytes.asHex(node.prefix), valStr)) ;
+        out.incIndent() ;
+        Fanout sub = node.sub ;
+        for ( int i = 0 ; i < sub.size() ; i++ )
+            output(sub.nodes[i], depth+node.prefix.length, out) ;
+        out.decIndent() ;
+    }
+
+    @Override
+    public void printLeaves()
+    {
+        Iter.apply(iterator(), System.out::println) ;
+    }
+
+    /** Check the structure. Only meaningful when there are no concurrent changes. */
+    @Override
+    public void check()
+    {
+        if ( root.prefix.length != 0 )
+            RadixTreeImpl.error("Root has a prefix") ;
+        long count = check(root) ;
+        if ( count != size() )
+            RadixTreeImpl.error("Size is "+size()+" but the tree has "+count+" entries") ;
+    }
+
+    private long check(Node node)
+    {
+        long count = ( node.value == null ) ? 0 : 1 ;
+        Fanout sub = node.sub ;
+        if ( node != root )
+        {
+            if ( node.prefix.length == 0 )
+                RadixTreeImpl.error("Empty prefix below the root") ;
+            if ( node.value == null && sub.size() < 2 )
+                RadixTreeImpl.error("Node with no entry has "+sub.size()+" subnodes: "+Bytes.asHex(node.prefix)) ;
+        }
+        for ( int i = 0 ; i < sub.size() ; i++ )
+        {
+            Node n = sub.nodes[i] ;
+            if ( i > 0 && (sub.keys[i-1] & 0xFF) >= (sub.keys[i] & 0xFF) )
+                RadixTreeImpl.error("Subnodes not strictly increasing") ;
+            if ( n.prefix.length == 0 || n.prefix[0] != sub.keys[i] )
+                RadixTreeImpl.error("Subnode in the wrong slot: "+(sub.keys[i]&0xFF)) ;
+            count += check(n) ;
+        }
+        return count ;
+    }
+}
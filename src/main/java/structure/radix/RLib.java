@@ -18,6 +18,7 @@
 package structure.radix;
 
 import java.nio.ByteBuffer ;
+import java.util.Arrays ;
 import java.util.Iterator ;
 
 import org.apache.jena.atlas.iterator.Iter ;
@@ -34,6 +35,21 @@ public class RLib
         return Iter.asString(iter, ", ") ;
     }
 
+    /** The least key after all keys that start with prefix ; null if there is none (the prefix is all 0xFF). */
+    final public static byte[] prefixFinish(byte[] prefix)
+    {
+        for ( int i = prefix.length-1 ; i >= 0 ; i-- )
+        {
+            if ( prefix[i] != (byte)0xFF )
+            {
+                byte[] b = Arrays.copyOf(prefix, i+1) ;
+                b[i]++ ;
+                return b ;
+            }
+        }
+        return null ;
+    }
+
     // When right , move to ByteBufferLib.
     /** Copy from a byte buffer */
     final public static byte[] bb2array(ByteBuffer bb, int start, int finish)
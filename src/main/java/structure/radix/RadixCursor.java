@@ -0,0 +1,41 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.radix;
+
+import java.nio.ByteBuffer ;
+
+/** Step through the entries of a {@link RadixTree} without making an object per entry.
+ *  <pre>
+ *     RadixCursor cursor = tree.cursor(start, finish) ;
+ *     while ( cursor.advance() )
+ *         ... cursor.key() ... cursor.value() ...
+ *  </pre>
+ *  The key buffer is reused and the value is the tree's own array: both are
+ *  only valid until the next {@link #advance} and must not be changed.
+ */
+public interface RadixCursor
+{
+    /** Move to the next entry ; return false if there are no more. */
+    public boolean advance() ;
+
+    /** The key of the current entry, as the bytes between position and limit. */
+    public ByteBuffer key() ;
+
+    /** The value of the current entry (null if there is no value). */
+    public byte[] value() ;
+}
@@ -17,7 +17,9 @@
 
 package structure.radix;
 
+import java.nio.ByteBuffer ;
 import java.util.Iterator ;
+import java.util.NoSuchElementException ;
 
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.tdb.base.record.Record ;
@@ -26,15 +28,22 @@ import org.apache.jena.tdb.index.RangeIndex ;
 
 public class RadixIndex implements RangeIndex
 {
-    private RadixTree radix = RadixTreeFactory.create() ;
+    private final RadixTree radix ;
     private RecordFactory recordFactory ;
     
     static int counter = 0 ;
     
     public RadixIndex(RecordFactory recordFactory)
+    {
+        this(recordFactory, RadixTreeFactory.create()) ;
+    }
+    
+    /** An index over the given tree ; {@link RadixTreeFactory#createConcurrent()} for an index used by many threads. */
+    public RadixIndex(RecordFactory recordFactory, RadixTree radix)
     {
         //radix = new RadixTreeLogger(("Idx-"+counter++), radix) ; 
         this.recordFactory = recordFactory ;
+        this.radix = radix ;
     }
     
     @Override
@@ -59,6 +68,14 @@ public class RadixIndex implements RangeIndex
         return radix.insert(record.getKey(), record.getValue()) ;
     }
 
+    /** Add a batch of records, quickest with the records in key order.
+     *  Return the number of records with keys not already in the index.
+     */
+    public long addAll(Iterator<Record> records)
+    {
+        return radix.insertAll(Iter.map(records, (r)->new RadixEntry(r.getKey(), r.getValue()))) ;
+    }
+
     @Override
     public boolean delete(Record record)
     {
@@ -68,7 +85,7 @@ public class RadixIndex implements RangeIndex
     @Override
     public Iterator<Record> iterator()
     {
-        return Iter.map(radix.iterator(null, null), (entry)->new Record(entry.key, entry.value)) ;
+        return iterator(null, null) ;
     }
 
     @Override
@@ -76,7 +93,36 @@ public class RadixIndex implements RangeIndex
     {
         byte[] s = (recordMin==null)?null:recordMin.getKey() ;
         byte[] f = (recordMax==null)?null:recordMax.getKey() ;
-        return Iter.map(radix.iterator(s,f), (entry)->new Record(entry.key, entry.value)) ;
+        return records(radix.cursor(s,f)) ;
+    }
+
+    /** Records from a cursor, copying each key once. */
+    private static Iterator<Record> records(RadixCursor cursor)
+    {
+        return new Iterator<Record>() {
+            // Whether the cursor is on an entry not yet returned ; null for not yet known.
+            private Boolean ready = null ;
+
+            @Override
+            public boolean hasNext()
+            {
+                if ( ready == null )
+                    ready = cursor.advance() ;
+                return ready ;
+            }
+
+            @Override
+            public Record next()
+            {
+                if ( ! hasNext() )
+                    throw new NoSuchElementException() ;
+                ready = null ;
+                ByteBuffer k = cursor.key() ;
+                byte[] key = new byte[k.remaining()] ;
+                k.duplicate().get(key) ;
+                return new Record(key, cursor.value()) ;
+            }
+        } ;
     }
 
     @Override
@@ -22,38 +22,56 @@ import static structure.radix.RadixTreeImpl.logging ;
 import static structure.radix.Str.strToPosn ;
 
 import java.nio.ByteBuffer ;
+import java.util.Arrays ;
 import java.util.Iterator ;
 import java.util.NoSuchElementException ;
 
 import org.apache.jena.atlas.AtlasException ;
-import org.apache.jena.atlas.lib.Bytes ;
 
-class RadixIterator implements Iterator<RadixEntry>
+class RadixIterator implements Iterator<RadixEntry>, RadixCursor
 {
     // Or parent.
     // Deque<RadixNode> stack = new ArrayDeque<RadixNode>() ;
     // Still need the place-in-parent.
-    RadixNode node ;
+    // The current node is held by id : node objects are released after each step
+    // so a scan does not keep every node of the tree in the node manager.
+    private final RadixNodeManager manager ;
+    private long nodeId = RadixNode.NoId ;
     ByteBuffer slot = null ;
     ByteBuffer prefix = null ;
 
     byte[] finish = null ;
 
+    // Cursor : the current entry, with the key in the prefix buffer.
+    private int keyLength = 0 ;
+    private byte[] value = null ;
+    private ByteBuffer keyView = null ;
+
     RadixIterator(RadixTreeImpl tree, byte[] start, byte[] finish)
     {
-        node = tree.getRoot() ;
+        this.manager = tree.getNodeManager() ;
         this.finish = finish ;
+        setNode(start(tree.getRoot(), start)) ;
+        manager.release() ;
+    }
+
+    /** Position at start : return the node for the first slot. */
+    private RadixNode start(RadixNode node, byte[] start)
+    {
+        if ( node == null )
+            // Empty tree.
+            return null ;
         if ( start == null )
         {
             prefix = ByteBuffer.allocate(50) ;    //Reallocating?
-            node = downToMinNode(node, prefix) ;
+            node = downToMinNode(node) ;
             slot = prefix ;
             if ( logging && log.isDebugEnabled() )
             {
                 log.debug("Iterator start min node") ;
                 log.debug("Iterator start: "+node) ;
             }
-            return ;
+            return node ;
         }
 
         // BB : basically broken.
@@ -113,6 +131,10 @@ class RadixIterator implements Iterator<RadixEntry>
                 node = node2 ;
                 continue ;      // LOOP
             }
+
+            // Start key ends exactly here - this node is the start point.
+            if ( start.length == node.lenFinish )
+                break ;
                 
             // TODO Move out of loop.
             
@@ -133,9 +155,9 @@ class RadixIterator implements Iterator<RadixEntry>
                 if ( j > 0 )
                 {
                     node2 = node.get(j) ;
-                    node = downToMinNode(node2, prefix) ;
+                    node = downToMinNode(node2) ;
                     slot = prefix ;
-                    return ;
+                    return node ;
                 }
                 // above all this tree - drop out. 
             }
@@ -143,15 +165,14 @@ class RadixIterator implements Iterator<RadixEntry>
             RadixNode node3 = gotoUpAndAcross(node) ;
             if ( node3 == null )
             {
-                node = null ;
-                return ;
+                return null ;
             }
             // Very like in hasNext - can be combine?
             prefix.position(node3.lenStart) ;
-            node3 = downToMinNode(node3, prefix) ;
+            node3 = downToMinNode(node3) ;
             slot = prefix ;
             node = node3 ;
-            return ;
+            return node ;
         }                
 
         if ( logging && log.isDebugEnabled() )
@@ -174,14 +195,14 @@ class RadixIterator implements Iterator<RadixEntry>
         // Exit at Node of interest.
         if ( N < 0 )
         {
-            node = downToMinNode(node, prefix) ;
+            node = downToMinNode(node) ;
             slot = prefix ;
             if ( logging && log.isDebugEnabled() )
             {
                 log.debug("  Short key: "+strToPosn(prefix)) ;
                 log.debug("  Iterator start: "+node) ;
             }
-            return ;
+            return node ;
         }
 
         if ( N < node.prefix.length )
@@ -189,14 +210,14 @@ class RadixIterator implements Iterator<RadixEntry>
             // Key diverges.
             byte a = start[node.lenStart+N] ;   // Key byte of divergence
             byte b = node.prefix[N] ;           // Prefix byte of divergence
-            int x = Byte.compare(a, b) ;
+            int x = Integer.compare(a & 0xFF, b & 0xFF) ;
             if ( x == 0 )
                 throw new AtlasException("bytes compare same - expected different") ;
             if ( x < 0 )
             {
                 // Diverge - less.
                 // Start min here
-                node = downToMinNode(node, prefix) ;
+                node = downToMinNode(node) ;
                 slot = prefix ;
                 if ( logging && log.isDebugEnabled() )
                 {
@@ -216,18 +237,17 @@ class RadixIterator implements Iterator<RadixEntry>
                 RadixNode node2 = gotoUpAndAcross(node) ;
                 if ( node2 == null )
                 {
-                    node = null ;
-                    return ;
+                    return null ;
                 }
                 // Very like in hasNext - can be combine?
                 prefix.position(node2.lenStart) ;
-                node2 = downToMinNode(node2, prefix) ;
+                node2 = downToMinNode(node2) ;
                 slot = prefix ;
                 node = node2 ;
-                return ;
+                return node ;
             }
             // Done.
-            return ;
+            return node ;
         }
 
         // N < node.prefix.length
@@ -238,11 +258,11 @@ class RadixIterator implements Iterator<RadixEntry>
         {
             // Don't yield this node. Start from next one.
             slot = null ;
-            return ;
+            return node ;
         }
         
 
-        node = downToMinNode(node, prefix) ;
+        node = downToMinNode(node) ;
         slot = prefix ;                    
 
         if ( logging && log.isDebugEnabled() )
@@ -250,6 +270,7 @@ class RadixIterator implements Iterator<RadixEntry>
             log.debug("  Min subtree: "+node) ;
             log.debug("  Slot: "+strToPosn(slot)) ;
         }
+        return node ;
     }
 
     static ByteBuffer min(RadixNode node, ByteBuffer slot)
@@ -272,19 +293,19 @@ class RadixIterator implements Iterator<RadixEntry>
     // TODO Common code in radix
     // TODO Check downToMinNode() with RadixTree.min() -- common code?
 
-    private static RadixNode downToMinNode(RadixNode node, ByteBuffer slot)
+    private RadixNode downToMinNode(RadixNode node)
     {
         while(!node.hasEntry())
         {
             // Copy as we go.
-            slot = appendBytes(node.prefix, 0, node.prefix.length, slot) ;
+            prefix = appendBytes(node.prefix, 0, node.prefix.length, prefix) ;
             int idx = node.nextIndex(0) ;
             if ( idx < 0 )
                 break ;
             node = node.get(idx) ;
         }
         // Copy leaf details.
-        slot = appendBytes(node.prefix, 0, node.prefix.length, slot) ;
+        prefix = appendBytes(node.prefix, 0, node.prefix.length, prefix) ;
         return node ;
     }
 
@@ -309,9 +330,10 @@ class RadixIterator implements Iterator<RadixEntry>
     {
         if ( bb.position()+length > bb.capacity() )
         {
-            ByteBuffer bb2 = ByteBuffer.allocate(bb.capacity()*2 ) ;
+            ByteBuffer bb2 = ByteBuffer.allocate(Math.max(bb.capacity()*2, bb.position()+length)) ;
             System.arraycopy(bb.array(), 0, bb2.array(), 0, bb.position()) ;
-            return bb2 ;
+            bb2.position(bb.position()) ;
+            bb = bb2 ;
         }
         //            System.arraycopy(bb.array(), bb.position(), array, 0, length) ;
         //            bb.position((bb.position()+length)) ;
@@ -331,11 +353,12 @@ class RadixIterator implements Iterator<RadixEntry>
     public boolean hasNext()
     {
         if ( slot != null )
-            return true ;
-        if ( node == null )
+            return ! atFinish() ;
+        if ( nodeId == RadixNode.NoId )
             // Ended
             return false ;
 
+        RadixNode node = node() ;
         RadixNode node2 ;
         if ( node.isLeaf() )
         {
@@ -350,31 +373,41 @@ class RadixIterator implements Iterator<RadixEntry>
         }
         if ( node2 == null )
         {
-            node = null ;
+            nodeId = RadixNode.NoId ;
             return false ;
         }
         prefix.position(node2.lenStart) ;
 
         // Now go down the next one
-        node2 = downToMinNode(node2, prefix) ;
+        node2 = downToMinNode(node2) ;
         slot = prefix ;
-        node = node2 ;
-        
-        // Finished?
-        if ( finish != null )
-        {
-            int x = Bytes.compare(slot.array(), finish) ;
-            if ( x >= 0 )
-            {
-                slot = null ;
-                node = null ;
-                return false ;
-            }
-        }
-        
+        setNode(node2) ;
+        return ! atFinish() ;
+    }
+
+    /** Is the pending slot at or past the finish? If so, end the iteration. */
+    private boolean atFinish()
+    {
+        if ( finish == null )
+            return false ;
+        int x = Arrays.compareUnsigned(slot.array(), 0, slot.position(), finish, 0, finish.length) ;
+        if ( x < 0 )
+            return false ;
+        slot = null ;
+        nodeId = RadixNode.NoId ;
         return true ;
     }
 
+    private RadixNode node()
+    {
+        return ( nodeId == RadixNode.NoId ) ? null : manager.get(nodeId) ;
+    }
+
+    private void setNode(RadixNode node)
+    {
+        nodeId = ( node == null ) ? RadixNode.NoId : node.getId() ;
+    }
+
     private static RadixNode gotoUpAndAcross(RadixNode node2)
     {
         //System.out.println("gotoUpAndAcross: "+node2) ;
@@ -413,15 +446,48 @@ class RadixIterator implements Iterator<RadixEntry>
     {
         if ( ! hasNext() )
             throw new NoSuchElementException() ;
+        RadixNode node = node() ;
         if ( ! node.hasEntry() )
             throw new AtlasException("yielding a non value") ;
         byte[] x = RLib.bb2array(prefix, 0, slot.position()) ;
         slot = null ;
-        return new RadixEntry(x, node.getValue()) ;
+        RadixEntry entry = new RadixEntry(x, node.getValue()) ;
+        manager.release() ;
+        return entry ;
     }
 
     @Override
     public void remove()
     { throw new UnsupportedOperationException() ; }
 
+    // RadixCursor : the key stays in the prefix buffer, the value is not copied.
+
+    @Override
+    public boolean advance()
+    {
+        if ( ! hasNext() )
+            return false ;
+        keyLength = slot.position() ;
+        value = node().getValue() ;
+        slot = null ;
+        manager.release() ;
+        return true ;
+    }
+
+    @Override
+    public ByteBuffer key()
+    {
+        if ( keyView == null || keyView.array() != prefix.array() )
+            keyView = ByteBuffer.wrap(prefix.array()) ;
+        keyView.limit(keyLength) ;
+        keyView.position(0) ;
+        return keyView ;
+    }
+
+    @Override
+    public byte[] value()
+    {
+        return value ;
+    }
+
 }
@@ -17,6 +17,7 @@
 
 package structure.radix;
 
+import java.nio.ByteBuffer ;
 import java.util.Arrays ;
 import java.util.HashSet ;
 import java.util.Set ;
@@ -38,9 +39,11 @@ public final class RadixNode
     // Memory blocks
     //    Different sizes (prefixes, fan-out arrays) 
     
-    private int parentId ;
-    private RadixNode parent ;
-    /*package*/ final RadixNode getParent()   { return parent ; }
+    // Nodes are held by a RadixNodeManager and refer to each other by id.
+    /*package*/ static final long NoId = -1 ;
+    private final RadixNodeManager manager ;
+    private long parentId ;
+    /*package*/ final RadixNode getParent()   { return ( parentId == NoId ) ? null : manager.get(parentId) ; }
     
     // Dirty flag.
     // boolean nodeChanged = true ;
@@ -51,9 +54,8 @@ public final class RadixNode
      * http://en.wikipedia.org/wiki/Radix_tree
      */
 
-    private static int counter = 0 ; 
-    private final int id = (counter++);
-    /*package*/ int getId() { return id ; }
+    private final long id ;
+    /*package*/ long getId() { return id ; }
     
     // Prefix to this node from node above.
     
@@ -63,11 +65,29 @@ public final class RadixNode
     int lenFinish ; // Debugging? Use tracking to know these values. 
     int lenStart ;
     
-    // The nodes below this one, corresponding to each possible next byte
+    // Number of entries in the subtree at this node, including this node.
+    // Kept up to date by the tree so that prefix counts do not need a walk.
+    long subtreeSize ;
+    
+    // The nodes below this one, corresponding to each possible next byte.
+    // Adaptive layout, chosen by the size of the nodes array (see "The Adaptive
+    // Radix Tree", Leis, Kemper, Neumann, ICDE 2013) :
+    //   Node4, Node16 : keys[] holds the index bytes, sorted, in the first
+    //                   numSubNodes slots ; nodes[] runs in step.
+    //   Node48        : keys[] maps an index byte to (slot+1) in nodes[] ; 0 for none.
+    //   Node256       : nodes[] is indexed directly by the byte ; keys is null.
+    // nodes[] holds subnode ids ; NoId for an empty slot.
+    // Nodes grow when full and shrink, with some slack, as subnodes are removed.
     private final static int FanOutSize = 256 ;
+    private final static int Node4      = 4 ;
+    private final static int Node16     = 16 ;
+    private final static int Node48     = 48 ;
+    private final static int Node256    = FanOutSize ;
     //int maxNumChildren()    { return FanOutSize+1 ; }
     
-    private RadixNode[] nodes = null ;      // null -> leaf (and here is not null)
+    private long[] nodes = null ;           // null -> leaf (and here is not null)
+    private byte[] keys = null ;
+    private int numSubNodes = 0 ;
 
     // The "key exists, no value" maker when used as just a key, no value index.
     static private byte[] value0 = new byte[0] ;
@@ -83,52 +103,248 @@ public final class RadixNode
     private void setAsParent(RadixNode n)
     {
         if ( n != null )
-        {
-            this.parent = n ;
             this.parentId = n.id ;
-        }
+    }
+
+    /** Capacity of the subnode layout (4, 16, 48 or 256) ; 0 for a leaf. */
+    /*package*/ int capacity()
+    {
+        return ( nodes == null ) ? 0 : nodes.length ;
     }
 
     // Get/set a slot
     RadixNode get(int idx)
     {
-        // Nodes -> long id ; long id -> RadixNode
-        //radixManager.get(idx) ;
-        return nodes[idx] ;
+        long x = getSubId(idx) ;
+        return ( x == NoId ) ? null : manager.get(x) ;
+    }
+
+    /** The id of the subnode for idx, or NoId */
+    long getSubId(int idx)
+    {
+        switch (nodes.length)
+        {
+            case Node256:
+                return nodes[idx] ;
+            case Node48:
+            {
+                int slot = keys[idx] & 0xFF ;
+                return ( slot == 0 ) ? NoId : nodes[slot-1] ;
+            }
+            default:
+            {
+                int i = findKey(idx) ;
+                return ( i < 0 ) ? NoId : nodes[i] ;
+            }
+        }
+    }
+    
+    /** Node4, Node16 : position of idx in keys[] or -(insertion point+1) */
+    private int findKey(int idx)
+    {
+        for ( int i = 0 ; i < numSubNodes ; i++ )
+        {
+            int k = keys[i] & 0xFF ;
+            if ( k == idx )
+                return i ;
+            if ( k > idx )
+                return -(i+1) ;
+        }
+        return -(numSubNodes+1) ;
     }
     
-    /** No longer in use. */
-    void release()
+    /** Set a slot ; setting null removes the subnode. */
+    void set(int idx, RadixNode n)
     {
-        radixManager.release(this) ;
+        if ( n == null )
+        {
+            remove(idx) ;
+            return ;
+        }
+        n.setAsParent(this) ;
+        setSubId(idx, n.id) ;
     }
 
-    void set(int idx, RadixNode n)
+    /** Set a slot to a subnode id, which must not be NoId. */
+    private void setSubId(int idx, long n)
     {
-        nodes[idx] = n ;
-        if ( n != null )
-            n.setAsParent(this) ;
+        switch (nodes.length)
+        {
+            case Node256:
+                if ( nodes[idx] == NoId )
+                    numSubNodes++ ;
+                nodes[idx] = n ;
+                return ;
+            case Node48:
+            {
+                int slot = keys[idx] & 0xFF ;
+                if ( slot != 0 )
+                {
+                    nodes[slot-1] = n ;
+                    return ;
+                }
+                if ( numSubNodes == Node48 )
+                {
+                    resize(Node256) ;
+                    setSubId(idx, n) ;
+                    return ;
+                }
+                int i = 0 ;
+                while ( nodes[i] != NoId )
+                    i++ ;
+                nodes[i] = n ;
+                keys[idx] = (byte)(i+1) ;
+                numSubNodes++ ;
+                return ;
+            }
+            default:
+            {
+                int i = findKey(idx) ;
+                if ( i >= 0 )
+                {
+                    nodes[i] = n ;
+                    return ;
+                }
+                if ( numSubNodes == nodes.length )
+                {
+                    resize( nodes.length == Node4 ? Node16 : Node48 ) ;
+                    setSubId(idx, n) ;
+                    return ;
+                }
+                i = -(i+1) ;
+                System.arraycopy(keys, i, keys, i+1, numSubNodes-i) ;
+                System.arraycopy(nodes, i, nodes, i+1, numSubNodes-i) ;
+                keys[i] = (byte)idx ;
+                nodes[i] = n ;
+                numSubNodes++ ;
+                return ;
+            }
+        }
+    }
+
+    private void remove(int idx)
+    {
+        switch (nodes.length)
+        {
+            case Node256:
+                if ( nodes[idx] == NoId )
+                    return ;
+                nodes[idx] = NoId ;
+                break ;
+            case Node48:
+            {
+                int slot = keys[idx] & 0xFF ;
+                if ( slot == 0 )
+                    return ;
+                keys[idx] = 0 ;
+                nodes[slot-1] = NoId ;
+                break ;
+            }
+            default:
+            {
+                int i = findKey(idx) ;
+                if ( i < 0 )
+                    return ;
+                System.arraycopy(keys, i+1, keys, i, numSubNodes-i-1) ;
+                System.arraycopy(nodes, i+1, nodes, i, numSubNodes-i-1) ;
+                nodes[numSubNodes-1] = NoId ;
+                break ;
+            }
+        }
+        numSubNodes-- ;
+        
+        // Shrink - leave some room so that alternating insert/delete does not thrash.
+        switch (nodes.length)
+        {
+            case Node256: if ( numSubNodes <= 36 ) resize(Node48) ; break ;
+            case Node48:  if ( numSubNodes <= 12 ) resize(Node16) ; break ;
+            case Node16:  if ( numSubNodes <= 3 )  resize(Node4) ;  break ;
+        }
+    }
+
+    /** Change the layout, keeping the subnodes. */
+    private void resize(int capacity)
+    {
+        int N = numSubNodes ;
+        int[] idxs = new int[N] ;
+        long[] subs = new long[N] ;
+        int j = 0 ;
+        for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
+        {
+            idxs[j] = idx ;
+            subs[j] = getSubId(idx) ;
+            j++ ;
+        }
+        allocSubNodes(capacity) ;
+        for ( j = 0 ; j < N ; j++ )
+            setSubId(idxs[j], subs[j]) ;
+    }
+
+    private void allocSubNodes(int capacity)
+    {
+        nodes = new long[capacity] ;
+        Arrays.fill(nodes, NoId) ;
+        switch (capacity)
+        {
+            case Node256:   keys = null ; break ;
+            case Node48:    keys = new byte[FanOutSize] ; break ;
+            default:        keys = new byte[capacity] ; break ;
+        }
+        numSubNodes = 0 ;
     }
 
     int nextIndex(int start)
     {
-        for ( int idx = start ; idx < nodes.length ; idx++ )
+        switch (nodes.length)
         {
-            if ( nodes[idx] != null )
-                return idx ;
+            case Node256:
+                for ( int idx = start ; idx < FanOutSize ; idx++ )
+                {
+                    if ( nodes[idx] != NoId )
+                        return idx ;
+                }
+                return -1 ;
+            case Node48:
+                for ( int idx = start ; idx < FanOutSize ; idx++ )
+                {
+                    if ( keys[idx] != 0 )
+                        return idx ;
+                }
+                return -1 ;
+            default:
+                for ( int i = 0 ; i < numSubNodes ; i++ )
+                {
+                    int k = keys[i] & 0xFF ;
+                    if ( k >= start )
+                        return k ;
+                }
+                return -1 ;
         }
-        return -1 ;
     }
     
     int lastIndex()
     {
-        for ( int idx = nodes.length-1 ; idx>=0 ; idx-- )
+        switch (nodes.length)
         {
-            if ( nodes[idx] != null )
-                return idx ;
+            case Node256:
+                for ( int idx = FanOutSize-1 ; idx >= 0 ; idx-- )
+                {
+                    if ( nodes[idx] != NoId )
+                        return idx ;
+                }
+                return -1 ;
+            case Node48:
+                for ( int idx = FanOutSize-1 ; idx >= 0 ; idx-- )
+                {
+                    if ( keys[idx] != 0 )
+                        return idx ;
+                }
+                return -1 ;
+            default:
+                if ( numSubNodes == 0 )
+                    return -1 ;
+                return keys[numSubNodes-1] & 0xFF ;
         }
-        return -1 ;
-        
     }
     
     // XXX rename.
@@ -140,123 +356,158 @@ public final class RadixNode
         this.value = n.value ;
         if ( n.nodes != null )
         {
-            for ( int idx = 0 ; idx < n.nodes.length ; idx++ )
-            {
-                nodes[idx] = n.nodes[idx] ;
-                if ( nodes[idx] != null )
-                    nodes[idx].setAsParent(this) ;
-            }
+            // Take over the subnode layout ; n is left with no subnodes.
+            this.nodes = n.nodes ;
+            this.keys = n.keys ;
+            this.numSubNodes = n.numSubNodes ;
+            n.nodes = null ;
+            n.keys = null ;
+            n.numSubNodes = 0 ;
+            for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
+                get(idx).setAsParent(this) ;
         }
     }
     
     boolean zeroSubNodes()
     {
-        if ( nodes == null )
-            return true ;
-        for ( int idx = 0 ; idx < nodes.length ; idx++ )
-        {
-            if ( nodes[idx] != null )
-                return false ;
-        }
-        return true ;
+        return numSubNodes == 0 ;
     }
 
     int countSubNodes()
     {
-        if ( nodes == null )
-            return 0 ;
-        int count = 0 ; 
-        for ( int idx = 0 ; idx < nodes.length ; idx++ )
-        {
-            if ( nodes[idx] != null )
-                count++ ;
-        }
-        return count ;
+        return numSubNodes ;
     }
     
     
     boolean noSubNodes()
     {
-        if ( nodes == null )
-            return true ;
-        
-        for ( int idx = 0 ; idx < nodes.length ; idx++ )
-        {
-            if ( nodes[idx] != null )
-                return false ;
-        }
-        return true ;
+        return numSubNodes == 0 ;
     }
     
     RadixNode oneSubNode()
     {
-        if ( nodes == null )
+        if ( nodes == null || numSubNodes != 1 )
             return null ;
-        RadixNode n = null ;
-        
-        for ( int idx = 0 ; idx < nodes.length ; idx++ )
-        {
-            if ( nodes[idx] != null )
-            {
-                if ( n != null )
-                    // See two.
-                    return null ;
-                // Remember what we saw.
-                n = nodes[idx] ;
-            }
-        }
-        // Return null or the single non-null slot
-        return n ;
+        // Return the single subnode
+        return get(nextIndex(0)) ;
     }
 
     // XXX Version that always changes the node -- checking.
     RadixNode convertToEmptyBranch()
     {
-        if ( nodes == null )
-            nodes = new RadixNode[FanOutSize] ;
-        Arrays.fill(nodes, null) ;
+        // Always a new layout - the old one may have been taken by takeSubNodes.
+        allocSubNodes(Node4) ;
         clearValue() ;
         return this ;
     }
     
+    /** Make an empty branch with a layout that holds numSubNodes without growing. */
+    RadixNode convertToEmptyBranch(int numSubNodes)
+    {
+        int capacity = ( numSubNodes <= Node4 )  ? Node4 :
+                       ( numSubNodes <= Node16 ) ? Node16 :
+                       ( numSubNodes <= Node48 ) ? Node48 : Node256 ;
+        allocSubNodes(capacity) ;
+        clearValue() ;
+        return this ;
+    }
+
     // XXX Version that always changes the node -- checking.
     RadixNode convertToLeaf()
     {
         clearValue() ;
-        if ( nodes == null )
-            return this ;
         nodes = null ;
+        keys = null ;
+        numSubNodes = 0 ;
         return this ;
     }
 
-    //List<RadixNode> nodes ;         // When real, use an array[]; null for leaf.
-    
-    /*
-     * Memory layout:
-     *    Ptr to a block is an 8 byte long.
-     *    
-     *    Each RadixNode is a BufferBuffer slice.
-     *    
-     *    id (long)
-     *    byte[] prefix
-     *    int lenStart
-     *    int lenFinish
-     *       and lefFinish-lenStart is the length of the bytes 
-     *    subnodes[0..255]  Dispatch by next byte
-     *    subnodes[0..15]  Dispatch by next nibble.
-     *      
+    /*package*/ RadixNode(RadixNodeManager manager, long id, RadixNode parent)
+    { 
+        this.manager = manager ;
+        this.id = id ;
+        this.parentId = (parent==null)? NoId : parent.id ;
+        clearValue() ;
+    }
+
+    /* Encoded form, used by block node stores:
+     *    long    parent id
+     *    int     lenStart
+     *    int     lenFinish
+     *    long    subtree size
+     *    int     prefix length, then the prefix bytes
+     *    int     value length (-1 for no entry, -2 for an entry with no value),
+     *            then the value bytes
+     *    int     capacity of the subnode layout, 0 for a leaf
+     *    int     number of subnodes
+     *    (byte index, long id) for each subnode, in index order.
      */
     
-    static RadixNodeManager radixManager = null ;
-    
-    static RadixNode allocBlank(RadixNode parent) { return new RadixNode(parent) ; }
-    static void dealloc(RadixNode node) { }    
+    /** Bytes needed by {@link #encode} */
+    /*package*/ int encodedLength()
+    {
+        int len = 8+4+4+8+4+prefix.length+4+4+4 ;
+        if ( value != null && value != value0 )
+            len += value.length ;
+        return len+9*numSubNodes ;
+    }
 
-    private RadixNode(RadixNode parent)
-    { 
-        this.parent = parent ;
-        this.parentId = (parent==null)? -1 : parent.id ;
-        clearValue() ;
+    /*package*/ void encode(ByteBuffer bb)
+    {
+        bb.putLong(parentId) ;
+        bb.putInt(lenStart) ;
+        bb.putInt(lenFinish) ;
+        bb.putLong(subtreeSize) ;
+        bb.putInt(prefix.length) ;
+        bb.put(prefix) ;
+        if ( value == null )
+            bb.putInt(-1) ;
+        else if ( value == value0 )
+            bb.putInt(-2) ;
+        else
+        {
+            bb.putInt(value.length) ;
+            bb.put(value) ;
+        }
+        bb.putInt(capacity()) ;
+        bb.putInt(numSubNodes) ;
+        if ( nodes == null )
+            return ;
+        for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
+        {
+            bb.put((byte)idx) ;
+            bb.putLong(getSubId(idx)) ;
+        }
+    }
+
+    /*package*/ static RadixNode decode(RadixNodeManager manager, long id, ByteBuffer bb)
+    {
+        RadixNode node = new RadixNode(manager, id, null) ;
+        node.parentId = bb.getLong() ;
+        node.lenStart = bb.getInt() ;
+        node.lenFinish = bb.getInt() ;
+        node.subtreeSize = bb.getLong() ;
+        node.prefix = new byte[bb.getInt()] ;
+        bb.get(node.prefix) ;
+        int valueLen = bb.getInt() ;
+        if ( valueLen == -2 )
+            node.value = value0 ;
+        else if ( valueLen >= 0 )
+        {
+            node.value = new byte[valueLen] ;
+            bb.get(node.value) ;
+        }
+        int capacity = bb.getInt() ;
+        int n = bb.getInt() ;
+        if ( capacity == 0 )
+            return node ;
+        node.allocSubNodes(capacity) ;
+        for ( int i = 0 ; i < n ; i++ )
+        {
+            int idx = bb.get() & 0xFF ;
+            node.setSubId(idx, bb.getLong()) ;
+        }
+        return node ;
     }
 
     // Space cost:
@@ -309,12 +560,10 @@ public final class RadixNode
         }
         
         StringBuilder b = new StringBuilder() ;
-        for ( RadixNode n : nodes )
+        for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
         {
-            if ( n == null )
-                continue ;
             b.append(" ") ;
-            b.append(n.id+"") ;
+            b.append(getSubId(idx)+"") ;
         }
         
         return String.format("Node[%d/%d]: Length=(%d,%d) :: prefix = %s%s -> Sub:%s", id, parentId, lenStart, lenFinish, prefixStr, valStr, b.toString() ) ;
@@ -395,10 +644,10 @@ public final class RadixNode
 
     public void check()
     { 
-        _check(0, new HashSet<Integer>()) ; 
+        _check(0, new HashSet<Long>()) ; 
     }
     
-    private void _check(int length, Set<Integer> seen)
+    private void _check(int length, Set<Long> seen)
     {
         if ( RadixTreeImpl.logging && RadixTreeImpl.log.isDebugEnabled() )
         {
@@ -414,7 +663,7 @@ public final class RadixNode
         }
         seen.add(this.id) ;
 
-        if (parentId != -1 && !seen.contains(parentId) )
+        if (parentId != NoId && !seen.contains(parentId) )
             error(this, "Parent not seen") ;
 
         if ( prefix == null )
@@ -430,29 +679,22 @@ public final class RadixNode
             error(this, "Prefix length error %d,%d", lenFinish - lenStart, prefix.length) ;
 
         // Find self in parent.
+        RadixNode parent = getParent() ;
         if ( parent != null )
         {
             if ( parent.id != parentId )
                 error(this, "parent.id != parentId (%d != %d)", parent.id, parentId ) ;
             
-            int idx = 0 ;
-            int N = parent.nodes.length ;
-            for ( ; idx < N ; idx++ )
-            {
-                // XXX Should be able to find exactly.
-                if ( parent.nodes[idx] == null ) continue ;
-                if ( parent.nodes[idx] == this)
-                    break ;
-            }
-
-            if (idx >= N )
-                error(this, "Not a child of the parent %s : %s", Arrays.asList(parent.nodes).stream().map(idOfNode), parent) ;
+            if ( parent.isLeaf() || parent.get(parent.locate(prefix)) != this )
+                error(this, "Not a child of the parent %s", parent) ;
         }
 
         if ( isLeaf() )
         {
             if ( ! hasEntry() )
                 error(this, "leaf but not a value") ;
+            if ( subtreeSize != 1 )
+                error(this, "Leaf subtree size is %d", subtreeSize) ;
             return ;
         }
         
@@ -477,10 +719,14 @@ public final class RadixNode
 //        if ( nodes.size() < 2 )
 //            error(this, "Internal node has length of "+nodes.size()) ;
         // Check subnodes are sorted and start with a different byte
+        if ( c > nodes.length )
+            error(this, "More subnodes (%d) than slots (%d)", c, nodes.length) ;
         int last = -2 ;
-        for ( RadixNode n : nodes )
+        int seenSubNodes = 0 ;
+        for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
         {
-            if ( n == null ) continue ;
+            RadixNode n = get(idx) ;
+            seenSubNodes++ ;
             int b = -1 ;
             if ( n.prefix.length > 0 )
                 b = (n.prefix[0]&0xFF) ;
@@ -488,16 +734,25 @@ public final class RadixNode
                 error(this, "Prefix start not strictly increasing") ;
             if ( n.parentId != id )
                 error(this, "Child %d points to %d, not parent %d", n.id, n.parentId, id) ;
+            if ( b != idx )
+                error(this, "Child %d is in slot %d, not slot %d", n.id, idx, b) ;
             last = b ;
         }
+        if ( seenSubNodes != c )
+            error(this, "Subnode count is %d but found %d", c, seenSubNodes) ;
+        
+        long x = hasEntry() ? 1 : 0 ;
+        for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
+            x += get(idx).subtreeSize ;
+        if ( x != subtreeSize )
+            error(this, "Subtree size is %d but subnodes give %d", subtreeSize, x) ;
         
         int nextStartLen = length+prefix.length ;
-        for ( RadixNode n : nodes )
-            if ( n != null )
-                n._check(nextStartLen, seen) ;
+        for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
+            get(idx)._check(nextStartLen, seen) ;
     }
     
-    static Function<RadixNode, Integer> idOfNode = (item)->item.id ;
+    static Function<RadixNode, Long> idOfNode = (item)->item.id ;
 
     /** is this node a leaf?  isleaf => isValue */
     public boolean isLeaf()
@@ -527,9 +782,8 @@ public final class RadixNode
         visitor.before(this) ;
         if ( nodes != null )
         {
-            for ( RadixNode n : nodes )
-                if ( n != null )
-                    n._visit(visitor, seen) ;
+            for ( int idx = nextIndex(0) ; idx >= 0 ; idx = nextIndex(idx+1) )
+                get(idx)._visit(visitor, seen) ;
         }
         visitor.after(this) ;
     }
@@ -17,20 +17,42 @@
 
 package structure.radix;
 
-/** A RadixNodeManger controls use of nodes.
- *  
+/** A RadixNodeManager controls use of nodes : it allocates them, gives each a
+ *  long id, and finds a node by id.
+ *  <p>
+ *  The tree works on {@link RadixNode} objects. A manager may keep them as the
+ *  storage ({@link RadixNodeManagerHeap}) or may keep nodes elsewhere, such as
+ *  fixed size blocks outside the Java heap ({@link RadixNodeManagerBlocks}), and
+ *  hand out node objects for the duration of an operation.
+ *  <p>
+ *  The manager also records the root and the number of entries of the tree, so a
+ *  persistent tree can be reopened.
  */ 
-public class RadixNodeManager
+public interface RadixNodeManager
 {
-    // This is probably an interface, or at least a public class.
-    public RadixNodeManager() {}
-    
-    // TODO Finish!
-    RadixNode allocBlank(RadixNode parent)  { return RadixNode.allocBlank(parent) ; }
-    void dealloc(RadixNode node)            { RadixNode.dealloc(node) ; }
-    
-    RadixNode get(long id)                   { return null ; }
-    void release(RadixNode node)            {} 
+    /** A new, blank node. */
+    public RadixNode allocBlank(RadixNode parent) ;
 
-}
+    /** The node is no longer part of the tree. Its id may be reused. */
+    public void dealloc(RadixNode node) ;
+
+    /** Get the node for an id. Within an operation, the same id gives the same object. */
+    public RadixNode get(long id) ;
+
+    /** The tree has finished an operation and no longer needs the node objects
+     *  from this manager. Until then, the manager must keep any changes made to them. */
+    public void release() ;
+
+    /** Root id recorded by {@link #setRoot}, or {@link RadixNode#NoId}. */
+    public long getRootId() ;
 
+    /** Number of entries recorded by {@link #setRoot}. */
+    public long getSize() ;
+
+    public void setRoot(long rootId, long size) ;
+
+    /** Write any changes to the underlying storage. */
+    public void sync() ;
+
+    public void close() ;
+}
@@ -0,0 +1,538 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.radix;
+
+import java.io.IOException ;
+import java.io.UncheckedIOException ;
+import java.nio.ByteBuffer ;
+import java.nio.MappedByteBuffer ;
+import java.nio.channels.FileChannel ;
+import java.nio.file.Path ;
+import java.nio.file.Paths ;
+import java.nio.file.StandardOpenOption ;
+import java.util.ArrayDeque ;
+import java.util.ArrayList ;
+import java.util.BitSet ;
+import java.util.Deque ;
+import java.util.HashMap ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.Map ;
+
+/**
+ * Radix nodes encoded into fixed size blocks outside the Java heap, either in
+ * direct memory or in a memory mapped file.
+ * <p>
+ * A node id is the number of its first block. A node that does not fit in one
+ * block continues in a chain of further blocks. Blocks of deleted nodes go on a
+ * free list and are reused.
+ * <p>
+ * Node objects are decoded from their blocks on first use and kept until the
+ * tree {@link #release releases} them with more than {@link #DefaultCacheSize}
+ * in use, or until {@link #sync}, when all of them are written back to their blocks
+ * and dropped. For a file, {@link #sync} then forces the file ; {@link #close} syncs.
+ * <p>
+ * For a file, the blocks of the tree as of the last sync are not changed until the
+ * next sync : nodes created since are written to new blocks when released, changed
+ * nodes of the synced tree stay in memory, and the blocks of deleted nodes of the
+ * synced tree are only freed by the next sync. Reopening the file, even without
+ * closing it, gives the tree as of the last sync. If the free list has been used
+ * since, the header is marked and opening the file rebuilds the free list from the
+ * tree. A sync itself is not atomic : a failure during a sync can leave the file
+ * inconsistent.
+ * <p>
+ * Not thread safe.
+ */
+public class RadixNodeManagerBlocks implements RadixNodeManager
+{
+    /* Block 0 is the header:
+     *   0  int   magic
+     *   4  int   block size
+     *   8  int   blocks per segment
+     *  12  int   1 if the free list has been used since this header was written, else 0
+     *  16  long  number of blocks
+     *  24  long  first block of the free list, 0 for none
+     *  32  long  root id
+     *  40  long  number of entries
+     * Node blocks:
+     *   0  long  next block for this node, 0 for none ; for a free block, the next free block.
+     *   8        the encoded node (see RadixNode.encode), preceded by its int length,
+     *            continued in the next block.
+     */
+
+    public static int DefaultBlockSize = 64 ;
+    public static int DefaultCacheSize = 100_000 ;
+    // Blocks are allocated, or mapped, in segments of this many blocks.
+    static int BlocksPerSegment = 64*1024 ;
+
+    private static final int Magic = 0x52444E4D ;   // "RDNM"
+    private static final int HeaderSize = 48 ;
+    private static final int NextLen = 8 ;
+
+    private final Path file ;
+    private final FileChannel channel ;     // null for direct memory
+    private final int blockSize ;
+    private final int segmentBlocks ;
+    private final List<ByteBuffer> segments = new ArrayList<>() ;
+
+    private long numBlocks ;
+    private long freeHead ;
+    private long rootId ;
+    private long size ;
+
+    // Node objects in use.
+    private final Map<Long, RadixNode> cache = new HashMap<>() ;
+    // Cache size at which release() evicts nodes.
+    private int evictAt = DefaultCacheSize ;
+    // For a file : blocks allocated since the last sync. Other blocks may be in the synced tree.
+    private final BitSet fresh = new BitSet() ;
+    // For a file : nodes of the synced tree deleted since the last sync.
+    private final List<Long> released = new ArrayList<>() ;
+    private boolean freeListUsed = false ;
+    // Space to encode and decode a node.
+    private ByteBuffer scratch = ByteBuffer.allocate(1024) ;
+    private boolean closed = false ;
+
+    /** Blocks in direct memory. */
+    public static RadixNodeManagerBlocks createMem() { return createMem(DefaultBlockSize) ; }
+
+    public static RadixNodeManagerBlocks createMem(int blockSize)
+    {
+        return new RadixNodeManagerBlocks(null, null, blockSize) ;
+    }
+
+    /** Blocks in a memory mapped file, creating it if it does not exist. */
+    public static RadixNodeManagerBlocks open(String filename) { return open(filename, DefaultBlockSize) ; }
+
+    public static RadixNodeManagerBlocks open(String filename, int blockSize)
+    {
+        Path path = Paths.get(filename) ;
+        FileChannel ch ;
+        try {
+            ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE) ;
+        } catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+        try {
+            return new RadixNodeManagerBlocks(path, ch, blockSize) ;
+        } catch (RuntimeException ex)
+        {
+            try { ch.close() ; } catch (IOException ex2) {}
+            throw ex ;
+        }
+    }
+
+    private RadixNodeManagerBlocks(Path file, FileChannel channel, int blockSize)
+    {
+        if ( blockSize < HeaderSize )
+            throw new IllegalArgumentException("Block size too small: "+blockSize) ;
+        this.file = file ;
+        this.channel = channel ;
+        this.blockSize = blockSize ;
+        ByteBuffer header = ( channel == null ) ? null : readHeader() ;
+        if ( header == null )
+        {
+            this.segmentBlocks = Math.max(1, Math.min(BlocksPerSegment, (1<<30)/blockSize)) ;
+            this.numBlocks = 1 ;
+            this.freeHead = 0 ;
+            this.rootId = RadixNode.NoId ;
+            this.size = 0 ;
+            writeHeader() ;
+            return ;
+        }
+        if ( header.getInt(0) != Magic )
+            RadixTreeImpl.error("Not a radix node file: "+file) ;
+        if ( header.getInt(4) != blockSize )
+            RadixTreeImpl.error("Block size mismatch: file has "+header.getInt(4)+", expected "+blockSize) ;
+        this.segmentBlocks = header.getInt(8) ;
+        this.numBlocks = header.getLong(16) ;
+        this.freeHead = header.getLong(24) ;
+        this.rootId = header.getLong(32) ;
+        this.size = header.getLong(40) ;
+        if ( header.getInt(12) != 0 )
+        {
+            // Blocks on the free list may have been reused since the header was written.
+            freeListUsed = true ;
+            rebuildFreeList() ;
+        }
+    }
+
+    /** The header of an existing file, or null for a new file. */
+    private ByteBuffer readHeader()
+    {
+        try {
+            if ( channel.size() == 0 )
+                return null ;
+            ByteBuffer bb = ByteBuffer.allocate(HeaderSize) ;
+            while ( bb.hasRemaining() )
+            {
+                if ( channel.read(bb, bb.position()) < 0 )
+                    RadixTreeImpl.error("Radix node file is truncated: "+file) ;
+            }
+            return bb ;
+        } catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+    }
+
+    private void writeHeader()
+    {
+        segment(0).putInt(0, Magic).putInt(4, blockSize).putInt(8, segmentBlocks).putInt(12, freeListUsed ? 1 : 0)
+                  .putLong(16, numBlocks).putLong(24, freeHead).putLong(32, rootId).putLong(40, size) ;
+    }
+
+    @Override
+    public RadixNode allocBlank(RadixNode parent)
+    {
+        long id = allocBlock() ;
+        RadixNode node = new RadixNode(this, id, parent) ;
+        cache.put(id, node) ;
+        return node ;
+    }
+
+    @Override
+    public void dealloc(RadixNode node)
+    {
+        long id = node.getId() ;
+        if ( cache.remove(id) != node )
+            RadixTreeImpl.error("Dealloc of a node not in use: "+id) ;
+        if ( synced(id) )
+            released.add(id) ;
+        else
+            freeBlocks(id) ;
+    }
+
+    @Override
+    public RadixNode get(long id)
+    {
+        RadixNode node = cache.get(id) ;
+        if ( node == null )
+        {
+            node = read(id) ;
+            cache.put(id, node) ;
+        }
+        return node ;
+    }
+
+    @Override
+    public void release()
+    {
+        if ( cache.size() > evictAt )
+            evict() ;
+    }
+
+    @Override
+    public long getRootId()     { return rootId ; }
+
+    @Override
+    public long getSize()       { return size ; }
+
+    @Override
+    public void setRoot(long rootId, long size)
+    {
+        this.rootId = rootId ;
+        this.size = size ;
+    }
+
+    /** Write all nodes in use to their blocks, and write the header. For a file, force changes to disk. */
+    @Override
+    public void sync()
+    {
+        checkOpen() ;
+        writeBack() ;
+        for ( long id : released )
+            freeBlocks(id) ;
+        released.clear() ;
+        freeListUsed = false ;
+        writeHeader() ;
+        if ( channel != null )
+        {
+            for ( ByteBuffer seg : segments )
+                ((MappedByteBuffer)seg).force() ;
+        }
+        fresh.clear() ;
+    }
+
+    @Override
+    public void close()
+    {
+        if ( closed )
+            return ;
+        sync() ;
+        closed = true ;
+        segments.clear() ;
+        if ( channel != null )
+        {
+            try { channel.close() ; }
+            catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+        }
+    }
+
+    /** Number of blocks, including the header and free blocks. */
+    public long numBlocks()     { return numBlocks ; }
+
+    /** Number of blocks on the free list. */
+    public long numFreeBlocks()
+    {
+        long n = 0 ;
+        for ( long b = freeHead ; b != 0 ; b = next(b) )
+            n++ ;
+        return n ;
+    }
+
+    public int blockSize()      { return blockSize ; }
+
+    /** Number of node objects in use. */
+    public int numCached()      { return cache.size() ; }
+
+    private void checkOpen()
+    {
+        if ( closed )
+            throw new IllegalStateException("RadixNodeManagerBlocks is closed") ;
+    }
+
+    private void writeBack()
+    {
+        for ( RadixNode node : cache.values() )
+            write(node) ;
+        cache.clear() ;
+        evictAt = DefaultCacheSize ;
+    }
+
+    // Write back and drop the nodes not in the synced tree, and drop the unchanged
+    // nodes of the synced tree. Changed nodes of the synced tree stay until the next sync.
+    private void evict()
+    {
+        Iterator<RadixNode> iter = cache.values().iterator() ;
+        while ( iter.hasNext() )
+        {
+            RadixNode node = iter.next() ;
+            if ( ! synced(node.getId()) )
+                write(node) ;
+            else if ( ! unchanged(node) )
+                continue ;
+            iter.remove() ;
+        }
+        // Do not look at the nodes kept again until the cache has grown.
+        evictAt = Math.max(DefaultCacheSize, 2*cache.size()) ;
+    }
+
+    /** Whether a block may be part of the tree as of the last sync, so must not be changed. */
+    private boolean synced(long block)
+    {
+        return channel != null && ! fresh.get((int)block) ;
+    }
+
+    // =====================
+    // Nodes <-> blocks
+
+    private void write(RadixNode node)
+    {
+        int len = node.encodedLength() ;
+        ByteBuffer bb = scratch(4+len) ;
+        bb.putInt(len) ;
+        node.encode(bb) ;
+        bb.flip() ;
+        long block = node.getId() ;
+        for(;;)
+        {
+            ByteBuffer seg = segment(block) ;
+            int off = offset(block) ;
+            int n = Math.min(bb.remaining(), blockSize-NextLen) ;
+            seg.position(off+NextLen) ;
+            seg.put(bb.array(), bb.position(), n) ;
+            bb.position(bb.position()+n) ;
+            long next = seg.getLong(off) ;
+            if ( ! bb.hasRemaining() )
+            {
+                // Node may have shrunk.
+                seg.putLong(off, 0) ;
+                freeBlocks(next) ;
+                return ;
+            }
+            if ( next == 0 )
+            {
+                next = allocBlock() ;
+                seg.putLong(off, next) ;
+            }
+            block = next ;
+        }
+    }
+
+    // Whether the node encodes to what is in its blocks.
+    private boolean unchanged(RadixNode node)
+    {
+        int len = node.encodedLength() ;
+        ByteBuffer bb = scratch(4+len) ;
+        bb.putInt(len) ;
+        node.encode(bb) ;
+        bb.flip() ;
+        long block = node.getId() ;
+        while ( bb.hasRemaining() )
+        {
+            if ( block == 0 )
+                return false ;
+            ByteBuffer seg = segment(block) ;
+            int off = offset(block)+NextLen ;
+            int n = Math.min(bb.remaining(), blockSize-NextLen) ;
+            for ( int i = 0 ; i < n ; i++ )
+            {
+                if ( seg.get(off+i) != bb.get() )
+                    return false ;
+            }
+            block = next(block) ;
+        }
+        return true ;
+    }
+
+    private RadixNode read(long id)
+    {
+        if ( id <= 0 || id >= numBlocks )
+            RadixTreeImpl.error("No such node: "+id) ;
+        int len = segment(id).getInt(offset(id)+NextLen) ;
+        ByteBuffer bb = scratch(4+len) ;
+        bb.limit(4+len) ;
+        long block = id ;
+        while ( bb.hasRemaining() )
+        {
+            if ( block == 0 )
+                RadixTreeImpl.error("Node "+id+" : block chain too short") ;
+            ByteBuffer seg = segment(block) ;
+            int off = offset(block) ;
+            int n = Math.min(bb.remaining(), blockSize-NextLen) ;
+            seg.position(off+NextLen) ;
+            seg.get(bb.array(), bb.position(), n) ;
+            bb.position(bb.position()+n) ;
+            block = seg.getLong(off) ;
+        }
+        bb.flip() ;
+        bb.position(4) ;
+        return RadixNode.decode(this, id, bb) ;
+    }
+
+    private ByteBuffer scratch(int len)
+    {
+        if ( scratch.capacity() < len )
+            scratch = ByteBuffer.allocate(Math.max(len, 2*scratch.capacity())) ;
+        scratch.clear() ;
+        return scratch ;
+    }
+
+    // =====================
+    // Blocks
+
+    private long allocBlock()
+    {
+        long block ;
+        if ( freeHead != 0 )
+        {
+            block = freeHead ;
+            if ( synced(block) )
+                markFreeListUsed() ;
+            freeHead = next(freeHead) ;
+        }
+        else
+        {
+            block = numBlocks++ ;
+            if ( block > Integer.MAX_VALUE )
+                RadixTreeImpl.error("Too many blocks: "+block) ;
+        }
+        if ( channel != null )
+            fresh.set((int)block) ;
+        segment(block).putLong(offset(block), 0) ;
+        return block ;
+    }
+
+    /** A block of the free list in the file is about to be reused : mark the header,
+     *  on disk, so opening the file before the next sync rebuilds the free list. */
+    private void markFreeListUsed()
+    {
+        if ( freeListUsed )
+            return ;
+        freeListUsed = true ;
+        segment(0).putInt(12, 1) ;
+        ((MappedByteBuffer)segment(0)).force() ;
+    }
+
+    /** The free list is every block not used by the tree. */
+    private void rebuildFreeList()
+    {
+        BitSet used = new BitSet() ;
+        Deque<Long> stack = new ArrayDeque<>() ;
+        if ( rootId != RadixNode.NoId )
+            stack.push(rootId) ;
+        while ( ! stack.isEmpty() )
+        {
+            long id = stack.pop() ;
+            for ( long b = id ; b != 0 ; b = next(b) )
+                used.set((int)b) ;
+            RadixNode node = read(id) ;
+            if ( node.isLeaf() )
+                continue ;
+            for ( int idx = node.nextIndex(0) ; idx >= 0 ; idx = node.nextIndex(idx+1) )
+                stack.push(node.getSubId(idx)) ;
+        }
+        freeHead = 0 ;
+        for ( long b = numBlocks-1 ; b > 0 ; b-- )
+        {
+            if ( ! used.get((int)b) )
+            {
+                segment(b).putLong(offset(b), freeHead) ;
+                freeHead = b ;
+            }
+        }
+    }
+
+    /** Put a chain of blocks on the free list. */
+    private void freeBlocks(long block)
+    {
+        while ( block != 0 )
+        {
+            long next = next(block) ;
+            segment(block).putLong(offset(block), freeHead) ;
+            freeHead = block ;
+            block = next ;
+        }
+    }
+
+    private long next(long block)
+    {
+        return segment(block).getLong(offset(block)) ;
+    }
+
+    private int offset(long block)
+    {
+        return (int)(block%segmentBlocks)*blockSize ;
+    }
+
+    private ByteBuffer segment(long block)
+    {
+        int s = (int)(block/segmentBlocks) ;
+        while ( segments.size() <= s )
+        {
+            int segmentSize = segmentBlocks*blockSize ;
+            if ( channel == null )
+            {
+                segments.add(ByteBuffer.allocateDirect(segmentSize)) ;
+                continue ;
+            }
+            long start = (long)segments.size()*segmentSize ;
+            try {
+                // Mapping beyond the end of the file extends the file.
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize)) ;
+            } catch (IOException ex) { throw new UncheckedIOException(ex) ; }
+        }
+        return segments.get(s) ;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.radix;
+
+import java.util.Arrays ;
+
+/** Nodes as objects on the Java heap. Ids index a table of nodes ; the ids of
+ *  deallocated nodes are reused. 
+ */
+public class RadixNodeManagerHeap implements RadixNodeManager
+{
+    private RadixNode[] nodes = new RadixNode[1024] ;
+    // Ids free for reuse, as a stack.
+    private long[] free = new long[64] ;
+    private int numFree = 0 ;
+    // Ids below this have been allocated at some time.
+    private int highWater = 0 ;
+
+    private long rootId = RadixNode.NoId ;
+    private long size = 0 ;
+
+    public RadixNodeManagerHeap() {}
+
+    @Override
+    public RadixNode allocBlank(RadixNode parent)
+    {
+        long id ;
+        if ( numFree > 0 )
+            id = free[--numFree] ;
+        else
+        {
+            if ( highWater == nodes.length )
+                nodes = Arrays.copyOf(nodes, 2*nodes.length) ;
+            id = highWater++ ;
+        }
+        RadixNode node = new RadixNode(this, id, parent) ;
+        nodes[(int)id] = node ;
+        return node ;
+    }
+
+    @Override
+    public void dealloc(RadixNode node)
+    {
+        int id = (int)node.getId() ;
+        if ( nodes[id] != node )
+            RadixTreeImpl.error("Dealloc of a node not in use: "+id) ;
+        nodes[id] = null ;
+        if ( numFree == free.length )
+            free = Arrays.copyOf(free, 2*free.length) ;
+        free[numFree++] = id ;
+    }
+
+    @Override
+    public RadixNode get(long id)
+    {
+        return nodes[(int)id] ;
+    }
+
+    @Override
+    public void release()       {}
+
+    @Override
+    public long getRootId()     { return rootId ; }
+
+    @Override
+    public long getSize()       { return size ; }
+
+    @Override
+    public void setRoot(long rootId, long size)
+    {
+        this.rootId = rootId ;
+        this.size = size ;
+    }
+
+    @Override
+    public void sync()          {}
+
+    @Override
+    public void close()         {}
+}
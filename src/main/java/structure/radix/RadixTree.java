@@ -19,6 +19,7 @@ package structure.radix;
 
 import java.nio.ByteBuffer ;
 import java.util.Iterator ;
+import java.util.function.BiConsumer ;
 
 public interface RadixTree
 {
@@ -32,6 +33,37 @@ public interface RadixTree
 
     public boolean insert(byte[] key, byte[] value) ;
 
+    /** Insert a batch of entries. This is quickest with the keys in sorted order.
+     *  Return the number of keys that were not already in the tree.
+     */
+    public default long insertAll(Iterator<RadixEntry> entries)
+    {
+        long before = size() ;
+        while ( entries.hasNext() )
+        {
+            RadixEntry e = entries.next() ;
+            insert(e.key, e.value) ;
+        }
+        return size()-before ;
+    }
+
+    /** Find a batch of keys, giving the value, or dft, for each.
+     *  This is quickest with the keys in sorted order.
+     */
+    public default byte[][] findAll(byte[][] keys, byte[] dft)
+    {
+        byte[][] results = new byte[keys.length][] ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+            results[i] = find(keys[i], dft) ;
+        return results ;
+    }
+
+    /** The entry whose key is the longest prefix of key, including key itself ; null if there is none. */
+    public RadixEntry longestPrefixOf(byte[] key) ;
+
+    /** Number of entries whose key starts with prefix. */
+    public long countWithPrefix(byte[] prefix) ;
+
     /** Delete - return true if the tree changed (i.e the key was present and so was removed) */
     public boolean delete(byte[] key) ;
 
@@ -55,6 +87,28 @@ public interface RadixTree
 
     public Iterator<RadixEntry> iterator(byte[] start, byte[] finish) ;
 
+    /** Cursor over the entries from start (inclusive) to finish (exclusive) ; null for no bound.
+     *  Unlike {@link #iterator(byte[], byte[])}, no objects are created per entry.
+     */
+    public RadixCursor cursor(byte[] start, byte[] finish) ;
+
+    /** Entries whose key starts with prefix. */
+    public default Iterator<RadixEntry> iteratorPrefix(byte[] prefix)
+    {
+        return iterator(prefix, RLib.prefixFinish(prefix)) ;
+    }
+
+    /** Call the action for each entry from start (inclusive) to finish (exclusive).
+     *  The arguments are as {@link RadixCursor#key} and {@link RadixCursor#value}:
+     *  only valid during the call.
+     */
+    public default void scan(byte[] start, byte[] finish, BiConsumer<ByteBuffer, byte[]> action)
+    {
+        RadixCursor cursor = cursor(start, finish) ;
+        while ( cursor.advance() )
+            action.accept(cursor.key(), cursor.value()) ;
+    }
+
     public void printLeaves() ;
 
     public void check() ;
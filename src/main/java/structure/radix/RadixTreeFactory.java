@@ -20,5 +20,11 @@ package structure.radix;
 public class RadixTreeFactory
 {
     static public RadixTree create() { return new RadixTreeImpl() ; } 
+
+    /** A tree with nodes held by the node manager, such as {@link RadixNodeManagerBlocks} for nodes off the Java heap. */
+    static public RadixTree create(RadixNodeManager nodeManager) { return new RadixTreeImpl(nodeManager) ; } 
+
+    /** A tree that is safe for use by many threads : see {@link ConcurrentRadixTree}. */
+    static public RadixTree createConcurrent() { return new ConcurrentRadixTree() ; } 
 }
 
@@ -18,7 +18,12 @@
 package structure.radix;
 
 import java.nio.ByteBuffer ;
+import java.util.ArrayDeque ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.Deque ;
 import java.util.Iterator ;
+import java.util.List ;
 import java.util.function.Function ;
 
 import org.apache.jena.atlas.AtlasException ;
@@ -48,9 +53,37 @@ public final class RadixTreeImpl implements RadixTree
     static final byte[] bytesNotFound = new byte[]{} ;
     
     static Logger log = LoggerFactory.getLogger(RadixTreeImpl.class) ;
-    private RadixNode root = null ;
+    private final RadixNodeManager nodeManager ;
+    private long rootId ;
+    // Number of entries, maintained by insert and delete.
+    private long size ;
     
-    public RadixNode getRoot() { return root ; }
+    public RadixTreeImpl()
+    {
+        this(new RadixNodeManagerHeap()) ;
+    }
+    
+    /** A tree with its nodes in the given manager, starting from the root the manager has recorded. */
+    public RadixTreeImpl(RadixNodeManager nodeManager)
+    {
+        this.nodeManager = nodeManager ;
+        this.rootId = nodeManager.getRootId() ;
+        this.size = nodeManager.getSize() ;
+    }
+    
+    public RadixNode getRoot()
+    { 
+        return ( rootId == RadixNode.NoId ) ? null : nodeManager.get(rootId) ;
+    }
+    
+    public RadixNodeManager getNodeManager() { return nodeManager ; }
+    
+    // End of an operation : record the root and let the node manager drop the nodes used.
+    private void finish()
+    {
+        nodeManager.setRoot(rootId, size) ;
+        nodeManager.release() ;
+    }
     
     // TODO
     
@@ -103,6 +136,155 @@ public final class RadixTreeImpl implements RadixTree
     }
     
     
+    /** Where to start the search for key, given that the search for prevKey ended at node.
+     *  That is the deepest node, from node upwards, on the path of both keys : the search
+     *  from there visits the same nodes as the search from the root.
+     */
+    private static RadixNode resume(RadixNode node, byte[] prevKey, byte[] key)
+    {
+        int lcp = 0 ;
+        int len = Math.min(prevKey.length, key.length) ;
+        while ( lcp < len && prevKey[lcp] == key[lcp] )
+            lcp++ ;
+        // The parent dispatches on the first byte of the prefix, so that must be shared too.
+        while ( ! node.isRoot() && node.lenStart >= lcp )
+            node = node.getParent() ;
+        return node ;
+    }
+
+    /**
+     * Build a tree from entries in strictly increasing (unsigned) key order, in O(total key length).
+     * Each node is created once with its final prefix and subnode layout ; there are no splits.
+     * Duplicates or out-of-order keys are an error.
+     */
+    public static RadixTreeImpl bulkLoad(Iterator<RadixEntry> sorted)
+    {
+        return bulkLoad(sorted, new RadixNodeManagerHeap()) ;
+    }
+
+    /** Bulk load into an empty node manager. */
+    public static RadixTreeImpl bulkLoad(Iterator<RadixEntry> sorted, RadixNodeManager nodeManager)
+    {
+        if ( nodeManager.getRootId() != RadixNode.NoId )
+            error("Bulk load: node manager is not empty") ;
+        List<RadixEntry> entries = new ArrayList<>() ;
+        byte[] prev = null ;
+        while ( sorted.hasNext() )
+        {
+            RadixEntry e = sorted.next() ;
+            if ( prev != null && Bytes.compare(prev, e.key) >= 0 )
+                error("Bulk load: not strictly increasing: "+Str.str(prev)+" then "+Str.str(e.key)) ;
+            entries.add(e) ;
+            prev = e.key ;
+        }
+        RadixTreeImpl tree = new RadixTreeImpl(nodeManager) ;
+        if ( ! entries.isEmpty() )
+            tree.rootId = build(nodeManager, entries, 0, entries.size(), 0, null).getId() ;
+        tree.size = entries.size() ;
+        tree.finish() ;
+        if ( checking )
+            tree.check() ;
+        return tree ;
+    }
+
+    /** The subtree for entries [start, finish), which all share the first depth bytes. */
+    private static RadixNode build(RadixNodeManager nodeManager, List<RadixEntry> entries, int start, int finish, int depth, RadixNode parent)
+    {
+        // Sorted, so the common prefix of the range is that of the first and last keys.
+        byte[] first = entries.get(start).key ;
+        byte[] last = entries.get(finish-1).key ;
+        int lcp = depth ;
+        int len = Math.min(first.length, last.length) ;
+        while ( lcp < len && first[lcp] == last[lcp] )
+            lcp++ ;
+
+        RadixNode node = nodeManager.allocBlank(parent) ;
+        node.prefix = Bytes.copyOf(first, depth, lcp-depth) ;
+        node.lenStart = depth ;
+        node.lenFinish = lcp ;
+        node.subtreeSize = finish-start ;
+
+        // Only the first key can end here.
+        int i = start ;
+        byte[] value = null ;
+        boolean hasEntry = ( first.length == lcp ) ;
+        if ( hasEntry )
+            value = entries.get(i++).value ;
+        if ( i == finish )
+        {
+            node.setValue(value) ;
+            return node ;
+        }
+
+        int groups = 0 ;
+        for ( int j = i ; j < finish ; j++ )
+        {
+            if ( j == i || entries.get(j).key[lcp] != entries.get(j-1).key[lcp] )
+                groups++ ;
+        }
+        node = node.convertToEmptyBranch(groups) ;
+        if ( hasEntry )
+            node.setValue(value) ;
+        while ( i < finish )
+        {
+            byte b = entries.get(i).key[lcp] ;
+            int j = i+1 ;
+            while ( j < finish && entries.get(j).key[lcp] == b )
+                j++ ;
+            node.set(b & 0xFF, build(nodeManager, entries, i, j, lcp, node)) ;
+            i = j ;
+        }
+        return node ;
+    }
+
+    @Override
+    public RadixEntry longestPrefixOf(byte[] key)
+    {
+        RadixNode root = getRoot() ;
+        if ( root == null )
+            return null ;
+        // As locator, remembering the last entry passed on the way down.
+        RadixNode best = null ;
+        RadixNode node = root ;
+        for(;;)
+        {
+            if ( node.countMatchPrefix(key) != node.prefix.length )
+                break ;
+            if ( node.hasEntry() )
+                best = node ;
+            if ( node.isLeaf() )
+                break ;
+            int j = node.locate(key, node.lenFinish) ;
+            if ( j < 0 )
+                break ;
+            RadixNode node1 = node.get(j) ;
+            if ( node1 == null )
+                break ;
+            node = node1 ;
+        }
+        RadixEntry result = null ;
+        if ( best != null )
+            result = new RadixEntry(Bytes.copyOf(key, 0, best.lenFinish), best.getValue()) ;
+        nodeManager.release() ;
+        return result ;
+    }
+
+    @Override
+    public long countWithPrefix(byte[] prefix)
+    {
+        RadixNode root = getRoot() ;
+        if ( root == null )
+            return 0 ;
+        RadixNode node = locator(root, prefix) ;
+        int N = node.countMatchPrefix(prefix) ;
+        long count = 0 ;
+        // The prefix ends in this node's prefix, or exactly at its end : every key below has the prefix.
+        if ( N < 0 || ( N == node.prefix.length && node.lenFinish == prefix.length ) )
+            count = node.subtreeSize ;
+        nodeManager.release() ;
+        return count ;
+    }
+
     /** Test whether the key is in the tree */
     @Override
     public boolean contains(byte[] key)
@@ -116,9 +298,40 @@ public final class RadixTreeImpl implements RadixTree
     @Override
     public byte[] find(byte[] key, byte[] dft)
     {
+        RadixNode root = getRoot() ;
         if ( root == null )
             return dft ;
         RadixNode node = locator(root, key) ;
+        byte[] result = found(node, key, dft) ;
+        nodeManager.release() ;
+        return result ;
+    }        
+    
+    /** Each search starts from where the search for the key before ended, not from the root. */
+    @Override
+    public byte[][] findAll(byte[][] keys, byte[] dft)
+    {
+        byte[][] results = new byte[keys.length][] ;
+        RadixNode root = getRoot() ;
+        if ( root == null )
+        {
+            Arrays.fill(results, dft) ;
+            return results ;
+        }
+        RadixNode node = root ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+        {
+            RadixNode start = ( i == 0 ) ? root : resume(node, keys[i-1], keys[i]) ;
+            node = locator(start, keys[i]) ;
+            results[i] = found(node, keys[i], dft) ;
+        }
+        nodeManager.release() ;
+        return results ;
+    }
+    
+    /** The value for key, given the node locator found for it. */
+    private static byte[] found(RadixNode node, byte[] key, byte[] dft)
+    {
         if ( node.lenFinish == key.length )
         {
             int N = node.countMatchPrefix(key) ;
@@ -127,7 +340,7 @@ public final class RadixTreeImpl implements RadixTree
               return node.getValue() ;
         }
         return dft ;
-    }        
+    }
     
     @Override
     public boolean insert(byte[] key, byte[] value)
@@ -138,19 +351,67 @@ public final class RadixTreeImpl implements RadixTree
             log.debug("** Insert : ("+Bytes.asHex(key)+","+v+")") ;
         }
      
+        RadixNode root = getRoot() ;
         if ( root == null )
         {
-            root = RadixNode.allocBlank(null) ;
+            root = nodeManager.allocBlank(null) ;
             root.prefix = key ;
             root.lenStart = 0 ;
             root.lenFinish = key.length ;
+            root.subtreeSize = 1 ;
             root.setValue(value) ;
+            rootId = root.getId() ;
+            size++ ;
+            finish() ;
             return true ;
         }
         
-        RadixNode node = locator(root, key) ;
+        return insertLocated(locator(root, key), key, value) ;
+    }
+    
+    /** Each search starts from where the search for the key before ended, not from the root. */
+    @Override
+    public long insertAll(Iterator<RadixEntry> entries)
+    {
+        long before = size ;
+        // The node the last insert happened at, by id as the node manager may drop node objects between inserts.
+        long nodeId = RadixNode.NoId ;
+        byte[] prevKey = null ;
+        while ( entries.hasNext() )
+        {
+            RadixEntry e = entries.next() ;
+            if ( nodeId == RadixNode.NoId )
+            {
+                insert(e.key, e.value) ;
+                nodeId = rootId ;
+            }
+            else
+            {
+                RadixNode start = resume(nodeManager.get(nodeId), prevKey, e.key) ;
+                RadixNode node = locator(start, e.key) ;
+                nodeId = node.getId() ;
+                insertLocated(node, e.key, e.value) ;
+            }
+            prevKey = e.key ;
+        }
+        return size-before ;
+    }
+    
+    private boolean insertLocated(RadixNode node, byte[] key, byte[] value)
+    {
         int N = node.countMatchPrefix(key) ;
-        return insert$(node, N, key, value) != null ;
+        // Exact match to an existing entry is a replacement.
+        boolean isNew = ( N != node.prefix.length || node.lenFinish != key.length || ! node.hasEntry() ) ;
+        boolean changed = insert$(node, N, key, value) != null ;
+        if ( isNew )
+        {
+            size++ ;
+            // The node is changed in place so it, and everything above, gains the entry.
+            for ( RadixNode n = node ; n != null ; n = n.getParent() )
+                n.subtreeSize++ ;
+        }
+        finish() ;
+        return changed ;
     }
     
     private RadixNode insert$(RadixNode node, int N, byte[] key, byte[] value)
@@ -215,11 +476,12 @@ public final class RadixTreeImpl implements RadixTree
                 node = node.convertToEmptyBranch() ;
                 node.setValue(v) ;
             }
-            RadixNode n = RadixNode.allocBlank(node) ;
+            RadixNode n = nodeManager.allocBlank(node) ;
             n = n.convertToLeaf() ;
             n.prefix = prefixNew ;
             n.lenStart = node.lenFinish ;
             n.lenFinish = key.length ;
+            n.subtreeSize = 1 ;
             n.setValue(value) ;
 
             int idx = node.locate(prefixNew) ;
@@ -259,10 +521,11 @@ public final class RadixTreeImpl implements RadixTree
             }
 
             // New node to go under this one.
-            RadixNode node1 = RadixNode.allocBlank(node) ;
+            RadixNode node1 = nodeManager.allocBlank(node) ;
             node1.prefix = prefixSub ; 
             node1.lenStart = node.lenStart+N ;
             node1.lenFinish = node.lenFinish ;
+            node1.subtreeSize = node.subtreeSize ;
             if ( ! node.isLeaf() )
             {
                 node1 = node1.convertToEmptyBranch() ;
@@ -316,10 +579,11 @@ public final class RadixTreeImpl implements RadixTree
         // The tail of the original data and all the sub nodes.
         // Could do this in-place but have to alter the parent to point to a new node.
         // XXX
-        RadixNode node1 = RadixNode.allocBlank(node) ;
+        RadixNode node1 = nodeManager.allocBlank(node) ;
         node1.prefix = prefixSub1 ; 
         node1.lenStart = node.lenStart+N ;
         node1.lenFinish = node.lenFinish ;
+        node1.subtreeSize = node.subtreeSize ;
         if ( ! node.isLeaf() )
         {
             node1 = node1.convertToEmptyBranch() ;
@@ -329,10 +593,11 @@ public final class RadixTreeImpl implements RadixTree
             node1.setValue(node.getValue()) ;
 
         // The new leaf for the new data
-        RadixNode node2 = RadixNode.allocBlank(node) ;
+        RadixNode node2 = nodeManager.allocBlank(node) ;
         node2.prefix = prefixSub2 ; 
         node2.lenStart = node.lenStart+N ;
         node2.lenFinish = key.length ;
+        node2.subtreeSize = 1 ;
         node2.setValue(value) ;
 
         // Now make node a two way in-place.
@@ -357,20 +622,30 @@ public final class RadixTreeImpl implements RadixTree
         if (logging && log.isDebugEnabled() )
             log.debug("** Delete : "+Bytes.asHex(key)) ;
 
+        RadixNode root = getRoot() ;
         if ( root == null )
             return false ;
 
         RadixNode node = locator(root, key) ;
         int N = node.countMatchPrefix(key) ;
+        // Nodes that stay after the delete keep their subtree sizes as the tree is tidied.
+        if ( N == node.prefix.length && node.lenFinish == key.length && node.hasEntry() )
+        {
+            for ( RadixNode x = node ; x != null ; x = x.getParent() )
+                x.subtreeSize-- ;
+        }
         RadixNode n = delete$(node, N, key) ;
+        if ( n != null )
+            size-- ;
 
         // Fixup root.
         // If the root changed and now has no-subnodes and no value, free it.
         if ( n != null && n.isRoot() && (n.countSubNodes() == 0 && ! n.hasEntry() ) )
         {
-            RadixNode.dealloc(n) ;
-            root = null ;
+            nodeManager.dealloc(n) ;
+            rootId = RadixNode.NoId ;
         }
+        finish() ;
         return n != null ;
     }
 
@@ -415,7 +690,7 @@ public final class RadixTreeImpl implements RadixTree
                 int idx = prevNode.locate(node.prefix) ;
                 RadixNode x = prevNode.get(idx) ;
                 prevNode.set(idx, null) ;
-                RadixNode.dealloc(node) ;
+                nodeManager.dealloc(node) ;
                 node = null ;
                 // Drop though to fixup.
             }
@@ -448,7 +723,7 @@ public final class RadixTreeImpl implements RadixTree
     }
     
     /** After delete, need to remove redundant nodes. */
-    protected static RadixNode fixup(RadixNode node)
+    protected RadixNode fixup(RadixNode node)
     {
         // Must be a branch.
         if ( node.isLeaf() )
@@ -528,13 +803,14 @@ public final class RadixTreeImpl implements RadixTree
 
         if ( logging && log.isDebugEnabled() )
             log.debug("  --> : "+node) ;
-        RadixNode.dealloc(sub) ;
+        nodeManager.dealloc(sub) ;
         return node; 
     }
 
     @Override
     public void print()
     {
+        RadixNode root = getRoot() ;
         if ( root == null )
         {
             System.out.println("<empty>") ;
@@ -542,14 +818,19 @@ public final class RadixTreeImpl implements RadixTree
         }
         root.output(IndentedWriter.stdout) ;
         IndentedWriter.stdout.flush();
+        nodeManager.release() ;
     }
 
     @Override
     public void clear()
     {
+        RadixNode root = getRoot() ;
         if ( root == null )
             return ;
         clear(root) ;
+        rootId = RadixNode.NoId ;
+        size = 0 ;
+        finish() ;
     }
     
     private void clear(RadixNode node)
@@ -560,10 +841,11 @@ public final class RadixTreeImpl implements RadixTree
             while( ( idx = node.nextIndex(idx)) >= 0 )
             {
                 RadixNode n = node.get(idx) ;
-                clear(node) ;
+                clear(n) ;
+                idx++ ;
             }
         }        
-        RadixNode.dealloc(node) ;
+        nodeManager.dealloc(node) ;
         return ;
     }
 
@@ -573,11 +855,13 @@ public final class RadixTreeImpl implements RadixTree
     @Override
     public ByteBuffer min(byte[] b)
     {
+        RadixNode root = getRoot() ;
         if ( root == null )
             return null ;
         ByteBuffer bb = (b == null ) ? ByteBuffer.allocate(50) : ByteBuffer.wrap(b) ;
         bb = RadixIterator.min(root, bb) ;
         bb.flip() ;
+        nodeManager.release() ;
         return bb ;
     }
     
@@ -587,41 +871,49 @@ public final class RadixTreeImpl implements RadixTree
     @Override
     public ByteBuffer max(byte[] b)
     {
+        RadixNode root = getRoot() ;
         if ( root == null )
             return null ;
         ByteBuffer bb = (b == null ) ? ByteBuffer.allocate(50) : ByteBuffer.wrap(b) ;
         bb = RadixIterator.max(root, bb) ;
         bb.flip() ;
+        nodeManager.release() ;
         return bb ;
     }
 
     @Override
     public long size()
     {
-        if ( root == null )
+        return size ;
+    }
+    
+    /** Size by actually walking the tree. Nodes are visited by id and released as the walk goes. */
+    public long count()
+    {
+        if ( rootId == RadixNode.NoId )
             return 0 ;
-        
-        RadixNodeVisitor<Object> v = new RadixNodeVisitorBase()
+        long count = 0 ;
+        Deque<Long> stack = new ArrayDeque<>() ;
+        stack.push(rootId) ;
+        while ( ! stack.isEmpty() )
         {
-            int count = 0 ;
-            @Override
-            public void before(RadixNode node)
+            RadixNode node = nodeManager.get(stack.pop()) ;
+            if ( node.hasEntry() )
+                count++ ;
+            if ( ! node.isLeaf() )
             {
-                if (node.hasEntry()) 
-                    count++ ;
+                for ( int idx = node.nextIndex(0) ; idx >= 0 ; idx = node.nextIndex(idx+1) )
+                    stack.push(node.getSubId(idx)) ;
             }
-            
-            @Override
-            public Object result()
-            { return count ; }
-        } ;
-        root.visit(v) ;
-        return (Integer)v.result() ;
+            nodeManager.release() ;
+        }
+        return count ;
     }
     
     @Override
     public boolean isEmpty()
     {
+        RadixNode root = getRoot() ;
         if ( root == null )
             return true ;
         if ( root.isLeaf() )
@@ -639,7 +931,7 @@ public final class RadixTreeImpl implements RadixTree
         if ( logging && log.isDebugEnabled() )
             RadixTreeImpl.log.debug("Iterator("+Str.str(start)+", "+Str.str(finish)+")") ;
         
-        if ( root == null )
+        if ( rootId == RadixNode.NoId )
         {
             if ( logging && log.isDebugEnabled() )
                 log.debug("iterator: empty tree") ;
@@ -648,6 +940,12 @@ public final class RadixTreeImpl implements RadixTree
         // TODO -- Empty root : should not occur but cope with it.
         return new RadixIterator(this, start, finish) ;
     }
+
+    @Override
+    public RadixCursor cursor(byte[] start, byte[] finish)
+    {
+        return new RadixIterator(this, start, finish) ;
+    }
     
     static Function<Byte, String> hex = (byte$)->{
         int hi = (byte$.byteValue() >> 4) & 0xF ;
@@ -660,7 +958,7 @@ public final class RadixTreeImpl implements RadixTree
     @Override
     public void printLeaves()
     {
-        if ( root == null )
+        if ( rootId == RadixNode.NoId )
         {
             System.out.println("Tree: empty") ;
             return ;
@@ -678,7 +976,24 @@ public final class RadixTreeImpl implements RadixTree
     @Override
     public void check()
     { 
+        RadixNode root = getRoot() ;
         if ( root != null )
             root.check() ; 
+        if ( size != count() )
+            error("Size is "+size+" but the tree has "+count()+" entries") ;
+        nodeManager.release() ;
+    }
+
+    /** Write changes to the node manager's storage. */
+    public void sync()
+    {
+        nodeManager.setRoot(rootId, size) ;
+        nodeManager.sync() ;
+    }
+
+    public void close()
+    {
+        sync() ;
+        nodeManager.close() ;
     }
 }
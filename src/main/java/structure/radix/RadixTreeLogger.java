@@ -62,6 +62,38 @@ public class RadixTreeLogger implements RadixTree
         return b ;
     }
 
+    @Override
+    public long insertAll(Iterator<RadixEntry> entries)
+    {
+        long x = tree.insertAll(entries) ;
+        info("insertAll() => %d", x) ;
+        return x ;
+    }
+
+    @Override
+    public byte[][] findAll(byte[][] keys, byte[] dft)
+    {
+        byte[][] x = tree.findAll(keys, dft) ;
+        info("findAll(%d keys, %s)", keys.length, str(dft)) ;
+        return x ;
+    }
+
+    @Override
+    public RadixEntry longestPrefixOf(byte[] key)
+    {
+        RadixEntry e = tree.longestPrefixOf(key) ;
+        info("longestPrefixOf(%s) => %s", str(key), e) ;
+        return e ;
+    }
+
+    @Override
+    public long countWithPrefix(byte[] prefix)
+    {
+        long x = tree.countWithPrefix(prefix) ;
+        info("countWithPrefix(%s) => %d", str(prefix), x) ;
+        return x ;
+    }
+
     @Override
     public boolean delete(byte[] key)
     {
@@ -145,6 +177,20 @@ public class RadixTreeLogger implements RadixTree
         return tree.iterator(start, finish) ;
     }
 
+    @Override
+    public RadixCursor cursor(byte[] start, byte[] finish)
+    {
+        info("cursor(%s, %s)", str(start), str(finish)) ;
+        return tree.cursor(start, finish) ;
+    }
+
+    @Override
+    public Iterator<RadixEntry> iteratorPrefix(byte[] prefix)
+    {
+        info("iteratorPrefix(%s)", str(prefix)) ;
+        return tree.iteratorPrefix(prefix) ;
+    }
+
     @Override
     public void printLeaves()
     {
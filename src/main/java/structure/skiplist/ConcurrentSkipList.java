@@ -0,0 +1,421 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.skiplist;
+
+import static java.lang.String.format ;
+
+import java.util.Iterator ;
+import java.util.NoSuchElementException ;
+import java.util.concurrent.ThreadLocalRandom ;
+import java.util.concurrent.atomic.AtomicMarkableReference ;
+import java.util.concurrent.atomic.LongAdder ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+
+/**
+ * Lock-free skip list, safe for use by many threads.
+ * <p>
+ * Same operations as {@link SkipList}. Each forward pointer is an
+ * {@link AtomicMarkableReference}; a node is logically deleted when its
+ * forward pointers are marked, and is physically unlinked by the next
+ * traversal that passes it. Insert links bottom-up, delete marks top-down.
+ * See Herlihy and Shavit, "The Art of Multiprocessor Programming", 14.4.
+ * <p>
+ * {@link #find} and {@link #contains} never write. Iterators are weakly
+ * consistent: they see every record present for the whole of the
+ * iteration, may or may not see concurrent changes, and never throw
+ * {@link java.util.ConcurrentModificationException}.
+ */
+final
+public class ConcurrentSkipList<R extends Comparable<? super R>> implements Iterable<R>
+{
+    static int DftMaxLevel = SkipList.DftMaxLevel ;
+
+    final int maxLevel ;
+    // Sentinels : head is below every record, tail above.
+    private final Node<R> head ;
+    private final Node<R> tail ;
+    private final LongAdder size = new LongAdder() ;
+
+    public ConcurrentSkipList()
+    {
+        this(DftMaxLevel) ;
+    }
+
+    public ConcurrentSkipList(int maxLevel)
+    {
+        this.maxLevel = maxLevel ;
+        this.tail = new Node<R>(null, maxLevel, null) ;
+        this.head = new Node<R>(null, maxLevel, tail) ;
+    }
+
+    public boolean contains(R record)
+    { return find(record) != null ; }
+
+    /** Find a record - return the record in the list or null if not present. */
+    public R find(R record)
+    {
+        if ( record == null )
+            return null ;
+        Node<R> x = findNode(record) ;
+        if ( x != tail && x.record.compareTo(record) == 0 )
+            return x.record ;
+        return null ;
+    }
+
+    /**
+     * Insert a record - return null if the record was not present, else
+     * the record (which replaces the one in the list - records may be partial).
+     */
+    public R insert(R record)
+    {
+        @SuppressWarnings("unchecked")
+        Node<R>[] preds = (Node<R>[])new Node<?>[maxLevel] ;
+        @SuppressWarnings("unchecked")
+        Node<R>[] succs = (Node<R>[])new Node<?>[maxLevel] ;
+        int lvl = randomLevel() ;
+
+        for ( ;; )
+        {
+            if ( setUp(record, preds, succs) )
+            {
+                // Replace.
+                succs[0].record = record ;
+                return record ;
+            }
+            Node<R> x = new Node<R>(record, lvl, null) ;
+            for ( int i = 0 ; i < lvl ; i++ )
+                x.forward[i].set(succs[i], false) ;
+
+            // Bottom level : the record is in the list once this succeeds.
+            if ( ! preds[0].forward[0].compareAndSet(succs[0], x, false, false) )
+                continue ;
+            size.increment() ;
+
+            // Upper levels are only for speed.
+            for ( int i = 1 ; i < lvl ; i++ )
+            {
+                for ( ;; )
+                {
+                    Node<R> pred = preds[i] ;
+                    Node<R> succ = succs[i] ;
+                    // Point the new node at the current successor, unless it is being deleted.
+                    Node<R> fwd = x.forward[i].getReference() ;
+                    if ( fwd != succ && ! x.forward[i].compareAndSet(fwd, succ, false, false) )
+                        return null ;
+                    if ( pred.forward[i].compareAndSet(succ, x, false, false) )
+                        break ;
+                    // Lost a race - recalculate and retry this level.
+                    setUp(record, preds, succs) ;
+                    if ( succs[0] != x )
+                        // Deleted meanwhile.
+                        return null ;
+                }
+            }
+            return null ;
+        }
+    }
+
+    /** Delete a record - return the record removed or null if not present. */
+    public R delete(R record)
+    {
+        @SuppressWarnings("unchecked")
+        Node<R>[] preds = (Node<R>[])new Node<?>[maxLevel] ;
+        @SuppressWarnings("unchecked")
+        Node<R>[] succs = (Node<R>[])new Node<?>[maxLevel] ;
+
+        if ( ! setUp(record, preds, succs) )
+            return null ;
+        Node<R> x = succs[0] ;
+
+        // Mark from the top down to level 1.
+        for ( int i = x.forward.length-1 ; i >= 1 ; i-- )
+        {
+            boolean[] marked = { false } ;
+            Node<R> succ = x.forward[i].get(marked) ;
+            while ( ! marked[0] )
+            {
+                x.forward[i].compareAndSet(succ, succ, false, true) ;
+                succ = x.forward[i].get(marked) ;
+            }
+        }
+
+        // Marking the bottom level is the deletion point.
+        boolean[] marked = { false } ;
+        Node<R> succ = x.forward[0].get(marked) ;
+        for ( ;; )
+        {
+            if ( x.forward[0].compareAndSet(succ, succ, false, true) )
+            {
+                size.decrement() ;
+                // Unlink.
+                setUp(record, preds, succs) ;
+                return x.record ;
+            }
+            succ = x.forward[0].get(marked) ;
+            if ( marked[0] )
+                // Another thread deleted it.
+                return null ;
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return firstFrom(head.forward[0].getReference()) == tail ;
+    }
+
+    /** Number of records - exact when there are no concurrent changes. */
+    public int size()
+    {
+        return size.intValue() ;
+    }
+
+    // Min - inclusive; max - exclusive
+
+    public Iterator<R> iterator(R min, R max)
+    {
+        Node<R> x = ( min == null ) ? head.forward[0].getReference() : findNode(min) ;
+        return new ConcurrentSkipListIterator(x, max) ;
+    }
+
+    @Override
+    public Iterator<R> iterator()
+    {
+        return iterator(null, null) ;
+    }
+
+    public Iterable<R> records()
+    {
+        return ()->Iter.iter(iterator()) ;
+    }
+
+    public Iterable<R> records(R min, R max)
+    {
+        return ()->Iter.iter(iterator(min, max)) ;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder() ;
+        boolean first = true ;
+        for ( R r : this )
+        {
+            if ( ! first ) sb.append(" ") ;
+            first = false ;
+            sb.append(r) ;
+        }
+        return sb.toString() ;
+    }
+
+    // ---- Workers
+
+    /**
+     * Find the predecessors and successors of record at each level,
+     * unlinking any logically deleted nodes on the way.
+     * Return true if the record is in the list (as succs[0]).
+     */
+    private boolean setUp(R record, Node<R>[] preds, Node<R>[] succs)
+    {
+        boolean[] marked = { false } ;
+        retry:
+        for ( ;; )
+        {
+            Node<R> pred = head ;
+            Node<R> curr = null ;
+            for ( int i = maxLevel-1 ; i >= 0 ; i-- )
+            {
+                curr = pred.forward[i].getReference() ;
+                for ( ;; )
+                {
+                    if ( curr == tail )
+                        break ;
+                    Node<R> succ = curr.forward[i].get(marked) ;
+                    while ( marked[0] )
+                    {
+                        // Snip out curr.
+                        if ( ! pred.forward[i].compareAndSet(curr, succ, false, false) )
+                            continue retry ;
+                        curr = succ ;
+                        if ( curr == tail )
+                            break ;
+                        succ = curr.forward[i].get(marked) ;
+                    }
+                    if ( curr == tail || curr.record.compareTo(record) >= 0 )
+                        break ;
+                    pred = curr ;
+                    curr = succ ;
+                }
+                preds[i] = pred ;
+                succs[i] = curr ;
+            }
+            return curr != tail && curr.record.compareTo(record) == 0 ;
+        }
+    }
+
+    /** The first live node with record same or greater than the argument ; tail if none. Does not write. */
+    private Node<R> findNode(R record)
+    {
+        boolean[] marked = { false } ;
+        Node<R> pred = head ;
+        Node<R> curr = null ;
+        for ( int i = maxLevel-1 ; i >= 0 ; i-- )
+        {
+            curr = pred.forward[i].getReference() ;
+            for ( ;; )
+            {
+                if ( curr == tail )
+                    break ;
+                Node<R> succ = curr.forward[i].get(marked) ;
+                while ( marked[0] )
+                {
+                    // Skip deleted nodes.
+                    curr = succ ;
+                    if ( curr == tail )
+                        break ;
+                    succ = curr.forward[i].get(marked) ;
+                }
+                if ( curr == tail || curr.record.compareTo(record) >= 0 )
+                    break ;
+                pred = curr ;
+                curr = succ ;
+            }
+        }
+        return curr ;
+    }
+
+    /** Skip over logically deleted nodes on the bottom level. */
+    private Node<R> firstFrom(Node<R> x)
+    {
+        while ( x != tail && x.forward[0].isMarked() )
+            x = x.forward[0].getReference() ;
+        return x ;
+    }
+
+    private static final int OneOverP = 2;
+    // Log distibution.
+    private int randomLevel()
+    {
+        // Per-thread generator : no contention on a shared Random.
+        ThreadLocalRandom rand = ThreadLocalRandom.current() ;
+        int level = 1;
+        while ( rand.nextInt(OneOverP) == 0  && level < maxLevel )
+            level ++ ;
+        return level ;
+    }
+
+    // ---- Checking
+
+    /** Check the list structure. Only meaningful when there are no concurrent changes. */
+    public void check()
+    {
+        for ( int i = 0 ; i < maxLevel ; i++ )
+        {
+            Node<R> x = head.forward[i].getReference() ;
+            R prev = null ;
+            int count = 0 ;
+            while ( x != tail )
+            {
+                if ( x == null )
+                    error("Level %d does not end at the tail", i) ;
+                if ( x.forward.length <= i )
+                    error("Node at level %d has only %d levels", i, x.forward.length) ;
+                if ( ! x.forward[0].isMarked() )
+                {
+                    if ( prev != null && prev.compareTo(x.record) >= 0 )
+                        error("Level %d out of order: %s, %s", i, prev, x.record) ;
+                    prev = x.record ;
+                    count++ ;
+                }
+                x = x.forward[i].getReference() ;
+            }
+            if ( i == 0 && count != size() )
+                error("Size is %d but the list has %d records", size(), count) ;
+        }
+    }
+
+    private static void error(String format, Object ... args)
+    {
+        String x = format(format, args) ;
+        throw new SkipListException(x) ;
+    }
+
+    // ---- Node and iterator.
+
+    static final class Node<R>
+    {
+        volatile R record ;
+        final AtomicMarkableReference<Node<R>>[] forward ;
+
+        @SuppressWarnings("unchecked")
+        Node(R record, int len, Node<R> initial)
+        {
+            this.record = record ;
+            this.forward = (AtomicMarkableReference<Node<R>>[])new AtomicMarkableReference<?>[len] ;
+            for ( int i = 0 ; i < len ; i++ )
+                forward[i] = new AtomicMarkableReference<Node<R>>(initial, false) ;
+        }
+    }
+
+    private final class ConcurrentSkipListIterator implements Iterator<R>
+    {
+        private Node<R> node ;
+        private final R limit ;         // Exclusive
+        private R slot = null ;
+
+        ConcurrentSkipListIterator(Node<R> node, R limit)
+        {
+            this.node = node ;
+            this.limit = limit ;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if ( slot != null )
+                return true ;
+            if ( node == null )
+                return false ;
+            node = firstFrom(node) ;
+            if ( node == tail )
+            {
+                node = null ;
+                return false ;
+            }
+            R rec = node.record ;
+            if ( limit != null && rec.compareTo(limit) >= 0 )
+            {
+                node = null ;
+                return false ;
+            }
+            slot = rec ;
+            node = node.forward[0].getReference() ;
+            return true ;
+        }
+
+        @Override
+        public R next()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException("ConcurrentSkipListIterator") ;
+            R rec = slot ;
+            slot = null ;
+            return rec ;
+        }
+    }
+}
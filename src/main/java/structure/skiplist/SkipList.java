@@ -63,6 +63,50 @@ public class SkipList <R extends Comparable<? super R>> implements Printable, It
         root = new SkipListNode<R>(null, maxLevel) ;
         //randomSeed = RandomLib.random.nextInt() | 0x0100; // ensure nonzero
     }
+
+    public static <R extends Comparable<? super R>> SkipList<R> bulkLoad(Iterator<R> sorted)
+    { return bulkLoad(DftMaxLevel, sorted) ; }
+
+    /**
+     * Build a skip list from records in strictly increasing order, in O(n).
+     * Levels are deterministic: the i'th record (from 1) has 1 + (trailing zero bits of i) levels,
+     * so level k links every 2^k'th record, which is the layout random levels give on average.
+     * @throws SkipListException if the input contains duplicates or is out of order.
+     */
+    public static <R extends Comparable<? super R>> SkipList<R> bulkLoad(int maxLevel, Iterator<R> sorted)
+    {
+        SkipList<R> list = new SkipList<R>(maxLevel) ;
+        // Last node linked at each level.
+        @SuppressWarnings("unchecked")
+        SkipListNode<R>[] last = (SkipListNode<R>[])new SkipListNode<?>[maxLevel] ;
+        for ( int i = 0 ; i < maxLevel ; i++ )
+            last[i] = list.root ;
+        R prev = null ;
+        while ( sorted.hasNext() )
+        {
+            R rec = sorted.next() ;
+            if ( rec == null )
+                error("Bulk load: null record") ;
+            if ( prev != null && prev.compareTo(rec) >= 0 )
+                error("Bulk load: not strictly increasing: %s then %s", prev, rec) ;
+            prev = rec ;
+            int lvl = Math.min(1+Integer.numberOfTrailingZeros(list.size+1), maxLevel) ;
+            SkipListNode<R> x = new SkipListNode<R>(rec, lvl) ;
+            for ( int i = 0 ; i < lvl ; i++ )
+            {
+                last[i].forward[i] = x ;
+                last[i] = x ;
+            }
+            if ( lvl > list.currentLevel )
+                list.currentLevel = lvl ;
+            list.size++ ;
+        }
+        internalCheck(list) ;
+        return list ;
+    }
+
+    public static <R extends Comparable<? super R>> SkipList<R> bulkLoad(Iterable<R> sorted)
+    { return bulkLoad(DftMaxLevel, sorted.iterator()) ; }
     
     public boolean contains(R record)
     { return find(record) != null ; }
@@ -0,0 +1,881 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.ttree;
+
+import static org.apache.jena.atlas.io.IndentedWriter.stdout ;
+import static structure.ttree.TTree.error ;
+
+import java.util.Arrays ;
+import java.util.NoSuchElementException ;
+import java.util.PrimitiveIterator ;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+import org.apache.jena.atlas.io.PrintUtils ;
+import org.apache.jena.atlas.io.Printable ;
+import structure.LongOrderedSet ;
+
+/**
+ * {@link TTree} specialized to {@code long} keys.
+ * <p>
+ * Node storage is a {@code long[]}, so there is no boxed object per element
+ * and comparisons are primitive. The algorithms are those of {@link TTree} :
+ * the modified deletion rule that keeps half-leaves full, the special case of
+ * the double rotations, and successor threading for iteration.
+ */
+public final
+class LongTTree implements Printable , LongOrderedSet
+{
+    public static boolean Checking = false ;
+
+    public final int NodeSize ;        // Maximum node size.
+    public final int NodeSizeMin ;     // Limit at which we rebalance on delete in internal nodes to keep nodes full.
+
+    static int InitialHeight = TTree.InitialHeight ;
+
+    private Node root ;
+    // Number of elements in the tree, maintained by add and remove.
+    private long size = 0 ;
+
+    public LongTTree(int nodeSize)
+    {
+        this(nodeSize, nodeSize) ;
+    }
+
+    /**
+     * @param nodeSize     Maximum number of elements in a node.
+     * @param intNodeSize  Minimum number of elements in an internal node or half-leaf.
+     */
+    public LongTTree(int nodeSize, int intNodeSize)
+    {
+        if ( nodeSize < 2 )
+            error("Node size must be at least 2: %d", nodeSize) ;
+        if ( intNodeSize < 1 || intNodeSize > nodeSize )
+            error("Internal node size must be between 1 and %d: %d", nodeSize, intNodeSize) ;
+        NodeSize = nodeSize ;
+        NodeSizeMin = intNodeSize ;
+        root = newNode(null) ;
+    }
+
+    /**
+     * Build a balanced T-Tree from keys in strictly increasing order, in O(n).
+     * Every node is filled to NodeSize except the rightmost leaf.
+     * @throws TTreeException if the input contains duplicates or is out of order.
+     */
+    public static LongTTree bulkLoad(int nodeSize, long[] sorted)
+    {
+        for ( int i = 1 ; i < sorted.length ; i++ )
+        {
+            if ( sorted[i-1] >= sorted[i] )
+                error("Bulk load: not strictly increasing: %d then %d", sorted[i-1], sorted[i]) ;
+        }
+        LongTTree ttree = new LongTTree(nodeSize) ;
+        if ( sorted.length > 0 )
+        {
+            int numNodes = (sorted.length+ttree.NodeSize-1)/ttree.NodeSize ;
+            ttree.root = ttree.build(sorted, 0, numNodes, null) ;
+            for ( Node n = getLeftDeep(ttree.root) ; n != null ; n = n.successor )
+                n.successor = successorOf(n) ;
+        }
+        ttree.size = sorted.length ;
+        ttree.checkTree() ;
+        return ttree ;
+    }
+
+    // As TTree.build : the last, partly full, node always ends up as a leaf.
+    private Node build(long[] keys, int start, int finish, Node parent)
+    {
+        if ( start >= finish )
+            return null ;
+        int mid = (start+finish-1) >>> 1 ;
+        Node node = newNode(parent) ;
+        int first = mid*NodeSize ;
+        int last = Math.min(first+NodeSize, keys.length) ;
+        System.arraycopy(keys, first, node.elements, 0, last-first) ;
+        node.nodeSize = last-first ;
+        node.left = build(keys, start, mid, node) ;
+        node.right = build(keys, mid+1, finish, node) ;
+        setHeight(node) ;
+        return node ;
+    }
+
+    private Node newNode(Node parent)
+    {
+        return new Node(parent, NodeSize) ;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return root.isEmpty() ;
+    }
+
+    @Override
+    public boolean contains(long key)
+    {
+        if ( root.isEmpty() )
+            return false ;
+        Node node = findBoundingNode(root, key) ;
+        return node.find(key) >= 0 ;
+    }
+
+    @Override
+    public boolean add(long key)
+    {
+        if ( root.isEmpty() )
+        {
+            root.insertAt(0, key) ;
+            size++ ;
+            return true ;
+        }
+
+        Node node = findBoundingNode(root, key) ;
+        int idx = node.find(key) ;
+        if ( idx >= 0 )
+            // Already present.
+            return false ;
+        size++ ;
+        insertBoundingNode(node, idx, key) ;
+        checkTree() ;
+        return true ;
+    }
+
+    @Override
+    public void clear()         { root = newNode(null) ; size = 0 ; }
+
+    // idx is the encoded insertion point in node.
+    private void insertBoundingNode(Node node, int idx, long key)
+    {
+        if ( ! node.isFull() )
+        {
+            node.insertAt(-(idx+1), key) ;
+            return ;
+        }
+
+        if ( idx == -1 )
+        {
+            // Insert at min in a full node : the bounding node has no left.
+            node.left = newNode(node) ;
+            node.left.insertAt(0, key) ;
+            threadIn(node.left) ;
+            rebalanceInsert(node) ;
+            return ;
+        }
+
+        // Make room by moving the minimal element down into the left subtree.
+        long min = node.removeBottom() ;
+        node.insertAt(-(idx+1)-1, key) ;
+
+        if ( node.left == null )
+        {
+            Node newNode = newNode(node) ;
+            node.left = newNode ;
+            newNode.insertAt(0, min) ;
+            threadIn(newNode) ;
+            rebalanceInsert(node) ;
+            return ;
+        }
+
+        // Insert at greatest lower bound.
+        node = getRightDeep(node.left) ;
+        if ( ! node.isFull() )
+        {
+            node.insertAt(node.nodeSize, min) ;
+            return ;
+        }
+
+        // Node full.  Add new right and place one element in it.
+        Node newNode = newNode(node) ;
+        node.right = newNode ;
+        newNode.insertAt(0, min) ;
+        threadIn(newNode) ;
+        rebalanceInsert(node) ;
+    }
+
+    private void rebalanceInsert(Node node)
+    {
+        while ( node != null )
+        {
+            if ( ! rebalanceNode(node) )
+                return ;
+            node = node.parent ;
+        }
+    }
+
+    private void rebalanceDelete(Node node)
+    {
+        while ( node != null )
+        {
+            rebalanceNode(node) ;
+            node = node.parent ;
+        }
+    }
+
+    private static Node findBoundingNode(Node node, long key)
+    {
+        for ( ;; )
+        {
+            if ( key < node.getMin() )
+            {
+                if ( node.left == null )
+                    return node ;
+                node = node.left ;
+                continue ;
+            }
+            if ( key > node.getMax() )
+            {
+                if ( node.right == null )
+                    return node ;
+                node = node.right ;
+                continue ;
+            }
+            // Between min and max - this node.
+            return node ;
+        }
+    }
+
+    @Override
+    public boolean remove(long key)
+    {
+        if ( root.isEmpty() )
+            return false ;
+
+        Node node = findBoundingNode(root, key) ;
+        int idx = node.find(key) ;
+        if ( idx < 0 )
+            return false ;
+        node.deleteAt(idx) ;
+        size-- ;
+        Node fixupNode = node ;
+        if ( node.isInternal() )
+        {
+            // Internal node - pull up the GLB (must exist for an internal node),
+            // then fixup from bottom node.
+            Node n2 = getRightDeep(node.left) ;
+            long glb = n2.removeTop() ;
+            node.insertAt(0, glb) ;
+            fixupNode = n2 ;
+        }
+        fixupDelete(fixupNode) ;
+        checkTree() ;
+        return true ;
+    }
+
+    /** Fix up a node - it is the node that has changed size. */
+    private void fixupDelete(Node node)
+    {
+        if ( node.nodeSize >= NodeSizeMin ) return ;
+        if ( Checking && node.isInternal() ) error("Attempt to fixup internal node") ;
+
+        if ( node.isLeaf() )
+        {
+            if ( node.nodeSize > 0 || node.parent == null )
+                return ;
+            // Empty leaf.  Remove in parent.
+            threadOut(node) ;
+            if ( node.parent.left == node )
+                node.parent.left = null ;
+            else
+                node.parent.right = null ;
+            rebalanceDelete(node.parent) ;
+            return ;
+        }
+
+        if ( node.isLeftHalfLeaf() )
+        {
+            Node leaf = node.right ;
+            if ( node.nodeSize + leaf.nodeSize <= NodeSize )
+            {
+                // Amalgamate: copy leaf elements to parent half-leaf.
+                threadOut(leaf) ;
+                System.arraycopy(leaf.elements, 0, node.elements, node.nodeSize, leaf.nodeSize) ;
+                node.nodeSize += leaf.nodeSize ;
+                node.right = null ;
+                rebalanceDelete(node) ;
+            }
+            else
+                // Deletion modification : keep the half-leaf full.
+                node.insertAt(node.nodeSize, leaf.removeBottom()) ;
+            return ;
+        }
+
+        if ( node.isRightHalfLeaf() )
+        {
+            Node leaf = node.left ;
+            if ( node.nodeSize + leaf.nodeSize <= NodeSize )
+            {
+                // Amalgamate
+                threadOut(leaf) ;
+                System.arraycopy(node.elements, 0, node.elements, leaf.nodeSize, node.nodeSize) ;
+                System.arraycopy(leaf.elements, 0, node.elements, 0, leaf.nodeSize) ;
+                node.nodeSize += leaf.nodeSize ;
+                node.left = null ;
+                rebalanceDelete(node) ;
+            }
+            else
+                node.insertAt(0, leaf.removeTop()) ;
+            return ;
+        }
+
+        error("Unknown node type") ;
+    }
+
+    @Override public long max()
+    {
+        if ( root.isEmpty() )
+            throw new NoSuchElementException("LongTTree.max") ;
+        return getRightDeep(root).getMax() ;
+    }
+
+    @Override public long min()
+    {
+        if ( root.isEmpty() )
+            throw new NoSuchElementException("LongTTree.min") ;
+        return getLeftDeep(root).getMin() ;
+    }
+
+    /** Rebalance one node - return true if the height changes */
+    private boolean rebalanceNode(Node node)
+    {
+        int bal = balance(node) ;
+        if ( bal < -2 || bal > 2 )
+            brokenTree(node, "Unbalanced") ;
+
+        int h = node.height ;
+
+        if ( bal == 2 )
+        {
+            if ( height(node.right.left) > height(node.right.right) )
+                pivotRightLeft(node) ;
+            else
+                pivotRight(node) ;
+        }
+        else if ( bal == -2 )
+        {
+            if ( height(node.left.right) > height(node.left.left) )
+                pivotLeftRight(node) ;
+            else
+                pivotLeft(node) ;
+        }
+        setHeight(node) ;
+        return h != node.height ;
+    }
+
+    private static int balance(Node node)
+    {
+        return height(node.right) - height(node.left) ;
+    }
+
+    private static void setHeight(Node node)
+    {
+        node.height = Math.max(height(node.left), height(node.right)) + 1 ;
+    }
+
+    private static int height(Node node)
+    {
+        if ( node == null )
+            return InitialHeight-1 ;
+        return node.height ;
+    }
+
+    /** See TTree.slide. Return the number of elements moved from r1 to r2. */
+    private int slide(long[] r1, int r1Size, long[] r2, int r2Size)
+    {
+        int k = Math.min(r1Size-1, NodeSize-r2Size) ;
+        if ( k <= 0 )
+            return 0 ;
+        System.arraycopy(r2, 0, r2, k, r2Size) ;
+        System.arraycopy(r1, r1Size-k, r2, 0, k) ;
+        return k ;
+    }
+
+    // ---- Threading : successor pointers.
+
+    private static void threadIn(Node node)
+    {
+        node.successor = successorOf(node) ;
+        Node pred = predecessorOf(node) ;
+        if ( pred != null )
+            pred.successor = node ;
+    }
+
+    private static void threadOut(Node node)
+    {
+        Node pred = predecessorOf(node) ;
+        if ( pred != null )
+            pred.successor = node.successor ;
+        node.successor = null ;
+    }
+
+    private static Node successorOf(Node node)
+    {
+        if ( node.right != null )
+            return getLeftDeep(node.right) ;
+        Node n = node ;
+        while ( n.parent != null && n.parent.right == n )
+            n = n.parent ;
+        return n.parent ;
+    }
+
+    private static Node predecessorOf(Node node)
+    {
+        if ( node.left != null )
+            return getRightDeep(node.left) ;
+        Node n = node ;
+        while ( n.parent != null && n.parent.left == n )
+            n = n.parent ;
+        return n.parent ;
+    }
+
+    private static Node getLeftDeep(Node node)
+    {
+        while ( node.left != null )
+            node = node.left ;
+        return node ;
+    }
+
+    private static Node getRightDeep(Node node)
+    {
+        while ( node.right != null )
+            node = node.right ;
+        return node ;
+    }
+
+    // ---- Rotations : see TTree.
+
+    // (R1 (R2 A B) C) ==> (R2 A (R1 B C))
+    private void pivotLeft(Node node)
+    {
+        Node n = node.left ;
+        long[] r1 = node.elements ;
+        int r1Size = node.nodeSize ;
+        long[] r2 = n.elements ;
+        int r2Size = n.nodeSize ;
+
+        Node a = n.left ;
+        Node b = n.right ;
+        Node c = node.right ;
+
+        n.set(r1, r1Size, node, b, c) ;
+        setHeight(n) ;
+        if ( a != null ) a.parent = node ;
+        if ( c != null ) c.parent = n ;
+
+        node.set(r2, r2Size, node.parent, a, n) ;
+        setHeight(node) ;
+        threadIn(node) ;
+        threadIn(n) ;
+    }
+
+    // (R1 A (R2 B C)) ==> (R2 (R1 A B) C)
+    private void pivotRight(Node node)
+    {
+        Node n = node.right ;
+        long[] r1 = node.elements ;
+        int r1Size = node.nodeSize ;
+        long[] r2 = n.elements ;
+        int r2Size = n.nodeSize ;
+
+        Node a = node.left ;
+        Node b = n.left ;
+        Node c = n.right ;
+
+        n.set(r1, r1Size, node, a, b) ;
+        setHeight(n) ;
+        if ( a != null ) a.parent = n ;
+        if ( c != null ) c.parent = node ;
+
+        node.set(r2, r2Size, node.parent, n, c) ;
+        setHeight(node) ;
+        threadIn(node) ;
+        threadIn(n) ;
+    }
+
+    // (R3 (R1 A (R2 B C)) D) ==> (R2 (R1 A B) (R3 C D))
+    private void pivotLeftRight(Node node)
+    {
+        Node n1 = node.left ;
+        Node n2 = node.left.right ;
+
+        long[] r3 = node.elements ;
+        int r3Size = node.nodeSize ;
+        long[] r1 = n1.elements ;
+        int r1Size = n1.nodeSize ;
+        long[] r2 = n2.elements ;
+        int r2Size = n2.nodeSize ;
+
+        if ( n2.isLeaf() && r2Size < NodeSizeMin )
+        {
+            // Special case : a leaf becomes an internal node.
+            int k = slide(r1, r1Size, r2, r2Size) ;
+            r1Size -= k ;
+            r2Size += k ;
+        }
+
+        Node a = n1.left ;
+        Node b = n2.left ;
+        Node c = n2.right ;
+        Node d = node.right ;
+
+        // Reuse nodes ; n1 becomes the R1 node, n2 the R3 node.
+        n1.set(r1, r1Size, node, a, b) ;
+        setHeight(n1) ;
+        n2.set(r3, r3Size, node, c, d) ;
+        setHeight(n2) ;
+
+        if ( a != null ) a.parent = n1 ;
+        if ( b != null ) b.parent = n1 ;
+        if ( c != null ) c.parent = n2 ;
+        if ( d != null ) d.parent = n2 ;
+
+        node.set(r2, r2Size, node.parent, n1, n2) ;
+        setHeight(node) ;
+        threadIn(node) ;
+        threadIn(n1) ;
+        threadIn(n2) ;
+    }
+
+    // (R1 A (R3 (R2 B C) D)) ==> (R2 (R1 A B) (R3 C D))
+    private void pivotRightLeft(Node node)
+    {
+        Node n1 = node.right ;
+        Node n2 = node.right.left ;
+
+        long[] r1 = node.elements ;
+        int r1Size = node.nodeSize ;
+        long[] r3 = n1.elements ;
+        int r3Size = n1.nodeSize ;
+        long[] r2 = n2.elements ;
+        int r2Size = n2.nodeSize ;
+
+        if ( n2.isLeaf() && r2Size < NodeSizeMin )
+        {
+            // Special case : a leaf becomes an internal node.
+            int k = slide(r1, r1Size, r2, r2Size) ;
+            r1Size -= k ;
+            r2Size += k ;
+        }
+
+        Node a = node.left ;
+        Node b = n2.left ;
+        Node c = n2.right ;
+        Node d = n1.right ;
+
+        // Reuse nodes ; n1 becomes the R1 node, n2 the R3 node.
+        n1.set(r1, r1Size, node, a, b) ;
+        setHeight(n1) ;
+        n2.set(r3, r3Size, node, c, d) ;
+        setHeight(n2) ;
+
+        if ( a != null ) a.parent = n1 ;
+        if ( b != null ) b.parent = n1 ;
+        if ( c != null ) c.parent = n2 ;
+        if ( d != null ) d.parent = n2 ;
+
+        node.set(r2, r2Size, node.parent, n1, n2) ;
+        setHeight(node) ;
+        threadIn(node) ;
+        threadIn(n1) ;
+        threadIn(n2) ;
+    }
+
+    // ---- Checking
+
+    @Override
+    final public void checkTree()
+    {
+        if ( ! Checking )
+            return ;
+        if ( root.parent != null )
+            brokenTree(root, "Root parent is not null") ;
+        if ( ! root.isEmpty() )
+        {
+            checkDeep(root, Long.MIN_VALUE, Long.MAX_VALUE) ;
+            for ( Node n = getLeftDeep(root) ; n != null ; n = n.successor )
+            {
+                if ( n.successor != successorOf(n) )
+                    brokenTree(n, "Successor is not the next node") ;
+            }
+        }
+        if ( size != count() )
+            error("Size is %d but the tree has %d elements", size, count()) ;
+    }
+
+    // Check the subtree, all of whose elements must be in [lo, hi].
+    private void checkDeep(Node node, long lo, long hi)
+    {
+        if ( node.nodeSize <= 0 )
+            brokenTree(node, "Zero length node") ;
+        if ( ! node.isLeaf() && node.nodeSize < NodeSizeMin )
+            brokenTree(node, "Internal node too small") ;
+        if ( node.getMin() < lo || node.getMax() > hi )
+            brokenTree(node, "Out of order") ;
+        for ( int i = 1 ; i < node.nodeSize ; i++ )
+        {
+            if ( node.elements[i-1] >= node.elements[i] )
+                brokenTree(node, "Unordered") ;
+        }
+        if ( node.left != null && node.left.parent != node )
+            brokenTree(node, "Left child does not point back to this node") ;
+        if ( node.right != null && node.right.parent != node )
+            brokenTree(node, "Right child does not point back to this node") ;
+        int bal = balance(node) ;
+        if ( bal < -1 || bal > 1 )
+            brokenTree(node, "Out of balance "+bal) ;
+        if ( node.height != Math.max(height(node.left), height(node.right)) + 1 )
+            brokenTree(node, "Height is wrong") ;
+        // Elements are distinct, so min-1 and max+1 do not overflow where there is a subtree.
+        if ( node.left != null )
+            checkDeep(node.left, lo, node.getMin()-1) ;
+        if ( node.right != null )
+            checkDeep(node.right, node.getMax()+1, hi) ;
+    }
+
+    private void brokenTree(Node node, String msg)
+    {
+        IndentedWriter.stderr.println() ;
+        output(IndentedWriter.stderr) ;
+        throw new TTreeException(msg+" : "+node) ;
+    }
+
+    // ---- Iteration
+
+    @Override
+    public PrimitiveIterator.OfLong iterator()
+    {
+        if ( root.isEmpty() )
+            return new LongTTreeIterator(null, 0, Long.MAX_VALUE, false) ;
+        return new LongTTreeIterator(getLeftDeep(root), 0, Long.MAX_VALUE, false) ;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator(long startInc, long endExc)
+    {
+        if ( root.isEmpty() )
+            return new LongTTreeIterator(null, 0, endExc, true) ;
+        Node node = findBoundingNode(root, startInc) ;
+        int idx = node.find(startInc) ;
+        if ( idx < 0 )
+            idx = -(idx+1) ;
+        if ( idx == node.nodeSize )
+        {
+            // Above the bounding node : start at the next node.
+            node = node.successor ;
+            idx = 0 ;
+        }
+        return new LongTTreeIterator(node, idx, endExc, true) ;
+    }
+
+    @Override
+    public long size()
+    { return size ; }
+
+    // Size by actually counting the tree
+    @Override
+    public long count()
+    {
+        return count(root) ;
+    }
+
+    private static long count(Node node)
+    {
+        if ( node == null )
+            return 0 ;
+        return node.nodeSize + count(node.left) + count(node.right) ;
+    }
+
+    @Override
+    public long[] elements()
+    {
+        long[] x = new long[(int)count()] ;
+        elements(root, x, 0) ;
+        return x ;
+    }
+
+    // Walk the tree structure, not the threading, so this can be used to test the iterator.
+    private static int elements(Node node, long[] x, int idx)
+    {
+        if ( node == null )
+            return idx ;
+        idx = elements(node.left, x, idx) ;
+        System.arraycopy(node.elements, 0, x, idx, node.nodeSize) ;
+        idx += node.nodeSize ;
+        return elements(node.right, x, idx) ;
+    }
+
+    @Override
+    public String toString() { return PrintUtils.toString(this) ; }
+
+    public void output()
+    {
+        output(stdout) ;
+    }
+
+    @Override
+    public void output(IndentedWriter out)
+    {
+        if ( root.isEmpty() )
+            out.print("<empty>") ;
+        else
+            output(out, root) ;
+        out.ensureStartOfLine() ;
+        out.flush() ;
+    }
+
+    private static void output(IndentedWriter out, Node node)
+    {
+        if ( node == null )
+        {
+            out.print("_") ;
+            return ;
+        }
+        if ( node.isLeaf() )
+        {
+            out.print(node.toString()) ;
+            return ;
+        }
+        out.print("(") ;
+        out.print(node.toString()) ;
+        out.print(" ") ;
+        output(out, node.left) ;
+        out.print(" ") ;
+        output(out, node.right) ;
+        out.print(")") ;
+    }
+
+    // ---- Node and iterator.
+
+    static final class Node
+    {
+        int height = InitialHeight ;
+        Node parent ;
+        Node left ;
+        Node right ;
+        // Threading : the next node in key order ; null for the last node.
+        Node successor ;
+        int nodeSize ;
+        long[] elements ;
+
+        Node(Node parent, int size)
+        {
+            this.elements = new long[size] ;
+            this.nodeSize = 0 ;
+            this.parent = parent ;
+        }
+
+        void set(long[] elements, int els, Node parent, Node left, Node right)
+        {
+            this.elements = elements ;
+            this.nodeSize = els ;
+            this.parent = parent ;
+            this.left = left ;
+            this.right = right ;
+            this.height = -1 ;
+        }
+
+        /** Index of the key, or -(insertion point+1). */
+        int find(long key)
+        {
+            return Arrays.binarySearch(elements, 0, nodeSize, key) ;
+        }
+
+        void insertAt(int idx, long key)
+        {
+            System.arraycopy(elements, idx, elements, idx+1, nodeSize-idx) ;
+            elements[idx] = key ;
+            nodeSize++ ;
+        }
+
+        void deleteAt(int idx)
+        {
+            System.arraycopy(elements, idx+1, elements, idx, nodeSize-idx-1) ;
+            nodeSize-- ;
+        }
+
+        long removeBottom()
+        {
+            long key = elements[0] ;
+            deleteAt(0) ;
+            return key ;
+        }
+
+        long removeTop()
+        {
+            nodeSize-- ;
+            return elements[nodeSize] ;
+        }
+
+        long getMin()                { return elements[0] ; }
+        long getMax()                { return elements[nodeSize-1] ; }
+
+        boolean isFull()             { return nodeSize == elements.length ; }
+        boolean isEmpty()            { return nodeSize == 0 ; }
+        boolean isInternal()         { return left != null && right != null ; }
+        boolean isLeftHalfLeaf()     { return left == null && right != null ; }
+        boolean isRightHalfLeaf()    { return left != null && right == null ; }
+        boolean isLeaf()             { return left == null && right == null ; }
+
+        @Override
+        public String toString()
+        {
+            return Arrays.toString(Arrays.copyOf(elements, nodeSize)) ;
+        }
+    }
+
+    private static final class LongTTreeIterator implements PrimitiveIterator.OfLong
+    {
+        private Node node ;
+        private int idx ;
+        private final long limit ;          // Exclusive
+        private final boolean bounded ;
+
+        LongTTreeIterator(Node node, int idx, long limit, boolean bounded)
+        {
+            this.node = node ;
+            this.idx = idx ;
+            this.limit = limit ;
+            this.bounded = bounded ;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if ( node == null )
+                return false ;
+            if ( bounded && node.elements[idx] >= limit )
+            {
+                node = null ;
+                return false ;
+            }
+            return true ;
+        }
+
+        @Override
+        public long nextLong()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException("LongTTreeIterator") ;
+            long k = node.elements[idx++] ;
+            if ( idx >= node.nodeSize )
+            {
+                node = node.successor ;
+                idx = 0 ;
+            }
+            return k ;
+        }
+    }
+}
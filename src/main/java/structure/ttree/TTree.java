@@ -39,12 +39,16 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
     /* T*Tree : in each leaf or half-leaf, have pointer to successor node.
      * Speeds traversal.  But need to know it's a threading pointer.
      * "T*-tree : A Main Memory Database Index Structure for Real Time Applications" / 1996
+     * 
+     * Here, every node has a successor pointer (TTreeNode.successor), the next node
+     * in key order, so iteration is a walk along a list of nodes.  Rotations
+     * move element arrays between node objects, so the nodes involved are re-threaded
+     * after each rotation ; nodes are threaded in when added and out when removed.
      */
     
     /* TODO
      + Sort out workers - TTreeNode has similar.
        lib.log(Logger, fmt, args)
-     + size by counting successful ins/del
      + Delete mods: do before fixup, then fixup.
          Amalgamate rules come simpler?
      + Remove id logging from TTreeNodes
@@ -90,24 +94,89 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
     public static boolean Logging = true ;
     public static boolean Verbose = false ;
 
-    public final int NodeSize = 2 ;        // Maximum node size.
-    public final int NodeSizeMin = 2 ;     // Limit at which we rebalance on delete in internal nodes to keep nodes full.  
+    public final int NodeSize ;        // Maximum node size.
+    public final int NodeSizeMin ;     // Limit at which we rebalance on delete in internal nodes to keep nodes full.  
     
     static int InitialHeight = 1 ;      // The height of a node with no nodes below it.
     
     TTreeNode<T> root ;
+    // Number of elements in the tree, maintained by add and remove.
+    private long size = 0 ;
     
     public TTree(int nodeSize)
     {
         this(nodeSize, nodeSize) ;
     }
 
+    /**
+     * @param nodeSize     Maximum number of elements in a node.
+     * @param intNodeSize  Minimum number of elements in an internal node or half-leaf.
+     */
     public TTree(int nodeSize, int intNodeSize)
     {
-        
+        if ( nodeSize < 2 )
+            error("Node size must be at least 2: %d", nodeSize) ;
+        if ( intNodeSize < 1 || intNodeSize > nodeSize )
+            error("Internal node size must be between 1 and %d: %d", nodeSize, intNodeSize) ;
+        NodeSize = nodeSize ;
+        NodeSizeMin = intNodeSize ;
         root = newRoot() ;
     }
 
+    /**
+     * Build a balanced T-Tree from items in strictly increasing order, in O(n).
+     * Every node is filled to NodeSize except the rightmost leaf.
+     * @throws TTreeException if the input contains duplicates or is out of order.
+     */
+    public static <T extends Comparable<? super T>> TTree<T> bulkLoad(int nodeSize, Iterator<T> sorted)
+    {
+        List<T> items = new ArrayList<T>() ;
+        T prev = null ;
+        while ( sorted.hasNext() )
+        {
+            T item = sorted.next() ;
+            checkNotNull(item) ;
+            if ( prev != null && prev.compareTo(item) >= 0 )
+                error("Bulk load: not strictly increasing: %s then %s", prev, item) ;
+            items.add(item) ;
+            prev = item ;
+        }
+        TTree<T> ttree = new TTree<T>(nodeSize) ;
+        if ( ! items.isEmpty() )
+        {
+            int numNodes = (items.size()+ttree.NodeSize-1)/ttree.NodeSize ;
+            ttree.root = ttree.build(items, 0, numNodes, null) ;
+            for ( TTreeNode<T> n = TTreeNode.getLeftDeep(ttree.root) ; n != null ; n = n.successor )
+                n.successor = successorOf(n) ;
+        }
+        ttree.size = items.size() ;
+        ttree.checkTree() ;
+        return ttree ;
+    }
+
+    public static <T extends Comparable<? super T>> TTree<T> bulkLoad(int nodeSize, Iterable<T> sorted)
+    { return bulkLoad(nodeSize, sorted.iterator()) ; }
+
+    // Nodes are numbered by the run of NodeSize items they hold; [start, finish) of them
+    // become a subtree rooted at the middle one. Only the last node may be partly full,
+    // and it always ends up as a leaf.
+    private TTreeNode<T> build(List<T> items, int start, int finish, TTreeNode<T> parent)
+    {
+        if ( start >= finish )
+            return null ;
+        int mid = (start+finish-1) >>> 1 ;
+        TTreeNode<T> node = newNode(parent) ;
+        int first = mid*NodeSize ;
+        int last = Math.min(first+NodeSize, items.size()) ;
+        for ( int i = first ; i < last ; i++ )
+            node.elements[i-first] = items.get(i) ;
+        node.nodeSize = last-first ;
+        node.left = build(items, start, mid, node) ;
+        node.right = build(items, mid+1, finish, node) ;
+        setHeight(node) ;
+        return node ;
+    }
+
     
     //    public TTree(int NodeSize, Comparator<T> comparator)
 //    {
@@ -154,7 +223,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         // node.find on each node traversed as binary search does not
         // touch min/max until last.
 
-        if ( root == null )
+        if ( root == null || root.isEmpty() )
             return null ;
         
         TTreeNode<T> node = findBoundingNode(root, item) ;
@@ -170,13 +239,20 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         if ( Logging )
             log.debug(">> Insert: "+item) ;
         if ( root.isEmpty() )
+        {
+            size++ ;
             return root.add(item) ;
+        }
         
         TTreeNode<T> node = findBoundingNode(root, item) ;
         if ( Logging )
             log.debug("Bounding node: "+node) ;
         
-        boolean b = insertBoundingNode(node, item) ;
+        int idx = node.find(item) ;
+        if ( idx < 0 )
+            // Not a replacement.
+            size++ ;
+        boolean b = insertBoundingNode(node, idx, item) ;
         
         if ( Checking )
             checkTree() ;
@@ -187,13 +263,12 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
     }
 
     @Override
-    public void clear()         { root = newRoot() ; }
+    public void clear()         { root = newRoot() ; size = 0 ; }
 
-    private boolean insertBoundingNode(TTreeNode<T> node, T item)
+    private boolean insertBoundingNode(TTreeNode<T> node, int idx, T item)
     {
         if ( Logging )
             log("insertBoundingNode(%s, %s)", label(node), item) ;
-        int idx = node.find(item) ;
         if ( idx >= 0 )
         {
             // Duplicate.
@@ -228,6 +303,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
             }
             node.left = newNode(node) ;
             node.left.add(item) ;
+            threadIn(node.left) ;
             rebalanceInsert(node) ;
             return true ;
         }
@@ -246,6 +322,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
             TTreeNode<T> newNode = newNode(node) ;
             node.left = newNode ;
             boolean b = newNode.add(min) ;
+            threadIn(newNode) ;
             rebalanceInsert(node) ;
             return b ;
         }
@@ -267,6 +344,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         TTreeNode<T> newNode = newNode(node) ;
         node.right = newNode ;
         boolean b = node.right.add(min) ;
+        threadIn(newNode) ;
         rebalanceInsert(node) ;
         return b ;
     }
@@ -340,6 +418,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         boolean b = node.delete(item) ;
         if ( b )
         {
+            size-- ;
             TTreeNode<T> fixupNode = node ; 
 
             if ( node.isInternal() )
@@ -386,6 +465,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
                 // Root now empty.
                 return ;
             }
+            threadOut(node) ;
             if ( node.parent.left == node )
             {
                 // Fix parent height : might have chnaged.
@@ -412,6 +492,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
             if ( node.nodeSize + leaf.nodeSize <= NodeSize )
             {
                 // Amalgamate: copy leaf elements to parent half-leaf.
+                threadOut(leaf) ;
                 System.arraycopy(leaf.elements, 0, node.elements, node.nodeSize, leaf.nodeSize) ;
                 node.nodeSize += leaf.nodeSize ;
                 node.right = null ;
@@ -433,6 +514,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
             if ( node.nodeSize + leaf.nodeSize <= NodeSize )
             {
                 // Amalgamate
+                threadOut(leaf) ;
                 if ( node.nodeSize > 0 )
                     ArrayOps.shiftUpN(node.elements, 0, leaf.nodeSize, node.nodeSize) ;
                 System.arraycopy(leaf.elements, 0, node.elements, 0, leaf.nodeSize) ;
@@ -541,6 +623,65 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         return node.height ;
     }
     
+    /**
+     * Special case of the double rotations : a leaf is about to become an internal node.
+     * Move the top elements of r1 to the bottom of r2 (all of r1 is less than r2)
+     * so r2 is as full as possible, leaving at least one element in r1.
+     * Return the number of elements moved.  
+     */
+    private int slide(T[] r1, int r1Size, T[] r2, int r2Size)
+    {
+        int k = Math.min(r1Size-1, NodeSize-r2Size) ;
+        if ( k <= 0 )
+            return 0 ;
+        ArrayOps.shiftUpN(r2, 0, k, r2Size) ;
+        System.arraycopy(r1, r1Size-k, r2, 0, k) ;
+        ArrayOps.clear(r1, r1Size-k, k) ;
+        return k ;
+    }
+
+    // ---- Threading : successor pointers.
+    
+    /** Set the successor of this node, and make it the successor of its predecessor. */ 
+    private static <T extends Comparable<? super T>> void threadIn(TTreeNode<T> node)
+    {
+        node.successor = successorOf(node) ;
+        TTreeNode<T> pred = predecessorOf(node) ;
+        if ( pred != null )
+            pred.successor = node ;
+    }
+    
+    /** Unthread a node which is about to be removed from the tree. */ 
+    private static <T extends Comparable<? super T>> void threadOut(TTreeNode<T> node)
+    {
+        TTreeNode<T> pred = predecessorOf(node) ;
+        if ( pred != null )
+            pred.successor = node.successor ;
+        node.successor = null ;
+    }
+    
+    /** Next node in key order, by the tree structure. */
+    static <T extends Comparable<? super T>> TTreeNode<T> successorOf(TTreeNode<T> node)
+    {
+        if ( node.right != null )
+            return TTreeNode.getLeftDeep(node.right) ;
+        TTreeNode<T> n = node ;
+        while ( n.parent != null && n.parent.right == n )
+            n = n.parent ;
+        return n.parent ;
+    }
+    
+    /** Previous node in key order, by the tree structure. */
+    static <T extends Comparable<? super T>> TTreeNode<T> predecessorOf(TTreeNode<T> node)
+    {
+        if ( node.left != null )
+            return TTreeNode.getRightDeep(node.left) ;
+        TTreeNode<T> n = node ;
+        while ( n.parent != null && n.parent.left == n )
+            n = n.parent ;
+        return n.parent ;
+    }
+    
     private void pivotLeft(TTreeNode<T> node)
     {
         if ( Logging )
@@ -573,6 +714,8 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         
         node.set(r2, r2Size, node.parent, a, n) ;
         setHeight(node) ; 
+        threadIn(node) ;
+        threadIn(n) ;
         
         if ( Checking )
             node.checkDeep(this) ;
@@ -612,6 +755,8 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         
         node.set(r2, r2Size, node.parent, n, c) ;
         setHeight(node) ;
+        threadIn(node) ;
+        threadIn(n) ;
         
         if ( Checking )
             node.checkDeep(this) ;
@@ -649,7 +794,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         T[] r2 = n2.elements ;
         int r2Size = n2.nodeSize ;
         // Check new top node (leaf becomes internal)
-        if ( r2Size == 1 )
+        if ( n2.isLeaf() && r2Size < NodeSizeMin )
         {
             // From the T-Tree paper:
             // A is r3 = node
@@ -660,22 +805,13 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
                 log("** Special case LR") ;
             if ( Checking )
             {
-                if ( ! n2.isLeaf() )            warn("LR: Not a leaf (C)") ;
                 if ( ! n1.isLeftHalfLeaf() )    warn("LR: Not a left half-leaf (B)") ;
                 if ( ! node.isRightHalfLeaf() ) warn("LR: Not a right half-leaf (A)") ;
             }
             // Slide els from B(r1) to C(r2)
-            // Old C element
-            T x = r2[0] ;
-            // New C elements
-            System.arraycopy(r1, 1, r2, 0, r1Size-1) ;
-            r2[r1Size-1] = x ;
-            r2Size = r1Size ;
-            n2.nodeSize = r1Size ;
-            // New B element (singular)
-            ArrayOps.clear(r1, 1, r1Size-1) ;
-            n1.nodeSize = 1 ;
-            r1Size = 1 ;
+            int k = slide(r1, r1Size, r2, r2Size) ;
+            r1Size -= k ;
+            r2Size += k ;
         }
 
         
@@ -697,6 +833,9 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         
         node.set(r2, r2Size, node.parent, n1, n2) ;
         setHeight(node) ;
+        threadIn(node) ;
+        threadIn(n1) ;
+        threadIn(n2) ;
         
         if ( Checking )
             node.checkDeep(this) ;
@@ -732,29 +871,20 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         T[] r2 = n2.elements ;
         int r2Size = n2.nodeSize ;
         // Check new top node (leaf becomes internal)
-        if ( r2Size == 1 )
+        if ( n2.isLeaf() && r2Size < NodeSizeMin )
         {
             // A = node ; B = n1 ; C = n2
             if ( Logging )
                 log("** Special case RL") ;
             if ( Checking )
             {
-                if ( ! n2.isLeaf() )            warn("RL: Not a leaf (C)") ;
                 if ( ! n1.isRightHalfLeaf() )   warn("RL: Not a right half-leaf (B)") ;
                 if ( ! node.isLeftHalfLeaf() )  warn("RL: Not a left half-leaf (A)") ;
             }
-            // Slide els from B(r1) to C(r2)
-         // Old C element
-            T x = r2[0] ;
-            // New C elements
-            System.arraycopy(r1, 1, r2, 0, r1Size-1) ;
-            r2[r1Size-1] = x ;
-            r2Size = r1Size ;
-            n2.nodeSize = r1Size ;
-            // New B element (singular)
-            ArrayOps.clear(r1, 1, r1Size-1) ;
-            n1.nodeSize = 1 ;
-            r1Size = 1 ;
+            // Slide els from A(r1) to C(r2)
+            int k = slide(r1, r1Size, r2, r2Size) ;
+            r1Size -= k ;
+            r2Size += k ;
         }
         
         TTreeNode<T> a = node.left ;
@@ -775,6 +905,9 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
         
         node.set(r2, r2Size, node.parent, n1, n2) ;
         setHeight(node) ;
+        threadIn(node) ;
+        threadIn(n1) ;
+        threadIn(n2) ;
 
         if ( Checking )
             node.checkDeep(this) ;
@@ -794,7 +927,14 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
             if ( root.parent != null )
                 brokenTree(root, "Root parent is not null") ;
             root.checkDeep(this) ;
+            for ( TTreeNode<T> n = TTreeNode.getLeftDeep(root) ; n != null ; n = n.successor )
+            {
+                if ( n.successor != successorOf(n) )
+                    brokenTree(n, "Successor is not the next node") ;
+            }
         }
+        if ( size != count() )
+            error("Size is %d but the tree has %d elements", size, count()) ;
             
     }
     
@@ -821,7 +961,7 @@ class TTree<T extends Comparable<? super T>> implements Printable , OrderedSet<T
 
     @Override
     public long size() 
-    { return count() ; } 
+    { return size ; } 
     
     // Size by actually counting the tree
     @Override
@@ -17,7 +17,6 @@
 
 package structure.ttree;
 
-import java.util.Arrays ;
 import java.util.Iterator ;
 import java.util.NoSuchElementException ;
 
@@ -28,15 +27,16 @@ public class TTreeIterator<T extends Comparable<? super T>> implements Iterator<
 {
     public static <T extends Comparable<? super T>> Iterator<T> iterator(TTree<T> ttree, T min, T max)
     {
-        if ( ttree.root == null )
+        if ( ttree.root == null || ttree.root.isEmpty() )
             return Iter.nullIterator() ;
         
         return new TTreeIterator<T>(ttree, min, max) ;
     }
 
     boolean finished = false ;
-    Iterator<T> nodeIter ;
+    // Current node and the index of the next element to look at in it.
     TTreeNode<T> node ;
+    int idx ;
     T slot ;
     T max ;
 
@@ -49,29 +49,16 @@ public class TTreeIterator<T extends Comparable<? super T>> implements Iterator<
         if ( min != null )
         {
             node = TTree.findBoundingNode(ttree.root, min) ;
-            int idx = node.find(min) ;
-            // Does not short-cut min being larger than all elements in the tree. 
-            if ( idx < 0 )
-            {
-                idx = Alg.decodeIndex(idx) ;
-                // idx may actually be out of the array - that means this node is "finished" with
-                if ( idx > node.nodeSize )
-                    nodeIter = null ;
-                else
-                    nodeIter = Arrays.asList(node.elements).subList(idx, node.nodeSize).iterator() ; 
-            }
-            else
-                nodeIter = Arrays.asList(node.elements).subList(idx, node.nodeSize).iterator() ;
+            int x = node.find(min) ;
+            // May be node.nodeSize, meaning start at the successor node.
+            idx = ( x < 0 ) ? Alg.decodeIndex(x) : x ;
         }
         else
         {
             //min == null
-            node = ttree.root ;
-            while(node.left != null)
-                node = node.left ;
-            nodeIter = Arrays.asList(node.elements).iterator() ;
+            node = TTreeNode.getLeftDeep(ttree.root) ;
+            idx = 0 ;
         }
-        
     }
 
     @Override
@@ -83,70 +70,21 @@ public class TTreeIterator<T extends Comparable<? super T>> implements Iterator<
         if ( slot != null )
             return true ;
         
-        if ( nodeIter != null && nodeIter.hasNext() )
+        // Follow the successor links (T*-tree threading) past the end of this node.
+        // Only elements[0..nodeSize) are live.
+        while ( node != null && idx >= node.nodeSize )
         {
-            T item = nodeIter.next() ;
-            return testAndSetSlot(item) ;
+            node = node.successor ;
+            idx = 0 ;
         }
-
-        // End of current node elements.
-        // Slot == null
-        // Have yielded the value for this tree node (and hence all relevant left subtree)
-
-        // Move the left-est node of the right subtree.
-        // If no right subtree
-        //   Go up to parent.
-        //   Check we were the left subtree of parent, not right.
-        // If no parent (this is the root), and we were left of parent,
-        //   go down to min of left.
         
-        TTreeNode<T> nextNode = node.right ;
-        
-        // There is a right
-        if ( nextNode != null )
-            nextNode = TTreeNode.getLeftDeep(nextNode) ;
-        else
-            //if ( nextNode == null )
+        if ( node == null )
         {
-            // No right subtree from here.
-            // Walk up tree until we were not the right node of our parent.
-            TTreeNode<T> n2 = node ;
-            TTreeNode<T> n3 = n2.parent ;
-            while( n3 != null )
-            {
-                if ( n3.right != n2 ) // Same as n3.left == n2
-                {
-                    n2 = n3 ;
-                    break ;
-                }
-           
-                n2 = n3 ;
-                n3 = n2.parent ;
-            }
-            
-            if ( n3 == null )
-            {
-                finished = true ;
-                return false ;
-            }
-
-            // Now at the first node upwards when we're the left
-            // (i.e. less than the value)
-            
-            nextNode = n2 ;
-        }
-
-        // On exit nextNode is the node of interest.
-        // Yield it's elements 
-        
-        node = nextNode ;
-        nodeIter = Arrays.asList(node.elements).iterator() ;
-        // And try again.
-        // Rafactor.
-        if ( ! nodeIter.hasNext() )
+            finished = true ;
             return false ;
+        }
         
-        T item = nodeIter.next() ;
+        T item = node.elements[idx++] ;
         return testAndSetSlot(item) ;
     }
 
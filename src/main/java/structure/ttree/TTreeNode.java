@@ -41,6 +41,8 @@ class TTreeNode<T extends Comparable<? super T>> implements Printable
     TTreeNode<T> parent ;
     TTreeNode<T> left ;
     TTreeNode<T> right ;
+    // Threading (T*-tree) : the next node in key order ; null for the last node.
+    TTreeNode<T> successor ;
     // Need to record start and stop if want slicing.
     // Or nulls at low end during insert into a full node.
     int nodeSize ; 
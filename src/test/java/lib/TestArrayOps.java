@@ -100,6 +100,14 @@ public class TestArrayOps
         assertArrayEquals(array2, array);
     }
 
+    @Test public void shift_up_6a() {
+        // Room for all the slice : nothing drops off the top.
+        String[] array = {"a", "b", null, null, null};
+        String[] array2 = {null, null, null, "a", "b"};
+        ArrayOps.shiftUpN(array, 0, 3, 2);
+        assertArrayEquals(array2, array);
+    }
+
     @Test(expected = ArrayOps.ArrayException.class)
     public void shift_up_7() {
         String[] array = {"a", "b", "c", "d", "e"};
@@ -0,0 +1,150 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.jena.atlas.AtlasException;
+import org.junit.Test;
+
+public class TestCodecUTF8 {
+    private static final String ascii = "The quick brown fox jumps over the lazy dog 0123456789";
+    private static final String mixed = "abcdefgh¢€ijklmnopqé中文 and more ascii text ";
+    private static final String supplementary = "a😀bcdefghijk𝕫";
+    private static final String nul = "abc\u0000defghijklmn\u0000";
+
+    @Test public void utf8_bulk_1() { roundTrip(ascii); }
+    @Test public void utf8_bulk_2() { roundTrip(mixed); }
+    @Test public void utf8_bulk_3() { roundTrip(supplementary); }
+    @Test public void utf8_bulk_4() { roundTrip(nul); }
+    @Test public void utf8_bulk_5() { roundTrip(""); }
+    @Test public void utf8_bulk_6() { roundTrip("\uFFFF\u0080\u07FF\u0800"); }
+
+    @Test public void utf8_modified_1() { roundTripModified(ascii); }
+    @Test public void utf8_modified_2() { roundTripModified(mixed); }
+    @Test public void utf8_modified_3() { roundTripModified(supplementary); }
+    @Test public void utf8_modified_4() { roundTripModified(nul); }
+
+    @Test public void utf8_buffer_1() {
+        bufferRoundTrip(mixed, ByteBuffer.allocate(200));
+        bufferRoundTrip(supplementary, ByteBuffer.allocateDirect(200));
+        bufferRoundTrip(ascii+ascii, ByteBuffer.allocateDirect(200));
+    }
+
+    @Test public void utf8_overflow() {
+        byte[] bytes = new byte[5];
+        assertThrows(IndexOutOfBoundsException.class, ()->CodecUTF8.encode("€€", bytes, 0));
+        assertArrayEquals(new byte[5], bytes);
+        ByteBuffer bb = ByteBuffer.allocate(5);
+        assertThrows(BufferOverflowException.class, ()->CodecUTF8.encode("€€", bb));
+        assertEquals(0, bb.position());
+    }
+
+    @Test public void utf8_unpaired() {
+        assertThrows(AtlasException.class, ()->CodecUTF8.encode("a\uD83Db", new byte[20], 0));
+        // Nothing written, including the characters before the surrogate.
+        byte[] bytes = new byte[40];
+        assertThrows(AtlasException.class, ()->CodecUTF8.encode(ascii.substring(0, 20)+"\uDE00", bytes, 0));
+        assertArrayEquals(new byte[40], bytes);
+        ByteBuffer bb = ByteBuffer.allocateDirect(40);
+        assertThrows(AtlasException.class, ()->CodecUTF8.encode("é€\uD83D", bb));
+        assertEquals(0, bb.position());
+        assertEquals(0, bb.get(0));
+        // Modified UTF-8 encodes each surrogate separately.
+        roundTripModified("a\uD83Db\uDE00");
+    }
+
+    @Test public void utf8_bad_1() { bad(false, 0xC0, 0x80); }          // Overlong NUL (not modified)
+    @Test public void utf8_bad_2() { bad(false, 0xE0, 0x80, 0x80); }    // Overlong
+    @Test public void utf8_bad_3() { bad(false, 0xED, 0xA0, 0x80); }    // Encoded surrogate
+    @Test public void utf8_bad_4() { bad(false, 0xE2, 0x82); }          // Truncated
+    @Test public void utf8_bad_5() { bad(false, 0xE2, 0x02, 0xAC); }    // Bad continuation
+    @Test public void utf8_bad_6() { bad(false, 0xF4, 0x90, 0x80, 0x80); } // > U+10FFFF
+    @Test public void utf8_bad_7() { bad(true, 0xF0, 0x9F, 0x98, 0x80); }  // 4 bytes in modified
+    @Test public void utf8_bad_8() { bad(false, 0x80); }
+
+    private static void bad(boolean modified, int... values) {
+        byte[] bytes = new byte[values.length];
+        for ( int i = 0 ; i < values.length ; i++ )
+            bytes[i] = (byte)values[i];
+        assertThrows(AtlasException.class, ()->CodecUTF8.decode(bytes, 0, bytes.length, new char[10], 0, modified));
+    }
+
+    private static void roundTrip(String s) {
+        byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, CodecUTF8.lengthUTF8(s));
+        byte[] bytes = new byte[expected.length+4];
+        int n = CodecUTF8.encode(s, bytes, 2);
+        assertEquals(expected.length, n);
+        assertArrayEquals(expected, Arrays.copyOfRange(bytes, 2, 2+n));
+        check(s, bytes, 2, n, false);
+    }
+
+    private static void roundTripModified(String s) {
+        byte[] expected = modifiedUTF8(s);
+        assertEquals(expected.length, CodecUTF8.lengthUTF8(s, true));
+        byte[] bytes = new byte[expected.length];
+        int n = CodecUTF8.encode(s, bytes, 0, true);
+        assertArrayEquals(expected, bytes);
+        check(s, bytes, 0, n, true);
+    }
+
+    private static void check(String s, byte[] bytes, int off, int len, boolean modified) {
+        char[] chars = new char[len+1];
+        int c = CodecUTF8.decode(bytes, off, len, chars, 1, modified);
+        assertEquals(s, new String(chars, 1, c));
+        StringBuilder sb = new StringBuilder("<");
+        CodecUTF8.decode(bytes, off, len, sb, modified);
+        assertEquals("<"+s, sb.toString());
+    }
+
+    private static void bufferRoundTrip(String s, ByteBuffer bb) {
+        bb.position(3);
+        int n = CodecUTF8.encode(s, bb);
+        assertEquals(3+n, bb.position());
+        bb.position(3);
+        StringBuilder sb = new StringBuilder();
+        CodecUTF8.decode(bb, n, sb);
+        assertEquals(s, sb.toString());
+        assertEquals(3+n, bb.position());
+        bb.position(3);
+        char[] chars = new char[n];
+        int c = CodecUTF8.decode(bb, n, chars, 0);
+        assertEquals(s, new String(chars, 0, c));
+    }
+
+    // Java's own Modified UTF-8, without the 2 byte length.
+    private static byte[] modifiedUTF8(String s) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new DataOutputStream(out).writeUTF(s);
+            byte[] b = out.toByteArray();
+            return Arrays.copyOfRange(b, 2, b.length);
+        } catch (IOException ex) { throw new RuntimeException(ex); }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestDecoderUTF8 {
+    private static final String text = "abcdefgh¢€ijklmnopqé中文 and more ascii text a😀bcdefghijk𝕫";
+
+    @Test public void decoder_channel_1() { testChannel(text, DecoderUTF8.DefaultBufferSize); }
+    @Test public void decoder_channel_2() { testChannel("", 8); }
+
+    @Test public void decoder_channel_3() {
+        // Every buffer size splits some multi-byte sequence somewhere.
+        String s = text+text+text;
+        for ( int size = 8; size < 40; size++ )
+            testChannel(s, size);
+    }
+
+    @Test public void decoder_region_1() {
+        byte[] bytes = ("XX"+text).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer region = ByteBuffer.wrap(bytes);
+        region.position(2);
+        assertEquals(text, readAll(new DecoderUTF8(region), 100));
+        assertEquals(2, region.position());
+    }
+
+    @Test public void decoder_region_2() {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer region = ByteBuffer.allocateDirect(bytes.length);
+        region.put(bytes).flip();
+        DecoderUTF8 decoder = new DecoderUTF8(region);
+        assertEquals(text, readAll(decoder, 7));
+        assertEquals(bytes.length, decoder.byteOffset());
+    }
+
+    @Test public void decoder_small_dst() {
+        // One char at a time: a surrogate pair comes out in two reads.
+        DecoderUTF8 decoder = decoder("a😀b", 8);
+        StringBuilder sb = new StringBuilder();
+        CharBuffer cb = CharBuffer.allocate(1);
+        while ( decoder.read(cb) >= 0 ) {
+            cb.flip();
+            sb.append(cb);
+            cb.clear();
+        }
+        assertEquals("a😀b", sb.toString());
+    }
+
+    @Test public void decoder_lines_1() {
+        testLines("line1\nline2\r\nline3\rline4", "line1", "line2", "line3", "line4");
+    }
+
+    @Test public void decoder_lines_2() {
+        testLines("\n\n€\r\n", "", "", "€");
+    }
+
+    @Test public void decoder_lines_3() {
+        testLines("");
+        testLines("abc", "abc");
+        testLines("abc\r", "abc");
+    }
+
+    @Test public void decoder_lines_4() {
+        // CR LF split across channel reads.
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < 20; i++ )
+            sb.append("line€").append(i).append("\r\n");
+        String s = sb.toString();
+        for ( int size = 8; size < 20; size++ ) {
+            DecoderUTF8 decoder = decoder(s, size);
+            StringBuilder line = new StringBuilder();
+            for ( int i = 0; i < 20; i++ ) {
+                line.setLength(0);
+                assertTrue(decoder.readLine(line));
+                assertEquals("line€"+i, line.toString());
+            }
+            assertFalse(decoder.readLine(line));
+        }
+    }
+
+    @Test public void decoder_lines_read() {
+        DecoderUTF8 decoder = decoder("abc\r\ndef", 8);
+        StringBuilder sb = new StringBuilder();
+        assertTrue(decoder.readLine(sb));
+        assertEquals("abc", sb.toString());
+        CharBuffer cb = CharBuffer.allocate(10);
+        decoder.read(cb);
+        cb.flip();
+        assertEquals("def", cb.toString());
+    }
+
+    @Test public void decoder_bad_1() {
+        // Bad continuation byte after a buffer boundary.
+        byte[] bytes = bytes("abcdefghij", 0xE2, 0x82, 0x41);
+        UTF8Exception ex = assertThrows(UTF8Exception.class, ()->readAll(decoder(bytes, 8), 100));
+        assertEquals(12, ex.offset());
+    }
+
+    @Test public void decoder_bad_2() {
+        // Sequence cut off by the end of the input.
+        byte[] bytes = bytes("abcdefghij", 0xF0, 0x9F, 0x98);
+        UTF8Exception ex = assertThrows(UTF8Exception.class, ()->readAll(decoder(bytes, 8), 100));
+        assertEquals(10, ex.offset());
+        UTF8Exception ex2 = assertThrows(UTF8Exception.class, ()->readAll(new DecoderUTF8(ByteBuffer.wrap(bytes)), 100));
+        assertEquals(10, ex2.offset());
+    }
+
+    @Test public void decoder_bad_3() {
+        byte[] bytes = bytes("abcdefghijklmnopqrstuvwxyz", 0xC0, 0x80);
+        UTF8Exception ex = assertThrows(UTF8Exception.class, ()->readAll(decoder(bytes, 16), 100));
+        assertEquals(26, ex.offset());
+    }
+
+    private static void testChannel(String s, int bufferSize) {
+        assertEquals(s, readAll(decoder(s, bufferSize), 100));
+        assertEquals(s, readAll(decoder(s, bufferSize), 3));
+    }
+
+    private static void testLines(String s, String... expected) {
+        DecoderUTF8 decoder = decoder(s, 8);
+        List<String> lines = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        while ( decoder.readLine(sb) ) {
+            lines.add(sb.toString());
+            sb.setLength(0);
+        }
+        assertEquals(List.of(expected), lines);
+    }
+
+    private static String readAll(DecoderUTF8 decoder, int charBufferSize) {
+        StringBuilder sb = new StringBuilder();
+        CharBuffer cb = CharBuffer.allocate(charBufferSize);
+        while ( decoder.read(cb) >= 0 ) {
+            cb.flip();
+            sb.append(cb);
+            cb.clear();
+        }
+        decoder.close();
+        return sb.toString();
+    }
+
+    private static DecoderUTF8 decoder(String s, int bufferSize) {
+        return decoder(s.getBytes(StandardCharsets.UTF_8), bufferSize);
+    }
+
+    private static DecoderUTF8 decoder(byte[] bytes, int bufferSize) {
+        return new DecoderUTF8(Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSize);
+    }
+
+    private static byte[] bytes(String prefix, int... tail) {
+        byte[] p = prefix.getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = new byte[p.length+tail.length];
+        System.arraycopy(p, 0, bytes, 0, p.length);
+        for ( int i = 0; i < tail.length; i++ )
+            bytes[p.length+i] = (byte)tail[i];
+        return bytes;
+    }
+}
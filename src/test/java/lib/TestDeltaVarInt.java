@@ -0,0 +1,178 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestDeltaVarInt {
+    @Test public void delta_01() {
+        roundTrip(new long[0], 4);
+    }
+
+    @Test public void delta_02() {
+        roundTrip(new long[] {5}, 4);
+    }
+
+    @Test public void delta_03() {
+        roundTrip(new long[] {1, 2, 3, 10, 100, 1000, 1001}, 3);
+    }
+
+    @Test public void delta_04() {
+        // Not sorted, negative, extremes.
+        roundTrip(new long[] {100, 50, -7, Long.MAX_VALUE, Long.MIN_VALUE, 0, 0, -1}, 3);
+    }
+
+    @Test public void delta_05() {
+        long[] values = sorted(10_000, 1);
+        roundTrip(values, DeltaVarInt.DefaultBlockSize);
+        roundTrip(values, 1);
+        roundTrip(values, 7);
+    }
+
+    @Test public void delta_size() {
+        // Dense sorted ids: about 1 byte each instead of 8.
+        long[] values = new long[1000];
+        for ( int i = 0 ; i < values.length ; i++ )
+            values[i] = 1_000_000_000L + 3*i;
+        ByteBuffer bb = ByteBuffer.allocate(8*values.length);
+        int n = DeltaVarInt.encode(values, 0, values.length, bb);
+        assertTrue(n < 2*values.length);
+    }
+
+    @Test public void delta_count() {
+        long[] values = sorted(1000, 2);
+        ByteBuffer bb = encode(values, 16);
+        assertEquals(values.length, DeltaVarInt.count(bb));
+        assertEquals(0, bb.position());
+    }
+
+    @Test public void delta_advance_1() {
+        long[] values = sorted(5000, 3);
+        ByteBuffer bb = encode(values, 16);
+        Random random = new Random(4);
+        for ( int k = 0 ; k < 200 ; k++ ) {
+            long target = values[0] - 5 + (long)(random.nextDouble() * (values[values.length-1] - values[0] + 10));
+            DeltaVarInt.Reader reader = new DeltaVarInt.Reader(bb);
+            boolean b = reader.advanceTo(target);
+            int i = lowerBound(values, target);
+            assertEquals(i < values.length, b);
+            if ( b ) {
+                assertEquals(values[i], reader.nextLong());
+                if ( i+1 < values.length )
+                    assertEquals(values[i+1], reader.nextLong());
+            }
+        }
+    }
+
+    @Test public void delta_advance_2() {
+        // Repeated advances, with duplicates at block boundaries.
+        long[] values = {1, 2, 3, 3, 3, 3, 3, 4, 8, 8, 9, 20};
+        ByteBuffer bb = encode(values, 3);
+        DeltaVarInt.Reader reader = new DeltaVarInt.Reader(bb);
+        assertTrue(reader.advanceTo(3));
+        assertEquals(3, reader.nextLong());
+        assertTrue(reader.advanceTo(3));
+        assertEquals(3, reader.nextLong());
+        assertTrue(reader.advanceTo(5));
+        assertEquals(8, reader.nextLong());
+        assertTrue(reader.advanceTo(2));
+        assertEquals(8, reader.nextLong());
+        assertTrue(reader.advanceTo(20));
+        assertEquals(20, reader.nextLong());
+        assertFalse(reader.advanceTo(21));
+        assertFalse(reader.hasNext());
+    }
+
+    @Test public void delta_writer() {
+        ByteBuffer bb = ByteBuffer.allocate(100);
+        DeltaVarInt.Writer writer = new DeltaVarInt.Writer(bb, 2);
+        writer.add(10);
+        writer.add(20);
+        writer.add(15);
+        int n = writer.finish();
+        assertEquals(n, writer.finish());
+        assertEquals(n, bb.position());
+        bb.flip();
+        assertArrayEquals(new long[] {10, 20, 15}, DeltaVarInt.decode(bb));
+        assertEquals(n, bb.position());
+    }
+
+    @Test public void delta_overflow() {
+        long[] values = sorted(100, 5);
+        ByteBuffer bb = ByteBuffer.allocate(20);
+        assertThrows(BufferOverflowException.class, ()->DeltaVarInt.encode(values, 0, values.length, bb, 10));
+    }
+
+    private static long[] sorted(int n, long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[n];
+        long x = random.nextInt(1000);
+        for ( int i = 0 ; i < n ; i++ ) {
+            x += random.nextInt(100);
+            values[i] = x;
+        }
+        return values;
+    }
+
+    private static int lowerBound(long[] values, long target) {
+        int i = 0;
+        while ( i < values.length && values[i] < target )
+            i++;
+        return i;
+    }
+
+    private static ByteBuffer encode(long[] values, int blockSize) {
+        ByteBuffer bb = ByteBuffer.allocate(20*values.length+10);
+        DeltaVarInt.encode(values, 0, values.length, bb, blockSize);
+        bb.flip();
+        return bb;
+    }
+
+    private static void roundTrip(long[] values, int blockSize) {
+        ByteBuffer bb = ByteBuffer.allocate(20*values.length+10);
+        bb.position(2);
+        int n = DeltaVarInt.encode(values, 0, values.length, bb, blockSize);
+        assertEquals(2+n, bb.position());
+        bb.flip();
+        bb.position(2);
+        DeltaVarInt.Reader reader = new DeltaVarInt.Reader(bb);
+        long[] result = new long[values.length];
+        int i = 0;
+        while ( reader.hasNext() )
+            result[i++] = reader.nextLong();
+        assertEquals(values.length, i);
+        assertArrayEquals(values, result);
+        assertEquals(2, bb.position());
+        long[] result2 = DeltaVarInt.decode(bb);
+        assertTrue(Arrays.equals(values, result2));
+        assertEquals(2+n, bb.position());
+        bb.position(2);
+        assertEquals(values.length, DeltaVarInt.count(bb));
+    }
+}
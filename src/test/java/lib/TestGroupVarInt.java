@@ -0,0 +1,120 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.jena.atlas.lib.ByteBufferLib;
+import org.junit.Test;
+
+public class TestGroupVarInt {
+    @Test public void group_length() {
+        assertEquals(1, GroupVarInt.lengthOf(0));
+        assertEquals(1, GroupVarInt.lengthOf(255));
+        assertEquals(2, GroupVarInt.lengthOf(256));
+        assertEquals(3, GroupVarInt.lengthOf(1 << 16));
+        assertEquals(4, GroupVarInt.lengthOf(1 << 24));
+        assertEquals(4, GroupVarInt.lengthOf(-1));
+    }
+
+    @Test public void group_01() {
+        ByteBuffer bb = ByteBuffer.allocate(20);
+        int n = GroupVarInt.encode(bb, 1, 256, 1 << 16, -1);
+        assertEquals(1+1+2+3+4, n);
+        assertEquals(n, bb.position());
+        // Control byte: lengths 1,2,3,4 => 0b11_10_01_00
+        assertEquals((byte)0xE4, bb.get(0));
+        bb.flip();
+        int[] dst = new int[4];
+        assertEquals(n, GroupVarInt.decode(bb, dst, 0));
+        assertArrayEquals(new int[] {1, 256, 1 << 16, -1}, dst);
+        assertEquals(n, bb.position());
+    }
+
+    @Test public void group_02() {
+        ByteBuffer bb = ByteBuffer.allocate(20);
+        ByteBufferLib.fill(bb, (byte)23);
+        int n = GroupVarInt.encode(bb, 2, 0, 0, 0, 300);
+        assertEquals(0, bb.position());
+        assertEquals(23, bb.get(1));
+        assertEquals(23, bb.get(2+n));
+        int[] dst = new int[5];
+        GroupVarInt.decode(bb, 2, dst, 1);
+        assertArrayEquals(new int[] {0, 0, 0, 0, 300}, dst);
+    }
+
+    @Test public void group_bulk_1() {
+        for ( int len = 0 ; len < 10 ; len++ ) {
+            int[] values = new int[len];
+            for ( int i = 0 ; i < len ; i++ )
+                values[i] = i*1000;
+            bulk(values, ByteBuffer.allocate(200));
+        }
+    }
+
+    @Test public void group_bulk_2() {
+        Random random = new Random(99);
+        int[] values = new int[10_001];
+        for ( int i = 0 ; i < values.length ; i++ )
+            values[i] = random.nextInt() >>> random.nextInt(32);
+        bulk(values, ByteBuffer.allocate(5*values.length+20));
+        bulk(values, ByteBuffer.allocate(5*values.length+20).order(ByteOrder.LITTLE_ENDIAN));
+        bulk(values, ByteBuffer.allocateDirect(5*values.length+20));
+    }
+
+    @Test public void group_bulk_overflow() {
+        int[] values = { 1, 2, 3, 4, 1 << 30 };
+        ByteBuffer bb = ByteBuffer.allocate(10);
+        assertThrows(BufferOverflowException.class, ()->GroupVarInt.encode(values, 0, values.length, bb));
+        assertEquals(0, bb.position());
+    }
+
+    @Test public void group_bulk_underflow() {
+        int[] values = { 1, 2, 3, 1 << 30 };
+        ByteBuffer bb = ByteBuffer.allocate(20);
+        GroupVarInt.encode(values, 0, values.length, bb);
+        bb.flip();
+        bb.limit(bb.limit()-1);
+        assertThrows(BufferUnderflowException.class, ()->GroupVarInt.decode(bb, new int[4], 0, 4));
+    }
+
+    private static void bulk(int[] values, ByteBuffer bb) {
+        ByteBufferLib.fill(bb, (byte)0xFF);
+        bb.position(1);
+        int n = GroupVarInt.encode(values, 0, values.length, bb);
+        assertEquals(GroupVarInt.lengthOf(values, 0, values.length), n);
+        assertEquals(1+n, bb.position());
+        bb.position(1);
+        int[] result = new int[values.length+2];
+        int n2 = GroupVarInt.decode(bb, result, 1, values.length);
+        assertEquals(n, n2);
+        assertEquals(1+n, bb.position());
+        assertEquals(0, result[0]);
+        assertEquals(0, result[result.length-1]);
+        assertArrayEquals(values, Arrays.copyOfRange(result, 1, values.length+1));
+    }
+}
@@ -18,9 +18,15 @@
 package lib;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
 
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
 
 import org.apache.jena.atlas.lib.ByteBufferLib;
 import org.junit.Test;
@@ -201,4 +207,97 @@ public class TestVarInt {
         assertEquals(3, VarInt.lengthOf(1L << 14));
         assertEquals(8, VarInt.lengthOf(1L << 56 - 1));
     }
+
+    @Test public void varint_length_2() {
+        for ( int bits = 0 ; bits < 64 ; bits++ ) {
+            long x = 1L << bits;
+            assertEquals(VarInt.calcLength(x), VarInt.lengthOf(x));
+            assertEquals(VarInt.calcLength(x-1), VarInt.lengthOf(x-1));
+        }
+        assertEquals(10, VarInt.lengthOf(-1L));
+    }
+
+    @Test public void varint_bulk_1() {
+        long[] values = { 0, 1, 127, 128, 129, 1L << 14, (1L << 56) - 1, 1L << 56, (1L << 63) - 1, -1L, 5 };
+        bulk(values, ByteBuffer.allocate(200));
+        bulk(values, ByteBuffer.allocate(200).order(ByteOrder.LITTLE_ENDIAN));
+        bulk(values, ByteBuffer.allocateDirect(200));
+    }
+
+    @Test public void varint_bulk_2() {
+        // Small values: the eight-at-a-time path.
+        long[] values = new long[100];
+        for ( int i = 0 ; i < values.length ; i++ )
+            values[i] = i;
+        bulk(values, ByteBuffer.allocate(200));
+    }
+
+    @Test public void varint_bulk_3() {
+        Random random = new Random(1234);
+        long[] values = new long[5000];
+        for ( int i = 0 ; i < values.length ; i++ ) {
+            // Mixed lengths, 1 to 10 bytes.
+            int bits = random.nextInt(65);
+            values[i] = bits == 0 ? 0 : random.nextLong() >>> (64-bits);
+        }
+        bulk(values, ByteBuffer.allocate(10*values.length+10));
+        bulk(values, ByteBuffer.allocateDirect(10*values.length+10));
+    }
+
+    @Test public void varint_bulk_compat() {
+        // Same bytes as the one-at-a-time encoder.
+        long[] values = { 3, 300, 70000, 1L << 40, -7L };
+        ByteBuffer bb1 = ByteBuffer.allocate(64);
+        VarInt.encode(values, 0, values.length, bb1);
+        ByteBuffer bb2 = ByteBuffer.allocate(64);
+        for ( long v : values )
+            VarInt.encode(bb2, v);
+        assertEquals(bb2.position(), bb1.position());
+        assertArrayEquals(bb2.array(), bb1.array());
+    }
+
+    @Test public void varint_bulk_overflow() {
+        long[] values = { 1, 1L << 20, 1L << 30 };
+        ByteBuffer bb = ByteBuffer.allocate(8);
+        ByteBufferLib.fill(bb, (byte)23);
+        bb.position(1);
+        assertThrows(BufferOverflowException.class, ()->VarInt.encode(values, 0, values.length, bb));
+        // Nothing written.
+        assertEquals(1, bb.position());
+        for ( int i = 0 ; i < bb.capacity() ; i++ )
+            assertEquals(23, bb.get(i));
+    }
+
+    @Test public void varint_bulk_underflow() {
+        long[] values = { 1, 1L << 20 };
+        ByteBuffer bb = ByteBuffer.allocate(16);
+        VarInt.encode(values, 0, values.length, bb);
+        bb.flip();
+        bb.limit(bb.limit()-1);
+        long[] result = new long[2];
+        assertThrows(BufferUnderflowException.class, ()->VarInt.decode(bb, result, 0, 2));
+    }
+
+    private static void bulk(long[] values, ByteBuffer bb) {
+        ByteBufferLib.fill(bb, (byte)0xFF);
+        bb.position(3);
+        int n = VarInt.encode(values, 0, values.length, bb);
+        assertEquals(VarInt.lengthOf(values, 0, values.length), n);
+        assertEquals(3+n, bb.position());
+        // Trailing bytes untouched.
+        assertEquals((byte)0xFF, bb.get(3+n));
+        bb.position(3);
+        long[] result = new long[values.length+2];
+        int n2 = VarInt.decode(bb, result, 1, values.length);
+        assertEquals(n, n2);
+        assertEquals(3+n, bb.position());
+        assertEquals(0, result[0]);
+        assertEquals(0, result[result.length-1]);
+        for ( int i = 0 ; i < values.length ; i++ )
+            assertEquals(values[i], result[i+1]);
+        // Agrees with the single value decoder.
+        bb.position(3);
+        for ( long v : values )
+            assertEquals(v, VarInt.decode(bb));
+    }
 }
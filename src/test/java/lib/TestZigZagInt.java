@@ -0,0 +1,68 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package lib;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class TestZigZagInt {
+    @Test public void zigzag_01() {
+        assertEquals(0, ZigZagInt.zigzag(0));
+        assertEquals(1, ZigZagInt.zigzag(-1));
+        assertEquals(2, ZigZagInt.zigzag(1));
+        assertEquals(3, ZigZagInt.zigzag(-2));
+        assertEquals(-1L, ZigZagInt.zigzag(Long.MIN_VALUE));
+        assertEquals(-2L, ZigZagInt.zigzag(Long.MAX_VALUE));
+    }
+
+    @Test public void zigzag_02() {
+        long[] values = { 0, 1, -1, 63, -64, 64, -65, Long.MAX_VALUE, Long.MIN_VALUE };
+        for ( long v : values )
+            assertEquals(v, ZigZagInt.unzigzag(ZigZagInt.zigzag(v)));
+    }
+
+    @Test public void zigzag_03() {
+        ZigZagInt z = ZigZagInt.valueOf(-1);
+        assertEquals(1, z.length());
+        assertEquals(-1, z.value());
+        assertEquals(z, ZigZagInt.make(z.bytes()));
+        assertEquals(-1, ZigZagInt.make(z.bytes()).value());
+    }
+
+    @Test public void zigzag_bb_1() {
+        long[] values = { 0, -1, 64, -65, 1L << 40, Long.MIN_VALUE };
+        ByteBuffer bb = ByteBuffer.allocate(64);
+        for ( long v : values )
+            ZigZagInt.encode(bb, v);
+        bb.flip();
+        for ( long v : values )
+            assertEquals(v, ZigZagInt.decode(bb));
+        assertEquals(0, bb.remaining());
+    }
+
+    @Test public void zigzag_length() {
+        assertEquals(1, ZigZagInt.lengthOf(-64));
+        assertEquals(2, ZigZagInt.lengthOf(64));
+        assertEquals(10, ZigZagInt.lengthOf(Long.MIN_VALUE));
+        for ( long v = -2000 ; v < 2000 ; v++ )
+            assertEquals(ZigZagInt.encode(v).length, ZigZagInt.lengthOf(v));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.lib.uuid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TestLibUUIDText {
+
+    private static final String str1 = "0f8fad5b-d9cb-469f-a165-70867728950e";
+    private static final String str2 = "ffffffff-ffff-ffff-ffff-ffffffffffff";
+    private static final String str3 = "7d444840-9dc0-11d1-b245-5ffdce74fad2";
+
+    @Test public void format_1() { testFormat(str1); }
+    @Test public void format_2() { testFormat(str2); }
+    @Test public void format_3() { testFormat(str3); }
+    @Test public void format_4() { testFormat(LibUUID.strNil()); }
+
+    @Test public void format_5() {
+        UUID uuid = UUID.randomUUID();
+        testFormat(uuid.toString());
+    }
+
+    @Test public void format_offset() {
+        UUID uuid = UUID.fromString(str1);
+        char[] chars = new char[40];
+        int x = LibUUID.format(uuid, chars, 2);
+        assertEquals(38, x);
+        assertEquals(0, chars[1]);
+        assertEquals(0, chars[38]);
+        assertEquals(str1, new String(chars, 2, 36));
+        StringBuilder sb = new StringBuilder("<");
+        LibUUID.format(uuid, sb);
+        sb.append('>');
+        assertEquals("<"+str1+">", sb.toString());
+    }
+
+    @Test public void format_bounds() {
+        UUID uuid = UUID.fromString(str1);
+        assertThrows(IndexOutOfBoundsException.class, ()->LibUUID.format(uuid, new char[36], 1));
+        assertThrows(IndexOutOfBoundsException.class, ()->LibUUID.format(uuid, new byte[35], 0));
+    }
+
+    @Test public void parse_1() { testParse(str1); }
+    @Test public void parse_2() { testParse(str2); }
+    @Test public void parse_3() { testParse(str3); }
+    @Test public void parse_4() { testParse(str1.toUpperCase()); }
+    @Test public void parse_5() { testParse("urn:uuid:"+str1); }
+    @Test public void parse_6() { testParse("URN:UUID:"+str3); }
+    @Test public void parse_7() { testParse("uuid:"+str3); }
+
+    @Test public void parse_nil() {
+        assertSame(LibUUID.nil(), LibUUID.parse(LibUUID.strNil()));
+    }
+
+    @Test public void parse_range() {
+        String s = "<urn:uuid:"+str1+">";
+        UUID expected = UUID.fromString(str1);
+        assertEquals(expected, LibUUID.parse(s, 1, s.length()-1));
+        assertEquals(expected, LibUUID.parse(s.toCharArray(), 1, s.length()-1));
+        assertEquals(expected, LibUUID.parse(s.getBytes(StandardCharsets.US_ASCII), 1, s.length()-1));
+    }
+
+    @Test public void parse_bad_1() { testParseBad(str1.substring(1)); }
+    @Test public void parse_bad_2() { testParseBad(str1+"0"); }
+    @Test public void parse_bad_3() { testParseBad(str1.replace('-', '_')); }
+    @Test public void parse_bad_4() { testParseBad(str1.replace('a', 'g')); }
+    @Test public void parse_bad_5() { testParseBad("urn:"+str1.substring(4)+"0000"); }
+    @Test public void parse_bad_6() { testParseBad(str1.replace('a', '\u0661')); }
+    @Test public void parse_bad_7() { testParseBad(""); }
+
+    private static void testFormat(String str) {
+        UUID uuid = UUID.fromString(str);
+        assertEquals(str, LibUUID.uuidString(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        char[] chars = new char[36];
+        LibUUID.format(uuid, chars, 0);
+        assertEquals(str, new String(chars));
+        byte[] bytes = new byte[36];
+        LibUUID.format(uuid, bytes, 0);
+        assertArrayEquals(str.getBytes(StandardCharsets.US_ASCII), bytes);
+        StringBuilder sb = new StringBuilder();
+        LibUUID.format(uuid, sb);
+        assertEquals(str, sb.toString());
+    }
+
+    private static void testParse(String str) {
+        String s = str;
+        int idx = s.lastIndexOf(':');
+        UUID expected = UUID.fromString(s.substring(idx+1));
+        assertEquals(expected, LibUUID.parse(s));
+        assertEquals(expected, LibUUID.parse(s, 0, s.length()));
+        assertEquals(expected, LibUUID.parse(s.toCharArray(), 0, s.length()));
+        assertEquals(expected, LibUUID.parse(s.getBytes(StandardCharsets.UTF_8), 0, s.length()));
+    }
+
+    private static void testParseBad(String str) {
+        assertThrows(UUIDException.class, ()->LibUUID.parse(str));
+        assertThrows(UUIDException.class, ()->LibUUID.parse(str.toCharArray(), 0, str.length()));
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        assertThrows(UUIDException.class, ()->LibUUID.parse(bytes, 0, bytes.length));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.lib.uuid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TestUUIDBatch {
+
+    @Test public void batch_v1_array() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1();
+        batchArray(generator, 1, false);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void batch_v1ht_array() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1HighThroughput();
+        batchArray(generator, 1, false);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void batch_v6_array() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV6();
+        batchArray(generator, 6, true);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void batch_v7_array() {
+        batchArray(UUIDCreatorFactory.newGeneratorV7(), 7, true);
+    }
+
+    @Test public void batch_v1_buffer() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1();
+        batchBuffer(generator, 1, ByteOrder.BIG_ENDIAN);
+        batchBuffer(generator, 1, ByteOrder.LITTLE_ENDIAN);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void batch_v6_buffer() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV6();
+        batchBuffer(generator, 6, ByteOrder.LITTLE_ENDIAN);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void batch_v7_buffer() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV7();
+        batchBuffer(generator, 7, ByteOrder.BIG_ENDIAN);
+        batchBuffer(generator, 7, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test public void batch_mixed() {
+        // Batches and single UUIDs interleaved do not overlap.
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV6();
+        Set<UUID> x = new HashSet<>();
+        long[] a = new long[2*100];
+        for ( int j = 0 ; j < 100 ; j++ ) {
+            assertTrue(x.add(generator.create()));
+            generator.create(a, 0, 100);
+            for ( int i = 0 ; i < 100 ; i++ )
+                assertTrue(x.add(new UUID(a[2*i], a[2*i+1])));
+        }
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void batch_factory() {
+        long[] a = new long[2*10];
+        UUIDFactory.generateV1(a, 0, 10);
+        assertEquals(1, new UUID(a[0], a[1]).version());
+        UUIDFactory.generateV6(a, 0, 10);
+        assertEquals(6, new UUID(a[0], a[1]).version());
+        UUIDFactory.generateV7(a, 0, 10);
+        assertEquals(7, new UUID(a[0], a[1]).version());
+        ByteBuffer bb = ByteBuffer.allocate(16*10);
+        UUIDFactory.generateV1HighThroughput(bb, 10);
+        assertEquals(1, new UUID(bb.getLong(0), bb.getLong(8)).version());
+    }
+
+    @Test public void batch_bounds() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV7();
+        assertThrows(IndexOutOfBoundsException.class, ()->generator.create(new long[10], 2, 5));
+        ByteBuffer bb = ByteBuffer.allocate(16*4+8);
+        bb.position(16);
+        assertThrows(BufferOverflowException.class, ()->generator.create(bb, 4));
+        // Nothing written.
+        assertEquals(16, bb.position());
+    }
+
+    // Larger than one batch block.
+    private static final int N = 25_000;
+
+    private static void batchArray(UUIDCreator generator, int version, boolean ordered) {
+        int offset = 2;
+        long[] a = new long[offset+2*N+2];
+        generator.create(a, offset, N);
+        assertEquals(0, a[0]);
+        assertEquals(0, a[a.length-1]);
+        UUID[] uuids = new UUID[N];
+        for ( int i = 0 ; i < N ; i++ )
+            uuids[i] = new UUID(a[offset+2*i], a[offset+2*i+1]);
+        check(uuids, version, ordered);
+    }
+
+    private static void batchBuffer(UUIDCreator generator, int version, ByteOrder order) {
+        ByteBuffer bb = ByteBuffer.allocate(8+16*N).order(order);
+        bb.position(8);
+        generator.create(bb, N);
+        assertEquals(bb.capacity(), bb.position());
+        // Always network order.
+        bb.order(ByteOrder.BIG_ENDIAN);
+        UUID[] uuids = new UUID[N];
+        for ( int i = 0 ; i < N ; i++ )
+            uuids[i] = new UUID(bb.getLong(8+16*i), bb.getLong(8+16*i+8));
+        check(uuids, version, version != 1);
+    }
+
+    private static void check(UUID[] uuids, int version, boolean ordered) {
+        Set<UUID> x = new HashSet<>();
+        for ( int i = 0 ; i < uuids.length ; i++ ) {
+            UUID uuid = uuids[i];
+            assertEquals(version, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertTrue(x.add(uuid));
+            if ( ordered && i > 0 )
+                assertTrue(uuids[i-1].compareTo(uuid) < 0);
+        }
+    }
+}
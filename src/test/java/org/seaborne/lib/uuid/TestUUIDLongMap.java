@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.lib.uuid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TestUUIDLongMap {
+
+    @Test public void map_01() {
+        UUIDLongMap map = new UUIDLongMap();
+        assertTrue(map.isEmpty());
+        UUID uuid = UUID.randomUUID();
+        assertEquals(-1, map.get(uuid, -1));
+        assertTrue(map.put(uuid, 99));
+        assertFalse(map.put(uuid, 100));
+        assertEquals(100, map.get(uuid, -1));
+        assertTrue(map.contains(uuid));
+        assertEquals(1, map.size());
+        assertTrue(map.remove(uuid));
+        assertFalse(map.remove(uuid));
+        assertFalse(map.contains(uuid));
+        assertTrue(map.isEmpty());
+        map.check();
+    }
+
+    @Test public void map_nil() {
+        UUIDLongMap map = new UUIDLongMap();
+        UUID nil = LibUUID.nil();
+        assertFalse(map.contains(nil));
+        assertTrue(map.put(nil, 5));
+        assertTrue(map.put(UUID.randomUUID(), 6));
+        assertEquals(5, map.get(nil, -1));
+        assertEquals(2, map.size());
+        int[] count = { 0 };
+        map.forEach((m, l, v)->count[0]++);
+        assertEquals(2, count[0]);
+        assertTrue(map.remove(nil));
+        assertEquals(-1, map.get(nil, -1));
+        assertEquals(1, map.size());
+        map.check();
+    }
+
+    @Test public void map_random() {
+        random(new UUIDLongMap(), 10_000, 1);
+    }
+
+    @Test public void map_random_small() {
+        // Many collisions and deletions in a small table.
+        random(new UUIDLongMap(), 50, 2);
+    }
+
+    @Test public void map_v1_keys() {
+        // Clock sequence and node are the same for all keys.
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1();
+        UUIDLongMap map = new UUIDLongMap();
+        int N = 100_000;
+        long[] keys = new long[2*N];
+        generator.create(keys, 0, N);
+        for ( int i = 0 ; i < N ; i++ )
+            assertTrue(map.put(keys[2*i], keys[2*i+1], i));
+        map.check();
+        assertEquals(N, map.size());
+        for ( int i = 0 ; i < N ; i++ )
+            assertEquals(i, map.get(keys[2*i], keys[2*i+1], -1));
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void map_presize() {
+        UUIDLongMap map = new UUIDLongMap(1000);
+        int cap = map.capacity();
+        for ( int i = 0 ; i < 1000 ; i++ )
+            map.put(UUID.randomUUID(), i);
+        assertEquals(cap, map.capacity());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(cap, map.capacity());
+        map.check();
+    }
+
+    @Test public void map_forEach() {
+        UUIDLongMap map = new UUIDLongMap();
+        Map<UUID, Long> expected = new HashMap<>();
+        for ( int i = 0 ; i < 500 ; i++ ) {
+            UUID uuid = UUID.randomUUID();
+            map.put(uuid, i);
+            expected.put(uuid, (long)i);
+        }
+        Map<UUID, Long> actual = new HashMap<>();
+        map.forEach((m, l, v)->actual.put(new UUID(m, l), v));
+        assertEquals(expected, actual);
+    }
+
+    // Random operations checked against a HashMap.
+    private static void random(UUIDLongMap map, int numKeys, long seed) {
+        Random random = new Random(seed);
+        UUID[] keys = new UUID[numKeys];
+        for ( int i = 0 ; i < numKeys ; i++ )
+            keys[i] = new UUID(random.nextLong(), random.nextLong());
+        Map<UUID, Long> expected = new HashMap<>();
+        for ( int n = 0 ; n < 20*numKeys ; n++ ) {
+            UUID uuid = keys[random.nextInt(numKeys)];
+            if ( random.nextInt(3) == 0 ) {
+                assertEquals(expected.remove(uuid) != null, map.remove(uuid));
+            } else {
+                long v = random.nextLong();
+                assertEquals(expected.put(uuid, v) == null, map.put(uuid, v));
+            }
+            if ( n % 1000 == 0 )
+                map.check();
+        }
+        map.check();
+        assertEquals(expected.size(), map.size());
+        for ( UUID uuid : keys ) {
+            Long v = expected.get(uuid);
+            assertEquals(v != null, map.contains(uuid));
+            if ( v != null )
+                assertEquals(v.longValue(), map.get(uuid, -1));
+        }
+    }
+}
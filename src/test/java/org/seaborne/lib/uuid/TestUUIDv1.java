@@ -21,8 +21,11 @@ package org.seaborne.lib.uuid;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 import org.junit.Test;
@@ -57,5 +60,62 @@ public class TestUUIDv1 {
         // Same object.
         assertSame(uuid1, uuid2);
     }
-}
 
+    @Test public void uuid_ht_1() {
+        UUID uuid1 = UUIDFactory.generateV1HighThroughput();
+        UUID uuid2 = UUIDFactory.generateV1HighThroughput();
+        assertNotEquals(uuid1, uuid2);
+        assertEquals(1, uuid1.version());
+        assertEquals(2, uuid1.variant());
+        assertEquals(uuid1.clockSequence(), uuid2.clockSequence());
+        assertEquals(uuid1.node(), uuid2.node());
+    }
+
+    @Test public void uuid_ht_2() {
+        // Timestamps track the clock.
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1HighThroughput();
+        long before = UUIDCreatorV1.dev_nowSystemTicks();
+        UUID uuid = generator.create();
+        // 00:00:00.00, 15 October 1582 to 1 January 1970 in 100ns ticks.
+        long ticks = uuid.timestamp() - 0x01B21DD213814000L;
+        assertTrue(ticks >= before);
+        // Allow one second.
+        assertTrue(ticks < before + 10_000_000L);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void uuid_ht_3() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1HighThroughput();
+        int N = 100_000;
+        Set<UUID> x = new HashSet<>();
+        for ( int i = 0 ; i < N ; i++ )
+            assertTrue(x.add(generator.create()));
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void uuid_ht_4() throws InterruptedException {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1HighThroughput();
+        int numThreads = 8;
+        int N = 50_000;
+        UUID[][] results = new UUID[numThreads][N];
+        Thread[] threads = new Thread[numThreads];
+        for ( int t = 0 ; t < numThreads ; t++ ) {
+            UUID[] a = results[t];
+            threads[t] = new Thread(()->{
+                for ( int i = 0 ; i < N ; i++ )
+                    a[i] = generator.create();
+            });
+        }
+        for ( Thread t : threads )
+            t.start();
+        for ( Thread t : threads )
+            t.join();
+        Set<UUID> x = new HashSet<>();
+        for ( UUID[] a : results ) {
+            for ( UUID u : a )
+                assertTrue(x.add(u));
+        }
+        assertEquals(numThreads*N, x.size());
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.seaborne.lib.uuid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TestUUIDv6v7 {
+
+    @Test public void uuid6_1() {
+        UUID uuid1 = UUIDFactory.generateV6();
+        UUID uuid2 = UUIDFactory.generateV6();
+        assertNotEquals(uuid1, uuid2);
+        assertEquals(6, LibUUID.version(uuid1));
+        assertEquals(2, LibUUID.variant(uuid1));
+        assertTrue(LibUUID.isTimeOrdered(uuid1));
+    }
+
+    @Test public void uuid6_2() {
+        // A fresh generator reads the clock for the first UUID.
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV6();
+        long before = System.currentTimeMillis();
+        UUID uuid = generator.create();
+        long after = System.currentTimeMillis();
+        long millis = LibUUID.unixTimeMillis(uuid);
+        assertTrue(millis >= before && millis <= after+1);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void uuid6_3() {
+        // Same generator state, two layouts.
+        UUIDCreatorV1 gen1 = new UUIDCreatorV1();
+        UUIDCreatorV6 gen6 = new UUIDCreatorV6();
+        long timestamp = 0x1EB5F3A2C4D6E7FL;
+        UUID uuid1 = gen1.generate(timestamp);
+        UUID uuid6 = gen6.generate(timestamp);
+        assertEquals(timestamp, uuid1.timestamp());
+        assertEquals(timestamp, LibUUID.timestamp(uuid1));
+        assertEquals(timestamp, LibUUID.timestamp(uuid6));
+        assertEquals(gen6.node, LibUUID.node(uuid6));
+        assertEquals(gen6.clockSeq, LibUUID.clockSequence(uuid6));
+    }
+
+    @Test public void uuid6_4() {
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV6();
+        checkOrdered(generator, 100_000);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    @Test public void uuid7_1() {
+        UUID uuid1 = UUIDFactory.generateV7();
+        UUID uuid2 = UUIDFactory.generateV7();
+        assertNotEquals(uuid1, uuid2);
+        assertEquals(7, LibUUID.version(uuid1));
+        assertEquals(2, LibUUID.variant(uuid1));
+        assertTrue(LibUUID.isTimeOrdered(uuid1));
+    }
+
+    @Test public void uuid7_2() {
+        long before = System.currentTimeMillis();
+        UUID uuid = UUIDFactory.generateV7();
+        long after = System.currentTimeMillis();
+        long millis = LibUUID.unixTimeMillis(uuid);
+        assertTrue(millis >= before && millis <= after+1);
+    }
+
+    @Test public void uuid7_3() {
+        // More UUIDs than the counter allows in one millisecond.
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV7();
+        checkOrdered(generator, 100_000);
+    }
+
+    @Test public void uuid7_4() {
+        UUID uuid = UUIDFactory.generateV7();
+        assertThrows(IllegalArgumentException.class, ()->LibUUID.timestamp(uuid));
+        assertThrows(IllegalArgumentException.class, ()->LibUUID.node(uuid));
+    }
+
+    @Test public void uuid1_timeOrdered() {
+        UUID uuid = UUIDFactory.generateV1();
+        assertFalse(LibUUID.isTimeOrdered(uuid));
+        UUIDCreator generator = UUIDCreatorFactory.newGeneratorV1();
+        long before = System.currentTimeMillis();
+        long millis = LibUUID.unixTimeMillis(generator.create());
+        assertTrue(millis >= before);
+        UUIDCreatorFactory.releaseGenerator(generator);
+    }
+
+    private static void checkOrdered(UUIDCreator generator, int N) {
+        UUID prev = generator.create();
+        for ( int i = 1 ; i < N ; i++ ) {
+            UUID uuid = generator.create();
+            assertTrue(prev.compareTo(uuid) < 0);
+            assertTrue(compareUnsigned(prev, uuid) < 0);
+            prev = uuid;
+        }
+    }
+
+    // Byte order comparison, as used by indexes on the 16 byte form.
+    private static int compareUnsigned(UUID uuid1, UUID uuid2) {
+        int x = Long.compareUnsigned(uuid1.getMostSignificantBits(), uuid2.getMostSignificantBits());
+        if ( x != 0 )
+            return x;
+        return Long.compareUnsigned(uuid1.getLeastSignificantBits(), uuid2.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+public abstract class LongOrderedSetTestBase
+{
+    protected abstract LongOrderedSet create() ;
+
+    /** Bulk load from keys in strictly increasing order. */
+    protected abstract LongOrderedSet bulkLoad(long[] sorted) ;
+
+    protected LongOrderedSet create(long... keys)
+    {
+        LongOrderedSet index = create() ;
+        for ( long k : keys )
+            index.add(k) ;
+        return index ;
+    }
+
+    private static long[] toArray(PrimitiveIterator.OfLong iter)
+    {
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(iter, 0), false).toArray() ;
+    }
+
+    private static void check(LongOrderedSet index, TreeSet<Long> expected)
+    {
+        index.checkTree() ;
+        long[] x = expected.stream().mapToLong(Long::longValue).toArray() ;
+        assertEquals(x.length, index.size()) ;
+        assertEquals(x.length, index.count()) ;
+        assertEquals(x.length == 0, index.isEmpty()) ;
+        assertArrayEquals(x, index.elements()) ;
+        assertArrayEquals(x, toArray(index.iterator())) ;
+        if ( x.length > 0 )
+        {
+            assertEquals(x[0], index.min()) ;
+            assertEquals(x[x.length-1], index.max()) ;
+        }
+    }
+
+    @Test public void long_ins_01()
+    {
+        LongOrderedSet index = create() ;
+        assertTrue(index.isEmpty()) ;
+        assertFalse(index.contains(0)) ;
+        assertFalse(index.iterator().hasNext()) ;
+        assertFalse(index.iterator(0, 10).hasNext()) ;
+        assertFalse(index.remove(0)) ;
+    }
+
+    @Test public void long_ins_02()
+    {
+        LongOrderedSet index = create(5, 1, 3) ;
+        assertTrue(index.contains(3)) ;
+        assertFalse(index.contains(2)) ;
+        assertFalse(index.add(3)) ;
+        assertEquals(3, index.size()) ;
+        assertArrayEquals(new long[]{1, 3, 5}, index.elements()) ;
+    }
+
+    // Keys at the extremes of the range.
+    @Test public void long_ins_03()
+    {
+        LongOrderedSet index = create(Long.MAX_VALUE, 0, Long.MIN_VALUE, -1, 1) ;
+        assertEquals(Long.MIN_VALUE, index.min()) ;
+        assertEquals(Long.MAX_VALUE, index.max()) ;
+        assertArrayEquals(new long[]{Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE}, toArray(index.iterator())) ;
+    }
+
+    @Test public void long_del_01()
+    {
+        LongOrderedSet index = create(1, 2, 3, 4, 5, 6, 7, 8, 9, 10) ;
+        assertTrue(index.remove(4)) ;
+        assertFalse(index.remove(4)) ;
+        assertFalse(index.contains(4)) ;
+        for ( long k = 1 ; k <= 10 ; k++ )
+            index.remove(k) ;
+        assertTrue(index.isEmpty()) ;
+        assertEquals(0, index.size()) ;
+        index.add(99) ;
+        assertArrayEquals(new long[]{99}, index.elements()) ;
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void long_min_01()
+    {
+        create().min() ;
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void long_max_01()
+    {
+        create().max() ;
+    }
+
+    @Test public void long_iter_01()
+    {
+        LongOrderedSet index = create() ;
+        for ( long k = 0 ; k < 100 ; k += 2 )
+            index.add(k) ;
+        assertArrayEquals(new long[]{10, 12, 14}, toArray(index.iterator(10, 16))) ;
+        assertArrayEquals(new long[]{10, 12, 14, 16}, toArray(index.iterator(9, 17))) ;
+        assertArrayEquals(new long[]{}, toArray(index.iterator(11, 12))) ;
+        assertArrayEquals(new long[]{}, toArray(index.iterator(200, 300))) ;
+        assertArrayEquals(new long[]{0, 2}, toArray(index.iterator(-5, 3))) ;
+        assertArrayEquals(new long[]{96, 98}, toArray(index.iterator(95, Long.MAX_VALUE))) ;
+    }
+
+    @Test public void long_random_01()
+    {
+        Random random = new Random(1234) ;
+        LongOrderedSet index = create() ;
+        TreeSet<Long> expected = new TreeSet<Long>() ;
+        for ( int i = 0 ; i < 5000 ; i++ )
+        {
+            long k = random.nextInt(500) ;
+            if ( random.nextInt(3) == 0 )
+                assertEquals(expected.remove(k), index.remove(k)) ;
+            else
+                assertEquals(expected.add(k), index.add(k)) ;
+            if ( i % 250 == 0 )
+                check(index, expected) ;
+        }
+        check(index, expected) ;
+        long[] range = expected.subSet(100L, 300L).stream().mapToLong(Long::longValue).toArray() ;
+        assertArrayEquals(range, toArray(index.iterator(100, 300))) ;
+        for ( Long k : new TreeSet<Long>(expected) )
+        {
+            assertTrue(index.remove(k)) ;
+            expected.remove(k) ;
+        }
+        check(index, expected) ;
+    }
+
+    @Test public void long_bulk_01()
+    {
+        long[] keys = new long[1000] ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+            keys[i] = 3L*i-100 ;
+        LongOrderedSet index = bulkLoad(keys) ;
+        index.checkTree() ;
+        assertEquals(keys.length, index.size()) ;
+        assertArrayEquals(keys, toArray(index.iterator())) ;
+        // Still a working tree.
+        assertTrue(index.add(0)) ;
+        assertTrue(index.remove(-100)) ;
+        assertEquals(keys.length, index.size()) ;
+        index.checkTree() ;
+    }
+
+    @Test public void long_bulk_02()
+    {
+        LongOrderedSet index = bulkLoad(new long[0]) ;
+        assertTrue(index.isEmpty()) ;
+        index.add(1) ;
+        assertArrayEquals(new long[]{1}, index.elements()) ;
+    }
+}
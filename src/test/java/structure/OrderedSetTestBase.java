@@ -17,10 +17,16 @@
 
 package structure;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+
+import structure.tree.TreeException;
 
 import org.junit.Test;
 
@@ -28,6 +34,9 @@ public abstract class OrderedSetTestBase
 {
     protected abstract OrderedSet<Integer> create() ;
 
+    /** Bulk load from items in strictly increasing order. */
+    protected abstract OrderedSet<Integer> bulkLoad(Iterator<Integer> sorted) ;
+
     protected OrderedSet<Integer> create(int[] items)
     {
         OrderedSet<Integer> index = create() ;
@@ -362,6 +371,72 @@ public abstract class OrderedSetTestBase
             assertTrue("remove i="+i,index.remove(i)) ;
     }
 
+    @Test public void size_01()
+    {
+        int[] r = { 5, 3, 8, 1, 4 } ;
+        OrderedSet<Integer> index = create(r) ;
+        OrderedSetTestLib.size(index, 5) ;
+        // Already present.
+        index.add(3) ;
+        OrderedSetTestLib.size(index, 5) ;
+        // Not present.
+        index.remove(99) ;
+        OrderedSetTestLib.size(index, 5) ;
+        index.remove(8) ;
+        OrderedSetTestLib.size(index, 4) ;
+        index.clear() ;
+        OrderedSetTestLib.size(index, 0) ;
+        index.add(7) ;
+        OrderedSetTestLib.size(index, 1) ;
+    }
+
+    @Test public void bulk_01()
+    {
+        for ( int n : new int[] { 0, 1, 2, 3, 4, 7, 10, 33, 100, 1000 } )
+        {
+            List<Integer> x = new ArrayList<Integer>() ;
+            for ( int i = 0 ; i < n ; i++ )
+                x.add(2*i) ;
+            OrderedSet<Integer> index = bulkLoad(x.iterator()) ;
+            index.checkTree() ;
+            OrderedSetTestLib.size(index, n) ;
+            assertEquals(x, index.elements()) ;
+            for ( int i : x )
+                assertTrue(index.contains(i)) ;
+            assertFalse(index.contains(1)) ;
+        }
+    }
+
+    @Test public void bulk_02()
+    {
+        // Bulk loaded structures are then updatable as usual.
+        List<Integer> x = new ArrayList<Integer>() ;
+        for ( int i = 0 ; i < 50 ; i++ )
+            x.add(2*i) ;
+        OrderedSet<Integer> index = bulkLoad(x.iterator()) ;
+        for ( int i = 0 ; i < 100 ; i += 3 )
+            index.add(i) ;
+        for ( int i = 0 ; i < 100 ; i += 4 )
+            index.remove(i) ;
+        index.checkTree() ;
+        for ( int i = 0 ; i < 100 ; i++ )
+            assertEquals("i="+i, ( i%2 == 0 || i%3 == 0 ) && i%4 != 0, index.contains(i)) ;
+    }
+
+    @Test(expected=TreeException.class)
+    public void bulk_03()
+    {
+        // Duplicate
+        bulkLoad(Arrays.asList(1, 2, 2, 3).iterator()) ;
+    }
+
+    @Test(expected=TreeException.class)
+    public void bulk_04()
+    {
+        // Out of order
+        bulkLoad(Arrays.asList(1, 3, 2).iterator()) ;
+    }
+
     @Test public void iter_01()
     {
         int[] r = { 3, 1, 2 } ;
@@ -438,4 +513,18 @@ public abstract class OrderedSetTestBase
         OrderedSetTestLib.check(iter, r) ;
     }
 
+    @Test public void iter_09()
+    {
+        // Start point is below the root, in a right subtree.
+        int[] r = new int[20] ;
+        for ( int i = 0 ; i < r.length ; i++ )
+            r[i] = i ;
+        OrderedSet<Integer> index = create(r) ;
+        OrderedSetTestLib.check(index, r) ;
+        Iterator<Integer> iter = index.iterator(10,15) ;
+        OrderedSetTestLib.check(iter, 10,11,12,13,14) ;
+        iter = index.iterator(5,7) ;
+        OrderedSetTestLib.check(iter, 5,6) ;
+    }
+
 }
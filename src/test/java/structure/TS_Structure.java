@@ -20,10 +20,15 @@ package structure;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import structure.avl.TestAVL;
+import structure.avl.TestLongAVL;
 import structure.binary_search_tree.TestBST_Tree ;
+import structure.exthash.TestConcurrentExtHash;
+import structure.exthash.TestExtHashFile;
 import structure.exthash.TestExtHashMem;
 import structure.radix.TestRadix ;
+import structure.skiplist.TestConcurrentSkipList;
 import structure.skiplist.TestSkipList;
+import structure.ttree.TestLongTTree;
 import structure.ttree.TestTTree;
 
 @RunWith(Suite.class)
@@ -32,9 +37,14 @@ import structure.ttree.TestTTree;
     
     
     , TestAVL.class
+    , TestLongAVL.class
     , TestExtHashMem.class
+    , TestConcurrentExtHash.class
+    , TestExtHashFile.class
     , TestSkipList.class
+    , TestConcurrentSkipList.class
     , TestTTree.class
+    , TestLongTTree.class
     , TestRadix.class
 } )
 public class TS_Structure
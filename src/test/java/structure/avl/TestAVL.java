@@ -17,6 +17,8 @@
 
 package structure.avl;
 
+import java.util.Iterator;
+
 import structure.OrderedSet;
 import structure.OrderedSetTestBase;
 
@@ -32,4 +34,10 @@ public class TestAVL extends OrderedSetTestBase
     {
         return new AVL<Integer>() ;
     }
+
+    @Override
+    protected OrderedSet<Integer> bulkLoad(Iterator<Integer> sorted)
+    {
+        return AVL.bulkLoad(sorted) ;
+    }
 }
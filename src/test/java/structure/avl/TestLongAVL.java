@@ -0,0 +1,46 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.avl;
+
+import org.junit.Test;
+import structure.LongOrderedSet;
+import structure.LongOrderedSetTestBase;
+import structure.tree.TreeException;
+
+public class TestLongAVL extends LongOrderedSetTestBase
+{
+    static { LongAVL.Checking = true ; }
+
+    @Override
+    protected LongOrderedSet create()
+    {
+        return new LongAVL() ;
+    }
+
+    @Override
+    protected LongOrderedSet bulkLoad(long[] sorted)
+    {
+        return LongAVL.bulkLoad(sorted) ;
+    }
+
+    @Test(expected=TreeException.class)
+    public void long_avl_bulk_bad()
+    {
+        LongAVL.bulkLoad(new long[]{1, 3, 3}) ;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.exthash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestConcurrentExtHash
+{
+    @BeforeClass static public void setup()
+    {
+        ConcurrentExtHash.Checking = true ;
+    }
+
+    @Test public void concurrent_exthash_01()
+    {
+        ConcurrentExtHash<Integer, String> table = new ConcurrentExtHash<Integer, String>(2) ;
+        table.check() ;
+        assertTrue(table.isEmpty()) ;
+        assertNull(table.get(1)) ;
+        assertNull(table.remove(1)) ;
+    }
+
+    @Test public void concurrent_exthash_02()
+    {
+        ConcurrentExtHash<Integer, String> table = new ConcurrentExtHash<Integer, String>(2) ;
+        for ( int i = 0 ; i < 100 ; i++ )
+            assertNull(table.put(i, "X"+i)) ;
+        table.check() ;
+        assertEquals(100, table.size()) ;
+        for ( int i = 0 ; i < 100 ; i++ )
+            assertEquals("X"+i, table.get(i)) ;
+        assertFalse(table.contains(100)) ;
+        // Replace.
+        assertEquals("X5", table.put(5, "Y5")) ;
+        assertEquals("Y5", table.get(5)) ;
+        assertEquals(100, table.size()) ;
+    }
+
+    @Test public void concurrent_exthash_03()
+    {
+        ConcurrentExtHash<Integer, String> table = new ConcurrentExtHash<Integer, String>(4) ;
+        for ( int i = 0 ; i < 50 ; i++ )
+            table.put(i, "X"+i) ;
+        for ( int i = 0 ; i < 50 ; i += 2 )
+            assertEquals("X"+i, table.remove(i)) ;
+        table.check() ;
+        assertEquals(25, table.size()) ;
+        for ( int i = 0 ; i < 50 ; i++ )
+            assertEquals(i%2 == 1, table.contains(i)) ;
+    }
+
+    // Distinct keys with the same hash.
+    @Test public void concurrent_exthash_04()
+    {
+        ConcurrentExtHash<String, String> table = new ConcurrentExtHash<String, String>(4) ;
+        // "Aa" and "BB" have the same hashCode.
+        table.put("Aa", "1") ;
+        table.put("BB", "2") ;
+        table.check() ;
+        assertEquals("1", table.get("Aa")) ;
+        assertEquals("2", table.get("BB")) ;
+        assertEquals("1", table.remove("Aa")) ;
+        assertNull(table.get("Aa")) ;
+        assertEquals("2", table.get("BB")) ;
+    }
+
+    // More keys with the same hash than fit in a bucket : chain, don't double.
+    @Test public void concurrent_exthash_05()
+    {
+        ConcurrentExtHash<String, String> table = new ConcurrentExtHash<String, String>(4) ;
+        List<String> same = sameHash(8) ;
+        for ( int i = 0 ; i < 1000 ; i++ )
+            table.put("K"+i, "V"+i) ;
+        for ( String k : same )
+            assertNull(table.put(k, k)) ;
+        table.check() ;
+        assertEquals(1000+same.size(), table.size()) ;
+        assertTrue("Dictionary size "+table.dictionarySize(), table.dictionarySize() <= 4096) ;
+        for ( String k : same )
+            assertEquals(k, table.get(k)) ;
+        for ( int i = 0 ; i < 1000 ; i++ )
+            assertEquals("V"+i, table.get("K"+i)) ;
+        for ( int i = 0 ; i < same.size() ; i += 2 )
+            assertEquals(same.get(i), table.remove(same.get(i))) ;
+        table.check() ;
+        for ( int i = 0 ; i < same.size() ; i++ )
+            assertEquals(i%2 == 1, table.contains(same.get(i))) ;
+    }
+
+    // Writers each with a family of keys of one hash, and ordinary keys, so chains are split under readers.
+    @Test public void concurrent_exthash_stress_03() throws Exception
+    {
+        ConcurrentExtHash<String, String> table = new ConcurrentExtHash<String, String>(2) ;
+        int numThreads = 4 ;
+        List<String> same = sameHash(6) ;
+        run(numThreads, (t)-> {
+            for ( int i = 0 ; i < same.size() ; i++ )
+            {
+                String k1 = "T"+t+same.get(i) ;
+                String k2 = "T"+t+"-"+i ;
+                table.put(k1, k1) ;
+                table.put(k2, k2) ;
+                if ( ! k1.equals(table.get(k1)) )
+                    throw new AssertionError("Missing: "+k1) ;
+            }
+            for ( int i = 0 ; i < same.size() ; i += 2 )
+            {
+                String k = "T"+t+same.get(i) ;
+                if ( table.remove(k) == null )
+                    throw new AssertionError("Missing: "+k) ;
+            }
+        }) ;
+        table.check() ;
+        assertEquals(numThreads*same.size()*3/2, table.size()) ;
+        for ( int t = 0 ; t < numThreads ; t++ )
+        {
+            for ( int i = 0 ; i < same.size() ; i++ )
+            {
+                assertEquals(i%2 == 1, table.contains("T"+t+same.get(i))) ;
+                assertTrue(table.contains("T"+t+"-"+i)) ;
+            }
+        }
+    }
+
+    // Strided keys share a hash prefix : the dictionary grows rather than one long chain.
+    @Test public void concurrent_exthash_06()
+    {
+        int N = 20000 ;
+        ConcurrentExtHash<Integer, Integer> table = new ConcurrentExtHash<Integer, Integer>(4) ;
+        for ( int i = 0 ; i < N ; i++ )
+            table.put(i*16, i) ;
+        table.check() ;
+        assertEquals(N, table.size()) ;
+        for ( int i = 0 ; i < N ; i++ )
+            assertEquals(Integer.valueOf(i), table.get(i*16)) ;
+        assertStrided(table, N, 16) ;
+    }
+
+    // Writers with strided keys, in parallel.
+    @Test public void concurrent_exthash_stress_04() throws Exception
+    {
+        ConcurrentExtHash<Integer, Integer> table = new ConcurrentExtHash<Integer, Integer>(4) ;
+        int numThreads = 4 ;
+        int perThread = 5000 ;
+        run(numThreads, (t)-> {
+            for ( int i = 0 ; i < perThread ; i++ )
+            {
+                int k = (i*numThreads+t)*16 ;
+                table.put(k, k) ;
+            }
+        }) ;
+        table.check() ;
+        assertEquals(numThreads*perThread, table.size()) ;
+        assertStrided(table, numThreads*perThread, 16) ;
+    }
+
+    private static void assertStrided(ConcurrentExtHash<Integer, Integer> table, int N, int stride)
+    {
+        String stats = "dictionary="+table.dictionarySize()+" ratio="+table.dictionaryRatio()+" maxChain="+table.maxChainLength() ;
+        assertTrue(stats, table.maxChainLength() <= ExtHashMem.MaxChainLength) ;
+        // Only one slot in stride is used : the stride sets the ratio.
+        assertTrue(stats, table.dictionaryRatio() <= 2*stride) ;
+        assertTrue(stats, table.dictionarySize() <= (long)ExtHashMem.MaxDictionaryRatio*N) ;
+    }
+
+    /** All 2^n strings of n pairs "Aa" or "BB" : these have the same hashCode. */
+    static List<String> sameHash(int n)
+    {
+        List<String> x = new ArrayList<>() ;
+        for ( int bits = 0 ; bits < 1<<n ; bits++ )
+        {
+            StringBuilder sb = new StringBuilder() ;
+            for ( int j = 0 ; j < n ; j++ )
+                sb.append( ((bits>>j)&1) == 0 ? "Aa" : "BB" ) ;
+            x.add(sb.toString()) ;
+        }
+        return x ;
+    }
+
+    // Writers on disjoint keys, causing splits and doublings, in parallel.
+    @Test public void concurrent_exthash_stress_01() throws Exception
+    {
+        ConcurrentExtHash<Integer, Integer> table = new ConcurrentExtHash<Integer, Integer>(4) ;
+        int numThreads = 4 ;
+        int perThread = 5000 ;
+        run(numThreads, (t)-> {
+            for ( int i = 0 ; i < perThread ; i++ )
+            {
+                int k = i*numThreads+t ;
+                table.put(k, k) ;
+            }
+            for ( int i = 0 ; i < perThread ; i += 2 )
+            {
+                int k = i*numThreads+t ;
+                if ( table.remove(k) == null )
+                    throw new AssertionError("Missing: "+k) ;
+            }
+        }) ;
+        table.check() ;
+        assertEquals(numThreads*perThread/2, table.size()) ;
+        for ( int k = 0 ; k < numThreads*perThread ; k++ )
+            assertEquals((k/numThreads)%2 == 1, table.contains(k)) ;
+    }
+
+    // Lock-free readers must always find keys present for the whole test,
+    // while writers split buckets and double the dictionary.
+    @Test public void concurrent_exthash_stress_02() throws Exception
+    {
+        ConcurrentExtHash<Integer, Integer> table = new ConcurrentExtHash<Integer, Integer>(2) ;
+        int stable = 1000 ;
+        for ( int k = 0 ; k < stable ; k++ )
+            table.put(k, k) ;
+        AtomicBoolean done = new AtomicBoolean(false) ;
+        int numWriters = 2 ;
+        run(numWriters+2, (t)-> {
+            if ( t < numWriters )
+            {
+                Random random = new Random(t) ;
+                for ( int i = 0 ; i < 20000 ; i++ )
+                {
+                    int k = stable+random.nextInt(20000) ;
+                    if ( random.nextBoolean() )
+                        table.put(k, k) ;
+                    else
+                        table.remove(k) ;
+                }
+                done.set(true) ;
+                return ;
+            }
+            Random random = new Random(-t) ;
+            while ( ! done.get() )
+            {
+                int k = random.nextInt(stable) ;
+                Integer v = table.get(k) ;
+                if ( v == null || v != k )
+                    throw new AssertionError("Lost key: "+k) ;
+            }
+        }) ;
+        table.check() ;
+    }
+
+    interface Worker { void run(int threadIdx) throws Exception ; }
+
+    static void run(int numThreads, Worker worker) throws Exception
+    {
+        AtomicReference<Throwable> failure = new AtomicReference<>() ;
+        List<Thread> threads = new ArrayList<>() ;
+        for ( int i = 0 ; i < numThreads ; i++ )
+        {
+            int idx = i ;
+            Thread thread = new Thread(()-> {
+                try { worker.run(idx) ; }
+                catch (Throwable th) { failure.compareAndSet(null, th) ; }
+            }) ;
+            threads.add(thread) ;
+        }
+        for ( Thread thread : threads )
+            thread.start() ;
+        for ( Thread thread : threads )
+            thread.join() ;
+        if ( failure.get() != null )
+            throw new AssertionError(failure.get()) ;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.exthash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestExtHashFile
+{
+    // Small blocks (2 entries) so there are many splits.
+    static final int BlockSize = 64 ;
+
+    @Rule public TemporaryFolder dir = new TemporaryFolder() ;
+
+    @BeforeClass static public void setup()
+    {
+        ExtHashFile.Checking = true ;
+    }
+
+    private String filename()
+    {
+        return new File(dir.getRoot(), "exthash").getPath() ;
+    }
+
+    @Test public void exthash_file_01()
+    {
+        ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+        assertEquals(2, table.bucketSize) ;
+        assertTrue(table.isEmpty()) ;
+        assertFalse(table.contains(1)) ;
+        assertEquals(-1, table.get(1, -1)) ;
+        assertFalse(table.remove(1)) ;
+        table.close() ;
+    }
+
+    @Test public void exthash_file_02()
+    {
+        ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+        for ( long k = 0 ; k < 200 ; k++ )
+            assertTrue(table.put(k, 1000+k)) ;
+        assertFalse(table.put(5, 5)) ;
+        table.check() ;
+        assertEquals(200, table.size()) ;
+        assertEquals(5, table.get(5, -1)) ;
+        for ( long k = 0 ; k < 200 ; k += 2 )
+            assertTrue(table.remove(k)) ;
+        table.check() ;
+        assertEquals(100, table.size()) ;
+        for ( long k = 0 ; k < 200 ; k++ )
+            assertEquals(k%2 == 1, table.contains(k)) ;
+        table.close() ;
+    }
+
+    // Survives close and reopen.
+    @Test public void exthash_file_03()
+    {
+        ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+        for ( long k = 0 ; k < 500 ; k++ )
+            table.put(k*7919, k) ;
+        table.close() ;
+
+        ExtHashFile table2 = new ExtHashFile(filename(), BlockSize) ;
+        table2.check() ;
+        assertEquals(500, table2.size()) ;
+        for ( long k = 0 ; k < 500 ; k++ )
+            assertEquals(k, table2.get(k*7919, -1)) ;
+        table2.put(-1, -1) ;
+        table2.close() ;
+
+        ExtHashFile table3 = new ExtHashFile(filename(), BlockSize) ;
+        assertEquals(501, table3.size()) ;
+        assertTrue(table3.contains(-1)) ;
+        table3.close() ;
+    }
+
+    // Segments : more blocks than one mapped segment holds.
+    @Test public void exthash_file_04()
+    {
+        int bps = ExtHashFile.BlocksPerSegment ;
+        ExtHashFile.BlocksPerSegment = 4 ;
+        try {
+            Random random = new Random(99) ;
+            Map<Long, Long> expected = new HashMap<>() ;
+            ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+            for ( int i = 0 ; i < 3000 ; i++ )
+            {
+                long k = random.nextLong() % 1000 ;
+                if ( random.nextInt(4) == 0 )
+                    assertEquals(expected.remove(k) != null, table.remove(k)) ;
+                else
+                    assertEquals(expected.put(k, (long)i) == null, table.put(k, i)) ;
+            }
+            table.sync() ;
+            table.close() ;
+            table = new ExtHashFile(filename(), BlockSize) ;
+            table.check() ;
+            assertEquals(expected.size(), table.size()) ;
+            for ( Map.Entry<Long, Long> e : expected.entrySet() )
+                assertEquals((long)e.getValue(), table.get(e.getKey(), -1)) ;
+            table.close() ;
+        } finally { ExtHashFile.BlocksPerSegment = bps ; }
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void exthash_file_05()
+    {
+        new ExtHashFile(filename(), BlockSize).close() ;
+        // Different block size.
+        new ExtHashFile(filename(), 2*BlockSize) ;
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void exthash_file_06()
+    {
+        ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+        table.close() ;
+        table.get(1, -1) ;
+    }
+
+    // More keys with the same hash than fit in a bucket : chain, don't double.
+    @Test public void exthash_file_07()
+    {
+        ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+        for ( long k = 0 ; k < 1000 ; k++ )
+            table.put(k, k) ;
+        // Keys with the same Long.hashCode.
+        int N = 100 ;
+        for ( long a = 1 ; a <= N ; a++ )
+            assertTrue(table.put(sameHash(a), a)) ;
+        table.check() ;
+        assertEquals(1000+N, table.size()) ;
+        assertTrue("Dictionary size "+table.dictionarySize(), table.dictionarySize() <= 8192) ;
+        for ( long a = 1 ; a <= N ; a += 2 )
+            assertTrue(table.remove(sameHash(a))) ;
+        table.check() ;
+        table.close() ;
+
+        table = new ExtHashFile(filename(), BlockSize) ;
+        table.check() ;
+        for ( long a = 1 ; a <= N ; a++ )
+            assertEquals(a%2 == 0 ? a : -1, table.get(sameHash(a), -1)) ;
+        for ( long k = 0 ; k < 1000 ; k++ )
+            assertEquals(k, table.get(k, -1)) ;
+        table.close() ;
+    }
+
+    // Reopen without closing : the changes after the sync have reached the mapped file.
+    @Test public void exthash_file_08()
+    {
+        ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+        for ( long k = 0 ; k < 500 ; k++ )
+            table.put(k, k) ;
+        table.sync() ;
+        for ( long k = 500 ; k < 2000 ; k++ )
+            table.put(k, k) ;
+        for ( long k = 0 ; k < 500 ; k += 3 )
+            table.remove(k) ;
+        for ( long k = 1 ; k < 500 ; k += 3 )
+            table.put(k, -k) ;
+        table.check() ;
+
+        ExtHashFile table2 = new ExtHashFile(filename(), BlockSize) ;
+        table2.check() ;
+        assertEquals(500, table2.size()) ;
+        for ( long k = 0 ; k < 500 ; k++ )
+            assertEquals(k, table2.get(k, -1)) ;
+        for ( long k = 500 ; k < 2000 ; k++ )
+            assertFalse(table2.contains(k)) ;
+
+        // Carry on from the reopened table, reusing the free blocks.
+        for ( long k = 0 ; k < 500 ; k += 2 )
+            table2.remove(k) ;
+        for ( long k = 2000 ; k < 3000 ; k++ )
+            table2.put(k, k) ;
+        table2.check() ;
+        table2.sync() ;
+        for ( long k = 1 ; k < 500 ; k += 2 )
+            table2.remove(k) ;
+        table2.check() ;
+
+        ExtHashFile table3 = new ExtHashFile(filename(), BlockSize) ;
+        table3.check() ;
+        assertEquals(1250, table3.size()) ;
+        for ( long k = 0 ; k < 500 ; k++ )
+            assertEquals(k%2 == 0 ? -1 : k, table3.get(k, -1)) ;
+        for ( long k = 2000 ; k < 3000 ; k++ )
+            assertEquals(k, table3.get(k, -1)) ;
+        table3.close() ;
+    }
+
+    // Strided keys share a hash prefix : the dictionary grows rather than one long chain.
+    @Test public void exthash_file_09()
+    {
+        int N = 20000 ;
+        ExtHashFile table = new ExtHashFile(filename(), BlockSize) ;
+        for ( long k = 0 ; k < N ; k++ )
+            table.put(k*16, k) ;
+        table.check() ;
+        assertEquals(N, table.size()) ;
+        for ( long k = 0 ; k < N ; k++ )
+            assertEquals(k, table.get(k*16, -1)) ;
+        String stats = "dictionary="+table.dictionarySize()+" ratio="+table.dictionaryRatio()+" maxChain="+table.maxChainLength() ;
+        assertTrue(stats, table.maxChainLength() <= ExtHashMem.MaxChainLength) ;
+        // Only one slot in 16 is used : the stride sets the ratio.
+        assertTrue(stats, table.dictionaryRatio() <= 2*16) ;
+        assertTrue(stats, table.dictionarySize() <= (long)ExtHashMem.MaxDictionaryRatio*N) ;
+        table.close() ;
+    }
+
+    private static long sameHash(long a)
+    {
+        // Long.hashCode is (int)(k ^ (k>>>32)) : 12345 for all a.
+        return (a<<32) | ((a ^ 12345) & 0xFFFFFFFFL) ;
+    }
+}
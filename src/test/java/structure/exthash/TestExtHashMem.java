@@ -19,6 +19,7 @@ package structure.exthash;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static structure.exthash.ExtHashMemTestBase.check;
 import static structure.exthash.ExtHashMemTestBase.create;
 import static structure.exthash.ExtHashMemTestBase.delete;
@@ -104,6 +105,102 @@ public class TestExtHashMem
         check(eHash) ;
     }
 
+    // Strided keys : the low bits of the keys are zero, so the hashes (bit reversed)
+    // share a prefix. The dictionary grows rather than one long chain.
+    @Test public void overflow1()
+    {
+        int N = 20000 ;
+        ExtHashMem<Integer, String> eHash = new ExtHashMem<Integer, String>(4) ;
+        putAll(eHash, N, 16) ;
+        eHash.check() ;
+        assertEquals(N, eHash.size()) ;
+        for ( int i = 0 ; i < N ; i++ )
+            assertEquals("X"+i, eHash.get(i*16)) ;
+        String stats = eHash.stats() ;
+        assertTrue(stats, eHash.maxChainLength() <= ExtHashMem.MaxChainLength) ;
+        // Only one slot in 16 is used : the stride sets the ratio.
+        assertTrue(stats, eHash.dictionaryRatio() <= 2*16) ;
+        assertTrue(stats, eHash.dictionarySize() <= (long)ExtHashMem.MaxDictionaryRatio*N) ;
+        delete(eHash, 0, 16, 32) ;
+        eHash.check() ;
+        assertEquals(N-3, eHash.size()) ;
+        assertFalse(eHash.contains(16)) ;
+    }
+
+    // A larger stride : chains stay short as the table grows.
+    @Test public void overflow1a()
+    {
+        for ( int N : new int[] { 20000, 80000 } )
+        {
+            ExtHashMem<Integer, String> eHash = new ExtHashMem<Integer, String>(10) ;
+            putAll(eHash, N, 1024) ;
+            eHash.check() ;
+            assertEquals(N, eHash.size()) ;
+            String stats = eHash.stats() ;
+            assertTrue(stats, eHash.maxChainLength() <= 32) ;
+            assertTrue(stats, eHash.dictionarySize() <= (long)ExtHashMem.MaxDictionaryRatio*N) ;
+        }
+    }
+
+    // All the same hash : no depth of dictionary separates these.
+    @Test public void overflow2()
+    {
+        ExtHashMem<SameHash, String> eHash = new ExtHashMem<SameHash, String>(2) ;
+        for ( int i = 0 ; i < 20 ; i++ )
+            eHash.put(new SameHash(i), "X"+i) ;
+        eHash.check() ;
+        assertEquals(20, eHash.size()) ;
+        assertEquals(1, eHash.dictionarySize()) ;
+        assertEquals(10, eHash.maxChainLength()) ;
+    }
+
+    // Unclustered keys grow by doubling and splitting as before.
+    @Test public void overflow3()
+    {
+        ExtHashMem<Integer, String> eHash = new ExtHashMem<Integer, String>(4) ;
+        for ( int i = 0 ; i < 1000 ; i++ )
+            eHash.put(i, "X"+i) ;
+        eHash.check() ;
+        assertEquals(0, eHash.overflowBucketCount()) ;
+        assertTrue(eHash.stats(), eHash.dictionaryRatio() <= 2) ;
+    }
+
+    // Chained buckets are split when the dictionary has grown past them.
+    @Test public void overflow4()
+    {
+        ExtHashMem<Integer, String> eHash = new ExtHashMem<Integer, String>(2) ;
+        for ( int i = 0 ; i < 50 ; i++ )
+            eHash.put(i<<20, "C"+i) ;
+        // Key 0 is already in.
+        for ( int i = 1 ; i < 2000 ; i++ )
+            eHash.put(i, "X"+i) ;
+        eHash.check() ;
+        for ( int i = 0 ; i < 50 ; i++ )
+            assertEquals("C"+i, eHash.get(i<<20)) ;
+        for ( int i = 1 ; i < 2000 ; i++ )
+            assertEquals("X"+i, eHash.get(i)) ;
+    }
+
+    static class SameHash
+    {
+        final int id ;
+        SameHash(int id) { this.id = id ; }
+        @Override public int hashCode() { return 42 ; }
+        @Override public boolean equals(Object other)
+        { return other instanceof SameHash && ((SameHash)other).id == id ; }
+    }
+
+    // Keys 0, stride, 2*stride ... without checking after every split.
+    static private void putAll(ExtHashMem<Integer, String> eHash, int N, int stride)
+    {
+        boolean b = ExtHashMem.Checking ;
+        ExtHashMem.Checking = false ;
+        try {
+            for ( int i = 0 ; i < N ; i++ )
+                eHash.put(i*stride, "X"+i) ;
+        } finally { ExtHashMem.Checking = b ; }
+    }
+
     static private ExtHashMem<Integer, String> createAndCheck(int... keys)
     {
         ExtHashMem<Integer, String> eHash = create(keys) ;
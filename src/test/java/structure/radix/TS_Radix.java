@@ -24,6 +24,8 @@ import org.junit.runners.Suite ;
 @Suite.SuiteClasses( {
     TestRadix.class
     , TestRadixIndex.class 
+    , TestRadixNodeManager.class
+    , TestConcurrentRadix.class
 })
 
 public class TS_Radix
@@ -0,0 +1,309 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.radix;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.Random ;
+import java.util.concurrent.atomic.AtomicBoolean ;
+import java.util.concurrent.atomic.AtomicReference ;
+
+import org.apache.jena.atlas.lib.Bytes ;
+import org.apache.jena.tdb.base.record.Record ;
+import org.junit.Test ;
+
+public class TestConcurrentRadix
+{
+    @Test public void concurrent_radix_01()
+    {
+        RadixTree t = RadixTreeFactory.createConcurrent() ;
+        t.check() ;
+        assertTrue(t.isEmpty()) ;
+        assertFalse(t.contains(TestRadix.key1)) ;
+        assertFalse(t.delete(TestRadix.key1)) ;
+        assertNull(t.min()) ;
+        assertNull(t.max()) ;
+        assertFalse(t.iterator().hasNext()) ;
+    }
+
+    @Test public void concurrent_radix_02()
+    {
+        // Every insert and delete case, in every order.
+        byte[][] keys = { TestRadix.key1, TestRadix.key2, TestRadix.key3, TestRadix.key4, TestRadix.key5, TestRadix.key6 } ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+            for ( int j = 0 ; j < keys.length ; j++ )
+                for ( int k = 0 ; k < keys.length ; k++ )
+                {
+                    if ( i == j || j == k || i == k )
+                        continue ;
+                    TestRadix.test(RadixTreeFactory.createConcurrent(), keys[i], keys[j], keys[k]) ;
+                }
+        TestRadix.test(RadixTreeFactory.createConcurrent(), keys) ;
+    }
+
+    @Test public void concurrent_radix_03()
+    {
+        RadixTree t = RadixTreeFactory.createConcurrent() ;
+        assertTrue(t.insert(TestRadix.key1, TestRadix.key1)) ;
+        assertFalse(t.insert(TestRadix.key1, TestRadix.key2)) ;
+        assertArrayEquals(TestRadix.key2, t.find(TestRadix.key1, null)) ;
+        // Key with no value.
+        assertTrue(t.insert(TestRadix.key3, null)) ;
+        assertTrue(t.contains(TestRadix.key3)) ;
+        assertNull(t.find(TestRadix.key3, TestRadix.key1)) ;
+        assertEquals(2, t.size()) ;
+        t.check() ;
+        t.clear() ;
+        assertTrue(t.isEmpty()) ;
+        assertEquals(0, t.size()) ;
+    }
+
+    @Test public void concurrent_radix_iter()
+    {
+        RadixTree t = RadixTreeFactory.createConcurrent() ;
+        RadixTree t2 = RadixTreeFactory.create() ;
+        List<byte[]> keys = keys(1000, 0, 1) ;
+        for ( byte[] k : keys )
+        {
+            t.insert(k, k) ;
+            t2.insert(k, k) ;
+        }
+        t.check() ;
+        // Several batches.
+        assertEntries(t2.iterator(), t.iterator()) ;
+        byte[] start = keys.get(100) ;
+        byte[] finish = keys.get(700) ;
+        assertEntries(t2.iterator(start, finish), t.iterator(start, finish)) ;
+        byte[] start2 = { start[0], start[1] } ;
+        assertEntries(t2.iterator(start2, null), t.iterator(start2, null)) ;
+        assertCursor(t2.iterator(start, finish), t.cursor(start, finish)) ;
+        assertCursor(t2.iterator(), t.cursor(null, null)) ;
+        assertEquals(t2.min(), t.min()) ;
+        assertEquals(t2.max(), t.max()) ;
+    }
+
+    @Test public void concurrent_radix_prefix()
+    {
+        RadixTree t = RadixTreeFactory.createConcurrent() ;
+        RadixTree t2 = RadixTreeFactory.create() ;
+        List<byte[]> keys = keys(1000, 0, 1) ;
+        for ( byte[] k : keys )
+        {
+            t.insert(k, k) ;
+            t2.insert(k, k) ;
+        }
+        byte[] k = keys.get(500) ;
+        for ( int i = 0 ; i <= k.length ; i++ )
+        {
+            byte[] p = Arrays.copyOf(k, i) ;
+            assertEquals(t2.countWithPrefix(p), t.countWithPrefix(p)) ;
+            assertEntries(t2.iteratorPrefix(p), t.iteratorPrefix(p)) ;
+        }
+        byte[] k2 = Arrays.copyOf(k, k.length+2) ;
+        assertArrayEquals(k, t.longestPrefixOf(k2).key) ;
+        assertArrayEquals(k, t.longestPrefixOf(k2).value) ;
+        assertNull(t.longestPrefixOf(Arrays.copyOf(k, 1))) ;
+    }
+
+    @Test public void concurrent_radix_index()
+    {
+        RadixIndex index = new RadixIndex(TestRadixIndex.recordFactory, RadixTreeFactory.createConcurrent()) ;
+        assertTrue(index.isEmpty()) ;
+        index.add(TestRadixIndex.recordFactory.create(TestRadixIndex.key2)) ;
+        index.add(TestRadixIndex.recordFactory.create(TestRadixIndex.key0)) ;
+        index.add(TestRadixIndex.recordFactory.create(TestRadixIndex.key4)) ;
+        assertArrayEquals(TestRadixIndex.key0, index.minKey().getKey()) ;
+        assertArrayEquals(TestRadixIndex.key4, index.maxKey().getKey()) ;
+        assertEquals(3, index.size()) ;
+        Iterator<Record> iter = index.iterator() ;
+        assertArrayEquals(TestRadixIndex.key0, iter.next().getKey()) ;
+        assertArrayEquals(TestRadixIndex.key2, iter.next().getKey()) ;
+        assertArrayEquals(TestRadixIndex.key4, iter.next().getKey()) ;
+        assertFalse(iter.hasNext()) ;
+    }
+
+    // Writers on disjoint, interleaved, keys so that nodes split and merge under each other.
+    @Test public void concurrent_radix_stress_01() throws Exception
+    {
+        RadixTree t = RadixTreeFactory.createConcurrent() ;
+        int numThreads = 4 ;
+        int perThread = 5000 ;
+        run(numThreads, (x)-> {
+            List<byte[]> keys = keys(perThread, x, numThreads) ;
+            for ( byte[] k : keys )
+            {
+                if ( ! t.insert(k, k) )
+                    throw new AssertionError("Already present: "+Bytes.asHex(k)) ;
+            }
+            for ( int i = 0 ; i < perThread ; i += 2 )
+            {
+                if ( ! t.delete(keys.get(i)) )
+                    throw new AssertionError("Missing: "+Bytes.asHex(keys.get(i))) ;
+            }
+        }) ;
+        t.check() ;
+        assertEquals(numThreads*perThread/2, t.size()) ;
+        for ( int x = 0 ; x < numThreads ; x++ )
+        {
+            List<byte[]> keys = keys(perThread, x, numThreads) ;
+            for ( int i = 0 ; i < perThread ; i++ )
+                assertEquals(i%2 == 1, t.contains(keys.get(i))) ;
+        }
+    }
+
+    // Readers and iterators must always see the keys present for the whole test.
+    @Test public void concurrent_radix_stress_02() throws Exception
+    {
+        RadixTree t = RadixTreeFactory.createConcurrent() ;
+        // Stable keys are even, changing keys are odd.
+        int stable = 1000 ;
+        for ( int i = 0 ; i < stable ; i++ )
+            t.insert(key(2*i), key(2*i)) ;
+        AtomicBoolean done = new AtomicBoolean(false) ;
+        int numWriters = 2 ;
+        run(numWriters+2, (x)-> {
+            if ( x < numWriters )
+            {
+                Random random = new Random(x) ;
+                for ( int i = 0 ; i < 20000 ; i++ )
+                {
+                    byte[] k = key(2*random.nextInt(2*stable)+1) ;
+                    if ( random.nextBoolean() )
+                        t.insert(k, k) ;
+                    else
+                        t.delete(k) ;
+                }
+                done.set(true) ;
+                return ;
+            }
+            Random random = new Random(-x) ;
+            while ( ! done.get() )
+            {
+                byte[] k = key(2*random.nextInt(stable)) ;
+                if ( ! Arrays.equals(k, t.find(k, null)) )
+                    throw new AssertionError("Lost key: "+Bytes.asHex(k)) ;
+                if ( x == numWriters )
+                {
+                    // Iterate : sorted, and all stable keys present.
+                    int count = 0 ;
+                    byte[] prev = null ;
+                    Iterator<RadixEntry> iter = t.iterator() ;
+                    while ( iter.hasNext() )
+                    {
+                        byte[] k2 = iter.next().key ;
+                        if ( prev != null && Bytes.compare(prev, k2) >= 0 )
+                            throw new AssertionError("Out of order: "+Bytes.asHex(prev)+" "+Bytes.asHex(k2)) ;
+                        if ( (k2[3] & 1) == 0 )
+                            count++ ;
+                        prev = k2 ;
+                    }
+                    if ( count != stable )
+                        throw new AssertionError("Iterator saw "+count+" stable keys") ;
+                }
+            }
+        }) ;
+        t.check() ;
+    }
+
+    // insertAll counts the keys added by this call, not by other threads.
+    @Test public void concurrent_radix_stress_03() throws Exception
+    {
+        RadixTree t = RadixTreeFactory.createConcurrent() ;
+        int numThreads = 4 ;
+        int perThread = 5000 ;
+        run(numThreads, (x)-> {
+            List<RadixEntry> entries = new ArrayList<>() ;
+            for ( byte[] k : keys(perThread, x, numThreads) )
+                entries.add(new RadixEntry(k, k)) ;
+            // Repeats are not new keys.
+            entries.addAll(entries.subList(0, 100)) ;
+            long count = t.insertAll(entries.iterator()) ;
+            if ( count != perThread )
+                throw new AssertionError("insertAll: "+count+" : expected "+perThread) ;
+        }) ;
+        t.check() ;
+        assertEquals(numThreads*perThread, t.size()) ;
+    }
+
+    private static void assertEntries(Iterator<RadixEntry> expected, Iterator<RadixEntry> actual)
+    {
+        while ( expected.hasNext() )
+        {
+            assertTrue(actual.hasNext()) ;
+            RadixEntry e1 = expected.next() ;
+            RadixEntry e2 = actual.next() ;
+            assertArrayEquals(e1.key, e2.key) ;
+            assertArrayEquals(e1.value, e2.value) ;
+        }
+        assertFalse(actual.hasNext()) ;
+    }
+
+    private static void assertCursor(Iterator<RadixEntry> expected, RadixCursor actual)
+    {
+        while ( expected.hasNext() )
+        {
+            assertTrue(actual.advance()) ;
+            RadixEntry e = expected.next() ;
+            assertEquals(ByteBuffer.wrap(e.key), actual.key()) ;
+            assertArrayEquals(e.value, actual.value()) ;
+        }
+        assertFalse(actual.advance()) ;
+    }
+
+    private static byte[] key(int x)
+    {
+        return ByteBuffer.allocate(4).putInt(x).array() ;
+    }
+
+    /** Keys start, start+step, ... with many common prefixes. */
+    private static List<byte[]> keys(int N, int start, int step)
+    {
+        List<byte[]> keys = new ArrayList<>() ;
+        for ( int i = 0 ; i < N ; i++ )
+            keys.add(key((i*step+start)*37)) ;
+        return keys ;
+    }
+
+    interface Worker { void run(int threadIdx) throws Exception ; }
+
+    static void run(int numThreads, Worker worker) throws Exception
+    {
+        AtomicReference<Throwable> failure = new AtomicReference<>() ;
+        List<Thread> threads = new ArrayList<>() ;
+        for ( int i = 0 ; i < numThreads ; i++ )
+        {
+            int idx = i ;
+            Thread thread = new Thread(()-> {
+                try { worker.run(idx) ; }
+                catch (Throwable th) { failure.compareAndSet(null, th) ; }
+            }) ;
+            threads.add(thread) ;
+        }
+        for ( Thread thread : threads )
+            thread.start() ;
+        for ( Thread thread : threads )
+            thread.join() ;
+        if ( failure.get() != null )
+            throw new AssertionError(failure.get()) ;
+    }
+}
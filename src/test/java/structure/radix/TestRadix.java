@@ -21,11 +21,15 @@ import static org.junit.Assert.*;
 import static structure.radix.Str.str ;
 
 import java.nio.ByteBuffer ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
 import java.util.Iterator ;
 import java.util.List ;
+import java.util.Random ;
 
 import org.apache.jena.atlas.AtlasException ;
 import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Bytes ;
 import org.junit.Test ;
 
 public class TestRadix
@@ -162,6 +166,243 @@ public class TestRadix
         assertFalse(t.contains(k3)) ;
     }
 
+    @Test
+    public void radix_size_01()
+    {
+        RadixTree t = tree(key1, key2, key3, key4, key5, key6) ;
+        count(t, 6) ;
+        // Replace, on a leaf and on a value branch.
+        t.insert(key2, key1) ;
+        t.insert(key3, key1) ;
+        count(t, 6) ;
+        // Not present.
+        t.delete(new byte[]{2, 4, 6}) ;
+        count(t, 6) ;
+        t.delete(key1) ;
+        count(t, 5) ;
+        t.clear() ;
+        count(t, 0) ;
+        assertTrue(t.isEmpty()) ;
+        t.insert(key1, key1) ;
+        count(t, 1) ;
+    }
+
+    @Test
+    public void radix_fanout_01()
+    {
+        // Root is a branch on the second byte : grows 4 -> 16 -> 48 -> 256.
+        RadixTree t = RadixTreeFactory.create() ;
+        int[] order = permutation(256, 17) ;
+        for ( int i = 0 ; i < order.length ; i++ )
+        {
+            byte[] k = { 1, (byte)order[i] } ;
+            t.insert(k, k) ;
+            t.check() ;
+            int n = i+1 ;
+            if ( n < 2 )
+                continue ;
+            int expected = ( n <= 4 ) ? 4 : ( n <= 16 ) ? 16 : ( n <= 48 ) ? 48 : 256 ;
+            assertEquals("Size="+n, expected, root(t).capacity()) ;
+        }
+        count(t, 256) ;
+        
+        // And shrinks as subnodes go.
+        order = permutation(256, 23) ;
+        for ( int i = 0 ; i < order.length ; i++ )
+        {
+            byte[] k = { 1, (byte)order[i] } ;
+            assertTrue(t.delete(k)) ;
+            t.check() ;
+            int n = 256-(i+1) ;
+            if ( n == 36 )
+                assertEquals(48, root(t).capacity()) ;
+            if ( n == 12 )
+                assertEquals(16, root(t).capacity()) ;
+            if ( n == 3 )
+                assertEquals(4, root(t).capacity()) ;
+        }
+        assertTrue(t.isEmpty()) ;
+    }
+
+    @Test
+    public void radix_fanout_02()
+    {
+        // Keys that branch at several levels, some nodes large.
+        RadixTree t = RadixTreeFactory.create() ;
+        List<byte[]> keys = new ArrayList<>() ;
+        for ( int i = 0 ; i < 3000 ; i++ )
+        {
+            int x = i*7919 ;
+            keys.add(new byte[] { (byte)(x>>>16), (byte)(x>>>8), (byte)x }) ;
+        }
+        for ( byte[] k : keys )
+            t.insert(k, k) ;
+        t.check() ;
+        count(t, keys.size()) ;
+        check(t, keys.toArray(new byte[0][])) ;
+        for ( int i = 0 ; i < keys.size() ; i += 2 )
+            assertTrue(t.delete(keys.get(i))) ;
+        t.check() ;
+        count(t, keys.size()/2) ;
+        for ( int i = 0 ; i < keys.size() ; i++ )
+            assertEquals(i%2 == 1, t.contains(keys.get(i))) ;
+    }
+
+    @Test
+    public void radix_bulk_01()
+    {
+        List<RadixEntry> entries = new ArrayList<>() ;
+        for ( byte[] k : order )
+            entries.add(new RadixEntry(k, valFromKey(k))) ;
+        RadixTree t = RadixTreeImpl.bulkLoad(entries.iterator()) ;
+        t.check() ;
+        count(t, order.length) ;
+        testIter(t, null, null, order) ;
+        for ( byte[] k : order )
+            assertArrayEquals(valFromKey(k), t.find(k, null)) ;
+    }
+
+    @Test
+    public void radix_bulk_02()
+    {
+        // Keys that share prefixes, end at branches and fan out widely ; unsigned order.
+        List<byte[]> keys = new ArrayList<>() ;
+        for ( int i = 0 ; i < 300 ; i++ )
+        {
+            keys.add(new byte[] { (byte)(i>>>8) }) ;
+            keys.add(new byte[] { (byte)(i>>>8), (byte)i }) ;
+            keys.add(new byte[] { (byte)(i>>>8), (byte)i, 7 }) ;
+        }
+        keys.sort(Arrays::compareUnsigned) ;
+        List<byte[]> distinct = new ArrayList<>() ;
+        for ( byte[] k : keys )
+        {
+            if ( distinct.isEmpty() || Bytes.compare(distinct.get(distinct.size()-1), k) != 0 )
+                distinct.add(k) ;
+        }
+        RadixTree t = RadixTreeImpl.bulkLoad(Iter.map(distinct.iterator(), k->new RadixEntry(k, k))) ;
+        t.check() ;
+        count(t, distinct.size()) ;
+        testIter(t, null, null, distinct.toArray(new byte[0][])) ;
+        // No growing : a node with 256 subnodes is laid out as Node256 from the start.
+        assertEquals(256, root(t).get(0).capacity()) ;
+        assertEquals(4, root(t).capacity()) ;
+
+        // Updatable afterwards.
+        for ( int i = 0 ; i < distinct.size() ; i += 2 )
+            assertTrue(t.delete(distinct.get(i))) ;
+        t.insert(new byte[] { 9, 9 }, null) ;
+        t.check() ;
+        count(t, distinct.size()/2+1) ;
+    }
+
+    @Test(expected=AtlasException.class)
+    public void radix_bulk_03()
+    {
+        List<RadixEntry> entries = new ArrayList<>() ;
+        entries.add(new RadixEntry(key3, null)) ;
+        entries.add(new RadixEntry(key3, null)) ;
+        RadixTreeImpl.bulkLoad(entries.iterator()) ;
+    }
+
+    @Test(expected=AtlasException.class)
+    public void radix_bulk_04()
+    {
+        List<RadixEntry> entries = new ArrayList<>() ;
+        entries.add(new RadixEntry(key1, null)) ;
+        entries.add(new RadixEntry(key3, null)) ;
+        RadixTreeImpl.bulkLoad(entries.iterator()) ;
+    }
+
+    /** Keys of varying length, with long shared prefixes, in sorted order. */
+    private static List<byte[]> batchKeys(int N)
+    {
+        List<byte[]> keys = new ArrayList<>() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            byte[] k = new byte[3+i%5] ;
+            k[0] = (byte)(i/100) ;
+            k[1] = (byte)(i/10) ;
+            for ( int j = 2 ; j < k.length ; j++ )
+                k[j] = (byte)(i+j) ;
+            keys.add(k) ;
+        }
+        keys.sort(Arrays::compareUnsigned) ;
+        return keys ;
+    }
+
+    @Test
+    public void radix_batch_01()
+    {
+        List<byte[]> keys = batchKeys(1000) ;
+        RadixTree t1 = tree() ;
+        RadixTree t2 = tree() ;
+        List<RadixEntry> entries = new ArrayList<>() ;
+        for ( byte[] k : keys )
+        {
+            t1.insert(k, valFromKey(k)) ;
+            entries.add(new RadixEntry(k, valFromKey(k))) ;
+        }
+        assertEquals(keys.size(), t2.insertAll(entries.iterator())) ;
+        t2.check() ;
+        assertEquals(t1.size(), t2.size()) ;
+        assertEquals(Iter.toList(Iter.map(t1.iterator(), RadixEntry::toString)),
+                     Iter.toList(Iter.map(t2.iterator(), RadixEntry::toString))) ;
+        // Again : all present.
+        assertEquals(0, t2.insertAll(entries.iterator())) ;
+        t2.check() ;
+    }
+
+    // Not sorted, and duplicates in the batch.
+    @Test
+    public void radix_batch_02()
+    {
+        RadixTree t = tree(key1) ;
+        List<RadixEntry> entries = new ArrayList<>() ;
+        for ( byte[] k : new byte[][]{ key4, key2, key1, key3, key6, key5, key2 } )
+            entries.add(new RadixEntry(k, valFromKey(k))) ;
+        assertEquals(5, t.insertAll(entries.iterator())) ;
+        t.check() ;
+        check(t, key1, key2, key3, key4, key5, key6) ;
+        assertArrayEquals(valFromKey(key1), t.find(key1, null)) ;
+    }
+
+    @Test
+    public void radix_batch_03()
+    {
+        List<byte[]> keys = batchKeys(500) ;
+        RadixTree t = tree() ;
+        for ( int i = 0 ; i < keys.size() ; i += 2 )
+            t.insert(keys.get(i), valFromKey(keys.get(i))) ;
+        byte[][] results = t.findAll(keys.toArray(new byte[0][]), key6) ;
+        for ( int i = 0 ; i < keys.size() ; i++ )
+        {
+            byte[] expected = ( i%2 == 0 ) ? valFromKey(keys.get(i)) : key6 ;
+            assertArrayEquals(expected, results[i]) ;
+        }
+        assertArrayEquals(new byte[][]{ key1, key1 }, tree().findAll(new byte[][]{ key2, key3 }, key1)) ;
+    }
+
+    private static RadixNode root(RadixTree t)
+    {
+        return ((RadixTreeImpl)t).getRoot() ;
+    }
+
+    /** A fixed permutation of 0..N-1 */
+    private static int[] permutation(int N, int seed)
+    {
+        int[] x = new int[N] ;
+        for ( int i = 0 ; i < N ; i++ )
+            x[i] = i ;
+        Random r = new Random(seed) ;
+        for ( int i = N-1 ; i > 0 ; i-- )
+        {
+            int j = r.nextInt(i+1) ;
+            int t = x[i] ; x[i] = x[j] ; x[j] = t ;
+        }
+        return x ;
+    }
+
     @Test
     public void radix_iter_01()
     {
@@ -240,6 +481,26 @@ public class TestRadix
     }
 
 
+    @Test
+    public void radix_iter_15()
+    {
+        // Start is exactly a leaf.
+        byte[] keyStart = key2 ;
+        byte[] keyFinish = null ;
+        RadixTree t = tree(key1, key2, key3, key4, key5, key6) ;
+        testIter(t, keyStart, keyFinish, key2) ;
+    }
+
+    @Test
+    public void radix_iter_16()
+    {
+        // Start is exactly a leaf, finish exclusive.
+        byte[] keyStart = key5 ;
+        byte[] keyFinish = key4 ;
+        RadixTree t = tree(key1, key2, key3, key4, key5, key6) ;
+        testIter(t, keyStart, keyFinish, key5, key1) ;
+    }
+
     @Test
     public void radix_iter_20()
     {
@@ -268,6 +529,61 @@ public class TestRadix
         testIter(t, keyStart, keyFinish, key1, key4) ;
     }
 
+    // Start above a branch : bytes compare unsigned.
+    @Test
+    public void radix_iter_23()
+    {
+        byte[] k1 = { 1 , 0x10 , 1 } ;
+        byte[] k2 = { 1 , 0x10 , 2 } ;
+        byte[] keyStart = { 1 , (byte)0x90 } ;
+        RadixTree t = tree(k1, k2) ;
+        testIter(t, keyStart, null) ;
+        testIter(t, null, keyStart, k1, k2) ;
+    }
+
+    // Finish before the first key.
+    @Test
+    public void radix_iter_24()
+    {
+        byte[] keyFinish = { 0 , 9 } ;
+        RadixTree t = tree(key1, key2, key3) ;
+        testIter(t, null, keyFinish) ;
+    }
+
+    // Keys longer than the iterator's initial buffer.
+    @Test
+    public void radix_iter_25()
+    {
+        byte[] k1 = new byte[200] ;
+        byte[] k2 = new byte[300] ;
+        byte[] k3 = new byte[100] ;
+        for ( int i = 0 ; i < k1.length ; i++ ) k1[i] = (byte)i ;
+        for ( int i = 0 ; i < k2.length ; i++ ) k2[i] = (byte)i ;
+        for ( int i = 0 ; i < k3.length ; i++ ) k3[i] = (byte)(i+1) ;
+        RadixTree t = tree(k1, k2, k3) ;
+        testIter(t, null, null, k1, k2, k3) ;
+        testIter(t, k2, null, k2, k3) ;
+    }
+
+    @Test
+    public void radix_scan_1()
+    {
+        RadixTree t = tree(key1, key2, key3, key4, key5, key6) ;
+        List<byte[]> x = new ArrayList<>() ;
+        t.scan(key6, key2, (k, v) -> {
+            byte[] b = new byte[k.remaining()] ;
+            k.get(b) ;
+            assertArrayEquals(b, v) ;
+            x.add(b) ;
+        }) ;
+        assertEquals(5, x.size()) ;
+        assertArrayEquals(key6, x.get(0)) ;
+        assertArrayEquals(key3, x.get(1)) ;
+        assertArrayEquals(key5, x.get(2)) ;
+        assertArrayEquals(key1, x.get(3)) ;
+        assertArrayEquals(key4, x.get(4)) ;
+    }
+
     private static void testIter(RadixTree t, byte[] keyStart, byte[] keyFinish, byte[]...results)
     {
         Iterator<RadixEntry> iter = t.iterator(keyStart, keyFinish) ;
@@ -293,6 +609,100 @@ public class TestRadix
         }
 
         assertFalse("Iterator still has elements", iter.hasNext()) ;
+        testCursor(t, keyStart, keyFinish, results) ;
+    }
+
+    private static void testCursor(RadixTree t, byte[] keyStart, byte[] keyFinish, byte[]...results)
+    {
+        RadixCursor cursor = t.cursor(keyStart, keyFinish) ;
+        for ( int i = 0 ;  i < results.length ; i++ )
+        {
+            assertTrue("Cursor ran out", cursor.advance()) ;
+            ByteBuffer bb = cursor.key() ;
+            byte[] k = new byte[bb.remaining()] ;
+            bb.duplicate().get(k) ;
+            assertArrayEquals("At idx="+i+" : Expected: "+str(results[i])+" / Actual: "+str(k),
+                              results[i], k) ;
+            assertArrayEquals(t.find(k, null), cursor.value()) ;
+        }
+        assertFalse("Cursor still has elements", cursor.advance()) ;
+    }
+
+    @Test
+    public void radix_prefix_1()
+    {
+        RadixTree t = tree(key1, key2, key3, key4, key5, key6) ;
+        assertEquals(6, t.countWithPrefix(new byte[0])) ;
+        assertEquals(5, t.countWithPrefix(new byte[]{2})) ;
+        assertEquals(5, t.countWithPrefix(key3)) ;
+        assertEquals(3, t.countWithPrefix(new byte[]{2, 4, 6})) ;
+        assertEquals(2, t.countWithPrefix(key1)) ;
+        assertEquals(1, t.countWithPrefix(key4)) ;
+        assertEquals(0, t.countWithPrefix(new byte[]{2, 4, 7})) ;
+        assertEquals(0, t.countWithPrefix(new byte[]{2, 4, 6, 8, 10, 12})) ;
+        assertEquals(0, t.countWithPrefix(new byte[]{9})) ;
+    }
+
+    @Test
+    public void radix_prefix_2()
+    {
+        RadixTree t = tree(key1, key2, key3, key4, key5, key6) ;
+        t.delete(key1) ;
+        t.delete(key3) ;
+        t.check() ;
+        assertEquals(3, t.countWithPrefix(key3)) ;
+        assertEquals(1, t.countWithPrefix(key1)) ;
+        t.insert(key1, key1) ;
+        t.check() ;
+        assertEquals(4, t.countWithPrefix(key3)) ;
+        assertEquals(2, t.countWithPrefix(key1)) ;
+    }
+
+    @Test
+    public void radix_prefix_3()
+    {
+        RadixTree t = tree(key1, key3, key4, key6) ;
+        assertNull(t.longestPrefixOf(new byte[]{2})) ;
+        assertNull(t.longestPrefixOf(new byte[]{3, 4})) ;
+        assertArrayEquals(key3, t.longestPrefixOf(key3).key) ;
+        assertArrayEquals(key3, t.longestPrefixOf(new byte[]{2, 4, 6}).key) ;
+        assertArrayEquals(key3, t.longestPrefixOf(key2).key) ;
+        assertArrayEquals(key1, t.longestPrefixOf(key1).key) ;
+        assertArrayEquals(key4, t.longestPrefixOf(new byte[]{2, 4, 6, 8, 10, 12}).key) ;
+        assertArrayEquals(key1, t.longestPrefixOf(new byte[]{2, 4, 6, 8, 9}).key) ;
+        assertArrayEquals(key1, t.longestPrefixOf(new byte[]{2, 4, 6, 8, 9}).value) ;
+    }
+
+    @Test
+    public void radix_prefix_4()
+    {
+        RadixTree t = tree(key1, key2, key3, key4, key5, key6) ;
+        testIterPrefix(t, key3, key3, key5, key1, key4, key2) ;
+        testIterPrefix(t, key1, key1, key4) ;
+        testIterPrefix(t, new byte[]{2, 4, 6}, key1, key4, key2) ;
+        testIterPrefix(t, new byte[]{1}) ;
+        testIterPrefix(t, new byte[0], key6, key3, key5, key1, key4, key2) ;
+    }
+
+    @Test
+    public void radix_prefix_5()
+    {
+        byte[] k1 = { (byte)0xFF, (byte)0xFF } ;
+        byte[] k2 = { (byte)0xFF, (byte)0xFF, 1 } ;
+        byte[] k3 = { (byte)0xFF, 1 } ;
+        RadixTree t = tree(k1, k2, k3) ;
+        testIterPrefix(t, new byte[]{(byte)0xFF, (byte)0xFF}, k1, k2) ;
+        testIterPrefix(t, new byte[]{(byte)0xFF}, k3, k1, k2) ;
+        assertEquals(2, t.countWithPrefix(k1)) ;
+    }
+
+    private static void testIterPrefix(RadixTree t, byte[] prefix, byte[]...results)
+    {
+        List<byte[]> x = Iter.toList(Iter.map(t.iteratorPrefix(prefix), (e)->e.key)) ;
+        assertEquals(results.length, x.size()) ;
+        for ( int i = 0 ;  i < results.length ; i++ )
+            assertArrayEquals(results[i], x.get(i)) ;
+        assertEquals(results.length, t.countWithPrefix(prefix)) ;
     }
 
     @Test
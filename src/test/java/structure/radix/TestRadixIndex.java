@@ -18,8 +18,13 @@
 package structure.radix;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.List ;
+
 import org.apache.jena.tdb.base.record.Record ;
 import org.apache.jena.tdb.base.record.RecordFactory ;
 import org.junit.Test ;
@@ -51,6 +56,20 @@ public class TestRadixIndex
         assertArrayEquals(key4, r.getKey()) ;
     }
 
+    @Test public void radixindex_03()
+    {
+        RadixIndex index = new RadixIndex(recordFactory) ;
+        add(index, key2) ;
+        List<Record> records = new ArrayList<>() ;
+        for ( byte[] k : new byte[][]{ key0, key1, key2, key3, key4 } )
+            records.add(recordFactory.create(k)) ;
+        assertEquals(4, index.addAll(records.iterator())) ;
+        assertEquals(5, index.size()) ;
+        Iterator<Record> iter = index.iterator() ;
+        for ( Record r : records )
+            assertArrayEquals(r.getKey(), iter.next().getKey()) ;
+    }
+
     private void add(RadixIndex index, byte[] ... keys)
     {
         for ( byte[] k : keys )
@@ -0,0 +1,289 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.radix;
+
+import static org.junit.Assert.*;
+
+import java.io.File ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.junit.Rule ;
+import org.junit.Test ;
+import org.junit.rules.TemporaryFolder ;
+
+public class TestRadixNodeManager
+{
+    // Small blocks so larger nodes run over several blocks.
+    static final int BlockSize = 48 ;
+
+    @Rule public TemporaryFolder dir = new TemporaryFolder() ;
+
+    private String filename()
+    {
+        return new File(dir.getRoot(), "radix").getPath() ;
+    }
+
+    @Test public void radix_heap_01()
+    {
+        RadixNodeManagerHeap mgr = new RadixNodeManagerHeap() ;
+        RadixNode n1 = mgr.allocBlank(null) ;
+        RadixNode n2 = mgr.allocBlank(n1) ;
+        assertSame(n2, mgr.get(n2.getId())) ;
+        assertSame(n1, n2.getParent()) ;
+        mgr.dealloc(n2) ;
+        assertNull(mgr.get(n2.getId())) ;
+        // Id reused.
+        RadixNode n3 = mgr.allocBlank(n1) ;
+        assertEquals(n2.getId(), n3.getId()) ;
+    }
+
+    @Test public void radix_blocks_01()
+    {
+        RadixTree t = RadixTreeFactory.create(RadixNodeManagerBlocks.createMem(BlockSize)) ;
+        TestRadix.test(t, TestRadix.key1, TestRadix.key2, TestRadix.key3, TestRadix.key4, TestRadix.key5, TestRadix.key6) ;
+    }
+
+    @Test public void radix_blocks_02()
+    {
+        // Write back and reload the nodes after every change.
+        RadixTreeImpl t = new RadixTreeImpl(RadixNodeManagerBlocks.createMem(BlockSize)) ;
+        List<byte[]> keys = keys(2000) ;
+        for ( byte[] k : keys )
+        {
+            t.insert(k, TestRadix.valFromKey(k)) ;
+            t.sync() ;
+        }
+        t.check() ;
+        assertEquals(keys.size(), t.size()) ;
+        for ( byte[] k : keys )
+            assertArrayEquals(TestRadix.valFromKey(k), t.find(k, null)) ;
+        for ( int i = 0 ; i < keys.size() ; i += 2 )
+        {
+            assertTrue(t.delete(keys.get(i))) ;
+            t.sync() ;
+        }
+        t.check() ;
+        for ( int i = 0 ; i < keys.size() ; i++ )
+            assertEquals(i%2 == 1, t.contains(keys.get(i))) ;
+    }
+
+    @Test public void radix_blocks_fanout()
+    {
+        // Root grows to 256 subnodes, a chain of many blocks, and shrinks again.
+        RadixNodeManagerBlocks mgr = RadixNodeManagerBlocks.createMem(BlockSize) ;
+        RadixTreeImpl t = new RadixTreeImpl(mgr) ;
+        for ( int i = 0 ; i < 256 ; i++ )
+        {
+            byte[] k = { 1, (byte)i } ;
+            t.insert(k, k) ;
+            t.sync() ;
+        }
+        t.check() ;
+        assertEquals(256, t.getRoot().capacity()) ;
+        for ( int i = 0 ; i < 256 ; i++ )
+        {
+            assertTrue(t.delete(new byte[] { 1, (byte)i })) ;
+            t.sync() ;
+        }
+        assertTrue(t.isEmpty()) ;
+        // All blocks, except the header, are free.
+        assertEquals(mgr.numBlocks()-1, mgr.numFreeBlocks()) ;
+    }
+
+    @Test public void radix_blocks_free()
+    {
+        RadixNodeManagerBlocks mgr = RadixNodeManagerBlocks.createMem(BlockSize) ;
+        RadixTree t = RadixTreeFactory.create(mgr) ;
+        List<byte[]> keys = keys(500) ;
+        for ( byte[] k : keys )
+            t.insert(k, k) ;
+        mgr.sync() ;
+        long blocks = mgr.numBlocks() ;
+        t.clear() ;
+        mgr.sync() ;
+        assertEquals(blocks-1, mgr.numFreeBlocks()) ;
+        // Refill from the free list.
+        for ( byte[] k : keys )
+            t.insert(k, k) ;
+        mgr.sync() ;
+        assertEquals(blocks, mgr.numBlocks()) ;
+        t.check() ;
+    }
+
+    @Test public void radix_blocks_bulk()
+    {
+        List<RadixEntry> entries = new ArrayList<>() ;
+        for ( byte[] k : TestRadix.order )
+            entries.add(new RadixEntry(k, TestRadix.valFromKey(k))) ;
+        RadixTreeImpl t = RadixTreeImpl.bulkLoad(entries.iterator(), RadixNodeManagerBlocks.createMem(BlockSize)) ;
+        t.sync() ;
+        t.check() ;
+        for ( byte[] k : TestRadix.order )
+            assertArrayEquals(TestRadix.valFromKey(k), t.find(k, null)) ;
+    }
+
+    @Test public void radix_blocks_batch()
+    {
+        List<RadixEntry> entries = new ArrayList<>() ;
+        for ( byte[] k : TestRadix.order )
+            entries.add(new RadixEntry(k, TestRadix.valFromKey(k))) ;
+        RadixTreeImpl t = new RadixTreeImpl(RadixNodeManagerBlocks.createMem(BlockSize)) ;
+        assertEquals(TestRadix.order.length, t.insertAll(entries.iterator())) ;
+        t.sync() ;
+        t.check() ;
+        byte[][] values = t.findAll(TestRadix.order, null) ;
+        for ( int i = 0 ; i < values.length ; i++ )
+            assertArrayEquals(TestRadix.valFromKey(TestRadix.order[i]), values[i]) ;
+    }
+
+    @Test public void radix_blocks_file()
+    {
+        String fn = filename() ;
+        List<byte[]> keys = keys(1000) ;
+        RadixTreeImpl t = new RadixTreeImpl(RadixNodeManagerBlocks.open(fn, BlockSize)) ;
+        for ( byte[] k : keys )
+            t.insert(k, TestRadix.valFromKey(k)) ;
+        t.delete(keys.get(0)) ;
+        t.close() ;
+
+        // Reopen.
+        t = new RadixTreeImpl(RadixNodeManagerBlocks.open(fn, BlockSize)) ;
+        t.check() ;
+        assertEquals(keys.size()-1, t.size()) ;
+        assertFalse(t.contains(keys.get(0))) ;
+        for ( int i = 1 ; i < keys.size() ; i++ )
+            assertArrayEquals(TestRadix.valFromKey(keys.get(i)), t.find(keys.get(i), null)) ;
+        t.insert(keys.get(0), keys.get(0)) ;
+        t.close() ;
+
+        t = new RadixTreeImpl(RadixNodeManagerBlocks.open(fn, BlockSize)) ;
+        assertEquals(keys.size(), t.size()) ;
+        t.check() ;
+        t.close() ;
+    }
+
+    // Reopen without closing : changes after the sync have reached the mapped file.
+    @Test public void radix_blocks_reopen()
+    {
+        int cacheSize = RadixNodeManagerBlocks.DefaultCacheSize ;
+        // Evict nodes during the changes.
+        RadixNodeManagerBlocks.DefaultCacheSize = 20 ;
+        try {
+            String fn = filename() ;
+            List<byte[]> keys = keys(2000) ;
+            RadixTreeImpl t = new RadixTreeImpl(RadixNodeManagerBlocks.open(fn, BlockSize)) ;
+            for ( int i = 0 ; i < 1000 ; i++ )
+                t.insert(keys.get(i), TestRadix.valFromKey(keys.get(i))) ;
+            for ( int i = 0 ; i < 1000 ; i += 4 )
+                t.delete(keys.get(i)) ;
+            t.sync() ;
+            // Change the synced tree, and reuse blocks from the free list.
+            for ( int i = 2 ; i < 1000 ; i += 4 )
+                t.delete(keys.get(i)) ;
+            for ( int i = 1000 ; i < 2000 ; i++ )
+                t.insert(keys.get(i), TestRadix.valFromKey(keys.get(i))) ;
+            t.check() ;
+
+            RadixTreeImpl t2 = new RadixTreeImpl(RadixNodeManagerBlocks.open(fn, BlockSize)) ;
+            t2.check() ;
+            assertEquals(750, t2.size()) ;
+            for ( int i = 0 ; i < 1000 ; i++ )
+                assertArrayEquals(i%4 == 0 ? null : TestRadix.valFromKey(keys.get(i)), t2.find(keys.get(i), null)) ;
+            for ( int i = 1000 ; i < 2000 ; i++ )
+                assertFalse(t2.contains(keys.get(i))) ;
+
+            // Carry on from the reopened tree.
+            for ( int i = 1000 ; i < 1500 ; i++ )
+                t2.insert(keys.get(i), TestRadix.valFromKey(keys.get(i))) ;
+            for ( int i = 1 ; i < 1000 ; i += 4 )
+                t2.delete(keys.get(i)) ;
+            t2.sync() ;
+            for ( int i = 1500 ; i < 2000 ; i++ )
+                t2.insert(keys.get(i), TestRadix.valFromKey(keys.get(i))) ;
+
+            RadixTreeImpl t3 = new RadixTreeImpl(RadixNodeManagerBlocks.open(fn, BlockSize)) ;
+            t3.check() ;
+            assertEquals(1000, t3.size()) ;
+            for ( int i = 0 ; i < 1000 ; i++ )
+                assertEquals(i%4 >= 2, t3.contains(keys.get(i))) ;
+            for ( int i = 1000 ; i < 2000 ; i++ )
+                assertEquals(i < 1500, t3.contains(keys.get(i))) ;
+            t3.close() ;
+        } finally { RadixNodeManagerBlocks.DefaultCacheSize = cacheSize ; }
+    }
+
+    // Scans release node objects as they go.
+    @Test public void radix_blocks_scan()
+    {
+        int cacheSize = RadixNodeManagerBlocks.DefaultCacheSize ;
+        RadixNodeManagerBlocks.DefaultCacheSize = 20 ;
+        try {
+            RadixNodeManagerBlocks mgr = RadixNodeManagerBlocks.open(filename(), BlockSize) ;
+            RadixTreeImpl t = new RadixTreeImpl(mgr) ;
+            List<byte[]> keys = keys(1000) ;
+            for ( byte[] k : keys )
+                t.insert(k, TestRadix.valFromKey(k)) ;
+            t.sync() ;
+            // Changed nodes of the synced tree are kept until the next sync.
+            for ( int i = 0 ; i < 10 ; i++ )
+                t.delete(keys.get(i)) ;
+            int kept = mgr.numCached() ;
+
+            List<byte[]> expected = new ArrayList<>(keys.subList(10, keys.size())) ;
+            expected.sort(Arrays::compareUnsigned) ;
+            Iterator<RadixEntry> iter = t.iterator() ;
+            for ( byte[] k : expected )
+            {
+                assertTrue(iter.hasNext()) ;
+                RadixEntry e = iter.next() ;
+                assertArrayEquals(k, e.key) ;
+                assertArrayEquals(TestRadix.valFromKey(k), e.value) ;
+                assertTrue(mgr.numCached() <= Math.max(20, 2*kept)) ;
+            }
+            assertFalse(iter.hasNext()) ;
+
+            RadixCursor cursor = t.cursor(null, null) ;
+            int n = 0 ;
+            while ( cursor.advance() )
+            {
+                assertArrayEquals(TestRadix.valFromKey(expected.get(n)), cursor.value()) ;
+                assertTrue(mgr.numCached() <= Math.max(20, 2*kept)) ;
+                n++ ;
+            }
+            assertEquals(expected.size(), n) ;
+
+            assertEquals(expected.size(), t.count()) ;
+            assertTrue(mgr.numCached() <= Math.max(20, 2*kept)) ;
+            t.close() ;
+        } finally { RadixNodeManagerBlocks.DefaultCacheSize = cacheSize ; }
+    }
+
+    private static List<byte[]> keys(int N)
+    {
+        List<byte[]> keys = new ArrayList<>() ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            int x = i*7919 ;
+            keys.add(new byte[] { (byte)(x>>>16), (byte)(x>>>8), (byte)x, (byte)i }) ;
+        }
+        return keys ;
+    }
+}
@@ -32,6 +32,7 @@ import java.util.List ;
 import org.apache.jena.atlas.test.ExecGenerator ;
 import org.apache.jena.atlas.test.RepeatExecution ;
 import structure.avl.AVL ;
+import structure.skiplist.ConcurrentSkipListTestBase ;
 import structure.skiplist.SkipList ;
 import structure.skiplist.SkipListTestBase ;
 
@@ -52,6 +53,8 @@ public abstract class SkipListRun
             new Test().exec(args) ;
         else if ( "perf".equalsIgnoreCase(subCmd) )
             new Perf().exec(args) ;
+        else if ( "concurrent".equalsIgnoreCase(subCmd) )
+            new Concurrent().exec(args) ;
         else
         {
             System.err.println("Unknown subcommand: "+subCmd) ;
@@ -104,6 +107,20 @@ public abstract class SkipListRun
         }
     }
     
+    // ---- Concurrent throughput : iterations are operations per thread
+    public static class Concurrent extends SkipListRun
+    {
+        @Override
+        protected void exec(int maxLevel, int numKeys, int iterations)
+        {
+            for ( int threads = 1 ; threads <= Runtime.getRuntime().availableProcessors() ; threads *= 2 )
+            {
+                double opsPerSec = ConcurrentSkipListTestBase.throughput(threads, 2*numKeys, iterations, 90) ;
+                System.out.printf("Threads: %2d  ops/s: %,.0f\n", threads, opsPerSec) ;
+            }
+        }
+    }
+
     List<String> processArgs(List<String> args)
     {
         int i = 0 ;
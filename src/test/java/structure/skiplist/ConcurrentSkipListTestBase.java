@@ -0,0 +1,183 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.skiplist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Multi-threaded stress and throughput drivers for {@link ConcurrentSkipList}. */
+public class ConcurrentSkipListTestBase
+{
+    /**
+     * Each thread inserts, checks and deletes its own disjoint set of keys,
+     * interleaved with the other threads. Afterwards, the keys each thread
+     * left in place must be exactly those present.
+     */
+    public static void stressDisjoint(int numThreads, int keysPerThread, int rounds)
+    {
+        ConcurrentSkipList<Integer> skiplist = new ConcurrentSkipList<Integer>() ;
+        run(numThreads, (t) -> {
+            for ( int r = 0 ; r < rounds ; r++ )
+            {
+                for ( int i = 0 ; i < keysPerThread ; i++ )
+                {
+                    int k = i*numThreads+t ;
+                    if ( skiplist.insert(k) != null )
+                        throw new IllegalStateException("Insert: already present: "+k) ;
+                    if ( ! skiplist.contains(k) )
+                        throw new IllegalStateException("Insert: not found: "+k) ;
+                }
+                // Delete the odd keys, except on the last round.
+                for ( int i = 1 ; i < keysPerThread ; i += 2 )
+                {
+                    int k = i*numThreads+t ;
+                    if ( skiplist.delete(k) == null )
+                        throw new IllegalStateException("Delete: not found: "+k) ;
+                    if ( skiplist.contains(k) )
+                        throw new IllegalStateException("Delete: still present: "+k) ;
+                }
+                if ( r != rounds-1 )
+                {
+                    for ( int i = 0 ; i < keysPerThread ; i += 2 )
+                        skiplist.delete(i*numThreads+t) ;
+                }
+            }
+        }) ;
+
+        skiplist.check() ;
+        int expected = numThreads*((keysPerThread+1)/2) ;
+        assertEquals(expected, skiplist.size()) ;
+        int count = 0 ;
+        int prev = -1 ;
+        for ( int k : skiplist )
+        {
+            assertTrue("Out of order", prev < k) ;
+            assertEquals("Odd key present: "+k, 0, (k/numThreads)%2) ;
+            prev = k ;
+            count++ ;
+        }
+        assertEquals(expected, count) ;
+    }
+
+    /**
+     * All threads insert and delete random keys from a shared range while
+     * other threads iterate; iterators must always return keys in strictly
+     * increasing order within the requested range.
+     */
+    public static void stressShared(int numThreads, int maxValue, int opsPerThread)
+    {
+        ConcurrentSkipList<Integer> skiplist = new ConcurrentSkipList<Integer>() ;
+        run(numThreads, (t) -> {
+            ThreadLocalRandom rand = ThreadLocalRandom.current() ;
+            for ( int i = 0 ; i < opsPerThread ; i++ )
+            {
+                int k = rand.nextInt(maxValue) ;
+                switch(rand.nextInt(4))
+                {
+                    case 0: skiplist.insert(k) ; break ;
+                    case 1: skiplist.delete(k) ; break ;
+                    case 2: skiplist.contains(k) ; break ;
+                    case 3:
+                    {
+                        int max = k+rand.nextInt(maxValue/4+1) ;
+                        int prev = -1 ;
+                        for ( var iter = skiplist.iterator(k, max) ; iter.hasNext() ; )
+                        {
+                            int x = iter.next() ;
+                            if ( x < k || x >= max || x <= prev )
+                                throw new IllegalStateException("Iterator: "+prev+" then "+x+" in ["+k+","+max+")") ;
+                            prev = x ;
+                        }
+                    }
+                }
+            }
+        }) ;
+
+        // Quiescent - exact again.
+        skiplist.check() ;
+        int count = 0 ;
+        for ( @SuppressWarnings("unused") int k : skiplist )
+            count++ ;
+        assertEquals(count, skiplist.size()) ;
+    }
+
+    /**
+     * Mixed workload throughput in operations per second: lookupPercent of
+     * operations are lookups, the rest split evenly between insert and delete.
+     */
+    public static double throughput(int numThreads, int maxValue, int opsPerThread, int lookupPercent)
+    {
+        ConcurrentSkipList<Integer> skiplist = new ConcurrentSkipList<Integer>() ;
+        for ( int i = 0 ; i < maxValue ; i += 2 )
+            skiplist.insert(i) ;
+        long start = System.nanoTime() ;
+        run(numThreads, (t) -> {
+            ThreadLocalRandom rand = ThreadLocalRandom.current() ;
+            for ( int i = 0 ; i < opsPerThread ; i++ )
+            {
+                int k = rand.nextInt(maxValue) ;
+                int op = rand.nextInt(100) ;
+                if ( op < lookupPercent )
+                    skiplist.contains(k) ;
+                else if ( ( op & 1 ) == 0 )
+                    skiplist.insert(k) ;
+                else
+                    skiplist.delete(k) ;
+            }
+        }) ;
+        long elapsed = System.nanoTime()-start ;
+        return (double)numThreads*opsPerThread*1e9/elapsed ;
+    }
+
+    interface Worker { void run(int threadIdx) ; }
+
+    /** Run the worker on numThreads threads, started together; rethrow the first failure. */
+    static void run(int numThreads, Worker worker)
+    {
+        CountDownLatch startLatch = new CountDownLatch(1) ;
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>() ;
+        List<Thread> threads = new ArrayList<Thread>() ;
+        for ( int t = 0 ; t < numThreads ; t++ )
+        {
+            final int idx = t ;
+            Thread thread = new Thread(() -> {
+                try {
+                    startLatch.await() ;
+                    worker.run(idx) ;
+                } catch (Throwable ex) { failure.compareAndSet(null, ex) ; }
+            }, "ConcurrentSkipList-"+t) ;
+            threads.add(thread) ;
+            thread.start() ;
+        }
+        startLatch.countDown() ;
+        for ( Thread thread : threads )
+        {
+            try { thread.join() ; }
+            catch (InterruptedException ex) { fail("Interrupted") ; }
+        }
+        if ( failure.get() != null )
+            throw new AssertionError("Worker thread failed", failure.get()) ;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.skiplist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestConcurrentSkipList
+{
+    private static ConcurrentSkipList<Integer> create(int...recs)
+    {
+        ConcurrentSkipList<Integer> skiplist = new ConcurrentSkipList<Integer>() ;
+        for ( int i : recs )
+            skiplist.insert(i) ;
+        skiplist.check() ;
+        return skiplist ;
+    }
+
+    private static List<Integer> list(Iterator<Integer> iter)
+    {
+        List<Integer> x = new ArrayList<Integer>() ;
+        iter.forEachRemaining(x::add) ;
+        return x ;
+    }
+
+    @Test public void concurrent_skiplist_01()
+    {
+        ConcurrentSkipList<Integer> sk = create() ;
+        assertTrue(sk.isEmpty()) ;
+        assertEquals(0, sk.size()) ;
+        assertFalse(sk.iterator().hasNext()) ;
+    }
+
+    @Test public void concurrent_skiplist_02()
+    {
+        ConcurrentSkipList<Integer> sk = create(3, 1, 2) ;
+        assertEquals(3, sk.size()) ;
+        assertTrue(sk.contains(1)) ;
+        assertFalse(sk.contains(4)) ;
+        assertEquals(Arrays.asList(1, 2, 3), list(sk.iterator())) ;
+    }
+
+    @Test public void concurrent_skiplist_03()
+    {
+        // Insert of a present record replaces and returns it.
+        ConcurrentSkipList<Integer> sk = create(5) ;
+        assertEquals(Integer.valueOf(5), sk.insert(5)) ;
+        assertEquals(1, sk.size()) ;
+        assertNull(sk.insert(6)) ;
+        sk.check() ;
+    }
+
+    @Test public void concurrent_skiplist_04()
+    {
+        ConcurrentSkipList<Integer> sk = create(1, 2, 3, 4) ;
+        assertEquals(Integer.valueOf(2), sk.delete(2)) ;
+        assertNull(sk.delete(2)) ;
+        assertNull(sk.delete(99)) ;
+        sk.check() ;
+        assertEquals(3, sk.size()) ;
+        assertEquals(Arrays.asList(1, 3, 4), list(sk.iterator())) ;
+    }
+
+    @Test public void concurrent_skiplist_05()
+    {
+        // Min inclusive, max exclusive.
+        ConcurrentSkipList<Integer> sk = create(10, 20, 30, 40, 50) ;
+        assertEquals(Arrays.asList(20, 30), list(sk.iterator(20, 40))) ;
+        assertEquals(Arrays.asList(20, 30), list(sk.iterator(15, 35))) ;
+        assertEquals(Arrays.asList(40, 50), list(sk.iterator(35, null))) ;
+        assertEquals(Arrays.asList(10), list(sk.iterator(null, 20))) ;
+        assertEquals(Arrays.asList(), list(sk.iterator(60, null))) ;
+        assertEquals(Arrays.asList(), list(sk.iterator(20, 20))) ;
+    }
+
+    @Test public void concurrent_skiplist_06()
+    {
+        int[] keys = new int[1000] ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+            keys[i] = (i*7919)%keys.length ;
+        ConcurrentSkipList<Integer> sk = create(keys) ;
+        assertEquals(keys.length, sk.size()) ;
+        for ( int i = 0 ; i < keys.length ; i += 3 )
+            sk.delete(i) ;
+        sk.check() ;
+        int prev = -1 ;
+        for ( int k : sk )
+        {
+            assertTrue(k > prev) ;
+            assertTrue(k%3 != 0) ;
+            prev = k ;
+        }
+        assertTrue(sk.isEmpty() == false) ;
+    }
+
+    @Test public void concurrent_skiplist_07()
+    {
+        // Weakly consistent: deleting behind and ahead of an active iterator.
+        ConcurrentSkipList<Integer> sk = create(1, 2, 3, 4, 5) ;
+        Iterator<Integer> iter = sk.iterator() ;
+        assertEquals(Integer.valueOf(1), iter.next()) ;
+        sk.delete(1) ;
+        sk.delete(4) ;
+        assertEquals(Arrays.asList(2, 3, 5), list(iter)) ;
+    }
+
+    @Test public void concurrent_skiplist_stress_01()
+    {
+        ConcurrentSkipListTestBase.stressDisjoint(4, 2000, 3) ;
+    }
+
+    @Test public void concurrent_skiplist_stress_02()
+    {
+        ConcurrentSkipListTestBase.stressShared(4, 500, 20000) ;
+    }
+}
@@ -26,6 +26,7 @@ import static structure.skiplist.SkipListTestBase.delete;
 import static structure.skiplist.SkipListTestBase.testIteration;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -134,6 +135,54 @@ public class TestSkipList
         testIter(sk, -1,99,  r) ;
     }
 
+    @Test public void skiplist_bulk_01()
+    {
+        for ( int n : new int[] { 0, 1, 2, 3, 8, 100, 1025 } )
+        {
+            List<Integer> x = new ArrayList<Integer>() ;
+            for ( int i = 0 ; i < n ; i++ )
+                x.add(2*i) ;
+            SkipList<Integer> sk = SkipList.bulkLoad(x) ;
+            sk.check() ;
+            assertEquals(n, sk.size()) ;
+            List<Integer> y = new ArrayList<Integer>() ;
+            for ( int r : sk )
+                y.add(r) ;
+            assertEquals(x, y) ;
+            for ( int i : x )
+                assertTrue(sk.contains(i)) ;
+            assertFalse(sk.contains(1)) ;
+        }
+    }
+
+    @Test public void skiplist_bulk_02()
+    {
+        // Updatable afterwards ; levels capped at maxLevel.
+        List<Integer> x = new ArrayList<Integer>() ;
+        for ( int i = 0 ; i < 64 ; i++ )
+            x.add(i) ;
+        SkipList<Integer> sk = SkipList.bulkLoad(3, x.iterator()) ;
+        sk.check() ;
+        sk.insert(100) ;
+        sk.delete(10) ;
+        sk.check() ;
+        assertEquals(64, sk.size()) ;
+        assertFalse(sk.contains(10)) ;
+        assertTrue(sk.contains(100)) ;
+    }
+
+    @Test(expected=SkipListException.class)
+    public void skiplist_bulk_03()
+    {
+        SkipList.bulkLoad(Arrays.asList(1, 2, 2)) ;
+    }
+
+    @Test(expected=SkipListException.class)
+    public void skiplist_bulk_04()
+    {
+        SkipList.bulkLoad(Arrays.asList(2, 1)) ;
+    }
+
     static void testIter(SkipList<Integer> sk, Integer lo, Integer hi, int... ans)
     {
         List<Integer> x = new ArrayList<Integer>() ;
@@ -0,0 +1,74 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package structure.ttree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import structure.LongOrderedSet;
+import structure.LongOrderedSetTestBase;
+
+public class TestLongTTree extends LongOrderedSetTestBase
+{
+    static { LongTTree.Checking = true ; }
+
+    @Override
+    protected LongOrderedSet create()
+    {
+        return new LongTTree(3, 2) ;
+    }
+
+    @Override
+    protected LongOrderedSet bulkLoad(long[] sorted)
+    {
+        return LongTTree.bulkLoad(3, sorted) ;
+    }
+
+    @Test(expected=TTreeException.class)
+    public void long_ttree_bulk_bad()
+    {
+        LongTTree.bulkLoad(4, new long[]{5, 4}) ;
+    }
+
+    // Other node sizes, including the minimum internal node size of 1.
+    @Test public void long_ttree_nodesize_01()
+    {
+        int[][] configs = { {2, 1}, {2, 2}, {4, 1}, {8, 6}, {32, 32} } ;
+        for ( int[] c : configs )
+        {
+            LongTTree ttree = new LongTTree(c[0], c[1]) ;
+            TreeSet<Long> expected = new TreeSet<Long>() ;
+            Random random = new Random(c[0]*31+c[1]) ;
+            for ( int i = 0 ; i < 3000 ; i++ )
+            {
+                long k = random.nextInt(400) ;
+                if ( random.nextBoolean() )
+                    assertEquals(expected.add(k), ttree.add(k)) ;
+                else
+                    assertEquals(expected.remove(k), ttree.remove(k)) ;
+            }
+            ttree.checkTree() ;
+            long[] x = expected.stream().mapToLong(Long::longValue).toArray() ;
+            assertArrayEquals(x, ttree.elements()) ;
+        }
+    }
+}
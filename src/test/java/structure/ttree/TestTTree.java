@@ -17,6 +17,15 @@
 
 package structure.ttree;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
 import structure.OrderedSet;
 import structure.OrderedSetTestBase;
 
@@ -33,4 +42,75 @@ public class TestTTree extends OrderedSetTestBase
     {
         return new TTree<Integer>(3,2) ;
     }
+
+    @Override
+    protected OrderedSet<Integer> bulkLoad(Iterator<Integer> sorted)
+    {
+        return TTree.bulkLoad(3, sorted) ;
+    }
+
+    @Test public void ttree_nodesize_01()
+    {
+        TTree<Integer> ttree = new TTree<Integer>(16, 12) ;
+        assertEquals(16, ttree.NodeSize) ;
+        assertEquals(12, ttree.NodeSizeMin) ;
+        for ( int i = 0 ; i < 16 ; i++ )
+            ttree.add(i) ;
+        // One node holds them all.
+        assertEquals(1, ttree.root.height) ;
+        assertEquals(16, ttree.root.nodeSize) ;
+    }
+
+    @Test(expected=TTreeException.class)
+    public void ttree_nodesize_02()
+    {
+        new TTree<Integer>(1, 1) ;
+    }
+
+    @Test(expected=TTreeException.class)
+    public void ttree_nodesize_03()
+    {
+        new TTree<Integer>(8, 9) ;
+    }
+
+    @Test public void ttree_nodesize_04()
+    {
+        // Random adds and removes at various node sizes, checking the tree
+        // (including the successor links) and the iterators as we go.
+        Random rand = new Random(1234) ;
+        int[][] sizes = { {2,1}, {2,2}, {3,3}, {4,2}, {8,6}, {8,8}, {32,16}, {128,128} } ;
+        for ( int[] sz : sizes )
+        {
+            TTree<Integer> ttree = new TTree<Integer>(sz[0], sz[1]) ;
+            TreeSet<Integer> expected = new TreeSet<Integer>() ;
+            for ( int i = 0 ; i < 4000 ; i++ )
+            {
+                int k = rand.nextInt(1000) ;
+                if ( rand.nextInt(3) == 0 )
+                    assertEquals(expected.remove(k), ttree.remove(k)) ;
+                else
+                {
+                    ttree.add(k) ;
+                    expected.add(k) ;
+                }
+                if ( i % 500 == 0 )
+                {
+                    ttree.checkTree() ;
+                    int lo = rand.nextInt(1000) ;
+                    int hi = lo+rand.nextInt(200) ;
+                    assertEquals(new ArrayList<Integer>(expected.subSet(lo, hi)), list(ttree.iterator(lo, hi))) ;
+                }
+            }
+            ttree.checkTree() ;
+            assertEquals(expected.size(), ttree.size()) ;
+            assertEquals(new ArrayList<Integer>(expected), list(ttree.iterator())) ;
+        }
+    }
+
+    private static List<Integer> list(Iterator<Integer> iter)
+    {
+        List<Integer> x = new ArrayList<Integer>() ;
+        iter.forEachRemaining(x::add) ;
+        return x ;
+    }
 }